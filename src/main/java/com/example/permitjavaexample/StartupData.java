@@ -1,169 +1,268 @@
 package com.example.permitjavaexample;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.permitjavaexample.authz.policy.BlogPolicy;
+import com.example.permitjavaexample.authz.policy.PolicyModel;
+import com.example.permitjavaexample.authz.policy.PolicyModel.*;
 import io.permit.sdk.Permit;
+import io.permit.sdk.api.PermitApiError;
 import io.permit.sdk.openapi.models.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+/**
+ * Bootstraps the {@link BlogPolicy} schema in Permit without holding up startup.
+ * <p>
+ * The current schema is read first and only the missing objects are created, so a restart against an environment
+ * that is already set up costs a handful of reads. Objects are created in parallel as soon as what they refer to
+ * exists: resources first, then their resource sets, relations, resource roles and tenant roles, then role
+ * derivations and condition set rules. A create that fails with 409 because another instance got there first
+ * counts as done. The application serves requests while this runs; the {@code startupData} health contributor,
+ * part of the readiness group, stays out of service until the bootstrap finished and goes down if it failed.
+ */
 @Component
-public class StartupData implements CommandLineRunner {
+public class StartupData implements CommandLineRunner, HealthIndicator {
+    private static final Logger log = LoggerFactory.getLogger(StartupData.class);
+
+    @FunctionalInterface
+    private interface Step<T> {
+        T run() throws Exception;
+    }
+
+    private final Permit permit;
+    private final PolicyModel model;
+    private final boolean enabled;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bootstrap-", 1).factory());
+    private volatile Health health = Health.outOfService().withDetail("bootstrap", "pending").build();
+
     @Autowired
-    Permit permit;
+    public StartupData(Permit permit, @Value("${permit.bootstrap.enabled:true}") boolean enabled) {
+        this(permit, BlogPolicy.model(), enabled);
+    }
+
+    public StartupData(Permit permit, PolicyModel model, boolean enabled) {
+        this.permit = permit;
+        this.model = model;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            health = Health.up().withDetail("bootstrap", "disabled").build();
+            return;
+        }
+        health = Health.outOfService().withDetail("bootstrap", "running").build();
+        long start = System.nanoTime();
+        bootstrap().whenComplete((created, e) -> {
+            Duration took = Duration.ofNanos(System.nanoTime() - start);
+            if (e == null) {
+                log.info("Permit policy bootstrap finished in {} ms, {} objects created", took.toMillis(), created);
+                health = Health.up().withDetail("bootstrap", "done").withDetail("created", created).build();
+            } else {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                log.error("Permit policy bootstrap failed after {} ms", took.toMillis(), cause);
+                health = Health.down(cause).withDetail("bootstrap", "failed").build();
+            }
+        });
+    }
 
     @Override
-    public void run(String... args) throws Exception {
+    public Health health() {
+        return health;
+    }
+
+    /**
+     * Creates whatever part of the model is missing from Permit.
+     *
+     * @return the number of objects created
+     */
+    public CompletableFuture<Integer> bootstrap() {
+        var created = new AtomicInteger();
+
+        var existingResources = after(() -> keys(permit.api.resources.list(), r -> r.key));
+        var existingSets = after(() -> keys(permit.api.conditionSets.list(), s -> s.key));
+        var existingRoles = after(() -> keys(permit.api.roles.list(), r -> r.key));
+
+        Map<String, CompletableFuture<?>> resources = new HashMap<>();
+        for (ResourceType resource : model.resources()) {
+            resources.put(resource.key(), after(() -> {
+                if (!existingResources.join().contains(resource.key())) {
+                    create(created, () -> permit.api.resources.create(resourceCreate(resource)));
+                }
+                return null;
+            }, existingResources));
+        }
+
+        Map<String, CompletableFuture<Map<String, ResourceRoleRead>>> existingResourceRoles = new HashMap<>();
+        Map<String, CompletableFuture<Set<String>>> existingRelations = new HashMap<>();
+        for (ResourceType resource : model.resources()) {
+            existingResourceRoles.put(resource.key(), after(() -> {
+                Map<String, ResourceRoleRead> roles = new HashMap<>();
+                for (ResourceRoleRead role : permit.api.resourceRoles.list(resource.key())) {
+                    roles.put(role.key, role);
+                }
+                return roles;
+            }, resources.get(resource.key())));
+            existingRelations.put(resource.key(), after(() -> keys(permit.api.resourceRelations.list(resource.key()), r -> r.key),
+                    resources.get(resource.key())));
+        }
+
+        Map<String, CompletableFuture<?>> resourceSets = new HashMap<>();
+        for (ResourceSet set : model.resourceSets()) {
+            resourceSets.put(set.key(), after(() -> {
+                if (!existingSets.join().contains(set.key())) {
+                    create(created, () -> permit.api.conditionSets.create(new ConditionSetCreate(set.key(), set.name())
+                            .withResourceId(set.resource())
+                            .withConditions(ownership(set.attribute()))
+                            .withType(ConditionSetType.RESOURCESET)));
+                }
+                return null;
+            }, existingSets, resources.get(set.resource())));
+        }
+
+        Map<String, CompletableFuture<?>> relations = new HashMap<>();
+        for (Relation relation : model.relations()) {
+            relations.put(relation.objectResource() + ":" + relation.key(), after(() -> {
+                if (!existingRelations.get(relation.objectResource()).join().contains(relation.key())) {
+                    create(created, () -> permit.api.resourceRelations.create(relation.objectResource(),
+                            new RelationCreate(relation.key(), relation.description(), relation.subjectResource())));
+                }
+                return null;
+            }, existingRelations.get(relation.objectResource()), resources.get(relation.subjectResource())));
+        }
+
+        Map<String, CompletableFuture<?>> resourceRoles = new HashMap<>();
+        for (ResourceRole role : model.resourceRoles()) {
+            resourceRoles.put(role.resource() + ":" + role.key(), after(() -> {
+                if (!existingResourceRoles.get(role.resource()).join().containsKey(role.key())) {
+                    create(created, () -> permit.api.resourceRoles.create(role.resource(), new ResourceRoleCreate(role.key(), role.key())
+                            .withDescription(role.description())
+                            .withPermissions(role.permissions())));
+                }
+                return null;
+            }, existingResourceRoles.get(role.resource())));
+        }
+
+        Map<String, CompletableFuture<?>> roles = new HashMap<>();
+        for (Role role : model.roles()) {
+            List<CompletableFuture<?>> dependencies = new ArrayList<>(List.of(existingRoles));
+            for (String permission : role.permissions()) {
+                dependencies.add(resources.get(permission.substring(0, permission.indexOf(':'))));
+            }
+            roles.put(role.key(), after(() -> {
+                if (!existingRoles.join().contains(role.key())) {
+                    create(created, () -> permit.api.roles.create(new RoleCreate(role.key(), role.key())
+                            .withDescription(role.description())
+                            .withPermissions(role.permissions())));
+                }
+                return null;
+            }, dependencies.toArray(CompletableFuture[]::new)));
+        }
+
+        List<CompletableFuture<?>> last = new ArrayList<>();
+        for (RoleDerivation derivation : model.derivations()) {
+            last.add(after(() -> {
+                if (!derivationExists(existingResourceRoles.get(derivation.resource()).join().get(derivation.role()), derivation)) {
+                    create(created, () -> permit.api.resourceRoles.createRoleDerivation(derivation.resource(), derivation.role(),
+                            new DerivedRoleRuleCreate(derivation.fromRole(), derivation.fromResource(), derivation.relation())));
+                }
+                return null;
+            }, resourceRoles.get(derivation.resource() + ":" + derivation.role()),
+                    resourceRoles.get(derivation.fromResource() + ":" + derivation.fromRole()),
+                    relations.get(derivation.resource() + ":" + derivation.relation())));
+        }
+        for (ConditionSetRule rule : model.rules()) {
+            last.add(after(() -> {
+                if (permit.api.conditionSetRules.list(rule.role(), rule.permission(), rule.resourceSet()).length == 0) {
+                    create(created, () -> permit.api.conditionSetRules.create(
+                            new ConditionSetRuleCreate(rule.role(), rule.permission(), rule.resourceSet())));
+                }
+                return null;
+            }, roles.get(rule.role()), resourceSets.get(rule.resourceSet())));
+        }
+
+        List<CompletableFuture<?>> all = new ArrayList<>(last);
+        all.addAll(resources.values());
+        all.addAll(resourceSets.values());
+        all.addAll(relations.values());
+        all.addAll(resourceRoles.values());
+        all.addAll(roles.values());
+        return CompletableFuture.allOf(all.toArray(CompletableFuture[]::new)).thenApply(v -> created.get());
+    }
+
+    /**
+     * Runs {@code step} on a virtual thread once all {@code dependencies} completed normally.
+     */
+    private <T> CompletableFuture<T> after(Step<T> step, CompletableFuture<?>... dependencies) {
+        return CompletableFuture.allOf(dependencies).thenApplyAsync(v -> {
+            try {
+                return step.run();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static void create(AtomicInteger created, Callable<?> create) throws Exception {
         try {
-            //resources
-            //blog
-            HashMap<String, ActionBlockEditable> actions = new HashMap<>();
-            actions.put("create", new ActionBlockEditable());
-            actions.put("read", new ActionBlockEditable());
-            actions.put("update", new ActionBlockEditable());
-            actions.put("delete", new ActionBlockEditable());
-
-            HashMap<String, AttributeBlockEditable> attributes = new HashMap<>();
-            attributes.put(
-                    "author",
-                    new AttributeBlockEditable().withType(AttributeType.STRING).withDescription("The user key who created the blog")
-            );
-            ResourceCreate blogCreate = ((
-                    new ResourceCreate("blog", "Blogs", actions).withAttributes(attributes)
-            ));
-            ResourceRead blog = permit.api.resources.create(blogCreate);
-//        ResourceRead blog = permit.api.resources.get("blog");
-            //comment
-            actions.clear();
-            actions = new HashMap<>();
-            actions.put("create", new ActionBlockEditable());
-            actions.put("update", new ActionBlockEditable());
-            actions.put("read", new ActionBlockEditable());
-            actions.put("delete", new ActionBlockEditable());
-            attributes.clear();
-            attributes.put(
-                    "author",
-                    new AttributeBlockEditable().withType(AttributeType.STRING).withDescription("The user key who created the comment")
-            );
-            ResourceCreate commentCreate = ((
-                    new ResourceCreate("comment", "Comments", actions).withAttributes(attributes)
-            ));
-            ResourceRead comment = permit.api.resources.create(commentCreate);
-//        ResourceRead comment = permit.api.resources.get("comment");
-            //folder
-            HashMap<String, ActionBlockEditable> folderActions = new HashMap<>();
-            folderActions.put("share", new ActionBlockEditable());
-            folderActions.putAll(actions);
-            ResourceCreate folderCreate = ((
-                    new ResourceCreate("folder", "folders", folderActions).withAttributes(attributes)
-            ));
-            ResourceRead folder = permit.api.resources.create(folderCreate);
-            // resource set
-            String conditionStr = """
-                    {
-                        "allOf" : [
-                          {
-                            "allOf" : [
-                              { "resource.author" : { "equals" : { "ref" : "user.key" } } }
-                            ]
-                          }
-                        ]
-                    }
-                    """;
-            ObjectMapper mapper = new ObjectMapper();
-            HashMap<String, Object> map = mapper.readValue(conditionStr, HashMap.class);
-            ConditionSetRead ownBlog = permit.api.conditionSets.create(
-                    new ConditionSetCreate("own_blog", "Own Blogs").withResourceId(blog.id).withConditions(map).withType(ConditionSetType.RESOURCESET)
-            );
-//            ConditionSetRead ownBlog = permit.api.conditionSets.get("own_blog");
-            ConditionSetRead ownComment = permit.api.conditionSets.create(
-                    new ConditionSetCreate("own_comment", "Own Comments").withResourceId(comment.id).withConditions(map).withType(ConditionSetType.RESOURCESET)
-            );
-//            ConditionSetRead ownComment = permit.api.conditionSets.get("own_comment");
-            ConditionSetRead ownFolder = permit.api.conditionSets.create(
-                    new ConditionSetCreate("own_folder", "Own Folders").withResourceId(folder.id).withConditions(map).withType(ConditionSetType.RESOURCESET)
-            );
-            //relation
-            //blog_comment_relation
-            RelationRead blogCommentRelation = permit.api.resourceRelations.create("comment", new RelationCreate("parent", "Blog parent of Comment", blog.key)).withObjectResource(comment.key);
-
-            //resource role
-            //blog_author
-            ResourceRoleRead blogAuthor = permit.api.resourceRoles.create(blog.key, new ResourceRoleCreate("author", "author")
-                    .withDescription("Update and delete own blogs")
-                    .withPermissions(List.of("update", "delete")));
-            //comment_moderator
-            ResourceRoleRead commentModerator = permit.api.resourceRoles.create(comment.key, new ResourceRoleCreate("moderator", "moderator")
-                    .withDescription("Delete comments on own blogs")
-                    .withPermissions(List.of("delete")));
-            //folder_author
-            ResourceRoleRead folderAuthor = permit.api.resourceRoles.create(folder.key, new ResourceRoleCreate("author", "author")
-                    .withDescription("")
-                    .withPermissions(List.of("update", "read", "create", "delete", "share")));
-            //comment_moderator
-            ResourceRoleRead folderEditor = permit.api.resourceRoles.create(folder.key, new ResourceRoleCreate("editor", "editor")
-                    .withDescription("")
-                    .withPermissions(List.of("update", "read", "create")));
-            //folder_viewer
-            ResourceRoleRead folderViewer = permit.api.resourceRoles.create(folder.key, new ResourceRoleCreate("viewer", "viewer")
-                    .withDescription("")
-                    .withPermissions(List.of("read")));
-            //role derivation
-            //blog_author_comment_moderator
-            permit.api.resourceRoles.createRoleDerivation(comment.key, commentModerator.key,
-                    new DerivedRoleRuleCreate(blogAuthor.key, blog.key, blogCommentRelation.key));
-
-            //role
-            RoleRead viewer = permit.api.roles.create(
-                    new RoleCreate("viewer", "viewer")
-                            .withDescription("Read and comment on all blogs")
-                            .withPermissions(List.of("blog:read", "comment:create")));
-//            RoleRead viewer = permit.api.roles.get("viewer");
-            RoleRead editor = permit.api.roles.create(
-                    new RoleCreate("editor", "editor")
-                            .withDescription("Create blogs, update and delete them, and delete comments on them")
-                            .withPermissions(List.of("blog:read", "blog:create")));
-//            RoleRead editor = permit.api.roles.get("editor");
-            RoleRead admin = permit.api.roles.create(
-                    new RoleCreate("admin", "admin")
-                            .withDescription("Delete any blog or comment")
-                            .withPermissions(List.of("blog:delete", "comment:delete")));
-//            RoleRead admin = permit.api.roles.get("admin");
-
-            //condition set rule
-            //allow_editors_to_update_own_blogs
-            permit.api.conditionSetRules.create(
-                    new ConditionSetRuleCreate(editor.key, "blog:update", ownBlog.key)
-            );
-            //allow_editors_to_delete_own_blogs
-            permit.api.conditionSetRules.create(
-                    new ConditionSetRuleCreate(editor.key, "blog:delete", ownBlog.key)
-            );
-            //allow_viewers_to_update_own_comments
-            permit.api.conditionSetRules.create(
-                    new ConditionSetRuleCreate(viewer.key, "comment:update", ownComment.key)
-            );
-            //allow_viewers_to_delete_own_comments
-            permit.api.conditionSetRules.create(
-                    new ConditionSetRuleCreate(viewer.key, "comment:delete", ownComment.key)
-            );
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-//            permit.api.resources.delete("blog");
-//            permit.api.resources.delete("comment");
-//            permit.api.conditionSets.delete("own_blog");
-//            permit.api.conditionSets.delete("own_comment");
-//            permit.api.roles.delete("viewer");
-//            permit.api.roles.delete("admin");
-//            permit.api.roles.delete("editor");
-//            permit.api.conditionSetRules.delete(new ConditionSetRuleRemove("editor", "blog:update", "own_blog"));
-//            permit.api.conditionSetRules.delete(new ConditionSetRuleRemove("editor", "blog:delete", "own_blog"));
-//            permit.api.conditionSetRules.delete(new ConditionSetRuleRemove("viewer", "comment:update", "own_comment"));
-//            permit.api.conditionSetRules.delete(new ConditionSetRuleRemove("viewer", "comment:delete", "own_comment"));
+            create.call();
+            created.incrementAndGet();
+        } catch (PermitApiError e) {
+            if (e.getResponseCode() != 409) {
+                throw e;
+            }
         }
     }
+
+    private static <T> Set<String> keys(T[] objects, Function<T, String> key) {
+        Set<String> keys = new HashSet<>();
+        for (T object : objects) {
+            keys.add(key.apply(object));
+        }
+        return keys;
+    }
+
+    private static boolean derivationExists(ResourceRoleRead role, RoleDerivation derivation) {
+        if (role == null || role.grantedTo == null || role.grantedTo.users == null) {
+            return false;
+        }
+        return role.grantedTo.users.stream().anyMatch(rule -> derivation.fromRole().equals(rule.role)
+                && derivation.fromResource().equals(rule.onResource)
+                && derivation.relation().equals(rule.linkedByRelation));
+    }
+
+    private static ResourceCreate resourceCreate(ResourceType resource) {
+        HashMap<String, ActionBlockEditable> actions = new HashMap<>();
+        for (String action : resource.actions()) {
+            actions.put(action, new ActionBlockEditable());
+        }
+        HashMap<String, AttributeBlockEditable> attributes = new HashMap<>();
+        resource.attributes().forEach((name, description) ->
+                attributes.put(name, new AttributeBlockEditable().withType(AttributeType.STRING).withDescription(description)));
+        return new ResourceCreate(resource.key(), resource.name(), actions).withAttributes(attributes);
+    }
+
+    /**
+     * {@code resource.<attribute> equals user.key}, in the shape the Permit condition set API expects.
+     */
+    private static HashMap<String, Object> ownership(String attribute) {
+        Map<String, Object> condition = Map.of("resource." + attribute, Map.of("equals", Map.of("ref", "user.key")));
+        return new HashMap<>(Map.of("allOf", List.of(Map.of("allOf", List.of(condition)))));
+    }
 }
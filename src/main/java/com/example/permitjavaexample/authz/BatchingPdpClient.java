@@ -0,0 +1,220 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Context;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers single checks from concurrent requests into bulk requests to the PDP, when
+ * {@code permit.pdp.batching.enabled} is on; otherwise every call goes straight to the delegate.
+ * <p>
+ * One dispatcher thread takes checks off a queue and sends them, with at most {@code max-in-flight} requests
+ * outstanding. Whatever is queued when a request can be sent goes out together, up to {@code max-batch-size}
+ * checks, so batches grow by themselves while the PDP is busy and a lone check goes out as a plain single check.
+ * On top of that the dispatcher may linger for more checks, for at most {@code max-wait} and only while checks
+ * arrive often enough to be worth waiting for: the linger is twice the moving average gap between arrivals, and
+ * nothing when that gap exceeds {@code max-wait}. Results are handed back to the waiting callers in order; if the
+ * bulk request fails, every caller in it gets the failure. Once shut down, checks queued or taken but not sent fail,
+ * and so do new ones.
+ */
+@Primary
+@Component
+public class BatchingPdpClient implements PdpClient {
+    private static final double GAP_SMOOTHING = 0.2;
+
+    private record Pending(CheckQuery query, CompletableFuture<Boolean> result) {
+    }
+
+    private final PdpClient delegate;
+    private final AuthzMetrics metrics;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Semaphore inFlight;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pdp-batch-", 1).factory());
+    private final Thread dispatcher;
+
+    private volatile boolean closed;
+    private volatile long lastArrival = System.nanoTime();
+    private volatile long averageGapNanos = Long.MAX_VALUE;
+
+    @Autowired
+    public BatchingPdpClient(ResilientPdpClient delegate, AuthzMetrics metrics, PermitProperties properties) {
+        this((PdpClient) delegate, metrics, properties.getPdp().getBatching().isEnabled(),
+                properties.getPdp().getBatching().getMaxBatchSize(), properties.getPdp().getBatching().getMaxWait(),
+                properties.getPdp().getBatching().getMaxInFlight());
+    }
+
+    public BatchingPdpClient(PdpClient delegate, AuthzMetrics metrics, boolean enabled, int maxBatchSize,
+                             Duration maxWait, int maxInFlight) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.dispatcher = enabled ? Thread.ofVirtual().name("pdp-batch-dispatcher").start(this::dispatch) : null;
+    }
+
+    @Override
+    public boolean check(User user, String action, Resource resource) throws IOException, PermitApiError {
+        if (!enabled) {
+            return delegate.check(user, action, resource);
+        }
+        if (closed) {
+            throw new PdpUnavailableException("PDP client is shut down");
+        }
+        arrived();
+        var pending = new Pending(new CheckQuery(user, action, resource, new Context()), new CompletableFuture<>());
+        queue.add(pending);
+        if (closed) {
+            // shut down while it was queued, maybe after the queue was drained: nothing would take it
+            failQueued();
+        }
+        try {
+            return pending.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdpUnavailableException("Interrupted while waiting for the PDP", e);
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException io -> throw io;
+                case PermitApiError apiError -> throw apiError;
+                case RuntimeException runtime -> throw runtime;
+                case Error error -> throw error;
+                default -> throw new PdpUnavailableException("PDP request failed", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public List<Boolean> bulkCheck(List<CheckQuery> checks) throws IOException, PermitApiError {
+        return delegate.bulkCheck(checks);
+    }
+
+    @Override
+    public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) throws IOException, PermitApiError {
+        return delegate.userPermissions(user, tenant, resourceTypes);
+    }
+
+    private void arrived() {
+        long now = System.nanoTime();
+        long gap = now - lastArrival;
+        lastArrival = now;
+        long average = averageGapNanos;
+        // racy on purpose: a lost update only skews an estimate
+        averageGapNanos = average == Long.MAX_VALUE ? gap : (long) (average + GAP_SMOOTHING * (gap - average));
+    }
+
+    private void dispatch() {
+        List<Pending> batch = List.of();
+        try {
+            while (true) {
+                inFlight.acquire();
+                batch = new ArrayList<>();
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                linger(batch);
+                List<Pending> taken = batch;
+                senders.execute(() -> send(taken));
+                batch = List.of();
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // shutting down: checks taken off the queue but not sent fail like those still on it
+            fail(batch);
+        }
+    }
+
+    private void linger(List<Pending> batch) throws InterruptedException {
+        long gap = averageGapNanos;
+        if (batch.size() >= maxBatchSize || gap > maxWaitNanos) {
+            return;
+        }
+        long deadline = System.nanoTime() + Math.min(maxWaitNanos, 2 * gap);
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        try {
+            metrics.recordBatch(batch.size());
+            if (batch.size() == 1) {
+                CheckQuery query = batch.get(0).query();
+                batch.get(0).result().complete(delegate.check(query.user, query.action, query.resource));
+                return;
+            }
+            List<CheckQuery> checks = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                checks.add(pending.query());
+            }
+            List<Boolean> decisions = delegate.bulkCheck(checks);
+            if (decisions.size() != batch.size()) {
+                throw new PdpUnavailableException("Expected " + batch.size() + " bulk decisions, got " + decisions.size());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(Boolean.TRUE.equals(decisions.get(i)));
+            }
+        } catch (Throwable e) {
+            for (Pending pending : batch) {
+                pending.result().completeExceptionally(e);
+            }
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        senders.shutdownNow();
+        failQueued();
+    }
+
+    private void failQueued() {
+        List<Pending> queued = new ArrayList<>();
+        queue.drainTo(queued);
+        fail(queued);
+    }
+
+    private static void fail(List<Pending> pendings) {
+        PdpUnavailableException closed = new PdpUnavailableException("PDP client is shut down");
+        for (Pending pending : pendings) {
+            pending.result().completeExceptionally(closed);
+        }
+    }
+}
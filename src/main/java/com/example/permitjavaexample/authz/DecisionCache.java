@@ -0,0 +1,407 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.config.PermitProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Bounded, TTL-based cache of PDP decisions sitting in front of {@code UserService.authorize}.
+ * <p>
+ * Each tenant's decisions are held in a partition of their own, of at most {@code permit.decision-cache.max-size}
+ * entries, so a large tenant churning through its partition never evicts the decisions of a small one. Within a
+ * partition entries are spread over lock-striped LRU segments so that concurrent readers rarely contend. Whenever
+ * the application itself changes policy state (role assignments, new or deleted resource instances) the matching
+ * entries must be dropped through one of the {@code invalidate*} methods. Every invalidation moves the generation of
+ * the partitions it sweeps on, and a decision is only stored if no invalidation of its tenant happened while it was
+ * being computed, so a slow PDP answer can never resurrect a decision that was invalidated in the meantime.
+ * <p>
+ * The tenant comes from a request header, so only storing a decision creates a partition; lookups in a tenant
+ * without one miss. There are at most {@code permit.decision-cache.max-tenants} partitions, and the one used least
+ * recently makes way for a new one. Generations are drawn from one counter, and a partition starts at the
+ * generation of the last invalidation that found its tenant without one, or evicted its partition; a decision
+ * computed before such an invalidation is therefore never stored in a partition created after it. Those generations
+ * are kept for a fixed number of slots tenants hash to, not per tenant, so at worst a decision in another tenant of
+ * the same slot is not stored.
+ * <p>
+ * With {@code permit.decision-cache.stale-if-error} set, expired entries are kept for that much longer and can be
+ * read with {@link #getStale} when the PDP cannot be reached. Invalidated entries are gone for good.
+ */
+@Component
+public class DecisionCache {
+    private static final int SEGMENTS = 16;
+    /**
+     * How stale a partition's last-used time may get before a lookup refreshes it.
+     */
+    private static final long TOUCH_NANOS = 1_000_000_000L;
+    private static final int ABSENT_SLOTS = 64;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final int segmentSize;
+    private final int maxTenants;
+    private final ConcurrentHashMap<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+    /**
+     * Per slot, the generation of the last invalidation of a tenant without a partition, or eviction of a partition.
+     */
+    private final AtomicLongArray absentGenerations = new AtomicLongArray(ABSENT_SLOTS);
+
+    @Autowired
+    public DecisionCache(PermitProperties properties) {
+        this(properties.getDecisionCache().isEnabled(), properties.getDecisionCache().getMaxSize(),
+                properties.getDecisionCache().getMaxTenants(), properties.getDecisionCache().getTtl(),
+                properties.getDecisionCache().getStaleIfError());
+    }
+
+    public DecisionCache(boolean enabled, int maxSize, int maxTenants, Duration ttl, Duration staleIfError) {
+        this.enabled = enabled && maxSize > 0 && maxTenants > 0 && !ttl.isZero();
+        this.ttlNanos = ttl.toNanos();
+        this.staleNanos = staleIfError.toNanos();
+        this.segmentSize = Math.max(1, maxSize / SEGMENTS);
+        this.maxTenants = maxTenants;
+    }
+
+    public DecisionCache(boolean enabled, int maxSize, Duration ttl, Duration staleIfError) {
+        this(enabled, maxSize, 1000, ttl, staleIfError);
+    }
+
+    public DecisionCache(boolean enabled, int maxSize, Duration ttl) {
+        this(enabled, maxSize, ttl, Duration.ZERO);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the cached decision, or {@code null} if there is none (or it expired).
+     */
+    public Boolean get(DecisionKey key) {
+        if (!enabled) {
+            return null;
+        }
+        Partition partition = existing(key.getTenant());
+        if (partition == null) {
+            return null;
+        }
+        Boolean decision = partition.segmentFor(key).get(key, System.nanoTime());
+        if (decision == null) {
+            partition.misses.increment();
+        } else {
+            partition.hits.increment();
+        }
+        return decision;
+    }
+
+    /**
+     * Returns the cached decision even if it expired, as long as it is within the stale-if-error window; for use
+     * only when the PDP cannot be asked.
+     */
+    public Boolean getStale(DecisionKey key) {
+        if (!enabled || staleNanos <= 0) {
+            return null;
+        }
+        Partition partition = existing(key.getTenant());
+        return partition == null ? null : partition.segmentFor(key).getStale(key, System.nanoTime());
+    }
+
+    /**
+     * The generation of the key's partition, to pass to {@link #put(DecisionKey, boolean, long)}; read it before
+     * asking the PDP.
+     */
+    public long generation(DecisionKey key) {
+        Partition partition = partitions.get(key.getTenant());
+        return partition == null ? absentGenerations.get(slot(key.getTenant())) : partition.generation.get();
+    }
+
+    public void put(DecisionKey key, boolean allowed, long generationAtLookup) {
+        if (!enabled) {
+            return;
+        }
+        partition(key.getTenant()).segmentFor(key).put(key, allowed, System.nanoTime() + ttlNanos, generationAtLookup);
+    }
+
+    /**
+     * Drops the user's decisions in every tenant.
+     */
+    public void invalidateUser(String userKey) {
+        invalidateEverywhere(key -> key.getUserKey().equals(userKey));
+    }
+
+    public void invalidateUser(String tenant, String userKey) {
+        invalidate(tenant, key -> key.getUserKey().equals(userKey));
+    }
+
+    public void invalidateResource(String tenant, String resourceType, String instanceKey) {
+        invalidate(tenant, key -> resourceType.equals(key.getResourceType()) && instanceKey.equals(key.getInstanceKey()));
+    }
+
+    public void invalidateAll() {
+        invalidateEverywhere(key -> true);
+    }
+
+    private void invalidate(String tenant, Predicate<DecisionKey> predicate) {
+        // atomic with creating the tenant's partition: either it sees the partition, or the partition starts at the
+        // generation this moves on to
+        Partition partition = partitions.compute(tenant, (t, existing) -> {
+            if (existing == null) {
+                advanceAbsent(t);
+            }
+            return existing;
+        });
+        if (partition != null) {
+            partition.invalidate(predicate);
+        }
+    }
+
+    private void invalidateEverywhere(Predicate<DecisionKey> predicate) {
+        long generation = generations.incrementAndGet();
+        for (int slot = 0; slot < ABSENT_SLOTS; slot++) {
+            absentGenerations.accumulateAndGet(slot, generation, Math::max);
+        }
+        partitions.values().forEach(partition -> partition.invalidate(predicate));
+    }
+
+    /**
+     * The counts of every tenant's partition, summed.
+     */
+    public Stats stats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long size = 0;
+        for (Partition partition : partitions.values()) {
+            Stats stats = partition.stats();
+            hits += stats.hits();
+            misses += stats.misses();
+            evictions += stats.evictions();
+            size += stats.size();
+        }
+        return new Stats(hits, misses, evictions, size);
+    }
+
+    public Stats stats(String tenant) {
+        Partition partition = partitions.get(tenant);
+        return partition == null ? new Stats(0, 0, 0, 0) : partition.stats();
+    }
+
+    /**
+     * The number of tenants with a partition.
+     */
+    public int tenants() {
+        return partitions.size();
+    }
+
+    private Partition existing(String tenant) {
+        Partition partition = partitions.get(tenant);
+        if (partition != null) {
+            partition.touch(System.nanoTime());
+        }
+        return partition;
+    }
+
+    /**
+     * The tenant's partition, created if there is none, after evicting the least recently used one if there are
+     * {@code maxTenants} already.
+     */
+    private Partition partition(String tenant) {
+        Partition partition = existing(tenant);
+        if (partition != null) {
+            return partition;
+        }
+        while (partitions.size() >= maxTenants) {
+            evictLeastRecentlyUsed();
+        }
+        return partitions.computeIfAbsent(tenant, t -> new Partition(absentGenerations.get(slot(t)), System.nanoTime()));
+    }
+
+    private void evictLeastRecentlyUsed() {
+        String victim = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, Partition> entry : partitions.entrySet()) {
+            long lastUsed = entry.getValue().lastUsed;
+            if (victim == null || lastUsed - oldest < 0) {
+                victim = entry.getKey();
+                oldest = lastUsed;
+            }
+        }
+        if (victim != null) {
+            // moved on before the partition goes, so one recreated later never starts at a generation a caller
+            // read from this one
+            partitions.computeIfPresent(victim, (tenant, partition) -> {
+                advanceAbsent(tenant);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Moves the generation on to a value no caller can have read yet.
+     */
+    private void advance(AtomicLong generation) {
+        generation.accumulateAndGet(generations.incrementAndGet(), Math::max);
+    }
+
+    private void advanceAbsent(String tenant) {
+        absentGenerations.accumulateAndGet(slot(tenant), generations.incrementAndGet(), Math::max);
+    }
+
+    private static int slot(String tenant) {
+        int h = tenant.hashCode();
+        return (h ^ (h >>> 16)) & (ABSENT_SLOTS - 1);
+    }
+
+    public record Stats(long hits, long misses, long evictions, long size) {
+    }
+
+    private record Entry(boolean allowed, long expiresAt) {
+    }
+
+    /**
+     * One tenant's decisions, with their own bound, generation and counts.
+     */
+    private final class Partition {
+        private final Segment[] segments = new Segment[SEGMENTS];
+        private final AtomicLong generation;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private volatile long lastUsed;
+
+        Partition(long generation, long now) {
+            this.generation = new AtomicLong(generation);
+            this.lastUsed = now;
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(this, segmentSize);
+            }
+        }
+
+        void touch(long now) {
+            if (now - lastUsed > TOUCH_NANOS) {
+                lastUsed = now;
+            }
+        }
+
+        Segment segmentFor(DecisionKey key) {
+            int h = key.hashCode();
+            return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+        }
+
+        void invalidate(Predicate<DecisionKey> predicate) {
+            advance(generation);
+            if (!enabled) {
+                return;
+            }
+            for (Segment segment : segments) {
+                segment.removeIf(predicate);
+            }
+        }
+
+        Stats stats() {
+            long size = 0;
+            for (Segment segment : segments) {
+                size += segment.size();
+            }
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+        }
+    }
+
+    private final class Segment {
+        private final Partition partition;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<DecisionKey, Entry> entries;
+
+        Segment(Partition partition, int maxSize) {
+            this.partition = partition;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<DecisionKey, Entry> eldest) {
+                    if (size() > maxSize) {
+                        partition.evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Boolean get(DecisionKey key, long now) {
+            lock.lock();
+            try {
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.expiresAt() - now <= 0) {
+                    if (entry.expiresAt() + staleNanos - now <= 0) {
+                        entries.remove(key);
+                        partition.evictions.increment();
+                    }
+                    return null;
+                }
+                return entry.allowed();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Boolean getStale(DecisionKey key, long now) {
+            lock.lock();
+            try {
+                Entry entry = entries.get(key);
+                return entry == null || entry.expiresAt() + staleNanos - now <= 0 ? null : entry.allowed();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(DecisionKey key, boolean allowed, long expiresAt, long generationAtLookup) {
+            lock.lock();
+            try {
+                // checked under the segment lock: an invalidation either bumped the generation before this
+                // check, or its sweep of this segment runs after the entry is in place and removes it
+                if (partition.generation.get() != generationAtLookup) {
+                    return;
+                }
+                entries.put(key, new Entry(allowed, expiresAt));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void removeIf(Predicate<DecisionKey> predicate) {
+            lock.lock();
+            try {
+                Iterator<DecisionKey> it = entries.keySet().iterator();
+                while (it.hasNext()) {
+                    if (predicate.test(it.next())) {
+                        it.remove();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
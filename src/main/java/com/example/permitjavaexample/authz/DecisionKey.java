@@ -0,0 +1,105 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.tenant.TenantContext;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Identifies a single authorization question: (tenant, user key, action, resource type, instance key, attribute
+ * hash).
+ * The attribute hash keeps hashing cheap; the attributes themselves are still compared on equality so that a
+ * hash collision can never hand out a decision that was made for different attributes.
+ */
+public final class DecisionKey {
+    private final String tenant;
+    private final String userKey;
+    private final String action;
+    private final String resourceType;
+    private final String instanceKey;
+    private final int attributesHash;
+    private final Map<String, Object> userAttributes;
+    private final Map<String, Object> resourceAttributes;
+    private final int hash;
+
+    public DecisionKey(String userKey, String action, String resourceType, String instanceKey,
+                       Map<String, Object> userAttributes, Map<String, Object> resourceAttributes) {
+        this(TenantContext.DEFAULT, userKey, action, resourceType, instanceKey, userAttributes, resourceAttributes);
+    }
+
+    public DecisionKey(String tenant, String userKey, String action, String resourceType, String instanceKey,
+                       Map<String, Object> userAttributes, Map<String, Object> resourceAttributes) {
+        this.tenant = tenant;
+        this.userKey = userKey;
+        this.action = action;
+        this.resourceType = resourceType;
+        this.instanceKey = instanceKey;
+        this.userAttributes = copyOf(userAttributes);
+        this.resourceAttributes = copyOf(resourceAttributes);
+        this.attributesHash = 31 * this.userAttributes.hashCode() + this.resourceAttributes.hashCode();
+        this.hash = Objects.hash(tenant, userKey, action, resourceType, instanceKey, attributesHash);
+    }
+
+    public static DecisionKey of(User user, String action, Resource resource) {
+        return new DecisionKey(resource.getTenant() == null ? TenantContext.DEFAULT : resource.getTenant(), user.getKey(),
+                action, resource.getType(), resource.getKey(), user.getAttributes(), resource.getAttributes());
+    }
+
+    private static Map<String, Object> copyOf(Map<String, Object> attributes) {
+        // attribute values may be null, which rules out Map.copyOf
+        return attributes == null || attributes.isEmpty() ? Map.of() : Collections.unmodifiableMap(new HashMap<>(attributes));
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getUserKey() {
+        return userKey;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public String getInstanceKey() {
+        return instanceKey;
+    }
+
+    public int getAttributesHash() {
+        return attributesHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DecisionKey other)) return false;
+        return hash == other.hash
+                && attributesHash == other.attributesHash
+                && tenant.equals(other.tenant)
+                && userKey.equals(other.userKey)
+                && action.equals(other.action)
+                && Objects.equals(resourceType, other.resourceType)
+                && Objects.equals(instanceKey, other.instanceKey)
+                && userAttributes.equals(other.userAttributes)
+                && resourceAttributes.equals(other.resourceAttributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return tenant + "/" + userKey + " " + action + " " + resourceType + (instanceKey == null ? "" : ":" + instanceKey) + " #" + attributesHash;
+    }
+}
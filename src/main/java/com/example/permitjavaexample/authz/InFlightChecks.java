@@ -0,0 +1,136 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import io.permit.sdk.api.PermitApiError;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses concurrent PDP checks for the same {@link DecisionKey} into a single request.
+ * <p>
+ * The first caller for a key makes the request; callers arriving while it is in flight wait for its result, or
+ * get the same exception if it fails. A waiter that is interrupted stops waiting without affecting the others. If
+ * the caller making the request is interrupted, its failure is not handed out: the waiters start over, and one of
+ * them makes the request instead. A request only serves callers whose decision cache generation it is at least as
+ * new as, so nobody who already saw an invalidation is handed a decision made before it.
+ */
+@Component
+public class InFlightChecks {
+
+    @FunctionalInterface
+    public interface Check {
+        boolean call() throws IOException, PermitApiError;
+    }
+
+    private record Flight(long generation, CompletableFuture<Boolean> result) {
+    }
+
+    /**
+     * Completes a flight whose caller was interrupted; waiters retry instead of failing.
+     */
+    private static final class Abandoned extends RuntimeException {
+        Abandoned() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final boolean enabled;
+    private final ConcurrentHashMap<DecisionKey, Flight> flights = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    @Autowired
+    public InFlightChecks(PermitProperties properties) {
+        this(properties.getPdp().isCoalesce());
+    }
+
+    public InFlightChecks(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Runs {@code check}, or waits for an identical one that is already running.
+     *
+     * @param generation the decision cache generation the caller read before missing the cache
+     */
+    public boolean check(DecisionKey key, long generation, Check check) throws IOException, PermitApiError {
+        if (!enabled) {
+            requests.increment();
+            return check.call();
+        }
+        while (true) {
+            Flight own = new Flight(generation, new CompletableFuture<>());
+            Flight running = flights.putIfAbsent(key, own);
+            if (running == null) {
+                return run(key, own, check);
+            }
+            if (running.generation() < generation) {
+                // started before an invalidation this caller has seen; it may still be used by older callers
+                requests.increment();
+                return check.call();
+            }
+            coalesced.increment();
+            Boolean shared = await(running);
+            if (shared != null) {
+                return shared;
+            }
+        }
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * Calls that were answered by another caller's request.
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    private boolean run(DecisionKey key, Flight flight, Check check) throws IOException, PermitApiError {
+        requests.increment();
+        boolean allowed;
+        try {
+            allowed = check.call();
+        } catch (Throwable e) {
+            // removed before completing, so that waiters told to retry cannot find this flight again
+            flights.remove(key, flight);
+            flight.result().completeExceptionally(Thread.currentThread().isInterrupted() ? new Abandoned() : e);
+            throw e;
+        }
+        flights.remove(key, flight);
+        flight.result().complete(allowed);
+        return allowed;
+    }
+
+    /**
+     * The shared result, or {@code null} if the flight was abandoned and the caller should try again.
+     */
+    private static Boolean await(Flight flight) throws IOException, PermitApiError {
+        try {
+            return flight.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdpUnavailableException("Interrupted while waiting for the PDP", e);
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case Abandoned abandoned -> {
+                    return null;
+                }
+                case IOException io -> throw io;
+                case PermitApiError apiError -> throw apiError;
+                case RuntimeException runtime -> throw runtime;
+                case Error error -> throw error;
+                default -> throw new PdpUnavailableException("PDP request failed", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.permitjavaexample.authz;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the latencies of the last {@code capacity} calls and a percentile of them, recomputed every
+ * {@code capacity / 8} samples so that reading it is a volatile read.
+ */
+class LatencyTracker {
+    private final double percentile;
+    private final long[] samples;
+    private final int recomputeEvery;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Calls recorded so far; a {@code long}, so that it never wraps however long the instance runs.
+     */
+    private long recorded;
+    private int sinceRecompute;
+    private volatile long percentileNanos = -1;
+
+    LatencyTracker(int capacity, double percentile) {
+        this(capacity, percentile, 0);
+    }
+
+    /**
+     * A tracker that counts {@code recorded} calls as already made, with no samples from them.
+     */
+    LatencyTracker(int capacity, double percentile, long recorded) {
+        this.samples = new long[Math.max(8, capacity)];
+        this.percentile = percentile;
+        this.recomputeEvery = samples.length / 8;
+        this.recorded = recorded;
+    }
+
+    void record(long nanos) {
+        lock.lock();
+        try {
+            samples[(int) (recorded % samples.length)] = nanos;
+            recorded++;
+            if (++sinceRecompute >= recomputeEvery && recorded >= samples.length / 4) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, (int) Math.min(recorded, samples.length));
+                Arrays.sort(sorted);
+                percentileNanos = sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The tracked percentile, or {@code -1} until enough samples were recorded.
+     */
+    long percentileNanos() {
+        return percentileNanos;
+    }
+}
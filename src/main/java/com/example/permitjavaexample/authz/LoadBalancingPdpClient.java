@@ -0,0 +1,315 @@
+package com.example.permitjavaexample.authz;
+
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads PDP calls over several PDP endpoints ({@code permit.pdp-urls}), so that one slow or dead PDP does not slow
+ * down or fail every decision.
+ * <p>
+ * Each call goes to the healthy endpoint with the fewest calls in flight ({@link Policy#LEAST_OUTSTANDING}), or with
+ * the lowest moving average latency weighted by its calls in flight ({@link Policy#EWMA}), so that a slower endpoint
+ * gets a smaller share of the traffic. A call that fails is retried on another endpoint, up to
+ * {@code permit.pdp.balancer.max-attempts} endpoints in all; decisions are reads, so the retry is harmless. Only I/O
+ * errors and 5xx answers count as failures of the endpoint: a 4xx answer refuses the call itself, which every other
+ * endpoint would refuse too, so it is passed on at once and leaves the endpoint's health alone.
+ * <p>
+ * An endpoint is ejected after {@code eject-after} failures in a row and gets no traffic until it answers a health
+ * probe again. Every endpoint is probed with a check every {@code probe-interval}, so that idle endpoints keep an
+ * up-to-date latency and a dead one is ejected before traffic reaches it. When no healthy endpoint is left to try,
+ * calls go to ejected ones rather than fail outright.
+ */
+public class LoadBalancingPdpClient implements PdpClient, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LoadBalancingPdpClient.class);
+    /**
+     * Weight of the latest sample in the moving average latency.
+     */
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final User PROBE_USER = new User.Builder("vauthz-health-probe").build();
+    private static final Resource PROBE_RESOURCE = new Resource.Builder("blog").withKey("vauthz-health-probe").build();
+
+    public enum Policy {
+        LEAST_OUTSTANDING,
+        EWMA
+    }
+
+    @FunctionalInterface
+    private interface EndpointCall<T> {
+        T call(PdpClient client) throws IOException, PermitApiError;
+    }
+
+    /**
+     * One PDP and what the balancer knows about it.
+     */
+    public static final class Endpoint {
+        private final String url;
+        private final PdpClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong latencyBits = new AtomicLong();
+        private final AtomicBoolean ejected = new AtomicBoolean();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder ejections = new LongAdder();
+
+        public Endpoint(String url, PdpClient client) {
+            this.url = url;
+            this.client = client;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        public PdpClient client() {
+            return client;
+        }
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * The moving average latency of calls and probes, in nanoseconds; 0 until the first one answered.
+         */
+        public double latencyNanos() {
+            return Double.longBitsToDouble(latencyBits.get());
+        }
+
+        public boolean healthy() {
+            return !ejected.get();
+        }
+
+        public long requests() {
+            return requests.sum();
+        }
+
+        public long failures() {
+            return failures.sum();
+        }
+
+        public long ejections() {
+            return ejections.sum();
+        }
+
+        private void succeeded(long nanos) {
+            long current;
+            double next;
+            do {
+                current = latencyBits.get();
+                double average = Double.longBitsToDouble(current);
+                next = average == 0 ? nanos : average + EWMA_WEIGHT * (nanos - average);
+            } while (!latencyBits.compareAndSet(current, Double.doubleToRawLongBits(next)));
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+            if (ejected.compareAndSet(true, false)) {
+                log.info("PDP {} answers again; routing calls to it", url);
+            }
+        }
+
+        private void failed(int ejectAfter, Throwable cause) {
+            failures.increment();
+            if (consecutiveFailures.incrementAndGet() >= ejectAfter && ejected.compareAndSet(false, true)) {
+                ejections.increment();
+                log.warn("PDP {} failed {} times in a row; ejected until it answers a health probe", url, ejectAfter, cause);
+            }
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final Policy policy;
+    private final int maxAttempts;
+    private final int ejectAfter;
+    private final long probeTimeoutNanos;
+    private final LongAdder failovers = new LongAdder();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService probes = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pdp-probe-", 1).factory());
+
+    /**
+     * Starts probing the endpoints every {@code probeInterval}, unless there is only one or the interval is zero.
+     */
+    public LoadBalancingPdpClient(List<Endpoint> endpoints, Policy policy, int maxAttempts, int ejectAfter,
+                                  Duration probeInterval, Duration probeTimeout) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one PDP endpoint is required");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.policy = policy;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.ejectAfter = Math.max(1, ejectAfter);
+        this.probeTimeoutNanos = probeTimeout.toNanos();
+        if (endpoints.size() > 1 && !probeInterval.isZero()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("pdp-probes").factory());
+            scheduler.scheduleWithFixedDelay(this::probe, 0, probeInterval.toNanos(), TimeUnit.NANOSECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public boolean check(User user, String action, Resource resource) throws IOException, PermitApiError {
+        return call(client -> client.check(user, action, resource));
+    }
+
+    @Override
+    public List<Boolean> bulkCheck(List<CheckQuery> checks) throws IOException, PermitApiError {
+        return call(client -> client.bulkCheck(checks));
+    }
+
+    @Override
+    public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) throws IOException, PermitApiError {
+        return call(client -> client.userPermissions(user, tenant, resourceTypes));
+    }
+
+    public List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * The number of failed calls retried on another endpoint.
+     */
+    public long failovers() {
+        return failovers.sum();
+    }
+
+    /**
+     * Probes every endpoint once and waits for the answers; normally run every {@code probe-interval}.
+     */
+    public void probe() {
+        List<Future<Long>> answers = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            answers.add(probes.submit(() -> {
+                long start = System.nanoTime();
+                endpoint.client().check(PROBE_USER, "read", PROBE_RESOURCE);
+                return System.nanoTime() - start;
+            }));
+        }
+        long deadline = System.nanoTime() + probeTimeoutNanos;
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get(i);
+            Future<Long> answer = answers.get(i);
+            try {
+                endpoint.succeeded(answer.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (ExecutionException e) {
+                endpoint.failed(ejectAfter, e.getCause());
+            } catch (TimeoutException e) {
+                answer.cancel(true);
+                endpoint.failed(ejectAfter, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                answers.forEach(a -> a.cancel(true));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        probes.shutdownNow();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.client() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private <T> T call(EndpointCall<T> call) throws IOException, PermitApiError {
+        List<Endpoint> tried = new ArrayList<>(maxAttempts);
+        while (true) {
+            Endpoint endpoint = choose(tried);
+            tried.add(endpoint);
+            endpoint.requests.increment();
+            endpoint.outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                T result = call.call(endpoint.client());
+                endpoint.succeeded(System.nanoTime() - start);
+                return result;
+            } catch (IOException | PermitApiError e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // the caller gave up on the call, which says nothing about the endpoint
+                    throw e;
+                }
+                if (e instanceof PermitApiError apiError && isClientError(apiError)) {
+                    throw e;
+                }
+                endpoint.failed(ejectAfter, e);
+                if (tried.size() >= maxAttempts || tried.size() == endpoints.size()) {
+                    throw e;
+                }
+                failovers.increment();
+            } finally {
+                endpoint.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    private static boolean isClientError(PermitApiError error) {
+        return error.getResponseCode() >= 400 && error.getResponseCode() < 500;
+    }
+
+    /**
+     * The healthy endpoint not yet {@code tried} with the lowest score, or any endpoint not yet tried if none is
+     * healthy. Endpoints are scanned from a random one, so that ties are broken at random.
+     */
+    private Endpoint choose(List<Endpoint> tried) {
+        int size = endpoints.size();
+        int first = size == 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+        Endpoint best = null;
+        Endpoint fallback = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = endpoints.get((first + i) % size);
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            if (!endpoint.healthy()) {
+                if (fallback == null) {
+                    fallback = endpoint;
+                }
+                continue;
+            }
+            double score = score(endpoint);
+            if (score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    private double score(Endpoint endpoint) {
+        int outstanding = endpoint.outstanding();
+        return switch (policy) {
+            case LEAST_OUTSTANDING -> outstanding;
+            case EWMA -> (endpoint.latencyNanos() + 1) * (outstanding + 1);
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.permitjavaexample.authz;
+
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The decision calls the application makes against the PDP.
+ */
+public interface PdpClient {
+    boolean check(User user, String action, Resource resource) throws IOException, PermitApiError;
+
+    /**
+     * Answers all checks in a single round trip; the result list is in the same order as {@code checks}.
+     */
+    List<Boolean> bulkCheck(List<CheckQuery> checks) throws IOException, PermitApiError;
+
+    /**
+     * Everything the user may do in {@code tenant} on any instance of the given resource types, in a single round
+     * trip: for each instance with at least one permission ({@code type:key}), and for the tenant
+     * ({@code __tenant:key}) with the tenant-wide ones, the {@code type:action} permissions granted.
+     */
+    Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) throws IOException, PermitApiError;
+}
@@ -0,0 +1,231 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.tenant.TenantContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends PDP requests over a connection pool sized and timed by {@code permit.pdp.transport}, instead of through the
+ * Permit SDK's built-in client, which keeps five idle connections however many checks are in flight and so opens a
+ * new connection for most of them under load.
+ * <p>
+ * At most {@code max-connections} requests are in flight at once and as many connections are kept alive between
+ * them, so that a burst of checks reuses warm connections rather than opening (and closing) one each; over HTTP/2
+ * they share one connection and the limit bounds the concurrent streams. The requests and responses are those of
+ * the PDP's REST API, which the SDK sends too, and a response other than a success is a {@link PermitApiError} with
+ * its status code, as from the SDK's API clients. Connections opened and timeouts are counted for the metrics.
+ */
+public class PdpHttpTransport implements AutoCloseable {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final HttpUrl pdpUrl;
+    private final String authorization;
+    private final OkHttpClient client;
+    private final Semaphore permits;
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder connectTimeouts = new LongAdder();
+    private final LongAdder readTimeouts = new LongAdder();
+
+    public PdpHttpTransport(String pdpUrl, String apiKey, PermitProperties.Transport settings) {
+        this.pdpUrl = HttpUrl.get(pdpUrl);
+        this.authorization = "Bearer " + apiKey;
+        this.permits = new Semaphore(settings.getMaxConnections());
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(settings.getMaxConnections(), settings.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS))
+                .connectTimeout(settings.getConnectTimeout())
+                .readTimeout(settings.getReadTimeout())
+                .writeTimeout(settings.getReadTimeout())
+                .protocols(protocols(settings.isHttp2(), this.pdpUrl.isHttps()))
+                .retryOnConnectionFailure(true)
+                .eventListenerFactory(call -> new Events())
+                .build();
+    }
+
+    public boolean check(User user, String action, Resource resource) throws IOException, PermitApiError {
+        return post("allowed", check(new CheckQuery(user, action, resource))).path("allow").asBoolean(false);
+    }
+
+    public List<Boolean> bulkCheck(List<CheckQuery> checks) throws IOException, PermitApiError {
+        ArrayNode body = mapper.createArrayNode();
+        for (CheckQuery check : checks) {
+            body.add(check(check));
+        }
+        JsonNode decisions = post("allowed/bulk", body).path("allow");
+        if (decisions.size() != checks.size()) {
+            throw new IOException("PDP answered " + decisions.size() + " of " + checks.size() + " bulk checks");
+        }
+        List<Boolean> allowed = new ArrayList<>(checks.size());
+        for (JsonNode decision : decisions) {
+            allowed.add(decision.path("allow").asBoolean(false));
+        }
+        return allowed;
+    }
+
+    /**
+     * The permissions the user holds in {@code tenant} on each object of the given resource types, keyed like
+     * {@code type:key}.
+     */
+    public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) throws IOException, PermitApiError {
+        ObjectNode body = mapper.createObjectNode();
+        body.set("user", user(user));
+        body.putArray("tenants").add(tenant);
+        body.putNull("resources");
+        resourceTypes.forEach(body.putArray("resource_types")::add);
+        Map<String, Set<String>> result = new HashMap<>();
+        post("user-permissions", body).fields().forEachRemaining(object -> {
+            Set<String> granted = new HashSet<>();
+            object.getValue().path("permissions").forEach(permission -> granted.add(permission.asText()));
+            result.put(object.getKey(), Set.copyOf(granted));
+        });
+        return result;
+    }
+
+    /**
+     * Connections to the PDP, idle or in use.
+     */
+    public int connections() {
+        return client.connectionPool().connectionCount();
+    }
+
+    public int idleConnections() {
+        return client.connectionPool().idleConnectionCount();
+    }
+
+    /**
+     * The number of connections opened to the PDP.
+     */
+    public long connects() {
+        return connects.sum();
+    }
+
+    public long connectTimeouts() {
+        return connectTimeouts.sum();
+    }
+
+    /**
+     * The number of requests that timed out waiting for the PDP to answer.
+     */
+    public long readTimeouts() {
+        return readTimeouts.sum();
+    }
+
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    private JsonNode post(String path, JsonNode body) throws IOException, PermitApiError {
+        Request request = new Request.Builder()
+                .url(pdpUrl.newBuilder().addPathSegments(path).build())
+                .header("Authorization", authorization)
+                .post(RequestBody.create(mapper.writeValueAsBytes(body), JSON))
+                .build();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a PDP connection");
+        }
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new PermitApiError("PDP answered " + response.code() + " to POST /" + path, response.code(), response.body().string());
+            }
+            return mapper.readTree(response.body().byteStream());
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static ObjectNode check(CheckQuery check) {
+        ObjectNode node = mapper.createObjectNode();
+        node.set("user", user(check.user));
+        node.put("action", check.action);
+        node.set("resource", resource(check.resource));
+        node.putObject("context");
+        return node;
+    }
+
+    private static ObjectNode user(User user) {
+        ObjectNode node = mapper.createObjectNode().put("key", user.getKey());
+        node.set("attributes", mapper.valueToTree(user.getAttributes() == null ? Map.of() : user.getAttributes()));
+        return node;
+    }
+
+    private static ObjectNode resource(Resource resource) {
+        ObjectNode node = mapper.createObjectNode()
+                .put("type", resource.getType())
+                .put("key", resource.getKey())
+                .put("tenant", resource.getTenant() == null ? TenantContext.DEFAULT : resource.getTenant());
+        node.set("attributes", mapper.valueToTree(resource.getAttributes() == null ? Map.of() : resource.getAttributes()));
+        return node;
+    }
+
+    private static List<Protocol> protocols(boolean http2, boolean https) {
+        if (!http2) {
+            return List.of(Protocol.HTTP_1_1);
+        }
+        return https ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.H2_PRIOR_KNOWLEDGE);
+    }
+
+    /**
+     * Counts the connections a call opens and tells a timeout while connecting from one while waiting for the
+     * answer.
+     */
+    private final class Events extends EventListener {
+        private boolean connectTimedOut;
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            connects.increment();
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol, IOException e) {
+            if (e instanceof SocketTimeoutException) {
+                connectTimedOut = true;
+                connectTimeouts.increment();
+            }
+        }
+
+        @Override
+        public void callFailed(Call call, IOException e) {
+            if (e instanceof SocketTimeoutException && !connectTimedOut) {
+                readTimeouts.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.authz.policy.BlogPolicy;
+import com.example.permitjavaexample.authz.policy.PolicyModel;
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.sync.SyncListener;
+import com.example.permitjavaexample.sync.SyncOperation;
+import com.example.permitjavaexample.tenant.TenantContext;
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.enforcement.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user, per-tenant cache of everything a user may do on any instance, fetched from the PDP in a single request,
+ * so that listings are filtered with set lookups instead of a decision per item.
+ * <p>
+ * The PDP lists the permissions granted by roles: tenant roles, instance roles (such as the author roles assigned on
+ * {@code addBlog} and {@code createFolder} and the roles given by {@code FolderService.share}) and the roles derived
+ * from them. Permissions the policy also grants through condition set rules depend on resource attributes and are
+ * not covered; for those {@link #grants} returns {@code null} and the caller decides item by item as before.
+ * <p>
+ * Concurrent requests for the same user and tenant share one fetch. A user's entry is dropped once a role the
+ * application assigns them in its tenant has reached Permit, and every entry of a tenant once a relationship tuple
+ * written there has, since a tuple can derive roles for anyone; with {@code permit.outbox.enabled} that is after the
+ * write rather than when it is queued, so a fetch in between cannot keep the old permissions. Otherwise entries live
+ * for {@code permit.prefetch.ttl}, which bounds how long changes made outside the application go unnoticed.
+ */
+@Component
+public class PermissionPrefetch implements SyncListener {
+    private static final Logger log = LoggerFactory.getLogger(PermissionPrefetch.class);
+    private static final String TENANT_PREFIX = "__tenant:";
+
+    /**
+     * What a user may do on the instances of one resource type with one action: either all of them, or those whose
+     * key is in {@code instanceKeys}.
+     */
+    public record Grants(boolean all, Set<String> instanceKeys) {
+        public boolean permits(String instanceKey) {
+            return all || instanceKeys.contains(instanceKey);
+        }
+    }
+
+    /**
+     * A user's permissions: tenant-wide ones, and the instance keys each {@code type:action} permission holds on.
+     */
+    private record Permissions(Set<String> tenantWide, Map<String, Set<String>> instances) {
+    }
+
+    private record Entry(CompletableFuture<Permissions> permissions, long expiresAt) {
+    }
+
+    private record UserInTenant(String tenant, String userKey) {
+    }
+
+    private final PdpClient pdpClient;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxUsers;
+    private final Set<String> prefetchable = new HashSet<>();
+    private final List<String> resourceTypes = new ArrayList<>();
+    private final ConcurrentHashMap<UserInTenant, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    @Autowired
+    public PermissionPrefetch(PdpClient pdpClient, PermitProperties properties) {
+        this(pdpClient, properties.getPrefetch().isEnabled(), properties.getPrefetch().getTtl(),
+                properties.getPrefetch().getMaxUsers());
+    }
+
+    public PermissionPrefetch(PdpClient pdpClient, boolean enabled, Duration ttl, int maxUsers) {
+        this(pdpClient, BlogPolicy.model(), enabled, ttl, maxUsers);
+    }
+
+    public PermissionPrefetch(PdpClient pdpClient, PolicyModel model, boolean enabled, Duration ttl, int maxUsers) {
+        this.pdpClient = pdpClient;
+        this.enabled = enabled && !ttl.isZero() && maxUsers > 0;
+        this.ttlNanos = ttl.toNanos();
+        this.maxUsers = maxUsers;
+        Set<String> conditional = new HashSet<>();
+        for (var rule : model.rules()) {
+            conditional.add(rule.permission());
+        }
+        for (var resource : model.resources()) {
+            resourceTypes.add(resource.key());
+            for (String action : resource.actions()) {
+                String permission = resource.key() + ":" + action;
+                if (!conditional.contains(permission)) {
+                    prefetchable.add(permission);
+                }
+            }
+        }
+    }
+
+    public static PermissionPrefetch disabled() {
+        return new PermissionPrefetch(null, BlogPolicy.model(), false, Duration.ZERO, 0);
+    }
+
+    public Grants grants(User user, String resourceType, String action) {
+        return grants(user, TenantContext.DEFAULT, resourceType, action);
+    }
+
+    /**
+     * The user's grants in {@code tenant} for {@code action} on instances of {@code resourceType}, or {@code null}
+     * if they cannot be prefetched (disabled, the permission has conditions, or the PDP could not be asked) and
+     * every item has to be decided on its own.
+     */
+    public Grants grants(User user, String tenant, String resourceType, String action) {
+        String permission = resourceType + ":" + action;
+        if (!enabled || !prefetchable.contains(permission)) {
+            return null;
+        }
+        Permissions permissions = permissions(user, tenant);
+        if (permissions == null) {
+            return null;
+        }
+        if (permissions.tenantWide().contains(permission)) {
+            return new Grants(true, Set.of());
+        }
+        return new Grants(false, permissions.instances().getOrDefault(permission, Set.of()));
+    }
+
+    public void invalidateUser(String tenant, String userKey) {
+        entries.remove(new UserInTenant(tenant, userKey));
+    }
+
+    public void invalidateTenant(String tenant) {
+        entries.keySet().removeIf(key -> key.tenant().equals(tenant));
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    @Override
+    public void applied(SyncOperation operation) {
+        if (operation instanceof SyncOperation.AssignResourceRole assign) {
+            invalidateUser(assign.tenant(), assign.userKey());
+        } else if (operation instanceof SyncOperation.CreateRelationshipTuple tuple) {
+            invalidateTenant(tuple.tenant());
+        }
+    }
+
+    /**
+     * The number of permission lists fetched from the PDP.
+     */
+    public long fetches() {
+        return fetches.sum();
+    }
+
+    /**
+     * The number of lookups served by an already fetched (or in-flight) permission list.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    private Permissions permissions(User user, String tenant) {
+        long now = System.nanoTime();
+        var created = new Entry(new CompletableFuture<>(), now + ttlNanos);
+        var userInTenant = new UserInTenant(tenant, user.getKey());
+        Entry entry = entries.compute(userInTenant, (key, existing) ->
+                existing == null || existing.expiresAt() - now <= 0 ? created : existing);
+        if (entry != created) {
+            hits.increment();
+        } else {
+            fetches.increment();
+            evictIfFull(userInTenant, now);
+            try {
+                created.permissions().complete(fetch(user, tenant));
+            } catch (RuntimeException | PermitApiError | IOException e) {
+                created.permissions().completeExceptionally(e);
+            }
+        }
+        try {
+            return entry.permissions().get();
+        } catch (ExecutionException e) {
+            entries.remove(userInTenant, entry);
+            log.warn("Could not prefetch permissions of user {} in tenant {}; deciding item by item", user.getKey(), tenant, e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdpUnavailableException("Interrupted while prefetching permissions", e);
+        }
+    }
+
+    private Permissions fetch(User user, String tenant) throws IOException, PermitApiError {
+        Set<String> tenantWide = new HashSet<>();
+        Map<String, Set<String>> instances = new HashMap<>();
+        pdpClient.userPermissions(user, tenant, resourceTypes).forEach((object, granted) -> {
+            if (object.startsWith(TENANT_PREFIX)) {
+                if (object.equals(TENANT_PREFIX + tenant)) {
+                    tenantWide.addAll(granted);
+                }
+                return;
+            }
+            String instanceKey = object.substring(object.indexOf(':') + 1);
+            for (String permission : granted) {
+                instances.computeIfAbsent(permission, p -> new HashSet<>()).add(instanceKey);
+            }
+        });
+        return new Permissions(tenantWide, instances);
+    }
+
+    /**
+     * Drops expired entries once there are more than {@code permit.prefetch.max-users}, then arbitrary others (but
+     * not {@code keep}'s) if that was not enough.
+     */
+    private void evictIfFull(UserInTenant keep, long now) {
+        if (entries.size() <= maxUsers) {
+            return;
+        }
+        entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+        Iterator<UserInTenant> users = entries.keySet().iterator();
+        while (entries.size() > maxUsers && users.hasNext()) {
+            if (!users.next().equals(keep)) {
+                users.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.permitjavaexample.authz;
+
+import io.permit.sdk.Permit;
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.GetUserPermissionsQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import io.permit.sdk.enforcement.UserPermissions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Asks one PDP through the Permit SDK, or through the pooled {@link PdpHttpTransport} when
+ * {@code permit.pdp.transport.enabled} is set.
+ */
+public class PermitPdpClient implements PdpClient, AutoCloseable {
+    private final Permit permit;
+    private final PdpHttpTransport transport;
+
+    /**
+     * @param transport the transport to send requests with, or {@code null} to send them through the SDK
+     */
+    public PermitPdpClient(Permit permit, PdpHttpTransport transport) {
+        this.permit = permit;
+        this.transport = transport;
+    }
+
+    @Override
+    public boolean check(User user, String action, Resource resource) throws IOException, PermitApiError {
+        return transport != null ? transport.check(user, action, resource) : permit.check(user, action, resource);
+    }
+
+    @Override
+    public List<Boolean> bulkCheck(List<CheckQuery> checks) throws IOException, PermitApiError {
+        return transport != null ? transport.bulkCheck(checks) : permit.bulkCheck(checks);
+    }
+
+    @Override
+    public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) throws IOException, PermitApiError {
+        List<String> types = new ArrayList<>(resourceTypes);
+        types.add("__tenant");
+        if (transport != null) {
+            return transport.userPermissions(user, tenant, types);
+        }
+        UserPermissions permissions = permit.getUserPermissions(new GetUserPermissionsQuery(user, List.of(tenant), null, types));
+        Map<String, Set<String>> result = new HashMap<>();
+        permissions.forEach((object, granted) ->
+                result.put(object, granted.permissions == null ? Set.of() : Set.copyOf(granted.permissions)));
+        return result;
+    }
+
+    /**
+     * The transport requests are sent with, or {@code null} if they go through the SDK.
+     */
+    public PdpHttpTransport transport() {
+        return transport;
+    }
+
+    @Override
+    public void close() {
+        if (transport != null) {
+            transport.close();
+        }
+    }
+}
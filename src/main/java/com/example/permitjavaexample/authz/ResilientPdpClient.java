@@ -0,0 +1,167 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Puts a deadline, a circuit breaker and optional hedging around the PDP calls of another {@link PdpClient}.
+ * <p>
+ * Every call runs on its own virtual thread and the caller waits at most {@code permit.pdp.timeout}. Timeouts and
+ * errors count as failures for the circuit breaker; while it is open, calls fail immediately. Either way the
+ * caller gets a {@link PdpUnavailableException}, which {@code UserService} may answer from a stale decision and
+ * which otherwise becomes a 503. With hedging on, a second identical request is sent when the first has not
+ * answered within the tracked {@code permit.pdp.hedge.percentile} latency, and whichever answers first wins;
+ * checks are reads, so the duplicate is harmless.
+ */
+@Component
+public class ResilientPdpClient implements PdpClient {
+
+    @FunctionalInterface
+    private interface PdpCall<T> {
+        T call() throws Exception;
+    }
+
+    private final PdpClient delegate;
+    private final AuthzMetrics metrics;
+    private final long timeoutNanos;
+    private final CircuitBreaker circuitBreaker;
+    private final boolean hedging;
+    private final long hedgeMinDelayNanos;
+    private final LatencyTracker latencies;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pdp-call-", 1).factory());
+
+    @Autowired
+    public ResilientPdpClient(LoadBalancingPdpClient delegate, AuthzMetrics metrics, PermitProperties properties) {
+        this(delegate, metrics, properties.getPdp().getTimeout(), circuitBreaker(properties.getPdp().getCircuitBreaker()),
+                properties.getPdp().getHedge().isEnabled(), properties.getPdp().getHedge().getPercentile(),
+                properties.getPdp().getHedge().getMinDelay());
+    }
+
+    public ResilientPdpClient(PdpClient delegate, AuthzMetrics metrics, Duration timeout, CircuitBreaker circuitBreaker,
+                              boolean hedging, double hedgePercentile, Duration hedgeMinDelay) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.timeoutNanos = timeout.toNanos();
+        this.circuitBreaker = circuitBreaker;
+        this.hedging = hedging;
+        this.hedgeMinDelayNanos = hedgeMinDelay.toNanos();
+        this.latencies = new LatencyTracker(1024, hedgePercentile);
+        if (circuitBreaker != null) {
+            metrics.registry().gauge("vauthz.pdp.circuit.state", circuitBreaker, b -> b.state().ordinal());
+        }
+    }
+
+    private static CircuitBreaker circuitBreaker(PermitProperties.CircuitBreaker settings) {
+        return settings.isEnabled()
+                ? new CircuitBreaker(settings.getFailureRateThreshold(), settings.getMinimumCalls(), settings.getWindowSize(),
+                        settings.getOpenDuration(), settings.getHalfOpenCalls())
+                : null;
+    }
+
+    @Override
+    public boolean check(User user, String action, Resource resource) {
+        return call(() -> delegate.check(user, action, resource));
+    }
+
+    @Override
+    public List<Boolean> bulkCheck(List<CheckQuery> checks) {
+        return call(() -> delegate.bulkCheck(checks));
+    }
+
+    @Override
+    public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) {
+        return call(() -> delegate.userPermissions(user, tenant, resourceTypes));
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker == null ? CircuitBreaker.State.CLOSED : circuitBreaker.state();
+    }
+
+    private <T> T call(PdpCall<T> call) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            metrics.recordResilienceEvent("short_circuited");
+            throw new PdpUnavailableException("PDP unavailable: circuit breaker is open");
+        }
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        long hedgeDelay = hedging ? latencies.percentileNanos() : -1;
+        long hedgeAt = hedgeDelay < 0 ? deadline : start + Math.max(hedgeDelay, hedgeMinDelayNanos);
+
+        var completion = new ExecutorCompletionService<T>(executor);
+        List<Future<T>> attempts = new ArrayList<>(2);
+        attempts.add(completion.submit(call::call));
+        int pending = 1;
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (now - deadline >= 0) {
+                    metrics.recordResilienceEvent("timeout");
+                    failed();
+                    throw new PdpUnavailableException("PDP did not answer within " + Duration.ofNanos(timeoutNanos).toMillis() + " ms");
+                }
+                boolean hedgePending = attempts.size() == 1 && hedgeAt - deadline < 0;
+                long waitUntil = hedgePending && hedgeAt - now > 0 ? hedgeAt : deadline;
+                Future<T> done = completion.poll(waitUntil - now, TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (hedgePending && System.nanoTime() - hedgeAt >= 0) {
+                        metrics.recordResilienceEvent("hedge_sent");
+                        attempts.add(completion.submit(call::call));
+                        pending++;
+                    }
+                    continue;
+                }
+                pending--;
+                try {
+                    T result = done.get();
+                    if (done != attempts.get(0)) {
+                        metrics.recordResilienceEvent("hedge_won");
+                    }
+                    latencies.record(System.nanoTime() - start);
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onSuccess();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    if (pending == 0) {
+                        metrics.recordResilienceEvent("error");
+                        failed();
+                        throw new PdpUnavailableException("PDP request failed: " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed();
+            throw new PdpUnavailableException("Interrupted while waiting for the PDP", e);
+        } finally {
+            for (Future<T> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    private void failed() {
+        if (circuitBreaker != null) {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.permitjavaexample.authz.policy;
+
+import com.example.permitjavaexample.authz.policy.PolicyModel.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The blog application's policy, as bootstrapped by {@code StartupData} and declared in {@code main.tf}.
+ */
+public final class BlogPolicy {
+    private static final List<String> CRUD = List.of("create", "read", "update", "delete");
+
+    private BlogPolicy() {
+    }
+
+    public static PolicyModel model() {
+        return new PolicyModel(
+                List.of(
+                        new ResourceType("blog", "Blogs", CRUD, Map.of("author", "The user key who created the blog")),
+                        new ResourceType("comment", "Comments", CRUD, Map.of("author", "The user key who created the comment")),
+                        new ResourceType("folder", "folders", List.of("create", "read", "update", "delete", "share"),
+                                Map.of("author", "The user key who created the comment"))),
+                List.of(
+                        new ResourceSet("own_blog", "Own Blogs", "blog", "author"),
+                        new ResourceSet("own_comment", "Own Comments", "comment", "author"),
+                        new ResourceSet("own_folder", "Own Folders", "folder", "author")),
+                List.of(
+                        new Relation("comment", "parent", "Blog parent of Comment", "blog")),
+                List.of(
+                        new ResourceRole("blog", "author", "Update and delete own blogs", List.of("update", "delete")),
+                        new ResourceRole("comment", "moderator", "Delete comments on own blogs", List.of("delete")),
+                        new ResourceRole("folder", "author", "", List.of("update", "read", "create", "delete", "share")),
+                        new ResourceRole("folder", "editor", "", List.of("update", "read", "create")),
+                        new ResourceRole("folder", "viewer", "", List.of("read"))),
+                List.of(
+                        new RoleDerivation("comment", "moderator", "blog", "author", "parent")),
+                List.of(
+                        new Role("viewer", "Read and comment on all blogs", List.of("blog:read", "comment:create")),
+                        new Role("editor", "Create blogs, update and delete them, and delete comments on them", List.of("blog:read", "blog:create")),
+                        new Role("admin", "Delete any blog or comment", List.of("blog:delete", "comment:delete"))),
+                List.of(
+                        new ConditionSetRule("editor", "blog:update", "own_blog"),
+                        new ConditionSetRule("editor", "blog:delete", "own_blog"),
+                        new ConditionSetRule("viewer", "comment:update", "own_comment"),
+                        new ConditionSetRule("viewer", "comment:delete", "own_comment")));
+    }
+}
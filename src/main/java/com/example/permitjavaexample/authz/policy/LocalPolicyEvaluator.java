@@ -0,0 +1,220 @@
+package com.example.permitjavaexample.authz.policy;
+
+import com.example.permitjavaexample.sync.SyncListener;
+import com.example.permitjavaexample.sync.SyncOperation;
+import com.example.permitjavaexample.tenant.TenantContext;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process decision engine for {@link BlogPolicy}.
+ * <p>
+ * The policy model is compiled once into lookup tables (tenant role grants, resource-set rules, resource role
+ * grants and role derivations per resource type). The facts it is evaluated against are the ones this
+ * application writes itself: user sign-ups and tenant roles from {@code UserService}, and instance roles,
+ * relationship tuples and deletions seen through the Permit outbox. Anything those facts prove is allowed is
+ * answered locally; everything else is {@link Decision#UNKNOWN} and goes to the remote PDP. With
+ * {@code permit.local-evaluator.authoritative} on, the application is assumed to be the only writer of policy
+ * facts, and checks for users it has signed up are also denied locally, as long as every instance the decision
+ * depends on was created since startup. Instances from before, such as those restored from storage, may have
+ * roles and tuples written by an earlier run that this one never saw, so they are left to the PDP.
+ * <p>
+ * Tenant roles hold in the tenant they were assigned in only. Instance facts need no tenant, since instance keys are
+ * unique across tenants.
+ */
+@Component
+public class LocalPolicyEvaluator implements SyncListener {
+    private static final int MAX_DERIVATION_DEPTH = 8;
+
+    public enum Decision {
+        ALLOW, DENY, UNKNOWN
+    }
+
+    private record ConditionalGrant(String role, String attribute) {
+    }
+
+    private record Derivation(String role, String fromResource, String fromRole, String relation) {
+    }
+
+    private record Tuple(String relation, String subject) {
+    }
+
+    private final boolean enabled;
+    private final boolean authoritative;
+
+    // compiled policy
+    private final Set<String> permissions = new HashSet<>();
+    private final Map<String, Set<String>> tenantRoleGrants = new HashMap<>();
+    private final Map<String, List<ConditionalGrant>> conditionalGrants = new HashMap<>();
+    private final Map<String, Set<String>> resourceRoleGrants = new HashMap<>();
+    private final Map<String, List<Derivation>> derivations = new HashMap<>();
+
+    // facts written by this application
+    private final Set<String> knownUsers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Set<String>>> tenantRoles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Set<String>>> instanceRoles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Tuple>> tuplesByObject = new ConcurrentHashMap<>();
+    private final Set<String> createdInstances = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public LocalPolicyEvaluator(@Value("${permit.local-evaluator.enabled:false}") boolean enabled,
+                                @Value("${permit.local-evaluator.authoritative:false}") boolean authoritative) {
+        this(BlogPolicy.model(), enabled, authoritative);
+    }
+
+    public LocalPolicyEvaluator(PolicyModel model, boolean enabled, boolean authoritative) {
+        this.enabled = enabled;
+        this.authoritative = authoritative;
+        compile(model);
+    }
+
+    private void compile(PolicyModel model) {
+        for (var resource : model.resources()) {
+            for (String action : resource.actions()) {
+                permissions.add(resource.key() + ":" + action);
+            }
+        }
+        for (var role : model.roles()) {
+            tenantRoleGrants.put(role.key(), Set.copyOf(role.permissions()));
+        }
+        Map<String, PolicyModel.ResourceSet> resourceSets = new HashMap<>();
+        for (var resourceSet : model.resourceSets()) {
+            resourceSets.put(resourceSet.key(), resourceSet);
+        }
+        for (var rule : model.rules()) {
+            var resourceSet = resourceSets.get(rule.resourceSet());
+            if (resourceSet == null) {
+                throw new IllegalArgumentException("Unknown resource set " + rule.resourceSet());
+            }
+            conditionalGrants.computeIfAbsent(rule.permission(), p -> new ArrayList<>())
+                    .add(new ConditionalGrant(rule.role(), resourceSet.attribute()));
+        }
+        for (var role : model.resourceRoles()) {
+            resourceRoleGrants.put(role.resource() + "#" + role.key(), Set.copyOf(role.permissions()));
+        }
+        for (var derivation : model.derivations()) {
+            derivations.computeIfAbsent(derivation.resource(), r -> new ArrayList<>())
+                    .add(new Derivation(derivation.role(), derivation.fromResource(), derivation.fromRole(), derivation.relation()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Decision evaluate(User user, String action, Resource resource) {
+        if (!enabled || user == null) {
+            return Decision.UNKNOWN;
+        }
+        String type = resource.getType();
+        String permission = type + ":" + action;
+        if (!permissions.contains(permission)) {
+            return Decision.UNKNOWN;
+        }
+        String userKey = user.getKey();
+        var rolesInTenant = tenantRoles.get(resource.getTenant() == null ? TenantContext.DEFAULT : resource.getTenant());
+        Set<String> roles = rolesInTenant == null ? Set.of() : rolesInTenant.getOrDefault(userKey, Set.of());
+        for (String role : roles) {
+            if (tenantRoleGrants.getOrDefault(role, Set.of()).contains(permission)) {
+                return Decision.ALLOW;
+            }
+        }
+
+        String key = resource.getKey();
+        if (key != null) {
+            Map<String, Object> attributes = resource.getAttributes();
+            for (var grant : conditionalGrants.getOrDefault(permission, List.of())) {
+                if (roles.contains(grant.role()) && attributes != null && userKey.equals(attributes.get(grant.attribute()))) {
+                    return Decision.ALLOW;
+                }
+            }
+            for (String role : instanceRolesOf(userKey, type, type + ":" + key, 0)) {
+                if (resourceRoleGrants.getOrDefault(type + "#" + role, Set.of()).contains(action)) {
+                    return Decision.ALLOW;
+                }
+            }
+        }
+        if (!authoritative || !knownUsers.contains(userKey)) {
+            return Decision.UNKNOWN;
+        }
+        return key == null || factsKnown(type + ":" + key, 0) ? Decision.DENY : Decision.UNKNOWN;
+    }
+
+    /**
+     * Whether the instance and every instance it derives roles from were created since startup, so that all their
+     * roles and tuples went through {@link #submitted}.
+     */
+    private boolean factsKnown(String instance, int depth) {
+        if (depth >= MAX_DERIVATION_DEPTH || !createdInstances.contains(instance)) {
+            return false;
+        }
+        for (Tuple tuple : tuplesByObject.getOrDefault(instance, Set.of())) {
+            if (!factsKnown(tuple.subject(), depth + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Set<String> instanceRolesOf(String userKey, String type, String instance, int depth) {
+        Set<String> roles = new HashSet<>();
+        var assignments = instanceRoles.get(instance);
+        if (assignments != null) {
+            roles.addAll(assignments.getOrDefault(userKey, Set.of()));
+        }
+        if (depth >= MAX_DERIVATION_DEPTH) {
+            return roles;
+        }
+        Set<Tuple> tuples = tuplesByObject.getOrDefault(instance, Set.of());
+        for (var derivation : derivations.getOrDefault(type, List.of())) {
+            for (Tuple tuple : tuples) {
+                if (tuple.relation().equals(derivation.relation())
+                        && tuple.subject().startsWith(derivation.fromResource() + ":")
+                        && instanceRolesOf(userKey, derivation.fromResource(), tuple.subject(), depth + 1).contains(derivation.fromRole())) {
+                    roles.add(derivation.role());
+                }
+            }
+        }
+        return roles;
+    }
+
+    public void userSynced(String userKey) {
+        knownUsers.add(userKey);
+    }
+
+    public void tenantRoleAssigned(String userKey, String role) {
+        tenantRoleAssigned(userKey, role, TenantContext.DEFAULT);
+    }
+
+    public void tenantRoleAssigned(String userKey, String role, String tenant) {
+        tenantRoles.computeIfAbsent(tenant, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(userKey, k -> ConcurrentHashMap.newKeySet()).add(role);
+    }
+
+    @Override
+    public void submitted(SyncOperation operation) {
+        if (operation instanceof SyncOperation.CreateResourceInstance create) {
+            createdInstances.add(create.instance());
+        } else if (operation instanceof SyncOperation.AssignResourceRole assign) {
+            instanceRoles.computeIfAbsent(assign.instance(), i -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(assign.userKey(), u -> ConcurrentHashMap.newKeySet())
+                    .add(assign.role());
+        } else if (operation instanceof SyncOperation.CreateRelationshipTuple tuple) {
+            tuplesByObject.computeIfAbsent(tuple.object(), o -> ConcurrentHashMap.newKeySet())
+                    .add(new Tuple(tuple.relation(), tuple.subject()));
+        } else if (operation instanceof SyncOperation.DeleteResourceInstance delete) {
+            createdInstances.remove(delete.instance());
+            instanceRoles.remove(delete.instance());
+            tuplesByObject.remove(delete.instance());
+            for (Set<Tuple> tuples : tuplesByObject.values()) {
+                tuples.removeIf(tuple -> tuple.subject().equals(delete.instance()));
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.permitjavaexample.authz.policy;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declarative description of a Permit policy: the same objects {@code StartupData} creates and {@code main.tf}
+ * declares, as plain values that can be inspected and compiled.
+ */
+public record PolicyModel(List<ResourceType> resources,
+                          List<ResourceSet> resourceSets,
+                          List<Relation> relations,
+                          List<ResourceRole> resourceRoles,
+                          List<RoleDerivation> derivations,
+                          List<Role> roles,
+                          List<ConditionSetRule> rules) {
+
+    /**
+     * @param attributes attribute name to description; all attributes are strings in this model
+     */
+    public record ResourceType(String key, String name, List<String> actions, Map<String, String> attributes) {
+    }
+
+    /**
+     * A resource set whose condition is {@code resource.<attribute> equals user.key}.
+     */
+    public record ResourceSet(String key, String name, String resource, String attribute) {
+    }
+
+    /**
+     * {@code subjectResource} is the {@code key} of {@code objectResource}, e.g. a blog is the parent of a comment.
+     */
+    public record Relation(String objectResource, String key, String description, String subjectResource) {
+    }
+
+    public record ResourceRole(String resource, String key, String description, List<String> permissions) {
+    }
+
+    /**
+     * Users with {@code fromRole} on a {@code fromResource} instance get {@code role} on every {@code resource}
+     * instance that instance is related to through {@code relation}.
+     */
+    public record RoleDerivation(String resource, String role, String fromResource, String fromRole, String relation) {
+    }
+
+    /**
+     * @param permissions {@code resource:action} pairs granted tenant-wide
+     */
+    public record Role(String key, String description, List<String> permissions) {
+    }
+
+    /**
+     * Grants {@code permission} to users with {@code role} on instances in {@code resourceSet}.
+     */
+    public record ConditionSetRule(String role, String permission, String resourceSet) {
+    }
+}
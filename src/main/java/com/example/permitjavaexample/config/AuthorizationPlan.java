@@ -0,0 +1,96 @@
+package com.example.permitjavaexample.config;
+
+import io.permit.sdk.enforcement.Resource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link VauthzCheck} resolved once per handler: the action, and either a type-level resource, built once per
+ * tenant, or the path variables an instance resource is built from.
+ */
+final class AuthorizationPlan {
+    /**
+     * Tenants whose type-level resource is kept; the tenant comes from a request header, so resources of any
+     * further ones are built per request rather than held on to.
+     */
+    static final int MAX_CACHED_TENANTS = 256;
+
+    private final String resourceType;
+    private final String action;
+    private final String keyVariable;
+    private final String[] attributeNames;
+    private final String[] attributeVariables;
+    private final ConcurrentHashMap<String, Resource> typeResources;
+
+    private AuthorizationPlan(VauthzCheck check) {
+        this.resourceType = check.resource();
+        this.action = check.action();
+        this.keyVariable = check.key().isEmpty() ? null : check.key();
+        VauthzCheck.Attribute[] attributes = check.attributes();
+        this.attributeNames = new String[attributes.length];
+        this.attributeVariables = new String[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            attributeNames[i] = attributes[i].name();
+            attributeVariables[i] = attributes[i].pathVariable();
+        }
+        this.typeResources = isStatic() ? new ConcurrentHashMap<>() : null;
+    }
+
+    static AuthorizationPlan of(VauthzCheck check) {
+        return new AuthorizationPlan(check);
+    }
+
+    String resourceType() {
+        return resourceType;
+    }
+
+    String action() {
+        return action;
+    }
+
+    /**
+     * Path variables the plan reads; all of them must be declared by the handler's mapping.
+     */
+    List<String> pathVariables() {
+        List<String> variables = new ArrayList<>();
+        if (keyVariable != null) {
+            variables.add(keyVariable);
+        }
+        variables.addAll(List.of(attributeVariables));
+        return variables;
+    }
+
+    private boolean isStatic() {
+        return keyVariable == null && attributeNames.length == 0;
+    }
+
+    Resource resource(Map<String, String> pathVariables, String tenant) {
+        if (typeResources != null) {
+            Resource resource = typeResources.get(tenant);
+            if (resource != null) {
+                return resource;
+            }
+            resource = new Resource.Builder(resourceType).withTenant(tenant).build();
+            if (typeResources.size() < MAX_CACHED_TENANTS) {
+                typeResources.putIfAbsent(tenant, resource);
+            }
+            return resource;
+        }
+        var builder = new Resource.Builder(resourceType).withTenant(tenant);
+        if (keyVariable != null) {
+            builder.withKey(pathVariables.get(keyVariable));
+        }
+        if (attributeNames.length > 0) {
+            var attributes = new HashMap<String, Object>(attributeNames.length * 2);
+            for (int i = 0; i < attributeNames.length; i++) {
+                attributes.put(attributeNames[i], pathVariables.get(attributeVariables[i]));
+            }
+            builder.withAttributes(attributes);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.permitjavaexample.config;
+
+import com.example.permitjavaexample.model.Views;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+@Configuration
+public class JacksonConfig {
+    /**
+     * Blogs and folders name the {@link Views#FIELDS_FILTER} filter, which the mapper has to be able to resolve even
+     * when a response selects no fields; by default it writes every property.
+     */
+    public static SimpleFilterProvider defaultFilters() {
+        return new SimpleFilterProvider().addFilter(Views.FIELDS_FILTER, SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsFilterCustomizer() {
+        return builder -> builder.filters(defaultFilters());
+    }
+
+    /**
+     * CBOR and Smile, for service clients that ask for them in {@code Accept} or send them as {@code Content-Type};
+     * JSON stays the default. They are built with Spring Boot's builder, so unlike the converters Spring MVC would
+     * add on its own they write with the same modules, settings and filters as the JSON one. Spring Boot puts them
+     * in place of those.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -1,29 +1,54 @@
 package com.example.permitjavaexample.config;
 
+import com.example.permitjavaexample.authz.LoadBalancingPdpClient;
+import com.example.permitjavaexample.authz.PdpHttpTransport;
+import com.example.permitjavaexample.authz.PermitPdpClient;
 import io.permit.sdk.Permit;
 import io.permit.sdk.PermitConfig;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
 @Configuration
 public class PermitClientConfig {
+    private final PermitProperties properties;
 
-    @Value("${permit.api-key}")
-    private String apiKey;
-
-    @Value("${permit.pdp-url}")
-    private String pdpUrl;
-
-    @Value("${permit.api-url}")
-    private String apiUrl;
+    public PermitClientConfig(PermitProperties properties) {
+        this.properties = properties;
+    }
 
     @Bean
     public Permit permit() {
+        return permit(properties.pdpEndpoints().get(0));
+    }
+
+    /**
+     * A client per PDP, through the pooled transport when {@code permit.pdp.transport.enabled} is set. Management
+     * API calls always go through the SDK's own client, which the SDK does not let us configure.
+     */
+    @Bean
+    public LoadBalancingPdpClient loadBalancingPdpClient(Permit permit) {
+        List<String> urls = properties.pdpEndpoints();
+        PermitProperties.Transport transport = properties.getPdp().getTransport();
+        List<LoadBalancingPdpClient.Endpoint> endpoints = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            endpoints.add(new LoadBalancingPdpClient.Endpoint(url, new PermitPdpClient(
+                    urls.size() == 1 ? permit : permit(url),
+                    transport.isEnabled() ? new PdpHttpTransport(url, properties.getApiKey(), transport) : null)));
+        }
+        PermitProperties.Balancer balancer = properties.getPdp().getBalancer();
+        return new LoadBalancingPdpClient(endpoints, balancer.getPolicy(), balancer.getMaxAttempts(),
+                balancer.getEjectAfter(), balancer.getProbeInterval(), balancer.getProbeTimeout());
+    }
+
+    private Permit permit(String pdpUrl) {
         return new Permit(
-                new PermitConfig.Builder(apiKey)
+                new PermitConfig.Builder(Objects.requireNonNull(properties.getApiKey(), "permit.api-key is not set"))
                         .withPdpAddress(pdpUrl)
-                        .withApiUrl(apiUrl)
+                        .withApiUrl(properties.getApiUrl())
                         .build()
         );
     }
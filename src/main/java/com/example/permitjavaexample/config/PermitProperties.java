@@ -1,13 +1,28 @@
 package com.example.permitjavaexample.config;
 
+import com.example.permitjavaexample.authz.LoadBalancingPdpClient;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
 @Configuration
 @ConfigurationProperties(prefix = "permit")
 public class PermitProperties {
     private String apiKey;
     private String pdpUrl;
+    /**
+     * PDPs to spread decisions over; when empty, {@code pdp-url} is the only one.
+     */
+    private List<String> pdpUrls = new ArrayList<>();
+    private String apiUrl;
+    private final Pdp pdp = new Pdp();
+    private final DecisionCache decisionCache = new DecisionCache();
+    private final Listing listing = new Listing();
+    private final Prefetch prefetch = new Prefetch();
 
     public String getApiKey() {
         return apiKey;
@@ -24,4 +39,496 @@ public class PermitProperties {
     public void setPdpUrl(String pdpUrl) {
         this.pdpUrl = pdpUrl;
     }
+
+    public List<String> getPdpUrls() {
+        return pdpUrls;
+    }
+
+    public void setPdpUrls(List<String> pdpUrls) {
+        this.pdpUrls = pdpUrls;
+    }
+
+    /**
+     * The PDPs decisions are asked from: {@code pdp-urls}, or {@code pdp-url} if none are listed.
+     */
+    public List<String> pdpEndpoints() {
+        return pdpUrls.isEmpty() ? List.of(Objects.requireNonNull(pdpUrl, "permit.pdp-url is not set")) : List.copyOf(pdpUrls);
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public void setApiUrl(String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
+
+    public Pdp getPdp() {
+        return pdp;
+    }
+
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    public Listing getListing() {
+        return listing;
+    }
+
+    public Prefetch getPrefetch() {
+        return prefetch;
+    }
+
+    public static class Pdp {
+        /**
+         * Deadline of a PDP call, retries on other PDPs included.
+         */
+        private Duration timeout = Duration.ofSeconds(2);
+        /**
+         * Whether identical checks in flight at the same time share one PDP request.
+         */
+        private boolean coalesce = true;
+        private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+        private final Hedge hedge = new Hedge();
+        private final Batching batching = new Batching();
+        private final Transport transport = new Transport();
+        private final Balancer balancer = new Balancer();
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public boolean isCoalesce() {
+            return coalesce;
+        }
+
+        public void setCoalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+        }
+
+        public CircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        public Hedge getHedge() {
+            return hedge;
+        }
+
+        public Batching getBatching() {
+            return batching;
+        }
+
+        public Transport getTransport() {
+            return transport;
+        }
+
+        public Balancer getBalancer() {
+            return balancer;
+        }
+    }
+
+    /**
+     * When PDP calls stop being made because too many of the recent ones failed; see
+     * {@link com.example.permitjavaexample.authz.CircuitBreaker}.
+     */
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        /**
+         * Share of failed calls in the window that opens the circuit.
+         */
+        private double failureRateThreshold = 0.5;
+        /**
+         * Calls in the window before the failure rate counts.
+         */
+        private int minimumCalls = 20;
+        private int windowSize = 100;
+        private Duration openDuration = Duration.ofSeconds(10);
+        /**
+         * Trial calls let through once the circuit half-opens.
+         */
+        private int halfOpenCalls = 3;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+    }
+
+    /**
+     * A second PDP call sent when the first one is slower than most.
+     */
+    public static class Hedge {
+        private boolean enabled;
+        /**
+         * The latency percentile after which the second call is sent.
+         */
+        private double percentile = 0.95;
+        private Duration minDelay = Duration.ofMillis(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+        }
+    }
+
+    /**
+     * Single checks gathered into bulk PDP requests; see {@link com.example.permitjavaexample.authz.BatchingPdpClient}.
+     */
+    public static class Batching {
+        private boolean enabled;
+        private int maxBatchSize = 64;
+        /**
+         * The longest a check waits for others to join its batch.
+         */
+        private Duration maxWait = Duration.ofMillis(2);
+        private int maxInFlight = 16;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    /**
+     * Decisions kept in front of the PDP; see {@link com.example.permitjavaexample.authz.DecisionCache}.
+     */
+    public static class DecisionCache {
+        private boolean enabled = true;
+        private int maxSize = 10_000;
+        /**
+         * Tenants with a partition of their own; the least recently used one is dropped to make room for another.
+         */
+        private int maxTenants = 1_000;
+        private Duration ttl = Duration.ofSeconds(5);
+        /**
+         * How long past its TTL a decision may still be answered with while the PDP cannot be reached.
+         */
+        private Duration staleIfError = Duration.ZERO;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxTenants() {
+            return maxTenants;
+        }
+
+        public void setMaxTenants(int maxTenants) {
+            this.maxTenants = maxTenants;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getStaleIfError() {
+            return staleIfError;
+        }
+
+        public void setStaleIfError(Duration staleIfError) {
+            this.staleIfError = staleIfError;
+        }
+    }
+
+    /**
+     * How blog and folder listings are filtered down to what the user may read.
+     */
+    public static class Listing {
+        /**
+         * Check every listed instance with the PDP, rather than the resource type once.
+         */
+        private boolean filterPerInstance;
+        /**
+         * Checks per bulk PDP request when filtering per instance.
+         */
+        private int bulkChunkSize = 100;
+
+        public boolean isFilterPerInstance() {
+            return filterPerInstance;
+        }
+
+        public void setFilterPerInstance(boolean filterPerInstance) {
+            this.filterPerInstance = filterPerInstance;
+        }
+
+        public int getBulkChunkSize() {
+            return bulkChunkSize;
+        }
+
+        public void setBulkChunkSize(int bulkChunkSize) {
+            this.bulkChunkSize = bulkChunkSize;
+        }
+    }
+
+    /**
+     * Each user's instance permissions fetched at once, to filter listings with set lookups; see
+     * {@link com.example.permitjavaexample.authz.PermissionPrefetch}.
+     */
+    public static class Prefetch {
+        private boolean enabled;
+        private Duration ttl = Duration.ofSeconds(30);
+        private int maxUsers = 10_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getMaxUsers() {
+            return maxUsers;
+        }
+
+        public void setMaxUsers(int maxUsers) {
+            this.maxUsers = maxUsers;
+        }
+    }
+
+    /**
+     * How decisions are spread over the PDPs when there are several; see {@link LoadBalancingPdpClient}.
+     */
+    public static class Balancer {
+        private LoadBalancingPdpClient.Policy policy = LoadBalancingPdpClient.Policy.EWMA;
+        /**
+         * PDPs a failed call is tried on, the first one included.
+         */
+        private int maxAttempts = 2;
+        /**
+         * Failures in a row after which a PDP gets no more traffic until it answers a health probe.
+         */
+        private int ejectAfter = 3;
+        private Duration probeInterval = Duration.ofSeconds(5);
+        private Duration probeTimeout = Duration.ofSeconds(1);
+
+        public LoadBalancingPdpClient.Policy getPolicy() {
+            return policy;
+        }
+
+        public void setPolicy(LoadBalancingPdpClient.Policy policy) {
+            this.policy = policy;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public int getEjectAfter() {
+            return ejectAfter;
+        }
+
+        public void setEjectAfter(int ejectAfter) {
+            this.ejectAfter = ejectAfter;
+        }
+
+        public Duration getProbeInterval() {
+            return probeInterval;
+        }
+
+        public void setProbeInterval(Duration probeInterval) {
+            this.probeInterval = probeInterval;
+        }
+
+        public Duration getProbeTimeout() {
+            return probeTimeout;
+        }
+
+        public void setProbeTimeout(Duration probeTimeout) {
+            this.probeTimeout = probeTimeout;
+        }
+    }
+
+    /**
+     * The HTTP client PDP checks are sent with. When disabled they go through the Permit SDK's own client, which
+     * keeps at most five idle connections and cannot be tuned.
+     */
+    public static class Transport {
+        private boolean enabled;
+        /**
+         * Requests in flight at once, which is also how many connections are kept open between requests. Further
+         * requests wait for one to finish.
+         */
+        private int maxConnections = 64;
+        /**
+         * How long an idle connection is kept open for the next request.
+         */
+        private Duration keepAlive = Duration.ofMinutes(5);
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration readTimeout = Duration.ofSeconds(2);
+        /**
+         * Speak HTTP/2 to the PDP: negotiated over TLS for an https PDP URL, with prior knowledge (h2c) otherwise,
+         * which the PDP or a proxy in front of it has to support.
+         */
+        private boolean http2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+    }
 }
@@ -5,9 +5,30 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Checks the caller's permission before the handler runs (see {@link VauthzInterceptor}). Without {@link #key()}
+ * the check is against the resource type; with it, against the instance whose key is the named path variable.
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface VauthzCheck {
     String resource();
     String action();
+
+    /**
+     * Name of the path variable holding the instance key, e.g. {@code "id"} for {@code /api/blogs/{id}}.
+     */
+    String key() default "";
+
+    /**
+     * Resource attributes taken from path variables.
+     */
+    Attribute[] attributes() default {};
+
+    @Target({})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Attribute {
+        String name();
+        String pathVariable();
+    }
 }
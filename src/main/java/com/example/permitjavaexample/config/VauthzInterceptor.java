@@ -1,50 +1,120 @@
 package com.example.permitjavaexample.config;
 
+import com.example.permitjavaexample.metrics.AuthzMetrics;
 import com.example.permitjavaexample.service.UserService;
-import io.permit.sdk.Permit;
+import com.example.permitjavaexample.tenant.TenantContext;
 import io.permit.sdk.enforcement.Resource;
 import io.permit.sdk.enforcement.User;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
 import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Enforces {@link VauthzCheck} on handler methods. Each handler's annotation is compiled into an
+ * {@link AuthorizationPlan} when the context is refreshed (and checked against the path variables its mapping
+ * declares), so a request only costs a map lookup, building the resource and the decision itself.
+ */
 @Component
 public class VauthzInterceptor implements HandlerInterceptor {
+    private static final Pattern PATH_VARIABLE = Pattern.compile("\\{\\*?([^}:]+)");
 
-    private final Permit permit;
+    private final UserService userService;
+    private final AuthzMetrics metrics;
+    // keyed by Method: the HandlerMethod instance handed to preHandle may be a per-request copy
+    private final ConcurrentHashMap<Method, Optional<AuthorizationPlan>> plans = new ConcurrentHashMap<>();
 
 
-    public VauthzInterceptor(Permit permit) {
-        this.permit = permit;
+    public VauthzInterceptor(UserService userService, AuthzMetrics metrics) {
+        this.userService = userService;
+        this.metrics = metrics;
     }
 
-    @Override
-    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        if (handler instanceof HandlerMethod) {
-            HandlerMethod handlerMethod = (HandlerMethod) handler;
-            Method method = handlerMethod.getMethod();
-            VauthzCheck vauthzCheck = method.getAnnotation(VauthzCheck.class);
-            if (vauthzCheck != null) {
-                // Extract user key and other necessary information from the request
-                User user = (User) request.getAttribute("user");
-                Resource resource = Resource.fromString(vauthzCheck.resource());
-                String action = vauthzCheck.action();
-
-                // Perform the permission check
-                boolean isAllowed = permit.check(user, action, resource);
-
-                if (!isAllowed) {
-                    response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                    response.getWriter().write("Access Denied");
-                    return false;
+    @EventListener
+    public void compilePlans(ContextRefreshedEvent event) {
+        event.getApplicationContext().getBeansOfType(RequestMappingHandlerMapping.class).values()
+                .forEach(mapping -> compile(mapping.getHandlerMethods()));
+    }
+
+    public void compile(Map<RequestMappingInfo, HandlerMethod> handlerMethods) {
+        handlerMethods.forEach((info, handlerMethod) -> {
+            Optional<AuthorizationPlan> plan = planFor(handlerMethod.getMethod());
+            plan.ifPresent(p -> verifyPathVariables(info, handlerMethod, p));
+            plans.put(handlerMethod.getMethod(), plan);
+        });
+    }
+
+    private static Optional<AuthorizationPlan> planFor(Method method) {
+        VauthzCheck vauthzCheck = method.getAnnotation(VauthzCheck.class);
+        return vauthzCheck == null ? Optional.empty() : Optional.of(AuthorizationPlan.of(vauthzCheck));
+    }
+
+    private static void verifyPathVariables(RequestMappingInfo info, HandlerMethod handlerMethod, AuthorizationPlan plan) {
+        for (String pattern : info.getPatternValues()) {
+            Matcher matcher = PATH_VARIABLE.matcher(pattern);
+            var declared = new HashSet<String>();
+            while (matcher.find()) {
+                declared.add(matcher.group(1));
+            }
+            for (String variable : plan.pathVariables()) {
+                if (!declared.contains(variable)) {
+                    throw new IllegalStateException("@VauthzCheck on " + handlerMethod + " reads path variable '" + variable
+                            + "', which " + pattern + " does not declare");
                 }
             }
         }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Optional<AuthorizationPlan> compiled = plans.get(handlerMethod.getMethod());
+        if (compiled == null) {
+            // registered after startup
+            compiled = plans.computeIfAbsent(handlerMethod.getMethod(), VauthzInterceptor::planFor);
+        }
+        if (compiled.isEmpty()) {
+            return true;
+        }
+        AuthorizationPlan plan = compiled.get();
+
+        long start = System.nanoTime();
+        User user = (User) request.getAttribute("user");
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        Resource resource = plan.resource(pathVariables == null ? Map.of() : pathVariables, TenantContext.current());
+
+        boolean isAllowed;
+        try {
+            isAllowed = userService.isPermitted(user, plan.action(), resource);
+        } catch (RuntimeException e) {
+            metrics.recordInterceptor(plan.resourceType(), plan.action(), AuthzMetrics.Decision.ERROR, System.nanoTime() - start);
+            throw e;
+        }
+        metrics.recordInterceptor(plan.resourceType(), plan.action(),
+                isAllowed ? AuthzMetrics.Decision.ALLOW : AuthzMetrics.Decision.DENY, System.nanoTime() - start);
+
+        if (!isAllowed) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.getWriter().write("Access Denied");
+            return false;
+        }
         return true;
     }
-}
\ No newline at end of file
+}
@@ -12,8 +12,13 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private UserInterceptor userInterceptor;
 
+    @Autowired
+    private VauthzInterceptor vauthzInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(userInterceptor);
+        // after UserInterceptor, which resolves the caller it checks
+        registry.addInterceptor(vauthzInterceptor);
     }
 }
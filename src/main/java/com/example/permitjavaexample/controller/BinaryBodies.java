@@ -0,0 +1,40 @@
+package com.example.permitjavaexample.controller;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Request bodies in the binary formats. JSON and text clients send a blog's content or a folder's name as the raw
+ * body, which a CBOR or Smile document cannot be read as, so binary clients send it as an object with one property
+ * instead, such as {@code {"content": "..."}}.
+ */
+final class BinaryBodies {
+    static final String CBOR = MediaType.APPLICATION_CBOR_VALUE;
+    static final String SMILE = "application/x-jackson-smile";
+
+    private BinaryBodies() {
+    }
+
+    record Content(String content) {
+        Content {
+            if (content == null) {
+                throw new IllegalArgumentException("content is missing");
+            }
+        }
+    }
+
+    record Name(String name) {
+        Name {
+            if (name == null) {
+                throw new IllegalArgumentException("name is missing");
+            }
+        }
+    }
+
+    record Role(String role) {
+        Role {
+            if (role == null) {
+                throw new IllegalArgumentException("role is missing");
+            }
+        }
+    }
+}
@@ -2,11 +2,19 @@ package com.example.permitjavaexample.controller;
 
 import com.example.permitjavaexample.model.Blog;
 import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Views;
 import com.example.permitjavaexample.service.BlogService;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import io.permit.sdk.enforcement.User;
 
 import java.util.List;
@@ -15,35 +23,100 @@ import java.util.List;
 @RequestMapping("/api/blogs")
 public class BlogController {
     private final BlogService blogService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public BlogController(BlogService blogService) {
+    public BlogController(BlogService blogService, ObjectMapper objectMapper) {
         this.blogService = blogService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Lists blogs in the summary view, with a snippet of their content, unless {@code view} or {@code fields} says
+     * otherwise (see {@link Projection}).
+     */
     @GetMapping
-    public List<Blog> getAllBlogs(HttpServletRequest request) {
+    public ResponseEntity<MappingJacksonValue> getAllBlogs(HttpServletRequest request,
+                                                           @RequestParam(value = "cursor", required = false) Integer cursor,
+                                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                                           @RequestParam(value = "view", required = false) String view,
+                                                           @RequestParam(value = "fields", required = false) String fields) {
         User currentUser = (User) request.getAttribute("user");
-        return blogService.getAllBlogs(currentUser);
+        Projection projection = Projection.of(view, fields, Projection.SUMMARY);
+        if (cursor == null && limit == null) {
+            return ResponseEntity.ok(projection.body(blogService.getAllBlogs(currentUser)));
+        }
+        return ListingResponses.page(blogService.getBlogs(currentUser, cursor, ListingResponses.limit(limit)), projection);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBlogs(HttpServletRequest request,
+                                                             @RequestParam(value = "view", required = false) String view,
+                                                             @RequestParam(value = "fields", required = false) String fields) {
+        User currentUser = (User) request.getAttribute("user");
+        Projection projection = Projection.of(view, fields, Projection.SUMMARY);
+        return ListingResponses.ndjson(objectMapper, blogService.streamBlogs(currentUser), projection);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<MappingJacksonValue> searchBlogs(HttpServletRequest request,
+                                                           @RequestParam("q") String query,
+                                                           @RequestParam(value = "cursor", required = false) Integer cursor,
+                                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                                           @RequestParam(value = "view", required = false) String view,
+                                                           @RequestParam(value = "fields", required = false) String fields) {
+        User currentUser = (User) request.getAttribute("user");
+        Projection projection = Projection.of(view, fields, Projection.SUMMARY);
+        return ListingResponses.page(blogService.searchBlogs(currentUser, query, cursor, ListingResponses.limit(limit)), projection);
     }
 
     @GetMapping("/{id}")
-    public Blog getBlogById(HttpServletRequest request, @PathVariable("id") int id) {
+    public ResponseEntity<MappingJacksonValue> getBlogById(HttpServletRequest request, @PathVariable("id") int id,
+                                                           @RequestParam(value = "view", required = false) String view,
+                                                           @RequestParam(value = "fields", required = false) String fields) {
         User currentUser = (User) request.getAttribute("user");
-        return blogService.getBlog(currentUser, id);
+        Projection projection = Projection.of(view, fields, Projection.FULL);
+        Blog blog = blogService.getBlog(currentUser, id);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(blog, projection, request.getHeader(HttpHeaders.ACCEPT)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(projection.body(blog));
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
+    @JsonView(Views.Full.class)
     public Blog addBlog(HttpServletRequest request, @RequestBody String content) {
         User currentUser = (User) request.getAttribute("user");
         return blogService.addBlog(currentUser, content);
     }
 
+    @PostMapping(consumes = {BinaryBodies.CBOR, BinaryBodies.SMILE})
+    @ResponseStatus(HttpStatus.CREATED)
+    @JsonView(Views.Full.class)
+    public Blog addBinaryBlog(HttpServletRequest request, @RequestBody BinaryBodies.Content body) {
+        return addBlog(request, body.content());
+    }
+
     @PutMapping("/{id}")
-    public Blog updateBlog(HttpServletRequest request, @PathVariable("id") int id, @RequestBody String content) {
+    @JsonView(Views.Full.class)
+    public ResponseEntity<Blog> updateBlog(HttpServletRequest request, @PathVariable("id") int id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @RequestBody String content) {
         User currentUser = (User) request.getAttribute("user");
-        return blogService.updateBlog(currentUser, id, content);
+        Blog blog = blogService.updateBlog(currentUser, id, content, ETags.expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(ETags.of(blog, Projection.FULL, request.getHeader(HttpHeaders.ACCEPT)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(blog);
+    }
+
+    @PutMapping(value = "/{id}", consumes = {BinaryBodies.CBOR, BinaryBodies.SMILE})
+    @JsonView(Views.Full.class)
+    public ResponseEntity<Blog> updateBinaryBlog(HttpServletRequest request, @PathVariable("id") int id,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                 @RequestBody BinaryBodies.Content body) {
+        return updateBlog(request, id, ifMatch, body.content());
     }
 
     @DeleteMapping("/{id}")
@@ -53,16 +126,42 @@ public class BlogController {
         return "Deleted blog with id " + id;
     }
 
+    @GetMapping("/{id}/comment")
+    public ResponseEntity<List<Comment>> getComments(HttpServletRequest request, @PathVariable("id") int id,
+                                                     @RequestParam(value = "cursor", required = false) Integer cursor,
+                                                     @RequestParam(value = "limit", required = false) Integer limit) {
+        User currentUser = (User) request.getAttribute("user");
+        return ListingResponses.page(blogService.getComments(currentUser, id, cursor, ListingResponses.limit(limit)));
+    }
+
     @PostMapping("/{id}/comment")
     public Comment addComment(HttpServletRequest request, @PathVariable("id") int id, @RequestBody String content) {
         User currentUser = (User) request.getAttribute("user");
         return blogService.addComment(currentUser, id, content);
     }
 
+    @PostMapping(value = "/{id}/comment", consumes = {BinaryBodies.CBOR, BinaryBodies.SMILE})
+    public Comment addBinaryComment(HttpServletRequest request, @PathVariable("id") int id, @RequestBody BinaryBodies.Content body) {
+        return addComment(request, id, body.content());
+    }
+
     @PutMapping("/{id}/comment/{commentId}")
-    public Comment updateComment(HttpServletRequest request, @PathVariable("id") int id, @PathVariable("commentId") int commentId, @RequestBody String content) {
+    public ResponseEntity<Comment> updateComment(HttpServletRequest request, @PathVariable("id") int id, @PathVariable("commentId") int commentId,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                 @RequestBody String content) {
         User currentUser = (User) request.getAttribute("user");
-        return blogService.updateComment(currentUser, id, commentId, content);
+        Comment comment = blogService.updateComment(currentUser, id, commentId, content, ETags.expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(ETags.of(comment, request.getHeader(HttpHeaders.ACCEPT)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(comment);
+    }
+
+    @PutMapping(value = "/{id}/comment/{commentId}", consumes = {BinaryBodies.CBOR, BinaryBodies.SMILE})
+    public ResponseEntity<Comment> updateBinaryComment(HttpServletRequest request, @PathVariable("id") int id, @PathVariable("commentId") int commentId,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                       @RequestBody BinaryBodies.Content body) {
+        return updateComment(request, id, commentId, ifMatch, body.content());
     }
 
     @DeleteMapping("/{id}/comment/{commentId}")
@@ -0,0 +1,119 @@
+package com.example.permitjavaexample.controller;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Versioned;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Entity tags derived from the versions of blogs, comments and folders, and the versions conditional updates expect.
+ * <p>
+ * Returned with a {@code 200} to a GET, an entity tag makes Spring answer a matching {@code If-None-Match} with
+ * {@code 304 Not Modified} instead of writing the body; since the tag is only known once the entity is found and
+ * authorized, the check never bypasses authorization. {@code If-Match} on an update is compared with the version
+ * atomically, as the update is applied, so of two concurrent updates made against the same version one fails with
+ * {@code 412 Precondition Failed}.
+ * <p>
+ * The tags are strong, so besides the version they cover everything else the bytes of the body depend on: the
+ * {@link Projection} and the format the body is written in, such as {@code "3.0;full;json"}. Responses carrying one
+ * also {@code Vary} on {@code Accept}, so a cache never answers a CBOR client with a JSON body it stored.
+ */
+final class ETags {
+    /**
+     * Expected by an {@code If-Match} that no version satisfies.
+     */
+    private static final long NO_VERSION = -1;
+
+    /**
+     * The formats the blog and folder APIs write bodies in, in the order Spring's converters prefer them when the
+     * client accepts several equally.
+     */
+    private static final List<MediaType> FORMATS = List.of(MediaType.APPLICATION_JSON,
+            MediaType.parseMediaType(BinaryBodies.SMILE), MediaType.parseMediaType(BinaryBodies.CBOR));
+
+    private ETags() {
+    }
+
+    /**
+     * The tag of an entity written whole, as comments are.
+     */
+    static String of(Versioned entity, String accept) {
+        return tag(String.valueOf(entity.getVersion()), null, accept);
+    }
+
+    static String of(Versioned entity, Projection projection, String accept) {
+        return tag(String.valueOf(entity.getVersion()), projection, accept);
+    }
+
+    /**
+     * A blog's tag also covers its comment count, which is part of its representation but not of its version.
+     */
+    static String of(Blog blog, Projection projection, String accept) {
+        return tag(blog.getVersion() + "." + blog.getCommentCount(), projection, accept);
+    }
+
+    private static String tag(String version, Projection projection, String accept) {
+        String format = format(accept).getSubtype();
+        return "\"" + version + (projection == null ? "" : ";" + projection.tag()) + ";" + format + "\"";
+    }
+
+    /**
+     * The format a response to a request with this {@code Accept} header is written in: the first of {@link #FORMATS}
+     * that the most preferred acceptable type includes, and JSON if there is no header or it is unreadable.
+     */
+    static MediaType format(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        acceptable.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType type : acceptable) {
+            if (type.getQualityValue() == 0) {
+                break;
+            }
+            for (MediaType format : FORMATS) {
+                if (type.includes(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * The version an update with this {@code If-Match} header expects: {@link Versioned#ANY_VERSION} if there is
+     * none or it is {@code *}, and one that never matches unless it is a single strong tag from {@link #of}. A tag
+     * of any projection or format will do: only its version is compared.
+     */
+    static long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return Versioned.ANY_VERSION;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return NO_VERSION;
+        }
+        int end = 1;
+        while (end < tag.length() - 1 && Character.isDigit(tag.charAt(end))) {
+            end++;
+        }
+        if (end < tag.length() - 1 && tag.charAt(end) != '.' && tag.charAt(end) != ';') {
+            return NO_VERSION;
+        }
+        try {
+            long version = Long.parseLong(tag.substring(1, end));
+            return version > 0 ? version : NO_VERSION;
+        } catch (NumberFormatException e) {
+            return NO_VERSION;
+        }
+    }
+}
@@ -2,48 +2,103 @@ package com.example.permitjavaexample.controller;
 
 import com.example.permitjavaexample.config.VauthzCheck;
 import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.model.Views;
 import com.example.permitjavaexample.service.FolderService;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.permit.sdk.enforcement.User;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/folders")
 public class FolderController {
     private final FolderService folderService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FolderController(FolderService folderService) {
+    public FolderController(FolderService folderService, ObjectMapper objectMapper) {
         this.folderService = folderService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<Folder> getAllFolders(HttpServletRequest request) {
+    public ResponseEntity<MappingJacksonValue> getAllFolders(HttpServletRequest request,
+                                                             @RequestParam(value = "cursor", required = false) Integer cursor,
+                                                             @RequestParam(value = "limit", required = false) Integer limit,
+                                                             @RequestParam(value = "view", required = false) String view,
+                                                             @RequestParam(value = "fields", required = false) String fields) {
+        User currentUser = (User) request.getAttribute("user");
+        Projection projection = Projection.of(view, fields, Projection.SUMMARY);
+        if (cursor == null && limit == null) {
+            return ResponseEntity.ok(projection.body(folderService.getAllFolders(currentUser)));
+        }
+        return ListingResponses.page(folderService.getFolders(currentUser, cursor, ListingResponses.limit(limit)), projection);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFolders(HttpServletRequest request,
+                                                               @RequestParam(value = "view", required = false) String view,
+                                                               @RequestParam(value = "fields", required = false) String fields) {
         User currentUser = (User) request.getAttribute("user");
-        return folderService.getAllFolders(currentUser);
+        Projection projection = Projection.of(view, fields, Projection.SUMMARY);
+        return ListingResponses.ndjson(objectMapper, folderService.streamFolders(currentUser), projection);
     }
 
     @GetMapping("/{id}")
-    public Folder getFolderById(HttpServletRequest request, @PathVariable("id") int id) {
+    public ResponseEntity<MappingJacksonValue> getFolderById(HttpServletRequest request, @PathVariable("id") int id,
+                                                             @RequestParam(value = "view", required = false) String view,
+                                                             @RequestParam(value = "fields", required = false) String fields) {
         User currentUser = (User) request.getAttribute("user");
-        return folderService.getFolder(currentUser, id);
+        Projection projection = Projection.of(view, fields, Projection.FULL);
+        Folder folder = folderService.getFolder(currentUser, id);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(folder, projection, request.getHeader(HttpHeaders.ACCEPT)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(projection.body(folder));
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
+    @JsonView(Views.Full.class)
     public Folder addFolder(HttpServletRequest request, @RequestBody String content) {
         User currentUser = (User) request.getAttribute("user");
         return folderService.createFolder(currentUser, content);
     }
 
+    @PostMapping(consumes = {BinaryBodies.CBOR, BinaryBodies.SMILE})
+    @ResponseStatus(HttpStatus.CREATED)
+    @JsonView(Views.Full.class)
+    public Folder addBinaryFolder(HttpServletRequest request, @RequestBody BinaryBodies.Name body) {
+        return addFolder(request, body.name());
+    }
+
     @PutMapping("/{id}")
-    public Folder updateFolder(HttpServletRequest request, @PathVariable("id") int id, @RequestBody String content) {
+    @JsonView(Views.Full.class)
+    public ResponseEntity<Folder> updateFolder(HttpServletRequest request, @PathVariable("id") int id,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               @RequestBody String content) {
         User currentUser = (User) request.getAttribute("user");
-        return folderService.updateFolder(currentUser, id, content);
+        Folder folder = folderService.updateFolder(currentUser, id, content, ETags.expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(ETags.of(folder, Projection.FULL, request.getHeader(HttpHeaders.ACCEPT)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(folder);
+    }
+
+    @PutMapping(value = "/{id}", consumes = {BinaryBodies.CBOR, BinaryBodies.SMILE})
+    @JsonView(Views.Full.class)
+    public ResponseEntity<Folder> updateBinaryFolder(HttpServletRequest request, @PathVariable("id") int id,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @RequestBody BinaryBodies.Name body) {
+        return updateFolder(request, id, ifMatch, body.name());
     }
 
     @DeleteMapping("/{id}")
@@ -60,4 +115,11 @@ public class FolderController {
         User currentUser = (User) request.getAttribute("user");
         folderService.share(currentUser, id, sharedUserId, role);
     }
+
+    @PostMapping(value = "{id}/share/{sharedUserId}", consumes = {BinaryBodies.CBOR, BinaryBodies.SMILE})
+    public void shareBinary(HttpServletRequest request, @PathVariable int id,
+                            @PathVariable String sharedUserId,
+                            @RequestBody BinaryBodies.Role body) {
+        share(request, id, sharedUserId, body.role());
+    }
 }
@@ -0,0 +1,75 @@
+package com.example.permitjavaexample.controller;
+
+import com.example.permitjavaexample.model.Page;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Shared response building for the cursor-paginated and streamed listing endpoints.
+ */
+final class ListingResponses {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 1000;
+    private static final int FLUSH_EVERY = 64;
+
+    private ListingResponses() {
+    }
+
+    static int limit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(requested, MAX_LIMIT));
+    }
+
+    static <T> ResponseEntity<List<T>> page(Page<T> page) {
+        var response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(page.items());
+    }
+
+    static <T> ResponseEntity<MappingJacksonValue> page(Page<T> page, Projection projection) {
+        var response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(projection.body(page.items()));
+    }
+
+    /**
+     * Writes the items as newline-delimited JSON, one at a time and each ended by a newline, the last one too,
+     * flushing regularly so the first bytes leave early and memory stays flat regardless of how many items there are.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> ndjson(ObjectMapper objectMapper, Stream<T> items, Projection projection) {
+        StreamingResponseBody body = out -> {
+            ObjectWriter writer = projection.writer(objectMapper)
+                    .withRootValueSeparator((String) null)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (items; JsonGenerator generator = writer.createGenerator(out)) {
+                Iterator<T> iterator = items.iterator();
+                int written = 0;
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                    if (++written % FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.permitjavaexample.controller;
+
+import com.example.permitjavaexample.model.Views;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * What of a blog or folder a response carries, from the {@code view} and {@code fields} request parameters.
+ * <p>
+ * {@code view=summary} or {@code view=full} picks a {@link Views view}; {@code fields} is a comma-separated list of
+ * the properties to write, out of the given view or, if there is none, out of all of them (so {@code fields=id,snippet}
+ * works without naming a view). The projection is applied by Jackson as the entities are written: nothing is copied
+ * into a narrower type, and left-out properties are never even read.
+ * <p>
+ * The {@code tag} names the projection in entity tags, so that validators of differently projected bodies differ;
+ * the same fields in another order make the same tag.
+ */
+record Projection(String tag, Class<?> view, FilterProvider filters) {
+    static final Projection SUMMARY = new Projection("summary", Views.Summary.class, null);
+    static final Projection FULL = new Projection("full", Views.Full.class, null);
+    private static final int MAX_FIELDS = 32;
+    private static final Pattern FIELD = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+    static Projection of(String view, String fields, Projection otherwise) {
+        Projection projection = view == null ? null : switch (view) {
+            case "summary" -> SUMMARY;
+            case "full" -> FULL;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown view " + view);
+        };
+        if (fields == null || fields.isBlank()) {
+            return projection == null ? otherwise : projection;
+        }
+        Set<String> names = new TreeSet<>();
+        for (String field : fields.split(",", MAX_FIELDS + 1)) {
+            if (field.isBlank()) {
+                continue;
+            }
+            if (!FIELD.matcher(field.trim()).matches()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid field " + field.trim());
+            }
+            names.add(field.trim());
+        }
+        if (names.size() > MAX_FIELDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_FIELDS + " fields can be selected");
+        }
+        return new Projection((projection == null ? "all" : projection.tag()) + ":" + String.join(",", names),
+                projection == null ? null : projection.view(),
+                new SimpleFilterProvider().addFilter(Views.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(names)));
+    }
+
+    /**
+     * Wraps a response body so that Spring's Jackson converter writes it in this projection.
+     */
+    MappingJacksonValue body(Object value) {
+        var body = new MappingJacksonValue(value);
+        body.setSerializationView(view);
+        body.setFilters(filters);
+        return body;
+    }
+
+    ObjectWriter writer(ObjectMapper objectMapper) {
+        ObjectWriter writer = objectMapper.writerWithView(view);
+        return filters == null ? writer : writer.with(filters);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.permitjavaexample.exception;
+
+public class PdpUnavailableException extends RuntimeException {
+    public PdpUnavailableException(String message) {
+        super(message);
+    }
+
+    public PdpUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
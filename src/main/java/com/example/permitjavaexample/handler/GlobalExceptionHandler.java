@@ -1,6 +1,8 @@
 package com.example.permitjavaexample.handler;
 
 import com.example.permitjavaexample.exception.ForbiddenAccessException;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.exception.PreconditionFailedException;
 import com.example.permitjavaexample.exception.ResourceNotFoundException;
 import com.example.permitjavaexample.exception.UnauthorizedException;
 import org.springframework.http.HttpStatus;
@@ -25,4 +27,14 @@ public class GlobalExceptionHandler {
     public ResponseEntity<String> handleForbiddenAccessException(ForbiddenAccessException ex, WebRequest request) {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ex.getMessage());
     }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<String> handlePreconditionFailedException(PreconditionFailedException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(PdpUnavailableException.class)
+    public ResponseEntity<String> handlePdpUnavailableException(PdpUnavailableException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
 }
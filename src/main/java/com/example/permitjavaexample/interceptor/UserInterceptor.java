@@ -1,19 +1,32 @@
 package com.example.permitjavaexample.interceptor;
 
 import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.tenant.TenantContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 
 @Component
-public class UserInterceptor implements HandlerInterceptor {
-    @Autowired
-    private UserService userService;
+public class UserInterceptor implements AsyncHandlerInterceptor {
+    private final UserService userService;
+
+    public UserInterceptor(UserService userService) {
+        this.userService = userService;
+    }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        var tenant = request.getHeader(TenantContext.HEADER);
+        if (tenant == null || tenant.isEmpty()) {
+            tenant = TenantContext.DEFAULT;
+        } else if (!TenantContext.isValid(tenant)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid tenant " + tenant);
+            return false;
+        }
+        TenantContext.set(tenant);
+        request.setAttribute("tenant", tenant);
         var header = request.getHeader("Authorization");
         String userKey = header == null ? null : header.replaceFirst("Bearer ", "");
         if (userKey != null && !userKey.isEmpty()) {
@@ -21,4 +34,15 @@ public class UserInterceptor implements HandlerInterceptor {
         }
         return true;
     }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        TenantContext.clear();
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // the response is finished on another thread; this one goes back to the pool
+        TenantContext.clear();
+    }
 }
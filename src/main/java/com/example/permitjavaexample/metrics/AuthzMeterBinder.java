@@ -0,0 +1,105 @@
+package com.example.permitjavaexample.metrics;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.InFlightChecks;
+import com.example.permitjavaexample.authz.LoadBalancingPdpClient;
+import com.example.permitjavaexample.authz.PdpHttpTransport;
+import com.example.permitjavaexample.authz.PermissionPrefetch;
+import com.example.permitjavaexample.authz.PermitPdpClient;
+import com.example.permitjavaexample.sync.PermitSyncOutbox;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the counters the decision cache, the in-flight check table, the permission prefetch, the PDP endpoints and
+ * their transports, and the Permit outbox already keep, read only when scraped.
+ */
+@Component
+public class AuthzMeterBinder implements MeterBinder {
+    private final DecisionCache decisionCache;
+    private final PermitSyncOutbox outbox;
+    private final InFlightChecks inFlightChecks;
+    private final PermissionPrefetch permissionPrefetch;
+    private final LoadBalancingPdpClient pdpEndpoints;
+
+    public AuthzMeterBinder(DecisionCache decisionCache, PermitSyncOutbox outbox, InFlightChecks inFlightChecks,
+                            PermissionPrefetch permissionPrefetch, LoadBalancingPdpClient pdpEndpoints) {
+        this.decisionCache = decisionCache;
+        this.outbox = outbox;
+        this.inFlightChecks = inFlightChecks;
+        this.permissionPrefetch = permissionPrefetch;
+        this.pdpEndpoints = pdpEndpoints;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("vauthz.decision.cache.requests", decisionCache, c -> c.stats().hits())
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("vauthz.decision.cache.requests", decisionCache, c -> c.stats().misses())
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("vauthz.decision.cache.evictions", decisionCache, c -> c.stats().evictions())
+                .register(registry);
+        Gauge.builder("vauthz.decision.cache.size", decisionCache, c -> c.stats().size())
+                .register(registry);
+
+        Gauge.builder("vauthz.outbox.depth", outbox, o -> o.stats().depth())
+                .register(registry);
+        TimeGauge.builder("vauthz.outbox.lag", outbox, TimeUnit.MILLISECONDS, o -> o.stats().lag().toMillis())
+                .register(registry);
+        FunctionCounter.builder("vauthz.outbox.deduplicated", outbox, o -> o.stats().deduplicated())
+                .register(registry);
+
+        FunctionCounter.builder("vauthz.pdp.checks", inFlightChecks, InFlightChecks::requests)
+                .tag("result", "sent").register(registry);
+        FunctionCounter.builder("vauthz.pdp.checks", inFlightChecks, InFlightChecks::coalesced)
+                .tag("result", "coalesced").register(registry);
+
+        FunctionCounter.builder("vauthz.prefetch.requests", permissionPrefetch, PermissionPrefetch::fetches)
+                .tag("result", "fetch").register(registry);
+        FunctionCounter.builder("vauthz.prefetch.requests", permissionPrefetch, PermissionPrefetch::hits)
+                .tag("result", "hit").register(registry);
+
+        FunctionCounter.builder("vauthz.pdp.failovers", pdpEndpoints, LoadBalancingPdpClient::failovers)
+                .register(registry);
+        for (LoadBalancingPdpClient.Endpoint endpoint : pdpEndpoints.endpoints()) {
+            bindEndpoint(registry, endpoint);
+        }
+    }
+
+    private static void bindEndpoint(MeterRegistry registry, LoadBalancingPdpClient.Endpoint endpoint) {
+        String url = endpoint.url();
+        Gauge.builder("vauthz.pdp.endpoint.healthy", endpoint, e -> e.healthy() ? 1 : 0)
+                .tag("endpoint", url).register(registry);
+        Gauge.builder("vauthz.pdp.endpoint.outstanding", endpoint, LoadBalancingPdpClient.Endpoint::outstanding)
+                .tag("endpoint", url).register(registry);
+        TimeGauge.builder("vauthz.pdp.endpoint.latency", endpoint, TimeUnit.NANOSECONDS, LoadBalancingPdpClient.Endpoint::latencyNanos)
+                .tag("endpoint", url).register(registry);
+        FunctionCounter.builder("vauthz.pdp.endpoint.requests", endpoint, LoadBalancingPdpClient.Endpoint::requests)
+                .tag("endpoint", url).register(registry);
+        FunctionCounter.builder("vauthz.pdp.endpoint.failures", endpoint, LoadBalancingPdpClient.Endpoint::failures)
+                .tag("endpoint", url).register(registry);
+        FunctionCounter.builder("vauthz.pdp.endpoint.ejections", endpoint, LoadBalancingPdpClient.Endpoint::ejections)
+                .tag("endpoint", url).register(registry);
+
+        if (!(endpoint.client() instanceof PermitPdpClient client) || client.transport() == null) {
+            return;
+        }
+        PdpHttpTransport transport = client.transport();
+        Gauge.builder("vauthz.pdp.transport.connections", transport, PdpHttpTransport::idleConnections)
+                .tag("endpoint", url).tag("state", "idle").register(registry);
+        Gauge.builder("vauthz.pdp.transport.connections", transport, t -> t.connections() - t.idleConnections())
+                .tag("endpoint", url).tag("state", "active").register(registry);
+        FunctionCounter.builder("vauthz.pdp.transport.connects", transport, PdpHttpTransport::connects)
+                .tag("endpoint", url).register(registry);
+        FunctionCounter.builder("vauthz.pdp.transport.timeouts", transport, PdpHttpTransport::connectTimeouts)
+                .tag("endpoint", url).tag("phase", "connect").register(registry);
+        FunctionCounter.builder("vauthz.pdp.transport.timeouts", transport, PdpHttpTransport::readTimeouts)
+                .tag("endpoint", url).tag("phase", "read").register(registry);
+    }
+}
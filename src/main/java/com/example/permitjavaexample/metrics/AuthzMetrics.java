@@ -0,0 +1,145 @@
+package com.example.permitjavaexample.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers for authorization decisions, PDP round trips and Permit management API writes.
+ * <p>
+ * Tag values come from small fixed sets (resource types, actions, outcomes), so every timer is looked up once and
+ * then kept in a map; recording a sample is a map hit plus Micrometer's lock-free update. With
+ * {@code permit.metrics.percentile-histogram} on, the timers publish histogram buckets, from which percentiles
+ * can be aggregated across instances by the monitoring system instead of being computed in the application.
+ */
+@Component
+public class AuthzMetrics {
+    public static final String DECISIONS = "vauthz.authorize";
+    public static final String INTERCEPTOR = "vauthz.interceptor";
+    public static final String PDP_REQUESTS = "vauthz.pdp.requests";
+    public static final String PERMIT_WRITES = "vauthz.permit.writes";
+    public static final String PDP_RESILIENCE = "vauthz.pdp.resilience";
+    public static final String PDP_BATCHES = "vauthz.pdp.batch.size";
+
+    public enum Decision {
+        ALLOW, DENY, ERROR
+    }
+
+    /**
+     * Where a decision came from: the embedded evaluator, the decision cache, a PDP round trip, or an expired
+     * cache entry served because the PDP was unavailable.
+     */
+    public enum Source {
+        LOCAL, CACHE, PDP, STALE
+    }
+
+    private record DecisionTimer(String name, String resourceType, String action, Decision decision, Source source) {
+    }
+
+    private record CallTimer(String name, String call, String outcome) {
+    }
+
+    private final MeterRegistry registry;
+    private final boolean percentileHistogram;
+    private final ConcurrentHashMap<Object, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> resilienceEvents = new ConcurrentHashMap<>();
+    private volatile DistributionSummary batchSizes;
+
+    @Autowired
+    public AuthzMetrics(MeterRegistry registry,
+                        @Value("${permit.metrics.percentile-histogram:true}") boolean percentileHistogram) {
+        this.registry = registry;
+        this.percentileHistogram = percentileHistogram;
+    }
+
+    /**
+     * Metrics that are recorded but not published anywhere, for code that is wired by hand.
+     */
+    public static AuthzMetrics unpublished() {
+        return new AuthzMetrics(new SimpleMeterRegistry(), false);
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public void recordDecision(String resourceType, String action, Decision decision, Source source, long nanos) {
+        timer(new DecisionTimer(DECISIONS, resourceType, action, decision, source)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordInterceptor(String resourceType, String action, Decision decision, long nanos) {
+        timer(new DecisionTimer(INTERCEPTOR, resourceType, action, decision, null)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param call {@code check} or {@code bulk_check}
+     */
+    public void recordPdpRequest(String call, boolean success, long nanos) {
+        timer(new CallTimer(PDP_REQUESTS, call, success ? "success" : "error")).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param operation e.g. {@code create_resource_instance}
+     * @param outcome   {@code success}, {@code retry} or {@code failed}
+     */
+    public void recordWrite(String operation, String outcome, long nanos) {
+        timer(new CallTimer(PERMIT_WRITES, operation, outcome)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param event {@code timeout}, {@code error}, {@code short_circuited}, {@code hedge_sent}, {@code hedge_won}
+     *              or {@code stale_served}
+     */
+    public void recordResilienceEvent(String event) {
+        Counter counter = resilienceEvents.get(event);
+        if (counter == null) {
+            counter = resilienceEvents.computeIfAbsent(event, e -> Counter.builder(PDP_RESILIENCE).tag("event", e).register(registry));
+        }
+        counter.increment();
+    }
+
+    /**
+     * @param size checks sent together by {@code BatchingPdpClient}
+     */
+    public void recordBatch(int size) {
+        DistributionSummary summary = batchSizes;
+        if (summary == null) {
+            summary = batchSizes = DistributionSummary.builder(PDP_BATCHES).publishPercentileHistogram(percentileHistogram)
+                    .register(registry);
+        }
+        summary.record(size);
+    }
+
+    private Timer timer(Object key) {
+        Timer timer = timers.get(key);
+        return timer != null ? timer : timers.computeIfAbsent(key, this::register);
+    }
+
+    private Timer register(Object key) {
+        Timer.Builder builder;
+        if (key instanceof DecisionTimer t) {
+            builder = Timer.builder(t.name())
+                    .tag("resource", t.resourceType() == null ? "none" : t.resourceType())
+                    .tag("action", t.action())
+                    .tag("decision", t.decision().name().toLowerCase(Locale.ROOT));
+            if (t.source() != null) {
+                builder.tag("source", t.source().name().toLowerCase(Locale.ROOT));
+            }
+        } else {
+            CallTimer t = (CallTimer) key;
+            builder = Timer.builder(t.name())
+                    .tag(t.name().equals(PDP_REQUESTS) ? "call" : "operation", t.call())
+                    .tag("outcome", t.outcome());
+        }
+        return builder.publishPercentileHistogram(percentileHistogram).register(registry);
+    }
+}
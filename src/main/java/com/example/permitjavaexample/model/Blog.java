@@ -1,37 +1,111 @@
 package com.example.permitjavaexample.model;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.example.permitjavaexample.tenant.TenantContext;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonView;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+@JsonFilter(Views.FIELDS_FILTER)
+public class Blog implements Versioned {
+    /**
+     * The most characters of content a {@link #getSnippet() snippet} holds.
+     */
+    public static final int SNIPPET_LENGTH = 160;
+
+    private record Revision(String content, long version) {
+    }
 
-public class Blog {
     private final Integer id;
+    private final String tenant;
     private final String author;
-    private String content;
-    private final List<Comment> comments = new ArrayList<>();
+    private final AtomicReference<Revision> revision;
+    // the comments themselves are in the CommentRepository, which keeps this in step
+    private volatile int commentCount;
 
     public Blog(Integer id, String author, String content) {
+        this(id, author, content, 1);
+    }
+
+    public Blog(Integer id, String author, String content, long version) {
+        this(id, TenantContext.DEFAULT, author, content, version);
+    }
+
+    public Blog(Integer id, String tenant, String author, String content) {
+        this(id, tenant, author, content, 1);
+    }
+
+    public Blog(Integer id, String tenant, String author, String content, long version) {
         this.id = id;
+        this.tenant = tenant;
         this.author = author;
-        this.content = content;
+        this.revision = new AtomicReference<>(new Revision(content, version));
     }
 
+    @JsonView(Views.Common.class)
     public Integer getId() {
         return id;
     }
 
+    @JsonView(Views.Common.class)
+    public String getTenant() {
+        return tenant;
+    }
+
+    @JsonView(Views.Common.class)
     public String getAuthor() {
         return author;
     }
 
-    public void setContent(String content) {
-        this.content = content;
+    @JsonView(Views.Full.class)
+    public String getContent() {
+        return revision.get().content();
+    }
+
+    /**
+     * The start of the content, cut at the last space within {@link #SNIPPET_LENGTH} characters and followed by an
+     * ellipsis if there is more, or all of it if it is short enough.
+     */
+    @JsonView(Views.Summary.class)
+    public String getSnippet() {
+        String content = getContent();
+        if (content == null || content.length() <= SNIPPET_LENGTH) {
+            return content;
+        }
+        int end = content.lastIndexOf(' ', SNIPPET_LENGTH);
+        if (end < SNIPPET_LENGTH / 2) {
+            end = Character.isHighSurrogate(content.charAt(SNIPPET_LENGTH - 1)) ? SNIPPET_LENGTH - 1 : SNIPPET_LENGTH;
+        }
+        return content.substring(0, end) + "\u2026";
+    }
+
+    @Override
+    @JsonView(Views.Common.class)
+    public long getVersion() {
+        return revision.get().version();
+    }
+
+    /**
+     * Replaces the content and moves to the next version, if the blog is still at {@code version}.
+     */
+    public boolean compareAndSetContent(long version, String content) {
+        Revision current = revision.get();
+        return current.version() == version && revision.compareAndSet(current, new Revision(content, version + 1));
+    }
+
+    /**
+     * Sets the content and version as they were recorded.
+     */
+    public void setContent(String content, long version) {
+        revision.set(new Revision(content, version));
     }
 
-    public List<Comment> getComments() {
-        return comments;
+    @JsonView(Views.Common.class)
+    public int getCommentCount() {
+        return commentCount;
     }
 
-    public void addComment(Comment comment) {
-        comments.add(comment);
+    public void setCommentCount(int commentCount) {
+        this.commentCount = commentCount;
     }
 }
@@ -1,22 +1,57 @@
 package com.example.permitjavaexample.model;
 
-public class Comment {
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Comment implements Versioned {
+    private record Revision(String content, long version) {
+    }
+
     private final Integer id;
+    private final Integer blogId;
     private final String author;
-    private String content;
+    private final AtomicReference<Revision> revision;
 
-    public Comment(Integer id, String author, String content) {
+    public Comment(Integer id, Integer blogId, String author, String content) {
+        this(id, blogId, author, content, 1);
+    }
+
+    public Comment(Integer id, Integer blogId, String author, String content, long version) {
         this.id = id;
+        this.blogId = blogId;
         this.author = author;
-        this.content = content;
+        this.revision = new AtomicReference<>(new Revision(content, version));
     }
 
     public Integer getId() {
         return id;
     }
 
-    public void setContent(String content) {
-        this.content = content;
+    public Integer getBlogId() {
+        return blogId;
+    }
+
+    public String getContent() {
+        return revision.get().content();
+    }
+
+    @Override
+    public long getVersion() {
+        return revision.get().version();
+    }
+
+    /**
+     * Replaces the content and moves to the next version, if the comment is still at {@code version}.
+     */
+    public boolean compareAndSetContent(long version, String content) {
+        Revision current = revision.get();
+        return current.version() == version && revision.compareAndSet(current, new Revision(content, version + 1));
+    }
+
+    /**
+     * Sets the content and version as they were recorded.
+     */
+    public void setContent(String content, long version) {
+        revision.set(new Revision(content, version));
     }
 
     public String getAuthor() {
@@ -1,16 +1,44 @@
 package com.example.permitjavaexample.model;
 
-public class Folder {
+import com.example.permitjavaexample.tenant.TenantContext;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonView;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A folder is small enough that its summary and full views are the same.
+ */
+@JsonFilter(Views.FIELDS_FILTER)
+public class Folder implements Versioned {
+    private record Revision(String name, long version) {
+    }
+
     Integer id;
+    private final String tenant;
     String author;
-    String name;
+    private final AtomicReference<Revision> revision;
 
     public Folder(Integer id, String author, String name) {
+        this(id, author, name, 1);
+    }
+
+    public Folder(Integer id, String author, String name, long version) {
+        this(id, TenantContext.DEFAULT, author, name, version);
+    }
+
+    public Folder(Integer id, String tenant, String author, String name) {
+        this(id, tenant, author, name, 1);
+    }
+
+    public Folder(Integer id, String tenant, String author, String name, long version) {
         this.id = id;
-        this.name = name;
+        this.tenant = tenant;
         this.author = author;
+        this.revision = new AtomicReference<>(new Revision(name, version));
     }
 
+    @JsonView(Views.Common.class)
     public Integer getId() {
         return id;
     }
@@ -19,14 +47,38 @@ public class Folder {
         this.id = id;
     }
 
+    @JsonView(Views.Common.class)
+    public String getTenant() {
+        return tenant;
+    }
+
+    @JsonView(Views.Common.class)
     public String getName() {
-        return name;
+        return revision.get().name();
+    }
+
+    @Override
+    @JsonView(Views.Common.class)
+    public long getVersion() {
+        return revision.get().version();
+    }
+
+    /**
+     * Renames the folder and moves to the next version, if it is still at {@code version}.
+     */
+    public boolean compareAndSetName(long version, String name) {
+        Revision current = revision.get();
+        return current.version() == version && revision.compareAndSet(current, new Revision(name, version + 1));
     }
 
-    public void setName(String name) {
-        this.name = name;
+    /**
+     * Sets the name and version as they were recorded.
+     */
+    public void setName(String name, long version) {
+        revision.set(new Revision(name, version));
     }
 
+    @JsonView(Views.Common.class)
     public String getAuthor() {
         return author;
     }
@@ -0,0 +1,11 @@
+package com.example.permitjavaexample.model;
+
+import java.util.List;
+
+/**
+ * One page of a listing. {@code nextCursor} is what to pass as {@code cursor} for the following page (the last id
+ * for id-ordered listings, a rank position for search results), or {@code null} when there is nothing after this
+ * page.
+ */
+public record Page<T>(List<T> items, Integer nextCursor) {
+}
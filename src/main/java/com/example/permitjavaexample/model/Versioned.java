@@ -0,0 +1,14 @@
+package com.example.permitjavaexample.model;
+
+/**
+ * An entity whose every change gets a new version, starting at 1, so that updates can be made conditional on the
+ * version the client last saw.
+ */
+public interface Versioned {
+    /**
+     * Stands in for an expected version when an update is unconditional.
+     */
+    long ANY_VERSION = 0;
+
+    long getVersion();
+}
@@ -0,0 +1,28 @@
+package com.example.permitjavaexample.model;
+
+/**
+ * Jackson views of blogs and folders. Listings are written in the {@link Summary} view, which leaves out what is
+ * expensive to write and large on the wire (a blog's content, for one, is replaced by a short snippet), and single
+ * entities in the {@link Full} view.
+ * <p>
+ * Both classes also name the {@link #FIELDS_FILTER} property filter, with which a response can be narrowed down to
+ * the properties a client asked for.
+ */
+public final class Views {
+    public static final String FIELDS_FILTER = "fields";
+
+    /**
+     * Properties written in every view.
+     */
+    public interface Common {
+    }
+
+    public interface Summary extends Common {
+    }
+
+    public interface Full extends Common {
+    }
+
+    private Views() {
+    }
+}
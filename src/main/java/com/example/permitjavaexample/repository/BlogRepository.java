@@ -0,0 +1,43 @@
+package com.example.permitjavaexample.repository;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Versioned;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class BlogRepository extends IndexedRepository<Blog> {
+    public BlogRepository() {
+        super(Blog::getId, Blog::getTenant, Blog::getAuthor);
+    }
+
+    public void updateContent(Blog blog, String content) {
+        updateContent(blog, content, Versioned.ANY_VERSION);
+    }
+
+    /**
+     * Replaces the content if the blog is at {@code expectedVersion}, or at any version if it is
+     * {@link Versioned#ANY_VERSION}; returns {@code false} if it is at another version or was removed concurrently.
+     */
+    public boolean updateContent(Blog blog, String content, long expectedVersion) {
+        while (true) {
+            long version = blog.getVersion();
+            if (!isStored(blog) || expectedVersion != Versioned.ANY_VERSION && version != expectedVersion) {
+                return false;
+            }
+            if (journal().record(new Journal.Change.BlogUpdated(blog.getId(), content, version + 1),
+                    () -> isStored(blog) && blog.compareAndSetContent(version, content))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    protected Journal.Change saved(Blog blog) {
+        return new Journal.Change.BlogSaved(blog.getId(), blog.getTenant(), blog.getAuthor(), blog.getContent());
+    }
+
+    @Override
+    protected Journal.Change removed(Blog blog) {
+        return new Journal.Change.BlogRemoved(blog.getId());
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.permitjavaexample.repository;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Page;
+import com.example.permitjavaexample.model.Versioned;
+import com.example.permitjavaexample.tenant.TenantContext;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe in-memory store of comments with O(1) lookup by id and, per blog, id-ordered pages and a count.
+ * <p>
+ * Comments live here rather than on their blog, so reading or listing blogs never touches them. Each blog's
+ * comments are changed under that blog's lock, which keeps the blog's {@link Blog#getCommentCount comment count} in
+ * step with them and lets {@link #save} refuse comments on a blog that is being deleted: once {@link #removeBlog}
+ * has run, nothing is added to the blog again. Lookups and pages take no lock.
+ * <p>
+ * Comments belong to their blog's tenant and take their ids from that tenant's block of the id sequence (see
+ * {@link TenantSequence}).
+ * <p>
+ * Changes go through the attached {@link Journal}, like those of the other repositories.
+ */
+@Repository
+public class CommentRepository {
+    private static final class BlogComments {
+        final ReentrantLock lock = new ReentrantLock();
+        final ConcurrentSkipListMap<Integer, Comment> ordered = new ConcurrentSkipListMap<>();
+        volatile int count;
+        boolean removed;
+    }
+
+    private final BlogRepository blogs;
+    private final ConcurrentHashMap<Integer, Comment> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, BlogComments> byBlog = new ConcurrentHashMap<>();
+    private final TenantSequence idSequence = new TenantSequence();
+    private volatile Journal journal = Journal.NONE;
+
+    public CommentRepository(BlogRepository blogs) {
+        this.blogs = blogs;
+    }
+
+    public void attach(Journal journal) {
+        this.journal = journal;
+    }
+
+    public int nextId() {
+        return nextId(TenantContext.DEFAULT);
+    }
+
+    public int nextId(String tenant) {
+        return idSequence.next(tenant);
+    }
+
+    /**
+     * The highest id handed out by {@link #nextId}, in any tenant.
+     */
+    public int lastId() {
+        return idSequence.last();
+    }
+
+    /**
+     * Makes sure {@link #nextId} never hands out {@code id} or anything below it again.
+     */
+    public void restoreSequence(int id) {
+        idSequence.restore(id);
+    }
+
+    public Optional<Comment> findById(int blogId, int id) {
+        Comment comment = byId.get(id);
+        return comment != null && comment.getBlogId() == blogId ? Optional.of(comment) : Optional.empty();
+    }
+
+    /**
+     * Returns up to {@code limit} of the blog's comments with an id greater than {@code afterId} (or from the first
+     * if it is {@code null}), oldest first.
+     */
+    public Page<Comment> findPage(int blogId, Integer afterId, int limit) {
+        BlogComments comments = byBlog.get(blogId);
+        if (comments == null) {
+            return new Page<>(List.of(), null);
+        }
+        ConcurrentNavigableMap<Integer, Comment> tail = afterId == null ? comments.ordered : comments.ordered.tailMap(afterId, false);
+        List<Comment> items = new ArrayList<>(Math.min(limit, 256));
+        Integer lastId = null;
+        boolean more = false;
+        for (var entry : tail.entrySet()) {
+            if (items.size() == limit) {
+                more = true;
+                break;
+            }
+            items.add(entry.getValue());
+            lastId = entry.getKey();
+        }
+        return new Page<>(items, more ? lastId : null);
+    }
+
+    public List<Comment> findByBlog(int blogId) {
+        BlogComments comments = byBlog.get(blogId);
+        return comments == null ? List.of() : new ArrayList<>(comments.ordered.values());
+    }
+
+    public int count(int blogId) {
+        BlogComments comments = byBlog.get(blogId);
+        return comments == null ? 0 : comments.count;
+    }
+
+    public int count() {
+        return byId.size();
+    }
+
+    /**
+     * Adds the comment to {@code blog}; returns {@code false}, and adds nothing, if the blog has been removed.
+     */
+    public boolean save(Blog blog, Comment comment) {
+        return journal.record(new Journal.Change.CommentSaved(blog.getId(), comment.getId(), comment.getAuthor(), comment.getContent()), () -> {
+            BlogComments comments = byBlog.computeIfAbsent(blog.getId(), id -> new BlogComments());
+            comments.lock.lock();
+            try {
+                if (comments.removed || blogs.findById(blog.getId()).orElse(null) != blog) {
+                    if (comments.ordered.isEmpty()) {
+                        byBlog.remove(blog.getId(), comments);
+                    }
+                    return false;
+                }
+                insert(comments, comment);
+                return true;
+            } finally {
+                comments.lock.unlock();
+            }
+        });
+    }
+
+    public boolean update(Comment comment, String content) {
+        return update(comment, content, Versioned.ANY_VERSION);
+    }
+
+    /**
+     * Replaces the comment's content if it is at {@code expectedVersion}, or at any version if it is
+     * {@link Versioned#ANY_VERSION}; returns {@code false} if it is at another version or was removed concurrently.
+     */
+    public boolean update(Comment comment, String content, long expectedVersion) {
+        while (true) {
+            long version = comment.getVersion();
+            if (byId.get(comment.getId()) != comment || expectedVersion != Versioned.ANY_VERSION && version != expectedVersion) {
+                return false;
+            }
+            if (journal.record(new Journal.Change.CommentUpdated(comment.getBlogId(), comment.getId(), content, version + 1),
+                    () -> byId.get(comment.getId()) == comment && comment.compareAndSetContent(version, content))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes the comment if it is still stored; returns {@code false} if it was already removed concurrently.
+     */
+    public boolean remove(Comment comment) {
+        return journal.record(new Journal.Change.CommentRemoved(comment.getBlogId(), comment.getId()), () -> delete(comment));
+    }
+
+    /**
+     * Drops every comment of a removed blog and refuses new ones. It is not journaled: replaying the blog's removal
+     * drops them again.
+     */
+    public void removeBlog(int blogId) {
+        BlogComments comments = byBlog.get(blogId);
+        if (comments == null) {
+            return;
+        }
+        comments.lock.lock();
+        try {
+            comments.removed = true;
+            byBlog.remove(blogId, comments);
+            for (Comment comment : comments.ordered.values()) {
+                byId.remove(comment.getId(), comment);
+            }
+            comments.ordered.clear();
+            comments.count = 0;
+        } finally {
+            comments.lock.unlock();
+        }
+    }
+
+    /**
+     * Stores a replayed comment, replacing any comment with the same id; comments of blogs that are not stored are
+     * ignored.
+     */
+    public void restore(Comment comment) {
+        restoreSequence(comment.getId());
+        if (blogs.findById(comment.getBlogId()).isEmpty()) {
+            return;
+        }
+        Comment previous = byId.get(comment.getId());
+        if (previous != null) {
+            delete(previous);
+        }
+        BlogComments comments = byBlog.computeIfAbsent(comment.getBlogId(), id -> new BlogComments());
+        comments.lock.lock();
+        try {
+            insert(comments, comment);
+        } finally {
+            comments.lock.unlock();
+        }
+    }
+
+    public void restoreRemoval(int blogId, int id) {
+        findById(blogId, id).ifPresent(this::delete);
+    }
+
+    private void insert(BlogComments comments, Comment comment) {
+        if (byId.putIfAbsent(comment.getId(), comment) != null) {
+            throw new IllegalStateException("Comment with id " + comment.getId() + " already exists");
+        }
+        comments.ordered.put(comment.getId(), comment);
+        comments.count++;
+        updateCount(comment.getBlogId(), comments.count);
+    }
+
+    private boolean delete(Comment comment) {
+        BlogComments comments = byBlog.get(comment.getBlogId());
+        if (comments == null) {
+            return false;
+        }
+        comments.lock.lock();
+        try {
+            if (!byId.remove(comment.getId(), comment)) {
+                return false;
+            }
+            comments.ordered.remove(comment.getId(), comment);
+            comments.count--;
+            updateCount(comment.getBlogId(), comments.count);
+            return true;
+        } finally {
+            comments.lock.unlock();
+        }
+    }
+
+    private void updateCount(int blogId, int count) {
+        blogs.findById(blogId).ifPresent(blog -> blog.setCommentCount(count));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.permitjavaexample.repository;
+
+import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.model.Versioned;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class FolderRepository extends IndexedRepository<Folder> {
+    public FolderRepository() {
+        super(Folder::getId, Folder::getTenant, Folder::getAuthor);
+    }
+
+    public void rename(Folder folder, String name) {
+        rename(folder, name, Versioned.ANY_VERSION);
+    }
+
+    /**
+     * Renames the folder if it is at {@code expectedVersion}, or at any version if it is
+     * {@link Versioned#ANY_VERSION}; returns {@code false} if it is at another version or was removed concurrently.
+     */
+    public boolean rename(Folder folder, String name, long expectedVersion) {
+        while (true) {
+            long version = folder.getVersion();
+            if (!isStored(folder) || expectedVersion != Versioned.ANY_VERSION && version != expectedVersion) {
+                return false;
+            }
+            if (journal().record(new Journal.Change.FolderUpdated(folder.getId(), name, version + 1),
+                    () -> isStored(folder) && folder.compareAndSetName(version, name))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    protected Journal.Change saved(Folder folder) {
+        return new Journal.Change.FolderSaved(folder.getId(), folder.getTenant(), folder.getAuthor(), folder.getName());
+    }
+
+    @Override
+    protected Journal.Change removed(Folder folder) {
+        return new Journal.Change.FolderRemoved(folder.getId());
+    }
+}
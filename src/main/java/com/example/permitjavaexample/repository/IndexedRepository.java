@@ -0,0 +1,266 @@
+package com.example.permitjavaexample.repository;
+
+import com.example.permitjavaexample.model.Page;
+import com.example.permitjavaexample.tenant.TenantContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory store with O(1) lookup by id and, per tenant, id-ordered iteration and a secondary index by
+ * author.
+ * <p>
+ * The id map is the source of truth: an entity exists once it was put there and is gone once the conditional
+ * remove succeeded, so concurrent deletes of the same entity resolve to exactly one winner. An entity is added to
+ * the ordered view and the author index while it is put, so a delete never overtakes that; taking it out of them
+ * comes after the remove and may briefly lag behind it.
+ * <p>
+ * Each tenant has its own ordered view, author index and id block (see {@link TenantSequence}), so listing or
+ * paging one tenant never walks past another tenant's entities, however many there are. Ids are unique across
+ * tenants, so lookups by id need no tenant; {@link #findById(String, int)} checks it. The methods that take no
+ * tenant act on the {@link TenantContext#DEFAULT default} one.
+ * <p>
+ * Changes go through the attached {@link Journal}, which makes them durable; the {@code restore*} methods are how
+ * the journal puts replayed state back, and bypass it.
+ */
+public abstract class IndexedRepository<T> {
+    private static final class Partition<T> {
+        final ConcurrentSkipListMap<Integer, T> ordered = new ConcurrentSkipListMap<>();
+        final ConcurrentHashMap<String, Set<Integer>> byAuthor = new ConcurrentHashMap<>();
+        final AtomicInteger count = new AtomicInteger();
+    }
+
+    private final ConcurrentHashMap<Integer, T> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Partition<T>> partitions = new ConcurrentHashMap<>();
+    private final TenantSequence idSequence = new TenantSequence();
+    private final Function<T, Integer> idOf;
+    private final Function<T, String> tenantOf;
+    private final Function<T, String> authorOf;
+    private volatile Journal journal = Journal.NONE;
+
+    protected IndexedRepository(Function<T, Integer> idOf, Function<T, String> tenantOf, Function<T, String> authorOf) {
+        this.idOf = idOf;
+        this.tenantOf = tenantOf;
+        this.authorOf = authorOf;
+    }
+
+    public void attach(Journal journal) {
+        this.journal = journal;
+    }
+
+    protected Journal journal() {
+        return journal;
+    }
+
+    /**
+     * Whether {@code entity} itself is still stored, rather than removed.
+     */
+    protected boolean isStored(T entity) {
+        return byId.get(idOf.apply(entity)) == entity;
+    }
+
+    public int nextId() {
+        return nextId(TenantContext.DEFAULT);
+    }
+
+    public int nextId(String tenant) {
+        return idSequence.next(tenant);
+    }
+
+    /**
+     * The highest id handed out by {@link #nextId}, in any tenant.
+     */
+    public int lastId() {
+        return idSequence.last();
+    }
+
+    /**
+     * Makes sure {@link #nextId} never hands out {@code id} or anything below it again.
+     */
+    public void restoreSequence(int id) {
+        idSequence.restore(id);
+    }
+
+    public Optional<T> findById(int id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    /**
+     * The entity with {@code id}, if it belongs to {@code tenant}.
+     */
+    public Optional<T> findById(String tenant, int id) {
+        T entity = byId.get(id);
+        return entity != null && tenantOf.apply(entity).equals(tenant) ? Optional.of(entity) : Optional.empty();
+    }
+
+    public List<T> findAll() {
+        return findAll(TenantContext.DEFAULT);
+    }
+
+    public List<T> findAll(String tenant) {
+        Partition<T> partition = partitions.get(tenant);
+        return partition == null ? new ArrayList<>() : new ArrayList<>(partition.ordered.values());
+    }
+
+    public Page<T> findPage(Integer afterId, int limit) {
+        return findPage(TenantContext.DEFAULT, afterId, limit);
+    }
+
+    /**
+     * Returns up to {@code limit} of the tenant's entities with an id greater than {@code afterId} (or from the start
+     * if it is {@code null}), without copying the rest of the store.
+     */
+    public Page<T> findPage(String tenant, Integer afterId, int limit) {
+        Partition<T> partition = partitions.get(tenant);
+        if (partition == null) {
+            return new Page<>(List.of(), null);
+        }
+        ConcurrentNavigableMap<Integer, T> tail = afterId == null ? partition.ordered : partition.ordered.tailMap(afterId, false);
+        List<T> items = new ArrayList<>(Math.min(limit, 256));
+        Integer lastId = null;
+        boolean more = false;
+        for (var entry : tail.entrySet()) {
+            if (items.size() == limit) {
+                more = true;
+                break;
+            }
+            items.add(entry.getValue());
+            lastId = entry.getKey();
+        }
+        return new Page<>(items, more ? lastId : null);
+    }
+
+    /**
+     * Lazily walks the tenant's entities in id order. The walk is weakly consistent: it never fails under concurrent
+     * modification and holds no more than one entity at a time.
+     */
+    public Stream<T> stream(String tenant) {
+        Partition<T> partition = partitions.get(tenant);
+        return partition == null ? Stream.empty() : partition.ordered.values().stream();
+    }
+
+    /**
+     * Lazily walks every tenant's entities, one tenant after the other, as weakly consistent as {@link #stream}.
+     */
+    public Stream<T> streamAll() {
+        return partitions.values().stream().flatMap(partition -> partition.ordered.values().stream());
+    }
+
+    public List<T> findByAuthor(String author) {
+        return findByAuthor(TenantContext.DEFAULT, author);
+    }
+
+    public List<T> findByAuthor(String tenant, String author) {
+        Partition<T> partition = partitions.get(tenant);
+        Set<Integer> ids = partition == null ? null : partition.byAuthor.get(author);
+        if (ids == null) {
+            return List.of();
+        }
+        List<T> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The number of entities in all tenants.
+     */
+    public int count() {
+        return byId.size();
+    }
+
+    public int count(String tenant) {
+        Partition<T> partition = partitions.get(tenant);
+        return partition == null ? 0 : partition.count.get();
+    }
+
+    public void save(T entity) {
+        journal.record(saved(entity), () -> {
+            insert(entity);
+            return true;
+        });
+    }
+
+    /**
+     * Stores a replayed entity, replacing any entity with the same id.
+     */
+    public void restore(T entity) {
+        Integer id = idOf.apply(entity);
+        T previous = byId.get(id);
+        if (previous != null) {
+            delete(previous);
+        }
+        insert(entity);
+        restoreSequence(id);
+    }
+
+    public void restoreRemoval(int id) {
+        T entity = byId.get(id);
+        if (entity != null) {
+            delete(entity);
+        }
+    }
+
+    /**
+     * The journal entry for a newly saved entity.
+     */
+    protected abstract Journal.Change saved(T entity);
+
+    /**
+     * The journal entry for a removed entity.
+     */
+    protected abstract Journal.Change removed(T entity);
+
+    private void insert(T entity) {
+        Integer id = idOf.apply(entity);
+        // indexed inside the put, so that a remove of the id, which waits for it, always finds the indexes to undo
+        byId.compute(id, (key, existing) -> {
+            if (existing != null) {
+                throw new IllegalStateException("Entity with id " + id + " already exists");
+            }
+            Partition<T> partition = partitions.computeIfAbsent(tenantOf.apply(entity), tenant -> new Partition<>());
+            partition.ordered.put(id, entity);
+            partition.count.incrementAndGet();
+            partition.byAuthor.compute(authorOf.apply(entity), (author, ids) -> {
+                Set<Integer> set = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                set.add(id);
+                return set;
+            });
+            return entity;
+        });
+    }
+
+    /**
+     * Removes the entity if it is still stored; returns {@code false} if it was already removed concurrently.
+     */
+    public boolean remove(T entity) {
+        return journal.record(removed(entity), () -> delete(entity));
+    }
+
+    private boolean delete(T entity) {
+        Integer id = idOf.apply(entity);
+        if (!byId.remove(id, entity)) {
+            return false;
+        }
+        Partition<T> partition = partitions.get(tenantOf.apply(entity));
+        partition.ordered.remove(id, entity);
+        partition.count.decrementAndGet();
+        partition.byAuthor.computeIfPresent(authorOf.apply(entity), (author, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.permitjavaexample.repository;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Where repositories record their changes so that they survive a restart.
+ */
+@FunctionalInterface
+public interface Journal {
+    /**
+     * Keeps nothing: changes live only in memory.
+     */
+    Journal NONE = (change, mutation) -> mutation.getAsBoolean();
+
+    /**
+     * A change to the stored state, carrying the values it sets so that replaying it twice does no harm.
+     */
+    sealed interface Change {
+        record BlogSaved(int id, String tenant, String author, String content) implements Change {
+        }
+
+        record BlogUpdated(int id, String content, long version) implements Change {
+        }
+
+        record BlogRemoved(int id) implements Change {
+        }
+
+        record CommentSaved(int blogId, int id, String author, String content) implements Change {
+        }
+
+        record CommentUpdated(int blogId, int id, String content, long version) implements Change {
+        }
+
+        record CommentRemoved(int blogId, int id) implements Change {
+        }
+
+        record FolderSaved(int id, String tenant, String author, String name) implements Change {
+        }
+
+        record FolderUpdated(int id, String name, long version) implements Change {
+        }
+
+        record FolderRemoved(int id) implements Change {
+        }
+    }
+
+    /**
+     * Applies {@code mutation} to the in-memory state and, if it reports that it changed something, records
+     * {@code change}. Concurrent changes are recorded in the order they were applied.
+     *
+     * @return what {@code mutation} returned
+     */
+    boolean record(Change change, BooleanSupplier mutation);
+}
@@ -0,0 +1,69 @@
+package com.example.permitjavaexample.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out ids per tenant, from blocks of {@value #BLOCK} reserved on one shared counter.
+ * <p>
+ * Each tenant draws its ids from its own block, so tenants creating entities at the same time never contend on one
+ * counter, and only reserving the next block touches state shared between tenants. Ids stay unique across tenants,
+ * which keeps them usable as Permit resource instance keys and in the journal as they are, and increase within a
+ * tenant. They are not dense: ids of one tenant are interleaved in blocks with those of others, and a block a thread
+ * reserved but lost the race to install is dropped.
+ */
+final class TenantSequence {
+    static final int BLOCK = 64;
+
+    /**
+     * Per tenant, the last id handed out in the high half and the last id of its block in the low half.
+     */
+    private final ConcurrentHashMap<String, AtomicLong> cursors = new ConcurrentHashMap<>();
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger restored = new AtomicInteger();
+
+    int next(String tenant) {
+        AtomicLong cursor = cursors.computeIfAbsent(tenant, t -> new AtomicLong());
+        while (true) {
+            long current = cursor.get();
+            int last = (int) (current >>> 32);
+            int end = (int) current;
+            if (last < end) {
+                if (cursor.compareAndSet(current, pack(last + 1, end))) {
+                    return last + 1;
+                }
+                continue;
+            }
+            int blockEnd = reserved.addAndGet(BLOCK);
+            int first = blockEnd - BLOCK + 1;
+            if (cursor.compareAndSet(current, pack(first, blockEnd))) {
+                return first;
+            }
+        }
+    }
+
+    /**
+     * The highest id handed out, or restored; ids reserved but not handed out yet do not count.
+     */
+    int last() {
+        int last = restored.get();
+        for (AtomicLong cursor : cursors.values()) {
+            last = Math.max(last, (int) (cursor.get() >>> 32));
+        }
+        return last;
+    }
+
+    /**
+     * Makes sure {@code id} and every id below it are never handed out again, once the blocks tenants already hold
+     * are used up; replay calls it before any id is handed out.
+     */
+    void restore(int id) {
+        restored.accumulateAndGet(id, Math::max);
+        reserved.accumulateAndGet(id, Math::max);
+    }
+
+    private static long pack(int last, int end) {
+        return (long) last << 32 | end & 0xffffffffL;
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.permitjavaexample.search;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.tenant.TenantContext;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory inverted index over the text of every blog and its comments, ranked with BM25.
+ * <p>
+ * A blog is (re)indexed from the repository with {@link #reindex} after every change to it, including its removal.
+ * Posting lists are append-only: a reindex appends the blog's terms under a new version and leaves the previous
+ * version's postings in place, and queries skip postings whose version is no longer the blog's current one. A
+ * posting list is compacted once more than half of it is stale, which keeps updates O(terms of the blog) and the
+ * space overhead bounded. Removed blogs leave a small tombstone, so a compaction can tell a stale posting from one
+ * a concurrent reindex is still adding.
+ * <p>
+ * Each tenant's blogs are indexed in a shard of their own, with its own posting lists and BM25 statistics, so a
+ * search in a small tenant never scans the postings of a large one, and scores do not depend on other tenants'
+ * blogs.
+ */
+@Component
+public class BlogSearchIndex implements SmartInitializingSingleton {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final Postings[] NO_TERMS = new Postings[0];
+
+    /**
+     * A matching blog and its relevance; higher is better.
+     */
+    public record Hit(int blogId, double score) {
+    }
+
+    /**
+     * The indexed state of a blog: the version its postings carry, its length in terms (negative once removed), the
+     * posting lists it is in and the shard of its tenant.
+     */
+    private record Document(int version, int length, Postings[] terms, Shard shard) {
+        boolean removed() {
+            return length < 0;
+        }
+    }
+
+    /**
+     * The posting lists and BM25 statistics of one tenant's blogs.
+     */
+    private static final class Shard {
+        private final ConcurrentHashMap<String, Postings> postings = new ConcurrentHashMap<>();
+        private final AtomicInteger live = new AtomicInteger();
+        private final AtomicLong totalLength = new AtomicLong();
+    }
+
+    private final BlogRepository blogs;
+    private final CommentRepository comments;
+    private final ConcurrentHashMap<String, Shard> shards = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Document> documents = new ConcurrentHashMap<>();
+    private final AtomicInteger versions = new AtomicInteger();
+
+    public BlogSearchIndex(BlogRepository blogs, CommentRepository comments) {
+        this.blogs = blogs;
+        this.comments = comments;
+    }
+
+    /**
+     * Indexes the blogs already in the repository, once every bean (and so any storage restoring them) is ready.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        blogs.streamAll().forEach(blog -> reindex(blog.getId()));
+    }
+
+    /**
+     * Brings the index in line with the repository's current state of the blog: indexes its content and comments
+     * if it exists and drops it otherwise. Concurrent reindexes of one blog are serialized, and each reads the
+     * repository when its turn comes, so the last one always wins with the latest state.
+     */
+    public void reindex(int blogId) {
+        Document[] previous = new Document[1];
+        Document current = documents.compute(blogId, (id, existing) -> {
+            previous[0] = existing;
+            Blog blog = blogs.findById(id).orElse(null);
+            if (blog == null) {
+                return existing == null || existing.removed() ? existing : new Document(versions.incrementAndGet(), -1, NO_TERMS, existing.shard());
+            }
+            Shard shard = shards.computeIfAbsent(blog.getTenant(), tenant -> new Shard());
+            int version = versions.incrementAndGet();
+            Map<String, int[]> counts = new HashMap<>();
+            int length = tokenize(blog.getContent(), counts);
+            for (Comment comment : comments.findByBlog(id)) {
+                length += tokenize(comment.getContent(), counts);
+            }
+            Postings[] terms = new Postings[counts.size()];
+            int i = 0;
+            for (var term : counts.entrySet()) {
+                terms[i++] = append(shard, term.getKey(), id, version, term.getValue()[0]);
+            }
+            return new Document(version, length, terms, shard);
+        });
+        if (current == previous[0]) {
+            return;
+        }
+        if (previous[0] != null && !previous[0].removed()) {
+            previous[0].shard().live.decrementAndGet();
+            previous[0].shard().totalLength.addAndGet(-previous[0].length());
+            for (Postings list : previous[0].terms()) {
+                markStale(list);
+            }
+        }
+        if (current != null && !current.removed()) {
+            current.shard().live.incrementAndGet();
+            current.shard().totalLength.addAndGet(current.length());
+        }
+    }
+
+    public List<Hit> search(String query, int from, int count) {
+        return search(TenantContext.DEFAULT, query, from, count);
+    }
+
+    /**
+     * Returns the tenant's matches ranked {@code from} (inclusive) to {@code from + count} (exclusive) for a query,
+     * best first, ties broken by blog id. A blog matches if it contains any of the query's terms.
+     */
+    public List<Hit> search(String tenant, String query, int from, int count) {
+        Shard shard = shards.get(tenant);
+        Map<String, int[]> terms = new HashMap<>();
+        tokenize(query, terms);
+        int documentCount = shard == null ? 0 : shard.live.get();
+        if (terms.isEmpty() || documentCount == 0 || count <= 0) {
+            return List.of();
+        }
+        double averageLength = Math.max(1.0, shard.totalLength.get() / (double) documentCount);
+        var scores = new ScoreTable();
+        for (String term : terms.keySet()) {
+            Postings list = shard.postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            long[] entries;
+            int[] frequencies;
+            int size;
+            int matching;
+            list.lock.lock();
+            try {
+                entries = list.entries;
+                frequencies = list.frequencies;
+                size = list.size;
+                matching = Math.max(1, size - list.stale);
+            } finally {
+                list.lock.unlock();
+            }
+            double idf = Math.log(1 + (documentCount - matching + 0.5) / (matching + 0.5));
+            for (int i = 0; i < size; i++) {
+                int id = (int) (entries[i] >>> 32);
+                Document document = documents.get(id);
+                if (document == null || document.version() != (int) entries[i]) {
+                    continue;
+                }
+                double tf = frequencies[i];
+                scores.add(id, idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * document.length() / averageLength)));
+            }
+        }
+        return scores.top(from, count);
+    }
+
+    /**
+     * The number of indexed blogs.
+     */
+    public int documents() {
+        int total = 0;
+        for (Shard shard : shards.values()) {
+            total += shard.live.get();
+        }
+        return total;
+    }
+
+    /**
+     * The number of posting lists: the distinct terms of each tenant, summed.
+     */
+    public int terms() {
+        int total = 0;
+        for (Shard shard : shards.values()) {
+            total += shard.postings.size();
+        }
+        return total;
+    }
+
+    /**
+     * The number of postings held, stale ones included.
+     */
+    public long postings() {
+        long total = 0;
+        for (Shard shard : shards.values()) {
+            for (Postings list : shard.postings.values()) {
+                list.lock.lock();
+                try {
+                    total += list.size;
+                } finally {
+                    list.lock.unlock();
+                }
+            }
+        }
+        return total;
+    }
+
+    private Postings append(Shard shard, String term, int id, int version, int frequency) {
+        while (true) {
+            Postings list = shard.postings.computeIfAbsent(term, t -> new Postings(shard, t));
+            list.lock.lock();
+            try {
+                // a list emptied by compaction is dropped from the map; start a new one
+                if (list.dropped) {
+                    continue;
+                }
+                if (list.size == list.entries.length) {
+                    list.entries = Arrays.copyOf(list.entries, list.size * 2);
+                    list.frequencies = Arrays.copyOf(list.frequencies, list.size * 2);
+                }
+                list.entries[list.size] = (long) id << 32 | (version & 0xffffffffL);
+                list.frequencies[list.size] = frequency;
+                list.size++;
+                return list;
+            } finally {
+                list.lock.unlock();
+            }
+        }
+    }
+
+    private void markStale(Postings list) {
+        list.lock.lock();
+        try {
+            if (++list.stale * 2 > list.size) {
+                compact(list);
+            }
+        } finally {
+            list.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the postings of versions that have been superseded. Postings newer than the blog's indexed version
+     * belong to a reindex in progress and are kept. The live postings are copied into new arrays, as searches may
+     * still be reading the old ones.
+     */
+    private void compact(Postings list) {
+        long[] entries = new long[Math.max(4, Integer.highestOneBit(Math.max(1, list.size - list.stale)) * 2)];
+        int[] frequencies = new int[entries.length];
+        int kept = 0;
+        for (int i = 0; i < list.size; i++) {
+            Document document = documents.get((int) (list.entries[i] >>> 32));
+            if (document != null && document.version() - (int) list.entries[i] > 0) {
+                continue;
+            }
+            if (kept == entries.length) {
+                entries = Arrays.copyOf(entries, kept * 2);
+                frequencies = Arrays.copyOf(frequencies, kept * 2);
+            }
+            entries[kept] = list.entries[i];
+            frequencies[kept] = list.frequencies[i];
+            kept++;
+        }
+        list.entries = entries;
+        list.frequencies = frequencies;
+        list.size = kept;
+        list.stale = 0;
+        if (kept == 0) {
+            list.dropped = true;
+            list.shard.postings.remove(list.term, list);
+        }
+    }
+
+    /**
+     * Splits text into lower-cased runs of letters and digits, counting each in {@code counts}, and returns how
+     * many there were.
+     */
+    private static int tokenize(String text, Map<String, int[]> counts) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        var term = new StringBuilder();
+        int i = 0;
+        while (i <= text.length()) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.appendCodePoint(Character.toLowerCase(codePoint));
+                }
+            } else if (!term.isEmpty()) {
+                counts.computeIfAbsent(term.toString(), t -> new int[1])[0]++;
+                tokens++;
+                term.setLength(0);
+            }
+            i += i < text.length() ? Character.charCount(codePoint) : 1;
+        }
+        return tokens;
+    }
+
+    /**
+     * The postings of one term: blog id and version packed into a long, with the term frequency alongside.
+     */
+    private static final class Postings {
+        private final Shard shard;
+        private final String term;
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] entries = new long[4];
+        private int[] frequencies = new int[4];
+        private int size;
+        private int stale;
+        private boolean dropped;
+
+        private Postings(Shard shard, String term) {
+            this.shard = shard;
+            this.term = term;
+        }
+    }
+
+    /**
+     * Accumulates scores per blog id in open-addressed primitive arrays; blog ids start at 1, so 0 marks a free slot.
+     */
+    private static final class ScoreTable {
+        private int[] ids = new int[64];
+        private double[] scores = new double[64];
+        private int size;
+
+        void add(int id, double score) {
+            int slot = slot(ids, id);
+            if (ids[slot] == 0) {
+                ids[slot] = id;
+                size++;
+            }
+            scores[slot] += score;
+            if (size * 2 > ids.length) {
+                grow();
+            }
+        }
+
+        List<Hit> top(int from, int count) {
+            int wanted = (int) Math.min(size, (long) from + count);
+            if (from >= wanted) {
+                return List.of();
+            }
+            // a min-heap of the best slots seen so far, worst on top
+            int[] heap = new int[wanted];
+            int filled = 0;
+            for (int slot = 0; slot < ids.length; slot++) {
+                if (ids[slot] == 0) {
+                    continue;
+                }
+                if (filled < wanted) {
+                    heap[filled] = slot;
+                    siftUp(heap, filled++);
+                } else if (better(slot, heap[0])) {
+                    heap[0] = slot;
+                    siftDown(heap, filled, 0);
+                }
+            }
+            List<Hit> hits = new ArrayList<>(wanted - from);
+            int[] ranked = new int[filled];
+            for (int i = filled - 1; i >= 0; i--) {
+                ranked[i] = heap[0];
+                heap[0] = heap[i];
+                siftDown(heap, i, 0);
+            }
+            for (int i = from; i < filled; i++) {
+                hits.add(new Hit(ids[ranked[i]], scores[ranked[i]]));
+            }
+            return hits;
+        }
+
+        private boolean better(int a, int b) {
+            return scores[a] > scores[b] || scores[a] == scores[b] && ids[a] < ids[b];
+        }
+
+        private void siftUp(int[] heap, int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!better(heap[parent], heap[i])) {
+                    return;
+                }
+                swap(heap, parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size, int i) {
+            while (true) {
+                int worst = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (better(heap[worst], heap[child])) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(heap, worst, i);
+                i = worst;
+            }
+        }
+
+        private void grow() {
+            int[] oldIds = ids;
+            double[] oldScores = scores;
+            ids = new int[oldIds.length * 2];
+            scores = new double[oldIds.length * 2];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0) {
+                    int slot = slot(ids, oldIds[i]);
+                    ids[slot] = oldIds[i];
+                    scores[slot] = oldScores[i];
+                }
+            }
+        }
+
+        private static int slot(int[] ids, int id) {
+            int mask = ids.length - 1;
+            int hash = id * 0x9e3779b9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (ids[slot] != 0 && ids[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static void swap(int[] heap, int a, int b) {
+            int t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+}
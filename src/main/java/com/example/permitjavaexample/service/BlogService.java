@@ -1,40 +1,60 @@
 package com.example.permitjavaexample.service;
 
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.exception.PreconditionFailedException;
 import com.example.permitjavaexample.exception.ResourceNotFoundException;
+import com.example.permitjavaexample.exception.UnauthorizedException;
 import com.example.permitjavaexample.model.Blog;
 import com.example.permitjavaexample.model.Comment;
-import io.permit.sdk.Permit;
-import io.permit.sdk.api.PermitApiError;
-import io.permit.sdk.api.PermitContextError;
+import com.example.permitjavaexample.model.Page;
+import com.example.permitjavaexample.model.Versioned;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.search.BlogSearchIndex;
+import com.example.permitjavaexample.sync.PermitSyncOutbox;
+import com.example.permitjavaexample.sync.SyncOperation;
+import com.example.permitjavaexample.tenant.TenantContext;
 import io.permit.sdk.enforcement.Resource;
 import io.permit.sdk.enforcement.User;
-import io.permit.sdk.openapi.models.RelationshipTupleCreate;
-import io.permit.sdk.openapi.models.ResourceInstanceCreate;
-import io.permit.sdk.openapi.models.RoleAssignmentCreate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 public class BlogService {
-    private final List<Blog> blogs = new ArrayList<>();
-    private final List<Comment> comments = new ArrayList<>();
-    private final AtomicInteger blogIdCounter = new AtomicInteger();
-    private final AtomicInteger commentIdCounter = new AtomicInteger();
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    private final BlogRepository blogRepository;
+    private final CommentRepository commentRepository;
+    private final BlogSearchIndex searchIndex;
 
-    private final Resource.Builder blogResourceBuilder = new Resource.Builder("blog");
-    private final Resource.Builder commentResourceBuilder = new Resource.Builder("comment");
     private final UserService userService;
-    private final Permit permit;
+    private final PermitSyncOutbox permitSync;
+    private final boolean filterListingPerInstance;
 
+    @Autowired
+    public BlogService(BlogRepository blogRepository, CommentRepository commentRepository, BlogSearchIndex searchIndex,
+                       UserService userService, PermitSyncOutbox permitSync, PermitProperties properties) {
+        this(blogRepository, commentRepository, searchIndex, userService, permitSync,
+                properties.getListing().isFilterPerInstance());
+    }
 
-    public BlogService(UserService userService, Permit permit) {
+    public BlogService(BlogRepository blogRepository, CommentRepository commentRepository, BlogSearchIndex searchIndex,
+                       UserService userService, PermitSyncOutbox permitSync, boolean filterListingPerInstance) {
+        this.blogRepository = blogRepository;
+        this.commentRepository = commentRepository;
+        this.searchIndex = searchIndex;
         this.userService = userService;
-        this.permit = permit;
+        this.permitSync = permitSync;
+        this.filterListingPerInstance = filterListingPerInstance;
     }
 
     private void authorize(User user, String action, Resource resource) {
@@ -42,115 +62,241 @@ public class BlogService {
     }
 
     private void authorize(User user, String action, Blog blog) {
+        userService.authorize(user, action, blogResource(blog));
+    }
+
+    private void authorize(User user, String action, Blog blog, Comment comment) {
+        userService.authorize(user, action, commentResource(blog, comment));
+    }
+
+    // Every resource carries the tenant it is checked in; a blog's comments are in the blog's tenant.
+    private static Resource typeResource(String type, String tenant) {
+        return new Resource.Builder(type).withTenant(tenant).build();
+    }
+
+    private Resource blogResource(Blog blog) {
         var attributes = new HashMap<String, Object>();
         attributes.put("author", blog.getAuthor());
-        userService.authorize(user, action, blogResourceBuilder.withKey(blog.getId().toString()).withAttributes(attributes).build());
+        return new Resource.Builder("blog").withKey(blog.getId().toString()).withTenant(blog.getTenant())
+                .withAttributes(attributes).build();
     }
 
-    private void authorize(User user, String action, Comment comment) {
+    private Resource commentResource(Blog blog, Comment comment) {
         var attributes = new HashMap<String, Object>();
         attributes.put("author", comment.getAuthor());
-        userService.authorize(user, action, commentResourceBuilder.withKey(comment.getId().toString()).withAttributes(attributes).build());
+        return new Resource.Builder("comment").withKey(comment.getId().toString()).withTenant(blog.getTenant())
+                .withAttributes(attributes).build();
+    }
+
+    // Blogs of other tenants are not found, rather than forbidden, so ids do not reveal what other tenants store.
+    private Blog getBlogById(String tenant, int id) {
+        return blogRepository.findById(tenant, id).orElseThrow(() -> new ResourceNotFoundException("Blog with id " + id + " not found"));
     }
 
-    private Blog getBlogById(int id) {
-        return blogs.stream().filter(blog -> blog.getId().equals(id)).findFirst().orElseThrow(() -> new ResourceNotFoundException("Blog with id " + id + " not found"));
+    private Comment getCommentById(int blogId, int commentId) {
+        return commentRepository.findById(blogId, commentId).orElseThrow(() -> new ResourceNotFoundException("Comment with id " + commentId + " not found"));
     }
 
+    /**
+     * With {@code permit.listing.filter-per-instance} enabled every blog is checked individually, so instance-level
+     * rules (resource roles, own_blog-style conditions) decide what is listed; the checks go out in bulk batches.
+     */
     public List<Blog> getAllBlogs(User user) {
-        authorize(user, "read", blogResourceBuilder.build());
-        return new ArrayList<>(blogs);
+        String tenant = TenantContext.current();
+        if (filterListingPerInstance) {
+            return userService.filterAuthorized(user, "read", blogRepository.findAll(tenant), this::blogResource);
+        }
+        authorize(user, "read", typeResource("blog", tenant));
+        return blogRepository.findAll(tenant);
+    }
+
+    /**
+     * One page of the listing after {@code cursor}. In per-instance mode pages are filled from successive
+     * repository pages until {@code limit} visible blogs are found or the store is exhausted.
+     */
+    public Page<Blog> getBlogs(User user, Integer cursor, int limit) {
+        String tenant = TenantContext.current();
+        if (!filterListingPerInstance) {
+            authorize(user, "read", typeResource("blog", tenant));
+            return blogRepository.findPage(tenant, cursor, limit);
+        }
+        if (user == null) {
+            throw new UnauthorizedException("Not logged in");
+        }
+        List<Blog> visible = new ArrayList<>(limit);
+        Integer after = cursor;
+        while (visible.size() < limit) {
+            Page<Blog> candidates = blogRepository.findPage(tenant, after, limit);
+            for (Blog blog : userService.filterAuthorized(user, "read", candidates.items(), this::blogResource)) {
+                if (visible.size() == limit) {
+                    break;
+                }
+                visible.add(blog);
+            }
+            if (candidates.nextCursor() == null) {
+                return new Page<>(visible, visible.size() == limit ? visible.get(limit - 1).getId() : null);
+            }
+            after = candidates.nextCursor();
+        }
+        return new Page<>(visible, visible.get(limit - 1).getId());
+    }
+
+    /**
+     * Lazily streams every visible blog in id order, so callers can write them out without materializing the
+     * listing. Per-instance filtering, if enabled, happens page by page while the stream is consumed.
+     */
+    public Stream<Blog> streamBlogs(User user) {
+        // the stream is consumed on another thread, so the tenant is resolved now
+        String tenant = TenantContext.current();
+        if (!filterListingPerInstance) {
+            authorize(user, "read", typeResource("blog", tenant));
+            return blogRepository.stream(tenant);
+        }
+        if (user == null) {
+            throw new UnauthorizedException("Not logged in");
+        }
+        return Stream.iterate(blogRepository.findPage(tenant, null, STREAM_PAGE_SIZE), Objects::nonNull,
+                        page -> page.nextCursor() == null ? null : blogRepository.findPage(tenant, page.nextCursor(), STREAM_PAGE_SIZE))
+                .flatMap(page -> userService.filterAuthorized(user, "read", page.items(), this::blogResource).stream());
+    }
+
+    /**
+     * One page of the blogs matching {@code query}, best match first. The cursor is a position in the ranking rather
+     * than an id. In per-instance mode the ranking is walked a window at a time, each window authorized with one
+     * bulk check, until {@code limit} visible blogs are found or the matches run out.
+     */
+    public Page<Blog> searchBlogs(User user, String query, Integer cursor, int limit) {
+        String tenant = TenantContext.current();
+        if (!filterListingPerInstance) {
+            authorize(user, "read", typeResource("blog", tenant));
+        } else if (user == null) {
+            throw new UnauthorizedException("Not logged in");
+        }
+        List<Blog> found = new ArrayList<>(limit);
+        int position = cursor == null ? 0 : Math.max(0, cursor);
+        while (true) {
+            List<BlogSearchIndex.Hit> hits = searchIndex.search(tenant, query, position, limit);
+            List<Blog> candidates = new ArrayList<>(hits.size());
+            for (BlogSearchIndex.Hit hit : hits) {
+                blogRepository.findById(tenant, hit.blogId()).ifPresent(candidates::add);
+            }
+            Set<Blog> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+            visible.addAll(filterListingPerInstance
+                    ? userService.filterAuthorized(user, "read", candidates, this::blogResource)
+                    : candidates);
+            // every hit counts towards the position, including those whose blog was removed since the search
+            int next = 0;
+            for (BlogSearchIndex.Hit hit : hits) {
+                position++;
+                Blog blog = next < candidates.size() && candidates.get(next).getId() == hit.blogId() ? candidates.get(next++) : null;
+                if (blog != null && visible.contains(blog)) {
+                    found.add(blog);
+                    if (found.size() == limit) {
+                        return new Page<>(found, position);
+                    }
+                }
+            }
+            if (hits.size() < limit) {
+                return new Page<>(found, null);
+            }
+        }
     }
 
     public Blog getBlog(User user, int id) {
-        authorize(user, "read", blogResourceBuilder.build());
-        return getBlogById(id);
+        String tenant = TenantContext.current();
+        authorize(user, "read", typeResource("blog", tenant));
+        return getBlogById(tenant, id);
     }
 
     public Blog addBlog(User user, String content) {
-        authorize(user, "create", blogResourceBuilder.build());
-        Blog blog = new Blog(blogIdCounter.incrementAndGet(), user.getKey(), content);
-
-        try {
-            permit.api.resourceInstances.create(new ResourceInstanceCreate(blog.getId().toString(), "blog").withTenant("default"));
-            permit.api.roleAssignments.assign(new RoleAssignmentCreate("author", user.getKey()).withResourceInstance("blog:" + blog.getId()).withTenant("default"));
-        } catch (IOException | PermitApiError | PermitContextError e) {
-            // In production code you should consider action atomicity, and rollback the action.
-            throw new RuntimeException("Failed to create resource instance or role assignment: " + e.getMessage());
-        }
-        blogs.add(blog);
+        String tenant = TenantContext.current();
+        authorize(user, "create", typeResource("blog", tenant));
+        Blog blog = new Blog(blogRepository.nextId(tenant), tenant, user.getKey(), content);
+
+        permitSync.submit(
+                new SyncOperation.CreateResourceInstance("blog", blog.getId().toString(), tenant),
+                new SyncOperation.AssignResourceRole("author", user.getKey(), "blog:" + blog.getId(), tenant));
+        blogRepository.save(blog);
+        searchIndex.reindex(blog.getId());
         return blog;
     }
 
-    public Blog updateBlog(User user, int id, String content) {
-        Blog blog = getBlogById(id);
+    /**
+     * Replaces the content if the blog is still at {@code expectedVersion} ({@link Versioned#ANY_VERSION} for an
+     * unconditional update).
+     */
+    public Blog updateBlog(User user, int id, String content, long expectedVersion) {
+        Blog blog = getBlogById(TenantContext.current(), id);
         authorize(user, "update", blog);
-        blog.setContent(content);
+        if (!blogRepository.updateContent(blog, content, expectedVersion)) {
+            // a blog removed in the meantime is not found rather than changed
+            getBlogById(blog.getTenant(), id);
+            throw new PreconditionFailedException("Blog with id " + id + " is at version " + blog.getVersion());
+        }
+        searchIndex.reindex(id);
         return blog;
     }
 
     public void deleteBlog(User user, int id) {
-        boolean isDeleted = blogs.removeIf(blog -> {
-            if (blog.getId().equals(id)) {
-                authorize(user, "delete", blog);
-                return true;
-            } else {
-                return false;
-            }
-        });
-        if (!isDeleted) {
+        Blog blog = getBlogById(TenantContext.current(), id);
+        authorize(user, "delete", blog);
+        if (!blogRepository.remove(blog)) {
             throw new ResourceNotFoundException("Blog with id " + id + " not found");
         }
-        try {
-            permit.api.resourceInstances.delete("blog:" + id);
-        } catch (IOException | PermitApiError | PermitContextError e) {
-            // In production code you should consider action atomicity, and rollback the action.
-            throw new RuntimeException(e);
-        }
+        commentRepository.removeBlog(id);
+        searchIndex.reindex(id);
+        permitSync.submit(new SyncOperation.DeleteResourceInstance("blog:" + id, blog.getTenant()));
+    }
+
+    /**
+     * One page of the blog's comments after {@code cursor}, oldest first. Comments are not part of the blog itself,
+     * so a blog with many of them costs nothing to read or list.
+     */
+    public Page<Comment> getComments(User user, int blogId, Integer cursor, int limit) {
+        String tenant = TenantContext.current();
+        authorize(user, "read", typeResource("blog", tenant));
+        getBlogById(tenant, blogId);
+        return commentRepository.findPage(blogId, cursor, limit);
     }
 
     public Comment addComment(User user, int blogId, String content) {
-        authorize(user, "create", commentResourceBuilder.build());
-        Blog blog = getBlogById(blogId);
-        Comment comment = new Comment(commentIdCounter.incrementAndGet(), user.getKey(), content);
-        try {
-
-            permit.api.resourceInstances.create(new ResourceInstanceCreate(comment.getId().toString(), "comment").withTenant("default"));
-            permit.api.relationshipTuples.create(new RelationshipTupleCreate("blog:" + blogId, "parent", "comment:" + commentIdCounter));
-        } catch (IOException | PermitApiError | PermitContextError e) {
-            // In production code you should consider action atomicity, and rollback the action.
-            throw new RuntimeException(e);
+        String tenant = TenantContext.current();
+        authorize(user, "create", typeResource("comment", tenant));
+        Blog blog = getBlogById(tenant, blogId);
+        Comment comment = new Comment(commentRepository.nextId(tenant), blogId, user.getKey(), content);
+        permitSync.submit(
+                new SyncOperation.CreateResourceInstance("comment", comment.getId().toString(), tenant),
+                new SyncOperation.CreateRelationshipTuple("blog:" + blogId, "parent", "comment:" + comment.getId(), tenant));
+        if (!commentRepository.save(blog, comment)) {
+            // the blog was deleted in the meantime
+            permitSync.submit(new SyncOperation.DeleteResourceInstance("comment:" + comment.getId(), tenant));
+            throw new ResourceNotFoundException("Blog with id " + blogId + " not found");
         }
-        blog.addComment(comment);
+        searchIndex.reindex(blogId);
         return comment;
     }
 
-    public Comment updateComment(User user, int blogId, int commentId, String content) {
-        Blog blog = getBlogById(blogId);
-        Comment comment = blog.getComments().stream().filter(c -> c.getId().equals(commentId)).findFirst().orElseThrow(() -> new ResourceNotFoundException("Comment with id " + commentId + " not found"));
-        authorize(user, "update", comment);
-        comment.setContent(content);
+    public Comment updateComment(User user, int blogId, int commentId, String content, long expectedVersion) {
+        Blog blog = getBlogById(TenantContext.current(), blogId);
+        Comment comment = getCommentById(blogId, commentId);
+        authorize(user, "update", blog, comment);
+        if (!commentRepository.update(comment, content, expectedVersion)) {
+            // a comment removed in the meantime is not found rather than changed
+            getCommentById(blogId, commentId);
+            throw new PreconditionFailedException("Comment with id " + commentId + " is at version " + comment.getVersion());
+        }
+        searchIndex.reindex(blogId);
         return comment;
     }
 
     public void deleteComment(User user, int blogId, int commentId) {
-        Blog blog = getBlogById(blogId);
-        boolean isDeleted = blog.getComments().removeIf(comment -> {
-            if (comment.getId().equals(commentId)) {
-                authorize(user, "delete", comment);
-                return true;
-            } else {
-                return false;
-            }
-        });
-        if (!isDeleted) {
+        Blog blog = getBlogById(TenantContext.current(), blogId);
+        Comment comment = getCommentById(blogId, commentId);
+        authorize(user, "delete", blog, comment);
+        if (!commentRepository.remove(comment)) {
             throw new ResourceNotFoundException("Comment with id " + commentId + " not found");
         }
-        try {
-            permit.api.resourceInstances.delete("comment:" + commentId);
-        } catch (IOException | PermitApiError | PermitContextError e) {
-            // In production code you should consider action atomicity, and rollback the action.
-            throw new RuntimeException(e);
-        }
+        searchIndex.reindex(blogId);
+        permitSync.submit(new SyncOperation.DeleteResourceInstance("comment:" + commentId, blog.getTenant()));
     }
 }
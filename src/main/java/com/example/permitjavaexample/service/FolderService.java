@@ -1,35 +1,49 @@
 package com.example.permitjavaexample.service;
 
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.exception.PreconditionFailedException;
 import com.example.permitjavaexample.exception.ResourceNotFoundException;
+import com.example.permitjavaexample.exception.UnauthorizedException;
 import com.example.permitjavaexample.model.Folder;
-import io.permit.sdk.Permit;
-import io.permit.sdk.api.PermitApiError;
-import io.permit.sdk.api.PermitContextError;
+import com.example.permitjavaexample.model.Page;
+import com.example.permitjavaexample.model.Versioned;
+import com.example.permitjavaexample.repository.FolderRepository;
+import com.example.permitjavaexample.sync.PermitSyncOutbox;
+import com.example.permitjavaexample.sync.SyncOperation;
+import com.example.permitjavaexample.tenant.TenantContext;
 import io.permit.sdk.enforcement.Resource;
 import io.permit.sdk.enforcement.User;
-import io.permit.sdk.openapi.models.ResourceInstanceCreate;
-import io.permit.sdk.openapi.models.RoleAssignmentCreate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @Service
 public class FolderService {
-    private final List<Folder> folders = new ArrayList<>();
-    private final AtomicInteger folderIdCounter = new AtomicInteger();
+    private static final int STREAM_PAGE_SIZE = 500;
 
-    private final Resource.Builder folderBuilder = new Resource.Builder("folder");
+    private final FolderRepository folderRepository;
 
     private final UserService userService;
-    private final Permit permit;
+    private final PermitSyncOutbox permitSync;
+    private final boolean filterListingPerInstance;
 
-    public FolderService(UserService userService, Permit permit) {
+    @Autowired
+    public FolderService(FolderRepository folderRepository, UserService userService, PermitSyncOutbox permitSync,
+                         PermitProperties properties) {
+        this(folderRepository, userService, permitSync, properties.getListing().isFilterPerInstance());
+    }
+
+    public FolderService(FolderRepository folderRepository, UserService userService, PermitSyncOutbox permitSync,
+                         boolean filterListingPerInstance) {
+        this.folderRepository = folderRepository;
         this.userService = userService;
-        this.permit = permit;
+        this.permitSync = permitSync;
+        this.filterListingPerInstance = filterListingPerInstance;
     }
 
     private void authorize(User user, String action, Resource resource) {
@@ -37,33 +51,92 @@ public class FolderService {
     }
 
     private void authorize(User user, String action, Folder folder) {
+        userService.authorize(user, action, folderResource(folder));
+    }
+
+    // Every resource carries the tenant it is checked in.
+    private static Resource folderType(String tenant) {
+        return new Resource.Builder("folder").withTenant(tenant).build();
+    }
+
+    private Resource folderResource(Folder folder) {
         var attributes = new HashMap<String, Object>();
         attributes.put("author", folder.getAuthor());
-        userService.authorize(user, action, folderBuilder.withKey(folder.getId().toString()).withAttributes(attributes).build());
+        return new Resource.Builder("folder").withKey(folder.getId().toString()).withTenant(folder.getTenant())
+                .withAttributes(attributes).build();
     }
 
     public Folder createFolder(User user, String name) {
-        authorize(user, "create", folderBuilder.build());
-        Folder folder = new Folder(folderIdCounter.incrementAndGet(), user.getKey(), name);
-
-        try {
-            permit.api.resourceInstances.create(new ResourceInstanceCreate(folder.getId().toString(), "folder").withTenant("default"));
-            permit.api.roleAssignments.assign(new RoleAssignmentCreate("author", user.getKey()).withResourceInstance("folder:" + folder.getId()).withTenant("default"));
-        } catch (IOException | PermitApiError | PermitContextError e) {
-            // In production code you should consider action atomicity, and rollback the action.
-            throw new RuntimeException("Failed to create resource instance or role assignment: " + e.getMessage());
-        }
-        folders.add(folder);
+        String tenant = TenantContext.current();
+        authorize(user, "create", folderType(tenant));
+        Folder folder = new Folder(folderRepository.nextId(tenant), tenant, user.getKey(), name);
+
+        permitSync.submit(
+                new SyncOperation.CreateResourceInstance("folder", folder.getId().toString(), tenant),
+                new SyncOperation.AssignResourceRole("author", user.getKey(), "folder:" + folder.getId(), tenant));
+        folderRepository.save(folder);
         return folder;
     }
 
+    // Folders of other tenants are not found, rather than forbidden, so ids do not reveal what other tenants store.
     private Folder getFolderById(int id) {
-        return folders.stream().filter(folder -> folder.getId().equals(id)).findFirst().orElseThrow(() -> new ResourceNotFoundException("Folder with id " + id + " not found"));
+        return folderRepository.findById(TenantContext.current(), id)
+                .orElseThrow(() -> new ResourceNotFoundException("Folder with id " + id + " not found"));
     }
     
+    /**
+     * With {@code permit.listing.filter-per-instance} enabled the listing holds the folders the user may read, such
+     * as their own and those shared with them, rather than requiring read access to every folder.
+     */
     public List<Folder> getAllFolders(User user) {
-        authorize(user, "read", folderBuilder.build());
-        return new ArrayList<>(folders);
+        String tenant = TenantContext.current();
+        if (filterListingPerInstance) {
+            return userService.filterAuthorized(user, "read", folderRepository.findAll(tenant), this::folderResource);
+        }
+        authorize(user, "read", folderType(tenant));
+        return folderRepository.findAll(tenant);
+    }
+
+    public Page<Folder> getFolders(User user, Integer cursor, int limit) {
+        String tenant = TenantContext.current();
+        if (!filterListingPerInstance) {
+            authorize(user, "read", folderType(tenant));
+            return folderRepository.findPage(tenant, cursor, limit);
+        }
+        if (user == null) {
+            throw new UnauthorizedException("Not logged in");
+        }
+        List<Folder> visible = new ArrayList<>(limit);
+        Integer after = cursor;
+        while (visible.size() < limit) {
+            Page<Folder> candidates = folderRepository.findPage(tenant, after, limit);
+            for (Folder folder : userService.filterAuthorized(user, "read", candidates.items(), this::folderResource)) {
+                if (visible.size() == limit) {
+                    break;
+                }
+                visible.add(folder);
+            }
+            if (candidates.nextCursor() == null) {
+                return new Page<>(visible, visible.size() == limit ? visible.get(limit - 1).getId() : null);
+            }
+            after = candidates.nextCursor();
+        }
+        return new Page<>(visible, visible.get(limit - 1).getId());
+    }
+
+    public Stream<Folder> streamFolders(User user) {
+        // the stream is consumed on another thread, so the tenant is resolved now
+        String tenant = TenantContext.current();
+        if (!filterListingPerInstance) {
+            authorize(user, "read", folderType(tenant));
+            return folderRepository.stream(tenant);
+        }
+        if (user == null) {
+            throw new UnauthorizedException("Not logged in");
+        }
+        return Stream.iterate(folderRepository.findPage(tenant, null, STREAM_PAGE_SIZE), Objects::nonNull,
+                        page -> page.nextCursor() == null ? null : folderRepository.findPage(tenant, page.nextCursor(), STREAM_PAGE_SIZE))
+                .flatMap(page -> userService.filterAuthorized(user, "read", page.items(), this::folderResource).stream());
     }
 
     public Folder getFolder(User user, int id) {
@@ -72,42 +145,34 @@ public class FolderService {
         return folder;
     }
 
-    public Folder updateFolder(User user, int id, String name) {
+    /**
+     * Renames the folder if it is still at {@code expectedVersion} ({@link Versioned#ANY_VERSION} for an
+     * unconditional rename).
+     */
+    public Folder updateFolder(User user, int id, String name, long expectedVersion) {
         Folder folder = getFolderById(id);
         authorize(user, "update", folder);
-        folder.setName(name);
+        if (!folderRepository.rename(folder, name, expectedVersion)) {
+            // a folder removed in the meantime is not found rather than renamed
+            getFolderById(id);
+            throw new PreconditionFailedException("Folder with id " + id + " is at version " + folder.getVersion());
+        }
         return folder;
     }
 
     public void deleteFolder(User user, int id) {
-        boolean isDeleted = folders.removeIf(folder -> {
-            if (folder.getId().equals(id)) {
-                authorize(user, "delete", folder);
-                return true;
-            } else {
-                return false;
-            }
-        });
-        if (!isDeleted) {
+        Folder folder = getFolderById(id);
+        authorize(user, "delete", folder);
+        if (!folderRepository.remove(folder)) {
             throw new ResourceNotFoundException("Folder with id " + id + " not found");
         }
-        try {
-            permit.api.resourceInstances.delete("folder:" + id);
-        } catch (IOException | PermitApiError | PermitContextError e) {
-            // In production code you should consider action atomicity, and rollback the action.
-            throw new RuntimeException(e);
-        }
+        permitSync.submit(new SyncOperation.DeleteResourceInstance("folder:" + id, folder.getTenant()));
     }
 
     public void share(User user, int folderId, String sharedUserId, String role) {
-        try {
-            Folder folder = getFolderById(folderId);
-            authorize(user, "share", folder);
-            permit.api.roleAssignments.assign(new RoleAssignmentCreate(role, String.valueOf(sharedUserId))
-                    .withResourceInstance("folder:" + folderId).withTenant("default"));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        Folder folder = getFolderById(folderId);
+        authorize(user, "share", folder);
+        permitSync.submit(new SyncOperation.AssignResourceRole(role, sharedUserId, "folder:" + folderId, folder.getTenant()));
     }
 
 }
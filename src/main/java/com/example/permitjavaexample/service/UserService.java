@@ -1,22 +1,72 @@
 package com.example.permitjavaexample.service;
 
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.DecisionKey;
+import com.example.permitjavaexample.authz.InFlightChecks;
+import com.example.permitjavaexample.authz.PdpClient;
+import com.example.permitjavaexample.authz.PermissionPrefetch;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.config.PermitProperties;
 import com.example.permitjavaexample.exception.ForbiddenAccessException;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
 import com.example.permitjavaexample.exception.UnauthorizedException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.tenant.TenantContext;
 import io.permit.sdk.Permit;
 import io.permit.sdk.api.PermitApiError;
 import io.permit.sdk.api.PermitContextError;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Context;
 import io.permit.sdk.enforcement.Resource;
 import io.permit.sdk.enforcement.User;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
 @Service
 public class UserService {
     private final Permit permit;
+    private final PdpClient pdpClient;
+    private final DecisionCache decisionCache;
+    private final InFlightChecks inFlightChecks;
+    private final PermissionPrefetch permissionPrefetch;
+    private final LocalPolicyEvaluator localEvaluator;
+    private final AuthzMetrics metrics;
+    private final int bulkChunkSize;
 
-    public UserService(Permit permit) {
+    @Autowired
+    public UserService(Permit permit, PdpClient pdpClient, DecisionCache decisionCache, InFlightChecks inFlightChecks,
+                       PermissionPrefetch permissionPrefetch, LocalPolicyEvaluator localEvaluator, AuthzMetrics metrics,
+                       PermitProperties properties) {
+        this(permit, pdpClient, decisionCache, inFlightChecks, permissionPrefetch, localEvaluator, metrics,
+                properties.getListing().getBulkChunkSize());
+    }
+
+    public UserService(Permit permit, PdpClient pdpClient, DecisionCache decisionCache, InFlightChecks inFlightChecks,
+                       PermissionPrefetch permissionPrefetch, LocalPolicyEvaluator localEvaluator, AuthzMetrics metrics,
+                       int bulkChunkSize) {
         this.permit = permit;
+        this.pdpClient = pdpClient;
+        this.decisionCache = decisionCache;
+        this.inFlightChecks = inFlightChecks;
+        this.permissionPrefetch = permissionPrefetch;
+        this.localEvaluator = localEvaluator;
+        this.metrics = metrics;
+        this.bulkChunkSize = Math.max(1, bulkChunkSize);
+    }
+
+    public UserService(Permit permit, PdpClient pdpClient, DecisionCache decisionCache, InFlightChecks inFlightChecks,
+                       LocalPolicyEvaluator localEvaluator, AuthzMetrics metrics, int bulkChunkSize) {
+        this(permit, pdpClient, decisionCache, inFlightChecks, PermissionPrefetch.disabled(), localEvaluator, metrics, bulkChunkSize);
+    }
+
+    public UserService(Permit permit, PdpClient pdpClient, DecisionCache decisionCache, LocalPolicyEvaluator localEvaluator,
+                       AuthzMetrics metrics, int bulkChunkSize) {
+        this(permit, pdpClient, decisionCache, new InFlightChecks(true), localEvaluator, metrics, bulkChunkSize);
     }
 
     public User login(String key) {
@@ -25,33 +75,211 @@ public class UserService {
 
     public User signup(String key) {
         var user = new User.Builder(key).build();
+        long start = System.nanoTime();
         try {
             permit.api.users.sync(user);
         } catch (PermitContextError | PermitApiError | IOException e) {
+            metrics.recordWrite("sync_user", "failed", System.nanoTime() - start);
             throw new RuntimeException("Failed to create user", e);
         }
+        metrics.recordWrite("sync_user", "success", System.nanoTime() - start);
+        localEvaluator.userSynced(key);
         return user;
     }
 
+    /**
+     * Assigns the role in the tenant of the current request, and in no other.
+     */
     public void assignRole(User user, String role) {
+        String tenant = TenantContext.current();
+        long start = System.nanoTime();
         try {
-            permit.api.users.assignRole(user.getKey(), role, "default");
+            permit.api.users.assignRole(user.getKey(), role, tenant);
         } catch (PermitApiError | PermitContextError | IOException e) {
+            metrics.recordWrite("assign_role", "failed", System.nanoTime() - start);
             throw new RuntimeException("Failed to assign role to user", e);
         }
+        metrics.recordWrite("assign_role", "success", System.nanoTime() - start);
+        decisionCache.invalidateUser(tenant, user.getKey());
+        permissionPrefetch.invalidateUser(tenant, user.getKey());
+        localEvaluator.tenantRoleAssigned(user.getKey(), role, tenant);
     }
 
     public void authorize(User user, String action, Resource resource) {
+        if (!isPermitted(user, action, resource)) {
+            throw new ForbiddenAccessException("Access denied");
+        }
+    }
+
+    /**
+     * The decision {@link #authorize} enforces: from the embedded evaluator if it can decide, else from the
+     * decision cache, else from the PDP; identical checks that miss the cache at the same time share one PDP
+     * request. If the PDP is unavailable, an expired decision still within
+     * {@code permit.decision-cache.stale-if-error} is used; failing that, {@link PdpUnavailableException} is thrown.
+     */
+    public boolean isPermitted(User user, String action, Resource resource) {
+        if (user == null) {
+            throw new UnauthorizedException("Not logged in");
+        }
+        long start = System.nanoTime();
+        Boolean permitted = localDecision(user, action, resource);
+        AuthzMetrics.Source source = AuthzMetrics.Source.LOCAL;
+        DecisionKey key = null;
+        if (permitted == null) {
+            key = DecisionKey.of(user, action, resource);
+            permitted = decisionCache.get(key);
+            source = AuthzMetrics.Source.CACHE;
+        }
+        if (permitted == null) {
+            source = AuthzMetrics.Source.PDP;
+            long generation = decisionCache.generation(key);
+            try {
+                permitted = inFlightChecks.check(key, generation, () -> timedCheck(user, action, resource));
+                decisionCache.put(key, permitted, generation);
+            } catch (PdpUnavailableException | PermitApiError | IOException e) {
+                permitted = decisionCache.getStale(key);
+                if (permitted == null) {
+                    metrics.recordDecision(resource.getType(), action, AuthzMetrics.Decision.ERROR, source, System.nanoTime() - start);
+                    throw unavailable(e);
+                }
+                source = AuthzMetrics.Source.STALE;
+                metrics.recordResilienceEvent("stale_served");
+            }
+        }
+        metrics.recordDecision(resource.getType(), action,
+                permitted ? AuthzMetrics.Decision.ALLOW : AuthzMetrics.Decision.DENY, source, System.nanoTime() - start);
+        return permitted;
+    }
+
+    /**
+     * Returns the items the user may perform {@code action} on, in their original order. Decisions the
+     * embedded evaluator can make and cached decisions are reused. With {@code permit.prefetch.enabled} on, the
+     * rest is looked up in the user's prefetched permissions when the action is one they cover; everything else
+     * is sent to the PDP in bulk requests of at most {@code permit.listing.bulk-chunk-size} checks, so a listing
+     * costs a handful of round trips instead of one per item.
+     */
+    public <T> List<T> filterAuthorized(User user, String action, List<T> items, Function<T, Resource> toResource) {
         if (user == null) {
             throw new UnauthorizedException("Not logged in");
         }
+        int size = items.size();
+        boolean[] permitted = new boolean[size];
+        List<Integer> pending = new ArrayList<>();
+        List<Resource> resources = new ArrayList<>(size);
+        List<DecisionKey> keys = new ArrayList<>(size);
+        PermissionPrefetch.Grants grants = null;
+        boolean prefetched = false;
+        for (int i = 0; i < size; i++) {
+            Resource resource = toResource.apply(items.get(i));
+            resources.add(resource);
+            Boolean local = localDecision(user, action, resource);
+            if (local == null && !prefetched) {
+                grants = permissionPrefetch.grants(user, tenantOf(resource), resource.getType(), action);
+                prefetched = true;
+            }
+            if (local == null && grants != null) {
+                local = grants.permits(resource.getKey());
+            }
+            if (local != null) {
+                keys.add(null);
+                permitted[i] = local;
+                continue;
+            }
+            DecisionKey key = DecisionKey.of(user, action, resource);
+            keys.add(key);
+            Boolean cached = decisionCache.get(key);
+            if (cached == null) {
+                pending.add(i);
+            } else {
+                permitted[i] = cached;
+            }
+        }
+
+        for (int from = 0; from < pending.size(); from += bulkChunkSize) {
+            List<Integer> chunk = pending.subList(from, Math.min(from + bulkChunkSize, pending.size()));
+            List<CheckQuery> checks = new ArrayList<>(chunk.size());
+            for (int index : chunk) {
+                checks.add(new CheckQuery(user, action, resources.get(index), new Context()));
+            }
+            long[] generations = new long[chunk.size()];
+            for (int j = 0; j < chunk.size(); j++) {
+                generations[j] = decisionCache.generation(keys.get(chunk.get(j)));
+            }
+            long pdpStart = System.nanoTime();
+            List<Boolean> decisions;
+            try {
+                decisions = pdpClient.bulkCheck(checks);
+                metrics.recordPdpRequest("bulk_check", true, System.nanoTime() - pdpStart);
+            } catch (PdpUnavailableException | PermitApiError | IOException e) {
+                metrics.recordPdpRequest("bulk_check", false, System.nanoTime() - pdpStart);
+                decisions = staleDecisions(chunk, keys);
+                if (decisions == null) {
+                    throw unavailable(e);
+                }
+            }
+            if (decisions.size() != chunk.size()) {
+                throw new RuntimeException("Failed to authorize user: expected " + chunk.size() + " bulk decisions, got " + decisions.size());
+            }
+            for (int j = 0; j < chunk.size(); j++) {
+                int index = chunk.get(j);
+                permitted[index] = Boolean.TRUE.equals(decisions.get(j));
+                decisionCache.put(keys.get(index), permitted[index], generations[j]);
+            }
+        }
+
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (permitted[i]) {
+                result.add(items.get(i));
+            }
+        }
+        return result;
+    }
+
+    private boolean timedCheck(User user, String action, Resource resource) throws IOException, PermitApiError {
+        long start = System.nanoTime();
         try {
-            var permitted = permit.check(user, action, resource);
-            if (!permitted) {
-                throw new ForbiddenAccessException("Access denied");
+            boolean permitted = pdpClient.check(user, action, resource);
+            metrics.recordPdpRequest("check", true, System.nanoTime() - start);
+            return permitted;
+        } catch (RuntimeException | PermitApiError | IOException e) {
+            metrics.recordPdpRequest("check", false, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Stale decisions for every item of the chunk, or {@code null} if any of them has none.
+     */
+    private List<Boolean> staleDecisions(List<Integer> chunk, List<DecisionKey> keys) {
+        List<Boolean> decisions = new ArrayList<>(chunk.size());
+        for (int index : chunk) {
+            Boolean stale = decisionCache.getStale(keys.get(index));
+            if (stale == null) {
+                return null;
             }
-        } catch (PermitApiError | IOException e) {
-            throw new RuntimeException("Failed to authorize user", e);
+            decisions.add(stale);
         }
+        metrics.recordResilienceEvent("stale_served");
+        return decisions;
+    }
+
+    private static PdpUnavailableException unavailable(Exception e) {
+        return e instanceof PdpUnavailableException unavailable ? unavailable : new PdpUnavailableException("Failed to authorize user", e);
+    }
+
+    private static String tenantOf(Resource resource) {
+        return resource.getTenant() == null ? TenantContext.DEFAULT : resource.getTenant();
+    }
+
+    /**
+     * The embedded evaluator's answer, or {@code null} if it cannot decide and the PDP has to be asked.
+     */
+    private Boolean localDecision(User user, String action, Resource resource) {
+        return switch (localEvaluator.evaluate(user, action, resource)) {
+            case ALLOW -> true;
+            case DENY -> false;
+            case UNKNOWN -> null;
+        };
     }
 }
@@ -0,0 +1,167 @@
+package com.example.permitjavaexample.storage;
+
+import com.example.permitjavaexample.repository.Journal.Change;
+import com.example.permitjavaexample.repository.Journal.Change.*;
+import com.example.permitjavaexample.tenant.TenantContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * Binary form of a {@link Change}: a one-byte tag followed by its fields, ints as four bytes, longs as eight and
+ * strings as a length-prefixed UTF-8 run ({@code -1} for {@code null}).
+ * <p>
+ * Saved blogs and folders are written with the tenant they belong to, and updates with the version they set; the
+ * tags they had before there were tenants or versions are still read, as changes of the default tenant and updates
+ * to {@link #UNVERSIONED}.
+ */
+final class ChangeCodec {
+    private static final byte BLOG_SAVED = 1;
+    private static final byte BLOG_UPDATED = 2;
+    private static final byte BLOG_REMOVED = 3;
+    private static final byte COMMENT_SAVED = 4;
+    private static final byte COMMENT_UPDATED = 5;
+    private static final byte COMMENT_REMOVED = 6;
+    private static final byte FOLDER_SAVED = 7;
+    private static final byte FOLDER_UPDATED = 8;
+    private static final byte FOLDER_REMOVED = 9;
+    private static final byte BLOG_SAVED_IN_TENANT = 10;
+    private static final byte FOLDER_SAVED_IN_TENANT = 11;
+    private static final byte BLOG_UPDATED_TO_VERSION = 12;
+    private static final byte COMMENT_UPDATED_TO_VERSION = 13;
+    private static final byte FOLDER_UPDATED_TO_VERSION = 14;
+
+    /**
+     * The version of everything written before there were versions.
+     */
+    static final long UNVERSIONED = 1;
+
+    private ChangeCodec() {
+    }
+
+    static byte[] encode(Change change) {
+        var out = new Encoder();
+        switch (change) {
+            case BlogSaved c -> out.tag(BLOG_SAVED_IN_TENANT).putInt(c.id()).putString(c.tenant()).putString(c.author()).putString(c.content());
+            case BlogUpdated c -> out.tag(BLOG_UPDATED_TO_VERSION).putInt(c.id()).putString(c.content()).putLong(c.version());
+            case BlogRemoved c -> out.tag(BLOG_REMOVED).putInt(c.id());
+            case CommentSaved c -> out.tag(COMMENT_SAVED).putInt(c.blogId()).putInt(c.id()).putString(c.author()).putString(c.content());
+            case CommentUpdated c -> out.tag(COMMENT_UPDATED_TO_VERSION).putInt(c.blogId()).putInt(c.id()).putString(c.content()).putLong(c.version());
+            case CommentRemoved c -> out.tag(COMMENT_REMOVED).putInt(c.blogId()).putInt(c.id());
+            case FolderSaved c -> out.tag(FOLDER_SAVED_IN_TENANT).putInt(c.id()).putString(c.tenant()).putString(c.author()).putString(c.name());
+            case FolderUpdated c -> out.tag(FOLDER_UPDATED_TO_VERSION).putInt(c.id()).putString(c.name()).putLong(c.version());
+            case FolderRemoved c -> out.tag(FOLDER_REMOVED).putInt(c.id());
+        }
+        return out.toByteArray();
+    }
+
+    static Change decode(ByteBuffer in) {
+        byte tag = in.get();
+        return switch (tag) {
+            case BLOG_SAVED -> new BlogSaved(in.getInt(), TenantContext.DEFAULT, getString(in), getString(in));
+            case BLOG_SAVED_IN_TENANT -> new BlogSaved(in.getInt(), getString(in), getString(in), getString(in));
+            case BLOG_UPDATED -> new BlogUpdated(in.getInt(), getString(in), UNVERSIONED);
+            case BLOG_UPDATED_TO_VERSION -> new BlogUpdated(in.getInt(), getString(in), in.getLong());
+            case BLOG_REMOVED -> new BlogRemoved(in.getInt());
+            case COMMENT_SAVED -> new CommentSaved(in.getInt(), in.getInt(), getString(in), getString(in));
+            case COMMENT_UPDATED -> new CommentUpdated(in.getInt(), in.getInt(), getString(in), UNVERSIONED);
+            case COMMENT_UPDATED_TO_VERSION -> new CommentUpdated(in.getInt(), in.getInt(), getString(in), in.getLong());
+            case COMMENT_REMOVED -> new CommentRemoved(in.getInt(), in.getInt());
+            case FOLDER_SAVED -> new FolderSaved(in.getInt(), TenantContext.DEFAULT, getString(in), getString(in));
+            case FOLDER_SAVED_IN_TENANT -> new FolderSaved(in.getInt(), getString(in), getString(in), getString(in));
+            case FOLDER_UPDATED -> new FolderUpdated(in.getInt(), getString(in), UNVERSIONED);
+            case FOLDER_UPDATED_TO_VERSION -> new FolderUpdated(in.getInt(), getString(in), in.getLong());
+            case FOLDER_REMOVED -> new FolderRemoved(in.getInt());
+            default -> throw new IllegalStateException("Unknown change tag " + tag);
+        };
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(in.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * A growable byte array with the few writes the formats here need.
+     */
+    static final class Encoder {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        Encoder tag(byte tag) {
+            ensure(1);
+            bytes[size++] = tag;
+            return this;
+        }
+
+        Encoder putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        Encoder putLong(long value) {
+            putInt((int) (value >>> 32));
+            return putInt((int) value);
+        }
+
+        Encoder putString(String value) {
+            if (value == null) {
+                return putInt(-1);
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putInt(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        /**
+         * Writes the bytes so far to {@code out}, adding them to {@code crc} if there is one.
+         */
+        void writeTo(OutputStream out, Checksum crc) throws IOException {
+            if (crc != null) {
+                crc.update(bytes, 0, size);
+            }
+            out.write(bytes, 0, size);
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.permitjavaexample.storage;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.repository.FolderRepository;
+import com.example.permitjavaexample.repository.Journal;
+import com.example.permitjavaexample.repository.Journal.Change.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Makes the blog, comment and folder repositories durable, when {@code storage.enabled} is on.
+ * <p>
+ * On startup the newest snapshot in {@code storage.directory} is loaded and the log segments written since are
+ * replayed on top of it, which brings back the data and the id sequences; then the store attaches itself to the
+ * repositories as their {@link Journal}. Every change is applied in memory and appended to the {@link WriteLog}
+ * under one lock, so the log has the changes in the order they were applied; room is made in the log first, so a
+ * change the log cannot take is refused instead of being kept in memory only. With {@code storage.fsync} on the
+ * change is on disk before the request that made it returns; concurrent writers share their fsyncs. Every
+ * {@code storage.snapshot-every} changes a snapshot is written in the background, after which older snapshots and
+ * the log segments it covers are deleted, so replay stays short however long the application runs.
+ */
+@Component
+public class DurableStore implements Journal {
+    private static final Logger log = LoggerFactory.getLogger(DurableStore.class);
+
+    private final BlogRepository blogs;
+    private final CommentRepository comments;
+    private final FolderRepository folders;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final long snapshotEvery;
+
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final AtomicLong sinceSnapshot = new AtomicLong();
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    private WriteLog writeLog;
+
+    @Autowired
+    public DurableStore(BlogRepository blogs, CommentRepository comments, FolderRepository folders,
+                        @Value("${storage.enabled:false}") boolean enabled,
+                        @Value("${storage.directory:data}") Path directory,
+                        @Value("${storage.segment-size:64MB}") DataSize segmentSize,
+                        @Value("${storage.fsync:true}") boolean fsync,
+                        @Value("${storage.snapshot-every:100000}") long snapshotEvery) {
+        this.blogs = blogs;
+        this.comments = comments;
+        this.folders = folders;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, segmentSize.toBytes());
+        this.fsync = fsync;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+    }
+
+    /**
+     * Restores the repositories and starts recording their changes.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        long fromSegment = Snapshot.restoreLatest(directory, blogs, comments, folders).orElse(0L);
+        var replayed = new AtomicLong();
+        writeLog = WriteLog.open(directory, segmentSize);
+        writeLog.replay(fromSegment, record -> {
+            replay(ChangeCodec.decode(record));
+            replayed.incrementAndGet();
+        });
+        sinceSnapshot.set(replayed.get());
+        blogs.attach(this);
+        comments.attach(this);
+        folders.attach(this);
+        log.info("Restored {} blogs, {} comments and {} folders from {} ({} log records replayed) in {} ms",
+                blogs.count(), comments.count(), folders.count(), directory, replayed.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public boolean record(Change change, BooleanSupplier mutation) {
+        byte[] record = ChangeCodec.encode(change);
+        long token;
+        applyLock.lock();
+        try {
+            // a record that is too big, or a segment that cannot be started, fails the change before it is applied
+            writeLog.reserve(record.length);
+            if (!mutation.getAsBoolean()) {
+                return false;
+            }
+            token = writeLog.append(record);
+        } finally {
+            applyLock.unlock();
+        }
+        if (fsync) {
+            writeLog.sync(token);
+        }
+        if (sinceSnapshot.incrementAndGet() >= snapshotEvery && snapshotting.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("storage-snapshot").start(this::snapshotQuietly);
+        }
+        return true;
+    }
+
+    /**
+     * Writes a snapshot of the repositories now, and drops the snapshots and log segments it makes redundant.
+     */
+    public void snapshot() throws IOException {
+        if (writeLog == null) {
+            throw new IllegalStateException("Storage is not enabled");
+        }
+        snapshotLock.lock();
+        try {
+            sinceSnapshot.set(0);
+            long segment = writeLog.roll();
+            Path written = Snapshot.write(directory, segment, blogs, comments, folders);
+            Snapshot.deleteOlderThan(directory, written);
+            writeLog.deleteSegmentsBefore(segment);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (writeLog != null) {
+            blogs.attach(Journal.NONE);
+            comments.attach(Journal.NONE);
+            folders.attach(Journal.NONE);
+            writeLog.close();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to write a storage snapshot", e);
+        } finally {
+            snapshotting.set(false);
+        }
+    }
+
+    private void replay(Change change) {
+        switch (change) {
+            case BlogSaved c -> {
+                var blog = new Blog(c.id(), c.tenant(), c.author(), c.content());
+                blog.setCommentCount(comments.count(c.id()));
+                blogs.restore(blog);
+            }
+            case BlogUpdated c -> blogs.findById(c.id()).ifPresent(blog -> blog.setContent(c.content(), c.version()));
+            case BlogRemoved c -> {
+                blogs.restoreRemoval(c.id());
+                comments.removeBlog(c.id());
+            }
+            case CommentSaved c -> comments.restore(new Comment(c.id(), c.blogId(), c.author(), c.content()));
+            case CommentUpdated c -> comments.findById(c.blogId(), c.id()).ifPresent(comment -> comment.setContent(c.content(), c.version()));
+            case CommentRemoved c -> comments.restoreRemoval(c.blogId(), c.id());
+            case FolderSaved c -> folders.restore(new Folder(c.id(), c.tenant(), c.author(), c.name()));
+            case FolderUpdated c -> folders.findById(c.id()).ifPresent(folder -> folder.setName(c.name(), c.version()));
+            case FolderRemoved c -> folders.restoreRemoval(c.id());
+        }
+    }
+}
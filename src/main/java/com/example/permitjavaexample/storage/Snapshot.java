@@ -0,0 +1,194 @@
+package com.example.permitjavaexample.storage;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.repository.FolderRepository;
+import com.example.permitjavaexample.tenant.TenantContext;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact image of the repositories: the id sequences, then every blog with its comments, then every folder, each with
+ * its tenant and version, in the encoding of {@link ChangeCodec}, followed by a CRC32C of all of it. Snapshots of the
+ * earlier versions are still read: those written before there were tenants into the default tenant, and those
+ * written before there were versions with everything at {@link ChangeCodec#UNVERSIONED}.
+ * <p>
+ * A snapshot is written while the application keeps changing the repositories, so it may or may not include any
+ * change made during the write. That is fine because it is named after the first log segment started before the
+ * write, and every change is applied in memory before it is logged: replaying that segment and the ones after it
+ * on top of the snapshot re-applies every change the snapshot may have missed, and changes carry the values they
+ * set, so re-applying one the snapshot already has does no harm. Snapshots are written to a temporary file and
+ * renamed into place, so a crash never leaves a partial one behind.
+ */
+final class Snapshot {
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x56534e50;
+    private static final int VERSION = 3;
+    private static final int UNTENANTED_VERSION = 2;
+    private static final int UNVERSIONED_VERSION = 1;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Writes a snapshot that log replay resumes from at {@code segment}, and returns its path.
+     */
+    static Path write(Path directory, long segment, BlogRepository blogs, CommentRepository comments,
+                      FolderRepository folders) throws IOException {
+        Path file = directory.resolve(PREFIX + String.format("%020d", segment) + SUFFIX);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        var crc = new CRC32C();
+        var out = new ChangeCodec.Encoder();
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+            out.putInt(MAGIC).putInt(VERSION).putLong(segment)
+                    .putInt(blogs.lastId()).putInt(comments.lastId()).putInt(folders.lastId());
+            // the repositories change while they are walked, so each section ends with -1 rather than starting with a count
+            flush(out, crc, stream);
+            blogs.streamAll().forEach(blog -> {
+                out.putInt(blog.getId()).putString(blog.getTenant()).putString(blog.getAuthor()).putString(blog.getContent()).putLong(blog.getVersion());
+                List<Comment> blogComments = comments.findByBlog(blog.getId());
+                out.putInt(blogComments.size());
+                for (Comment comment : blogComments) {
+                    out.putInt(comment.getId()).putString(comment.getAuthor()).putString(comment.getContent()).putLong(comment.getVersion());
+                }
+                flushQuietly(out, crc, stream);
+            });
+            out.putInt(-1);
+            folders.streamAll().forEach(folder -> {
+                out.putInt(folder.getId()).putString(folder.getTenant()).putString(folder.getAuthor()).putString(folder.getName()).putLong(folder.getVersion());
+                flushQuietly(out, crc, stream);
+            });
+            out.putInt(-1);
+            flush(out, crc, stream);
+            out.putInt((int) crc.getValue());
+            out.writeTo(stream, null);
+            stream.flush();
+            channel.force(true);
+        } catch (IOException | UncheckedIOException e) {
+            Files.deleteIfExists(temporary);
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Loads the newest intact snapshot into the repositories and returns the log segment to resume replay from.
+     */
+    static Optional<Long> restoreLatest(Path directory, BlogRepository blogs, CommentRepository comments,
+                                        FolderRepository folders) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = snapshots.get(i);
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!intact(in)) {
+                    continue;
+                }
+                return Optional.of(restore(in, blogs, comments, folders));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Deletes every snapshot older than {@code keep}, and leftovers of interrupted writes.
+     */
+    static void deleteOlderThan(Path directory, Path keep) throws IOException {
+        for (Path file : snapshots(directory)) {
+            if (file.getFileName().toString().compareTo(keep.getFileName().toString()) < 0) {
+                Files.deleteIfExists(file);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SUFFIX + ".tmp")).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static long restore(ByteBuffer in, BlogRepository blogs, CommentRepository comments, FolderRepository folders) {
+        int format = in.getInt(4);
+        boolean tenanted = format == VERSION;
+        boolean versioned = format != UNVERSIONED_VERSION;
+        in.position(8);
+        long segment = in.getLong();
+        blogs.restoreSequence(in.getInt());
+        comments.restoreSequence(in.getInt());
+        folders.restoreSequence(in.getInt());
+        for (int id; (id = in.getInt()) != -1; ) {
+            String tenant = tenanted ? ChangeCodec.getString(in) : TenantContext.DEFAULT;
+            blogs.restore(new Blog(id, tenant, ChangeCodec.getString(in), ChangeCodec.getString(in), version(in, versioned)));
+            for (int count = in.getInt(); count > 0; count--) {
+                comments.restore(new Comment(in.getInt(), id, ChangeCodec.getString(in), ChangeCodec.getString(in), version(in, versioned)));
+            }
+        }
+        for (int id; (id = in.getInt()) != -1; ) {
+            String tenant = tenanted ? ChangeCodec.getString(in) : TenantContext.DEFAULT;
+            folders.restore(new Folder(id, tenant, ChangeCodec.getString(in), ChangeCodec.getString(in), version(in, versioned)));
+        }
+        return segment;
+    }
+
+    private static long version(ByteBuffer in, boolean versioned) {
+        return versioned ? in.getLong() : ChangeCodec.UNVERSIONED;
+    }
+
+    private static boolean intact(ByteBuffer in) {
+        if (in.limit() < 20 || in.getInt(0) != MAGIC) {
+            return false;
+        }
+        int format = in.getInt(4);
+        if (format != VERSION && format != UNTENANTED_VERSION && format != UNVERSIONED_VERSION) {
+            return false;
+        }
+        var crc = new CRC32C();
+        crc.update(in.slice(0, in.limit() - 4));
+        return (int) crc.getValue() == in.getInt(in.limit() - 4);
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX) && file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static void flush(ChangeCodec.Encoder out, CRC32C crc, OutputStream stream) throws IOException {
+        out.writeTo(stream, crc);
+        out.reset();
+    }
+
+    private static void flushQuietly(ChangeCodec.Encoder out, CRC32C crc, OutputStream stream) {
+        if (out.size() < 1 << 14) {
+            return;
+        }
+        try {
+            flush(out, crc, stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.permitjavaexample.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of records in memory-mapped segment files of a fixed size, named after their sequence number.
+ * <p>
+ * A record is framed as its length, a CRC32C of its bytes and the bytes themselves; an unused, zero-filled length
+ * ends a segment. Appending is a copy into the mapping, so it only holds the append lock briefly. Durability is
+ * separate: {@link #sync} forces the current segment to disk up to at least the given append, and whoever forces
+ * covers every append made before it, so concurrent writers waiting on the same force share it (group commit).
+ * On open, the tail of the last segment is checked and everything from the first torn or corrupt record on is
+ * discarded.
+ */
+final class WriteLog implements AutoCloseable {
+    private static final String SUFFIX = ".log";
+    private static final int HEADER = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long appended;
+    private volatile long synced;
+
+    private WriteLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the log in {@code directory}, continuing the last segment after its last intact record.
+     */
+    static WriteLog open(Path directory, int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        var log = new WriteLog(directory, segmentSize);
+        List<Long> segments = log.segments();
+        if (segments.isEmpty()) {
+            log.map(0);
+        } else {
+            log.map(segments.get(segments.size() - 1));
+            int end = scan(log.buffer, null);
+            if (end + 4 <= log.buffer.capacity() && log.buffer.getInt(end) != 0) {
+                // zero the torn tail so that none of it can be mistaken for a record once appends resume
+                byte[] zeros = new byte[64 * 1024];
+                for (int i = end; i < log.buffer.capacity(); i += zeros.length) {
+                    log.buffer.put(i, zeros, 0, Math.min(zeros.length, log.buffer.capacity() - i));
+                }
+                log.buffer.force();
+            }
+            log.buffer.position(end);
+        }
+        return log;
+    }
+
+    /**
+     * Appends {@code record} to the current segment, starting a new one if it does not fit.
+     *
+     * @return a token to pass to {@link #sync}
+     */
+    long append(byte[] record) {
+        checkFits(record.length);
+        appendLock.lock();
+        try {
+            makeRoom(record.length);
+            var crc = new CRC32C();
+            crc.update(record);
+            int position = buffer.position();
+            buffer.position(position + 4);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(record);
+            // the length goes in last: a reader never sees a length whose record is not all there
+            buffer.putInt(position, record.length);
+            return ++appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Makes room for a record of {@code length} bytes in the current segment, starting a new one if it does not fit,
+     * so that appending it next cannot fail; throws if it does not fit a segment at all.
+     */
+    void reserve(int length) {
+        checkFits(length);
+        appendLock.lock();
+        try {
+            makeRoom(length);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns once the append that returned {@code token}, and everything appended before it, is on disk.
+     */
+    void sync(long token) {
+        if (synced >= token) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (synced >= token) {
+                return;
+            }
+            MappedByteBuffer current;
+            long upTo;
+            appendLock.lock();
+            try {
+                current = buffer;
+                upTo = appended;
+            } finally {
+                appendLock.unlock();
+            }
+            // segments before the current one were forced when they were rolled
+            current.force();
+            synced = upTo;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Continues in a new segment and returns its sequence number; everything appended so far is in the segments
+     * before it, and on disk.
+     */
+    long roll() throws IOException {
+        appendLock.lock();
+        try {
+            roll(segment + 1);
+            return segment;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Feeds every record in the segments from {@code fromSegment} on to {@code consumer}, in order.
+     */
+    void replay(long fromSegment, Consumer<ByteBuffer> consumer) throws IOException {
+        for (long id : segments()) {
+            if (id < fromSegment) {
+                continue;
+            }
+            try (var file = FileChannel.open(path(id), StandardOpenOption.READ)) {
+                scan(file.map(FileChannel.MapMode.READ_ONLY, 0, file.size()), consumer);
+            }
+        }
+    }
+
+    void deleteSegmentsBefore(long segmentId) throws IOException {
+        for (long id : segments()) {
+            if (id < segmentId) {
+                Files.deleteIfExists(path(id));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void checkFits(int length) {
+        if (length + 2 * HEADER > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a log segment");
+        }
+    }
+
+    private void makeRoom(int length) {
+        if (buffer.remaining() < length + 2 * HEADER) {
+            roll(segment + 1);
+        }
+    }
+
+    private void roll(long next) {
+        try {
+            buffer.force();
+            channel.close();
+            map(next);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start log segment " + next, e);
+        }
+    }
+
+    private void map(long id) throws IOException {
+        channel = FileChannel.open(path(id), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment = id;
+    }
+
+    /**
+     * Walks the records of a segment, handing each to {@code consumer} if there is one, and returns where the
+     * intact records end.
+     */
+    private static int scan(ByteBuffer segment, Consumer<ByteBuffer> consumer) {
+        int position = 0;
+        var crc = new CRC32C();
+        while (position + HEADER <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + HEADER + length > segment.limit()) {
+                break;
+            }
+            ByteBuffer record = segment.slice(position + HEADER, length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != segment.getInt(position + 4)) {
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(record);
+            }
+            position += HEADER + length;
+        }
+        return position;
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> ids.add(Long.parseLong(name, 0, name.length() - SUFFIX.length(), 10)));
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private Path path(long id) {
+        return directory.resolve(String.format("%020d%s", id, SUFFIX));
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.permitjavaexample.sync;
+
+import io.permit.sdk.Permit;
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.api.PermitContextError;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+public class PermitPolicyWriter implements PolicyWriter {
+    private final Permit permit;
+
+    public PermitPolicyWriter(Permit permit) {
+        this.permit = permit;
+    }
+
+    @Override
+    public void write(SyncOperation operation) throws IOException, PermitApiError, PermitContextError {
+        operation.apply(permit);
+    }
+}
@@ -0,0 +1,524 @@
+package com.example.permitjavaexample.sync;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind outbox for the Permit management API calls that mirror local changes.
+ * <p>
+ * With {@code permit.outbox.enabled} off, operations are applied inline and failures surface to the caller, as
+ * before. With it on, {@link #submit} only records the operations and returns; a dispatcher thread hands each
+ * resource instance with pending work to a worker pool, where it is drained on its own: a slow instance never holds
+ * up another. Operations on the same instance are applied strictly in order (an instance is owned by at most one
+ * worker at a time, for up to {@code permit.outbox.batch-size} operations before it goes to the back of the line),
+ * failed operations are retried with exponential backoff, duplicates of a still-pending operation are dropped, and
+ * deleting an instance whose creation has not been sent yet cancels both. A relationship tuple waits for the
+ * creation of its parent instance to be sent, and is dropped with it if that creation is cancelled. Decisions cached
+ * for an instance are invalidated, and the {@link SyncListener}s told, once its operation has actually reached
+ * Permit. With {@code spring.threads.virtual.enabled} the workers are virtual threads, so
+ * {@code permit.outbox.workers} can be raised to match the Permit API's concurrency rather than the number of
+ * threads the JVM can afford.
+ */
+@Component
+public class PermitSyncOutbox {
+    private static final Logger log = LoggerFactory.getLogger(PermitSyncOutbox.class);
+
+    private final PolicyWriter writer;
+    private final DecisionCache decisionCache;
+    private final AuthzMetrics metrics;
+    private final List<SyncListener> listeners;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final ConcurrentHashMap<String, InstanceQueue> queues = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<InstanceQueue> ready = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retries;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+
+    @Autowired
+    public PermitSyncOutbox(PolicyWriter writer, DecisionCache decisionCache, AuthzMetrics metrics,
+                            ObjectProvider<SyncListener> listeners,
+                            @Value("${permit.outbox.enabled:false}") boolean enabled,
+                            @Value("${permit.outbox.workers:8}") int workers,
+                            @Value("${permit.outbox.batch-size:64}") int batchSize,
+                            @Value("${permit.outbox.max-attempts:8}") int maxAttempts,
+                            @Value("${permit.outbox.initial-backoff:200ms}") Duration initialBackoff,
+                            @Value("${permit.outbox.max-backoff:30s}") Duration maxBackoff,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.writer = writer;
+        this.decisionCache = decisionCache;
+        this.metrics = metrics;
+        this.listeners = listeners.orderedStream().toList();
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        if (enabled) {
+            ThreadFactory workerThreads = virtualThreads
+                    ? Thread.ofVirtual().name("permit-outbox-worker-", 1).factory()
+                    : daemonThreads("permit-outbox-worker");
+            this.workers = Executors.newFixedThreadPool(Math.max(1, workers), workerThreads);
+            this.retries = Executors.newSingleThreadScheduledExecutor(daemonThreads("permit-outbox-retry"));
+            this.dispatcher = daemonThreads("permit-outbox-dispatcher").newThread(this::dispatchLoop);
+            this.dispatcher.start();
+        } else {
+            this.workers = null;
+            this.retries = null;
+            this.dispatcher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the operations (or applies them right away when the outbox is disabled). Operations passed
+     * together are applied in the given order whenever they share an instance.
+     */
+    public void submit(SyncOperation... operations) {
+        for (SyncOperation operation : operations) {
+            if (enabled) {
+                enqueue(operation);
+            } else {
+                applyInline(operation);
+            }
+            for (SyncListener listener : listeners) {
+                listener.submitted(operation);
+            }
+        }
+    }
+
+    public Stats stats() {
+        long now = System.nanoTime();
+        long oldest = now;
+        for (InstanceQueue queue : queues.values()) {
+            queue.lock.lock();
+            try {
+                Pending head = queue.operations.peek();
+                if (head != null && head.enqueuedAt - oldest < 0) {
+                    oldest = head.enqueuedAt;
+                }
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+        return new Stats(depth.get(), Duration.ofNanos(now - oldest), applied.sum(), retried.sum(), failed.sum(), deduplicated.sum());
+    }
+
+    private void applyInline(SyncOperation operation) {
+        long start = System.nanoTime();
+        try {
+            writer.write(operation);
+        } catch (Exception e) {
+            metrics.recordWrite(operation.kind(), "failed", System.nanoTime() - start);
+            // In production code you should consider action atomicity, and rollback the action.
+            throw new RuntimeException("Failed to sync " + operation + ": " + e.getMessage(), e);
+        }
+        metrics.recordWrite(operation.kind(), "success", System.nanoTime() - start);
+        applied.increment();
+        invalidate(operation);
+    }
+
+    private void enqueue(SyncOperation operation) {
+        if (operation instanceof SyncOperation.CreateRelationshipTuple tuple) {
+            InstanceQueue parent = queues.get(tuple.subject());
+            if (parent != null) {
+                parent.lock.lock();
+                try {
+                    // added under the parent's lock, so a cancellation of its creation either comes first or
+                    // finds the tuple to drop
+                    if (parent.creationPending()) {
+                        parent.dependents.add(operation.instance());
+                        append(operation);
+                        return;
+                    }
+                } finally {
+                    parent.lock.unlock();
+                }
+            }
+        }
+        if (operation instanceof SyncOperation.DeleteResourceInstance) {
+            cancelOrAppend(operation);
+        } else {
+            append(operation);
+        }
+    }
+
+    private void append(SyncOperation operation) {
+        while (true) {
+            InstanceQueue queue = queues.computeIfAbsent(operation.instance(), InstanceQueue::new);
+            queue.lock.lock();
+            try {
+                if (queue.retired) {
+                    continue;
+                }
+                if (queue.containsUnsent(operation)) {
+                    deduplicated.increment();
+                    return;
+                }
+                queue.operations.add(new Pending(operation, System.nanoTime()));
+                depth.incrementAndGet();
+                if (!queue.scheduled) {
+                    queue.scheduled = true;
+                    ready.add(queue);
+                }
+                return;
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Appends a delete, unless it cancels the instance's unsent creation; then the tuples waiting for that creation
+     * are dropped too.
+     */
+    private void cancelOrAppend(SyncOperation delete) {
+        InstanceQueue queue = queues.get(delete.instance());
+        if (queue != null) {
+            Dependents dependents;
+            queue.lock.lock();
+            try {
+                if (queue.retired || !queue.cancelUnsentCreation()) {
+                    dependents = null;
+                } else {
+                    dependents = queue.releaseDependents();
+                }
+            } finally {
+                queue.lock.unlock();
+            }
+            if (dependents != null) {
+                for (String instance : dependents.instances()) {
+                    InstanceQueue dependent = queues.get(instance);
+                    if (dependent != null) {
+                        dependent.lock.lock();
+                        try {
+                            dependent.dropTuplesUnder(queue.instance);
+                        } finally {
+                            dependent.lock.unlock();
+                        }
+                    }
+                }
+                ready.addAll(dependents.parked());
+                return;
+            }
+        }
+        append(delete);
+    }
+
+    private void dispatchLoop() {
+        while (running || !ready.isEmpty()) {
+            try {
+                InstanceQueue queue = ready.poll(100, TimeUnit.MILLISECONDS);
+                if (queue != null) {
+                    workers.execute(() -> drain(queue));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Permit outbox dispatch failed", e);
+            }
+        }
+    }
+
+    /**
+     * Applies the instance's operations in order until its queue is empty, an operation has to be retried or wait for
+     * its parent, or {@code batchSize} operations were applied; then it goes to the back of the ready queue, so that
+     * an instance with a long backlog shares the workers with the others.
+     */
+    private void drain(InstanceQueue queue) {
+        int budget = batchSize;
+        while (true) {
+            Pending head;
+            queue.lock.lock();
+            try {
+                head = queue.operations.peek();
+                if (head == null) {
+                    queue.scheduled = false;
+                    queue.retired = true;
+                    queues.remove(queue.instance, queue);
+                    return;
+                }
+                if (budget-- == 0 && running) {
+                    ready.add(queue);
+                    return;
+                }
+            } finally {
+                queue.lock.unlock();
+            }
+            if (!parentSent(queue, head)) {
+                return;
+            }
+            queue.lock.lock();
+            try {
+                if (queue.operations.peek() != head) {
+                    // dropped while the parent was looked at
+                    continue;
+                }
+                queue.inFlight = true;
+            } finally {
+                queue.lock.unlock();
+            }
+
+            Exception error = null;
+            Dependents dependents = null;
+            long start = System.nanoTime();
+            try {
+                writer.write(head.operation);
+            } catch (Exception e) {
+                error = e;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            queue.lock.lock();
+            try {
+                queue.inFlight = false;
+                if (head.operation instanceof SyncOperation.CreateResourceInstance
+                        && (error == null || head.attempts + 1 >= maxAttempts)) {
+                    // sent, or given up on: the tuples waiting for it go ahead either way
+                    dependents = queue.releaseDependents();
+                }
+                if (error == null) {
+                    queue.operations.poll();
+                    depth.decrementAndGet();
+                    applied.increment();
+                    metrics.recordWrite(head.operation.kind(), "success", elapsed);
+                } else if (++head.attempts >= maxAttempts) {
+                    queue.operations.poll();
+                    depth.decrementAndGet();
+                    failed.increment();
+                    metrics.recordWrite(head.operation.kind(), "failed", elapsed);
+                    log.error("Giving up on {} after {} attempts", head.operation, head.attempts, error);
+                } else {
+                    retried.increment();
+                    metrics.recordWrite(head.operation.kind(), "retry", elapsed);
+                    long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(head.attempts - 1, 20));
+                    long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                    log.warn("Failed to sync {} (attempt {}), retrying in {} ms: {}", head.operation, head.attempts, jittered, error.getMessage());
+                    retries.schedule(() -> ready.add(queue), jittered, TimeUnit.MILLISECONDS);
+                    return;
+                }
+            } finally {
+                queue.lock.unlock();
+            }
+            if (dependents != null) {
+                ready.addAll(dependents.parked());
+            }
+            if (error == null) {
+                invalidate(head.operation);
+            }
+        }
+    }
+
+    /**
+     * Whether the head operation can be sent as far as its parent is concerned: a relationship tuple cannot before
+     * its parent instance's creation has been sent. While it waits, the queue stays scheduled but parked on the
+     * parent's, which puts it back in the ready queue once that creation is sent or given up on, or cancelled.
+     */
+    private boolean parentSent(InstanceQueue queue, Pending head) {
+        if (!(head.operation instanceof SyncOperation.CreateRelationshipTuple tuple)) {
+            return true;
+        }
+        InstanceQueue parent = queues.get(tuple.subject());
+        if (parent == null || parent == queue) {
+            return true;
+        }
+        parent.lock.lock();
+        try {
+            if (!parent.creationPending()) {
+                return true;
+            }
+            parent.dependents.add(queue.instance);
+            parent.parked.add(queue);
+            return false;
+        } finally {
+            parent.lock.unlock();
+        }
+    }
+
+    private void invalidate(SyncOperation operation) {
+        String instance = operation.instance();
+        int separator = instance.indexOf(':');
+        if (separator > 0) {
+            decisionCache.invalidateResource(operation.tenant(), instance.substring(0, separator), instance.substring(separator + 1));
+        }
+        for (SyncListener listener : listeners) {
+            listener.applied(operation);
+        }
+    }
+
+    /**
+     * Stops accepting work and gives pending operations a short grace period to reach Permit.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        retries.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+        if (depth.get() > 0) {
+            log.warn("Permit outbox stopped with {} operations not synced", depth.get());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public record Stats(int depth, Duration lag, long applied, long retried, long failed, long deduplicated) {
+    }
+
+    /**
+     * What waited for an instance's creation: the instances with tuples under it, and the queues parked on it.
+     */
+    private record Dependents(Set<String> instances, List<InstanceQueue> parked) {
+    }
+
+    private static final class Pending {
+        final SyncOperation operation;
+        final long enqueuedAt;
+        int attempts;
+
+        Pending(SyncOperation operation, long enqueuedAt) {
+            this.operation = operation;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class InstanceQueue {
+        final String instance;
+        // a ReentrantLock rather than a monitor, so virtual threads never pin their carrier waiting for it
+        final ReentrantLock lock = new ReentrantLock();
+        final ArrayDeque<Pending> operations = new ArrayDeque<>();
+        // a drain is queued, running or waiting for a retry
+        boolean scheduled;
+        // the head operation is being applied and can no longer be cancelled
+        boolean inFlight;
+        // removed from the map; submitters must create a fresh queue
+        boolean retired;
+        // instances with tuples waiting for this one's creation, and the queues whose head is such a tuple
+        final Set<String> dependents = new HashSet<>();
+        final List<InstanceQueue> parked = new ArrayList<>();
+
+        InstanceQueue(String instance) {
+            this.instance = instance;
+        }
+
+        boolean creationPending() {
+            for (Pending pending : operations) {
+                if (pending.operation instanceof SyncOperation.CreateResourceInstance) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Dependents releaseDependents() {
+            var released = new Dependents(Set.copyOf(dependents), List.copyOf(parked));
+            dependents.clear();
+            parked.clear();
+            return released;
+        }
+
+        void dropTuplesUnder(String parent) {
+            Iterator<Pending> it = operations.iterator();
+            if (inFlight && it.hasNext()) {
+                it.next();
+            }
+            while (it.hasNext()) {
+                if (it.next().operation instanceof SyncOperation.CreateRelationshipTuple tuple && tuple.subject().equals(parent)) {
+                    it.remove();
+                    depth.decrementAndGet();
+                    deduplicated.increment();
+                }
+            }
+        }
+
+        boolean containsUnsent(SyncOperation operation) {
+            Iterator<Pending> it = operations.iterator();
+            if (inFlight && it.hasNext()) {
+                it.next();
+            }
+            while (it.hasNext()) {
+                if (it.next().operation.equals(operation)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * If the instance's creation has not been sent yet, nothing about it exists in Permit: drop everything
+         * that was not sent and report that the delete is not needed either.
+         */
+        boolean cancelUnsentCreation() {
+            Iterator<Pending> it = operations.iterator();
+            if (inFlight && it.hasNext()) {
+                it.next();
+            }
+            boolean creationUnsent = false;
+            while (it.hasNext()) {
+                if (it.next().operation instanceof SyncOperation.CreateResourceInstance) {
+                    creationUnsent = true;
+                    break;
+                }
+            }
+            if (!creationUnsent) {
+                return false;
+            }
+            it = operations.iterator();
+            if (inFlight && it.hasNext()) {
+                it.next();
+            }
+            while (it.hasNext()) {
+                it.next();
+                it.remove();
+                depth.decrementAndGet();
+                deduplicated.increment();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.permitjavaexample.sync;
+
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.api.PermitContextError;
+
+import java.io.IOException;
+
+/**
+ * Sends {@link SyncOperation}s to the Permit management API.
+ */
+public interface PolicyWriter {
+    void write(SyncOperation operation) throws IOException, PermitApiError, PermitContextError;
+}
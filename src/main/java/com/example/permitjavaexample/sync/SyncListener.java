@@ -0,0 +1,19 @@
+package com.example.permitjavaexample.sync;
+
+/**
+ * Observes the policy facts the application writes to Permit.
+ */
+public interface SyncListener {
+    /**
+     * The fact became part of the local state: right after it was applied when the outbox is disabled, or as soon
+     * as it was queued when it is on.
+     */
+    default void submitted(SyncOperation operation) {
+    }
+
+    /**
+     * The fact reached Permit, so anything read from Permit before then may lack it.
+     */
+    default void applied(SyncOperation operation) {
+    }
+}
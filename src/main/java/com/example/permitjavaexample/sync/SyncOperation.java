@@ -0,0 +1,89 @@
+package com.example.permitjavaexample.sync;
+
+import com.example.permitjavaexample.tenant.TenantContext;
+import io.permit.sdk.Permit;
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.api.PermitContextError;
+import io.permit.sdk.openapi.models.RelationshipTupleCreate;
+import io.permit.sdk.openapi.models.ResourceInstanceCreate;
+import io.permit.sdk.openapi.models.RoleAssignmentCreate;
+
+import java.io.IOException;
+
+/**
+ * A write against the Permit management API that mirrors a local change. Operations are value objects, so two
+ * equal operations pending at the same time are duplicates.
+ */
+public sealed interface SyncOperation {
+
+    /**
+     * The resource instance ({@code type:key}) this operation belongs to; operations on the same instance are
+     * applied in submission order.
+     */
+    String instance();
+
+    /**
+     * The tenant the instance belongs to, whose cached decisions the operation changes.
+     */
+    String tenant();
+
+    void apply(Permit permit) throws IOException, PermitApiError, PermitContextError;
+
+    /**
+     * The operation's name in metrics and logs.
+     */
+    default String kind() {
+        return switch (this) {
+            case CreateResourceInstance op -> "create_resource_instance";
+            case AssignResourceRole op -> "assign_resource_role";
+            case CreateRelationshipTuple op -> "create_relationship_tuple";
+            case DeleteResourceInstance op -> "delete_resource_instance";
+        };
+    }
+
+    record CreateResourceInstance(String resource, String key, String tenant) implements SyncOperation {
+        @Override
+        public String instance() {
+            return resource + ":" + key;
+        }
+
+        @Override
+        public void apply(Permit permit) throws IOException, PermitApiError, PermitContextError {
+            permit.api.resourceInstances.create(new ResourceInstanceCreate(key, resource).withTenant(tenant));
+        }
+    }
+
+    record AssignResourceRole(String role, String userKey, String instance, String tenant) implements SyncOperation {
+        @Override
+        public void apply(Permit permit) throws IOException, PermitApiError, PermitContextError {
+            permit.api.roleAssignments.assign(new RoleAssignmentCreate(role, userKey).withResourceInstance(instance).withTenant(tenant));
+        }
+    }
+
+    record CreateRelationshipTuple(String subject, String relation, String object, String tenant) implements SyncOperation {
+        public CreateRelationshipTuple(String subject, String relation, String object) {
+            this(subject, relation, object, TenantContext.DEFAULT);
+        }
+
+        @Override
+        public String instance() {
+            return object;
+        }
+
+        @Override
+        public void apply(Permit permit) throws IOException, PermitApiError, PermitContextError {
+            permit.api.relationshipTuples.create(new RelationshipTupleCreate(subject, relation, object).withTenant(tenant));
+        }
+    }
+
+    record DeleteResourceInstance(String instance, String tenant) implements SyncOperation {
+        public DeleteResourceInstance(String instance) {
+            this(instance, TenantContext.DEFAULT);
+        }
+
+        @Override
+        public void apply(Permit permit) throws IOException, PermitApiError, PermitContextError {
+            permit.api.resourceInstances.delete(instance);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.permitjavaexample.tenant;
+
+import java.util.regex.Pattern;
+
+/**
+ * The tenant the current request acts in, which {@code UserInterceptor} resolves from the {@code X-Tenant} header.
+ * <p>
+ * It is held per thread, so work handed to another thread (a streamed response body, say) has to capture
+ * {@link #current()} before it leaves the request thread.
+ */
+public final class TenantContext {
+    /**
+     * The tenant of requests that name none, and of everything stored before there were tenants.
+     */
+    public static final String DEFAULT = "default";
+    public static final String HEADER = "X-Tenant";
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final ThreadLocal<String> current = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    public static String current() {
+        String tenant = current.get();
+        return tenant == null ? DEFAULT : tenant;
+    }
+
+    public static void set(String tenant) {
+        current.set(tenant);
+    }
+
+    public static void clear() {
+        current.remove();
+    }
+
+    /**
+     * Whether {@code tenant} can be a Permit tenant key: letters, digits, {@code -} and {@code _}.
+     */
+    public static boolean isValid(String tenant) {
+        return tenant != null && KEY.matcher(tenant).matches();
+    }
+}
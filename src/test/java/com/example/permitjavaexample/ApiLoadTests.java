@@ -0,0 +1,190 @@
+package com.example.permitjavaexample;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.repository.FolderRepository;
+import com.example.permitjavaexample.service.BlogService;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StandInPermitServer;
+import com.example.permitjavaexample.sync.PermitSyncOutbox;
+import com.example.permitjavaexample.sync.SyncOperation;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end throughput of the blog and folder APIs against {@link StandInPermitServer}, with concurrent clients
+ * running a read-heavy mix of requests for a fixed time. Tagged {@code load}, so it only runs with
+ * {@code mvn -Pload-tests test}. Tune it with {@code -Dload.clients}, {@code -Dload.duration} (seconds) and the
+ * stand-in's {@code -Dload.pdp-latency-ms}, {@code -Dload.pdp-jitter-ms} and {@code -Dload.pdp-error-rate}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ApiLoadTests {
+    private static final int CLIENTS = Integer.getInteger("load.clients", 64);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.duration", 20));
+    private static final StandInPermitServer STAND_IN = startStandIn();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private BlogService blogService;
+    @Autowired
+    private FolderRepository folderRepository;
+    @Autowired
+    private PermitSyncOutbox permitSync;
+
+    private final HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    private final List<User> editors = new ArrayList<>();
+    private final List<Integer> blogIds = new ArrayList<>();
+    private final List<Integer> folderIds = new ArrayList<>();
+
+    private static StandInPermitServer startStandIn() {
+        try {
+            return new StandInPermitServer(new StandInPermitServer.Settings(
+                    Duration.ofMillis(Long.getLong("load.pdp-latency-ms", 2)),
+                    Duration.ofMillis(Long.getLong("load.pdp-jitter-ms", 3)),
+                    Double.parseDouble(System.getProperty("load.pdp-error-rate", "0"))));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start the stand-in PDP", e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void standIn(DynamicPropertyRegistry registry) {
+        registry.add("permit.pdp-url", STAND_IN::url);
+        registry.add("permit.api-url", STAND_IN::url);
+    }
+
+    @BeforeAll
+    void setUpAll() {
+        for (int i = 0; i < CLIENTS; i++) {
+            User editor = userService.signup("load-editor-" + i);
+            userService.assignRole(editor, "editor");
+            editors.add(editor);
+            Blog blog = blogService.addBlog(editor, "Blog of editor " + i);
+            blogIds.add(blog.getId());
+
+            // there is no tenant-wide folder:create grant, so folders are seeded with their author role directly
+            Folder folder = new Folder(folderRepository.nextId(), editor.getKey(), "Folder of editor " + i);
+            permitSync.submit(
+                    new SyncOperation.CreateResourceInstance("folder", folder.getId().toString(), "default"),
+                    new SyncOperation.AssignResourceRole("author", editor.getKey(), "folder:" + folder.getId(), "default"));
+            folderRepository.save(folder);
+            folderIds.add(folder.getId());
+        }
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        STAND_IN.close();
+    }
+
+    @Test
+    void mixedBlogAndFolderTraffic() throws Exception {
+        var statuses = new ConcurrentHashMap<Integer, LongAdder>();
+        var latencies = new ConcurrentLinkedQueue<Long>();
+        long deadline = System.nanoTime() + DURATION.toNanos();
+
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                int client = c;
+                running.add(clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        int status = send(nextRequest(client));
+                        latencies.add(System.nanoTime() - start);
+                        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : running) {
+                client.get();
+            }
+        }
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        long total = sorted.length;
+        System.out.printf("%d clients, %d requests in %s: %.0f req/s, p50 %.2f ms, p99 %.2f ms, statuses %s, stand-in requests %d%n",
+                CLIENTS, total, DURATION, total / (double) DURATION.toSeconds(),
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, statuses, STAND_IN.requests());
+
+        assertThat(total).isPositive();
+        if (STAND_IN.injectedErrors() == 0) {
+            assertThat(statuses.keySet()).allMatch(status -> status < 400);
+        }
+    }
+
+    private HttpRequest nextRequest(int client) {
+        var random = ThreadLocalRandom.current();
+        String token = "Bearer " + editors.get(client).getKey();
+        int ownBlog = blogIds.get(client);
+        int ownFolder = folderIds.get(client);
+        int roll = random.nextInt(100);
+        HttpRequest.Builder request;
+        if (roll < 35) {
+            request = HttpRequest.newBuilder(uri("/api/blogs?limit=50")).GET();
+        } else if (roll < 55) {
+            request = HttpRequest.newBuilder(uri("/api/blogs/" + blogIds.get(random.nextInt(blogIds.size())))).GET();
+        } else if (roll < 65) {
+            request = HttpRequest.newBuilder(uri("/api/blogs/" + ownBlog)).PUT(HttpRequest.BodyPublishers.ofString("updated"));
+        } else if (roll < 70) {
+            request = HttpRequest.newBuilder(uri("/api/blogs")).POST(HttpRequest.BodyPublishers.ofString("new blog"));
+        } else if (roll < 90) {
+            request = HttpRequest.newBuilder(uri("/api/folders/" + ownFolder)).GET();
+        } else {
+            request = HttpRequest.newBuilder(uri("/api/folders/" + ownFolder)).PUT(HttpRequest.BodyPublishers.ofString("renamed"));
+        }
+        return request.header("Authorization", token).header("Content-Type", "application/json").build();
+    }
+
+    private int send(HttpRequest request) {
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
@@ -18,6 +18,7 @@ import org.springframework.http.*;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -123,6 +124,14 @@ public class BlogControllerIntegrationTests {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    void searchBlogs() {
+        // viewer1 finds blog1 by a word of its content
+        var response = sendRequest("/api/blogs/search?q=first", HttpMethod.GET, viewer1);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("First Blog Post").doesNotContain("Second Blog Post");
+    }
+
     @Test
     void getBlogById() {
         // viewer1 gets blog1
@@ -203,6 +212,67 @@ public class BlogControllerIntegrationTests {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
     }
 
+    @Test
+    void getUnchangedBlogIsNotModified() {
+        // viewer1 polls blog1 and only downloads it again once it has changed
+        var first = sendRequest("/api/blogs/" + blog1.getId(), HttpMethod.GET, viewer1);
+        var eTag = first.getHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + viewer1.getKey());
+        headers.setIfNoneMatch(eTag);
+        var again = restTemplate.exchange(baseUrl + "/api/blogs/" + blog1.getId(), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(again.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(again.getBody()).isNull();
+
+        // the check comes after authorization
+        headers.remove("Authorization");
+        var unauthenticated = restTemplate.exchange(baseUrl + "/api/blogs/" + blog1.getId(), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(unauthenticated.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void getBlogInAnotherRepresentationIsNotNotModified() {
+        // viewer1 holds the full blog1, then asks for a projection or format of it it does not have yet
+        var first = sendRequest("/api/blogs/" + blog1.getId(), HttpMethod.GET, viewer1);
+        var eTag = first.getHeaders().getETag();
+        assertThat(first.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + viewer1.getKey());
+        headers.setIfNoneMatch(eTag);
+        for (String query : new String[]{"?view=summary", "?fields=id,author", "?view=full&fields=content"}) {
+            var other = restTemplate.exchange(baseUrl + "/api/blogs/" + blog1.getId() + query, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+            assertThat(other.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(other.getHeaders().getETag()).isNotEqualTo(eTag);
+        }
+
+        headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+        var cbor = restTemplate.exchange(baseUrl + "/api/blogs/" + blog1.getId(), HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertThat(cbor.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(cbor.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(cbor.getHeaders().getETag()).isNotEqualTo(eTag);
+    }
+
+    @Test
+    void updateBlogWithStaleVersionFails() {
+        // editor1 updates their blog twice from the same version; the second update fails
+        var blog = blogService.addBlog(editor1, "Versioned Content");
+        var eTag = sendRequest("/api/blogs/" + blog.getId(), HttpMethod.GET, editor1).getHeaders().getETag();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + editor1.getKey());
+        headers.setIfMatch(eTag);
+        var updated = restTemplate.exchange(baseUrl + "/api/blogs/" + blog.getId(), HttpMethod.PUT, new HttpEntity<>("Edit 1", headers), String.class);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(updated.getHeaders().getETag()).isNotEqualTo(eTag);
+
+        var stale = restTemplate.exchange(baseUrl + "/api/blogs/" + blog.getId(), HttpMethod.PUT, new HttpEntity<>("Edit 2", headers), String.class);
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        assertThat(blog.getContent()).isEqualTo("Edit 1");
+    }
+
     @Test
     void createComment() {
         // viewer1 comments on blog1
@@ -210,6 +280,25 @@ public class BlogControllerIntegrationTests {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    void listCommentsPageByPage() {
+        // viewer2 reads the comments on blog2 two at a time
+        var blog = blogService.addBlog(editor2, "Commented Blog Post");
+        for (int i = 0; i < 3; i++) {
+            blogService.addComment(viewer1, blog.getId(), "Comment " + i);
+        }
+        var first = sendRequest("/api/blogs/" + blog.getId() + "/comment?limit=2", HttpMethod.GET, viewer2);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(first.getBody()).contains("Comment 0", "Comment 1").doesNotContain("Comment 2");
+        var cursor = first.getHeaders().getFirst("X-Next-Cursor");
+        var second = sendRequest("/api/blogs/" + blog.getId() + "/comment?limit=2&cursor=" + cursor, HttpMethod.GET, viewer2);
+        assertThat(second.getBody()).contains("Comment 2");
+        assertThat(second.getHeaders().getFirst("X-Next-Cursor")).isNull();
+
+        var summary = sendRequest("/api/blogs/" + blog.getId(), HttpMethod.GET, viewer2);
+        assertThat(summary.getBody()).contains("\"commentCount\":3").doesNotContain("Comment 0");
+    }
+
     @Test
     void updateOwnComment() {
         // viewer1 updates their own comment on their own blog
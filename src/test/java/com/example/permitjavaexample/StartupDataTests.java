@@ -0,0 +1,77 @@
+package com.example.permitjavaexample;
+
+import com.example.permitjavaexample.authz.policy.BlogPolicy;
+import com.example.permitjavaexample.authz.policy.PolicyModel;
+import com.example.permitjavaexample.support.StandInPermitServer;
+import io.permit.sdk.Permit;
+import io.permit.sdk.PermitConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StartupDataTests {
+    private StandInPermitServer server;
+    private Permit permit;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StandInPermitServer(StandInPermitServer.Settings.none());
+        permit = new Permit(new PermitConfig.Builder("stand-in").withPdpAddress(server.url()).withApiUrl(server.url()).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void createsOnlyWhatIsMissing() throws Exception {
+        PolicyModel model = BlogPolicy.model();
+        int objects = model.resources().size() + model.resourceSets().size() + model.relations().size()
+                + model.resourceRoles().size() + model.derivations().size() + model.roles().size() + model.rules().size();
+
+        assertThat(new StartupData(permit, model, true).bootstrap().get(10, TimeUnit.SECONDS)).isEqualTo(objects);
+        long requests = server.requests();
+
+        assertThat(new StartupData(permit, model, true).bootstrap().get(10, TimeUnit.SECONDS)).isZero();
+        // only reads the second time: the three top-level lists, two per resource and one per rule
+        assertThat(server.requests() - requests).isEqualTo(3 + 2L * model.resources().size() + model.rules().size());
+    }
+
+    @Test
+    void reportsReadyOnlyOnceBootstrapped() throws Exception {
+        server.setSettings(new StandInPermitServer.Settings(Duration.ofMillis(50), Duration.ZERO, 0));
+        var startupData = new StartupData(permit, BlogPolicy.model(), true);
+
+        long start = System.nanoTime();
+        startupData.run();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(50));
+        assertThat(startupData.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (startupData.health().getStatus() == Status.OUT_OF_SERVICE && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(startupData.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void reportsDownWhenBootstrapFails() throws Exception {
+        server.setSettings(new StandInPermitServer.Settings(Duration.ZERO, Duration.ZERO, 1));
+        var startupData = new StartupData(permit, BlogPolicy.model(), true);
+
+        startupData.run();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (startupData.health().getStatus() == Status.OUT_OF_SERVICE && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(startupData.health().getStatus()).isEqualTo(Status.DOWN);
+    }
+}
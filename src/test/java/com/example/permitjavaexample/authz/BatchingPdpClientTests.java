@@ -0,0 +1,115 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchingPdpClientTests {
+    private final User user = new User.Builder("user-1").build();
+    private final AuthzMetrics metrics = AuthzMetrics.unpublished();
+    private BatchingPdpClient client;
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void concurrentChecksShareBulkRequests() throws Exception {
+        var pdp = new StubPdpClient((u, action, resource) -> Integer.parseInt(resource.getKey()) % 2 == 0, Duration.ofMillis(5), 1);
+        client = new BatchingPdpClient(pdp, metrics, true, 64, Duration.ofMillis(2), 1);
+
+        List<Future<Boolean>> callers = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                var resource = blog(i);
+                callers.add(executor.submit(() -> client.check(user, "read", resource)));
+            }
+            for (int i = 0; i < callers.size(); i++) {
+                assertThat(callers.get(i).get(5, TimeUnit.SECONDS)).isEqualTo(i % 2 == 0);
+            }
+        }
+
+        assertThat(pdp.roundTrips()).isLessThan(50);
+        assertThat(metrics.registry().get(AuthzMetrics.PDP_BATCHES).summary().max()).isGreaterThan(1);
+    }
+
+    @Test
+    void sequentialChecksAreNotHeldBack() throws Exception {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        client = new BatchingPdpClient(pdp, metrics, true, 64, Duration.ofMillis(200), 4);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            assertThat(client.check(user, "read", blog(i))).isTrue();
+        }
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+        assertThat(pdp.roundTrips()).isEqualTo(20);
+    }
+
+    @Test
+    void bulkFailureReachesEveryCaller() throws Exception {
+        var pdp = new StubPdpClient((u, action, resource) -> true, Duration.ofMillis(5), 1);
+        pdp.setFailing(true);
+        client = new BatchingPdpClient(pdp, metrics, true, 64, Duration.ofMillis(2), 1);
+
+        List<Future<Boolean>> callers = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                var resource = blog(i);
+                callers.add(executor.submit(() -> client.check(user, "read", resource)));
+            }
+            for (Future<Boolean> caller : callers) {
+                assertThatThrownBy(() -> caller.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .hasCauseInstanceOf(IOException.class);
+            }
+        }
+    }
+
+    @Test
+    void shutdownAnswersWaitingCallersAndRefusesNewOnes() throws Exception {
+        var pdp = new StubPdpClient((u, action, resource) -> true, Duration.ofMillis(200), 1);
+        client = new BatchingPdpClient(pdp, metrics, true, 4, Duration.ofMillis(2), 1);
+
+        List<Future<Boolean>> callers = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                var resource = blog(i);
+                callers.add(executor.submit(() -> client.check(user, "read", resource)));
+            }
+            Thread.sleep(50);
+            client.shutdown();
+            for (Future<Boolean> caller : callers) {
+                try {
+                    caller.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException expected) {
+                    assertThat(expected).hasCauseInstanceOf(PdpUnavailableException.class);
+                }
+            }
+        }
+
+        assertThatThrownBy(() -> client.check(user, "read", blog(0))).isInstanceOf(PdpUnavailableException.class);
+    }
+
+    private static Resource blog(int id) {
+        return new Resource.Builder("blog").withKey(String.valueOf(id)).build();
+    }
+}
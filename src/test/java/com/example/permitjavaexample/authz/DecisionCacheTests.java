@@ -0,0 +1,201 @@
+package com.example.permitjavaexample.authz;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DecisionCacheTests {
+    private static DecisionKey key(String tenant, String user, String instance) {
+        return new DecisionKey(tenant, user, "read", "blog", instance, Map.of(), Map.of());
+    }
+
+    private static void put(DecisionCache cache, DecisionKey key, boolean allowed) {
+        cache.put(key, allowed, cache.generation(key));
+    }
+
+    @Test
+    void lookupsInUnknownTenantsCreateNothing() {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10_000; i++) {
+            var key = key("tenant-" + i, "alice", "1");
+            assertThat(cache.get(key)).isNull();
+            assertThat(cache.getStale(key)).isNull();
+            cache.generation(key);
+        }
+
+        assertThat(cache.tenants()).isZero();
+    }
+
+    @Test
+    void keepsAtMostMaxTenantsPartitionsDroppingTheLeastRecentlyUsed() {
+        var cache = new DecisionCache(true, 1_000, 3, Duration.ofMinutes(1), Duration.ZERO);
+        put(cache, key("a", "alice", "1"), true);
+        put(cache, key("b", "alice", "1"), true);
+        put(cache, key("c", "alice", "1"), true);
+
+        put(cache, key("d", "alice", "1"), true);
+
+        assertThat(cache.tenants()).isEqualTo(3);
+        assertThat(cache.get(key("a", "alice", "1"))).isNull();
+        assertThat(cache.get(key("d", "alice", "1"))).isTrue();
+    }
+
+    @Test
+    void doesNotStoreADecisionComputedBeforeItsTenantWasInvalidated() {
+        var cache = new DecisionCache(true, 1_000, 2, Duration.ofMinutes(1), Duration.ZERO);
+
+        // no partition yet: the invalidation has nothing to drop, but still has to win over the answer in flight
+        var fresh = key("a", "alice", "1");
+        long before = cache.generation(fresh);
+        cache.invalidateUser("a", "alice");
+        cache.put(fresh, true, before);
+        assertThat(cache.get(fresh)).isNull();
+
+        // the partition is evicted and created again while the answer is in flight
+        var evicted = key("b", "alice", "1");
+        put(cache, evicted, true);
+        long read = cache.generation(evicted);
+        cache.invalidateResource("b", "blog", "1");
+        put(cache, key("c", "alice", "1"), true);
+        put(cache, key("d", "alice", "1"), true);
+        cache.put(evicted, true, read);
+        assertThat(cache.get(evicted)).isNull();
+    }
+
+    @Test
+    void invalidationsOfOneTenantLeaveAnothersAnswersInFlightAlone() {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1));
+        var small = key("small", "alice", "1");
+        put(cache, key("small", "bob", "2"), true);
+        long read = cache.generation(small);
+
+        cache.invalidateResource("big", "blog", "7");
+        cache.invalidateUser("big", "alice");
+        cache.put(small, true, read);
+
+        assertThat(cache.get(small)).isTrue();
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1));
+        var allowed = key("default", "alice", "1");
+        var denied = key("default", "alice", "2");
+
+        assertThat(cache.get(allowed)).isNull();
+        put(cache, allowed, true);
+        put(cache, denied, false);
+
+        assertThat(cache.get(allowed)).isTrue();
+        assertThat(cache.get(denied)).isFalse();
+        assertThat(cache.get(key("default", "bob", "1"))).isNull();
+        assertThat(cache.stats()).isEqualTo(new DecisionCache.Stats(2, 1, 0, 2));
+    }
+
+    @Test
+    void expiresDecisionsAfterTheTtlButServesThemStaleWithinTheWindow() throws Exception {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMillis(20), Duration.ofMinutes(1));
+        var key = key("default", "alice", "1");
+        put(cache, key, true);
+
+        Thread.sleep(50);
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.getStale(key)).isTrue();
+        assertThat(new DecisionCache(true, 1_000, Duration.ofMillis(20)).getStale(key)).isNull();
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedDecisionsBeyondTheBound() {
+        var cache = new DecisionCache(true, 16, Duration.ofMinutes(1));
+        for (int i = 0; i < 1_000; i++) {
+            put(cache, key("default", "alice", String.valueOf(i)), true);
+        }
+
+        assertThat(cache.stats().size()).isLessThanOrEqualTo(16);
+        assertThat(cache.stats().evictions()).isEqualTo(1_000 - cache.stats().size());
+    }
+
+    @Test
+    void invalidatesAUsersDecisions() {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1));
+        put(cache, key("default", "alice", "1"), true);
+        put(cache, key("acme", "alice", "1"), true);
+        put(cache, key("default", "bob", "1"), true);
+
+        cache.invalidateUser("default", "alice");
+        assertThat(cache.get(key("default", "alice", "1"))).isNull();
+        assertThat(cache.get(key("acme", "alice", "1"))).isTrue();
+        assertThat(cache.get(key("default", "bob", "1"))).isTrue();
+
+        cache.invalidateUser("alice");
+        assertThat(cache.get(key("acme", "alice", "1"))).isNull();
+        assertThat(cache.get(key("default", "bob", "1"))).isTrue();
+    }
+
+    @Test
+    void invalidatesAResourcesDecisionsForEveryUser() {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1));
+        put(cache, key("default", "alice", "1"), true);
+        put(cache, key("default", "bob", "1"), false);
+        put(cache, key("default", "alice", "2"), true);
+
+        cache.invalidateResource("default", "blog", "1");
+
+        assertThat(cache.get(key("default", "alice", "1"))).isNull();
+        assertThat(cache.get(key("default", "bob", "1"))).isNull();
+        assertThat(cache.get(key("default", "alice", "2"))).isTrue();
+
+        cache.invalidateAll();
+        assertThat(cache.get(key("default", "alice", "2"))).isNull();
+    }
+
+    @Test
+    void doesNotStoreADecisionComputedBeforeAnInvalidation() {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1));
+        var key = key("default", "alice", "1");
+        put(cache, key("default", "bob", "1"), true);
+
+        long read = cache.generation(key);
+        cache.invalidateUser("default", "alice");
+        cache.put(key, true, read);
+        assertThat(cache.get(key)).isNull();
+
+        read = cache.generation(key);
+        cache.invalidateResource("default", "blog", "1");
+        cache.put(key, true, read);
+        assertThat(cache.get(key)).isNull();
+
+        read = cache.generation(key);
+        cache.put(key, true, read);
+        assertThat(cache.get(key)).isTrue();
+    }
+
+    @Test
+    void neverStoresADecisionOverlappingAnInvalidationUnderConcurrency() throws Exception {
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1));
+        var key = key("default", "alice", "1");
+        for (int round = 0; round < 2_000; round++) {
+            long read = cache.generation(key);
+            var invalidation = Thread.ofPlatform().start(() -> cache.invalidateResource("default", "blog", "1"));
+            cache.put(key, true, read);
+            invalidation.join();
+            // whichever ran first, the invalidation is over and must have left no decision behind
+            assertThat(cache.get(key)).isNull();
+        }
+    }
+
+    @Test
+    void cachesNothingWhenDisabled() {
+        var cache = new DecisionCache(false, 1_000, Duration.ofMinutes(1));
+        var key = key("default", "alice", "1");
+        put(cache, key, true);
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.get(key)).isNull();
+    }
+}
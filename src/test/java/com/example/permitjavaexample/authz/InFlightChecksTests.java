@@ -0,0 +1,138 @@
+package com.example.permitjavaexample.authz;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InFlightChecksTests {
+    private final DecisionKey key = new DecisionKey("user-1", "read", "blog", "1", Map.of(), Map.of());
+    private final InFlightChecks inFlight = new InFlightChecks(true);
+
+    @Test
+    void concurrentCallersShareOneRequest() throws Exception {
+        var release = new CountDownLatch(1);
+        var calls = new AtomicInteger();
+
+        List<Future<Boolean>> callers = startCallers(50, () -> {
+            calls.incrementAndGet();
+            await(release);
+            return true;
+        });
+        awaitWaiters(49);
+        release.countDown();
+
+        for (Future<Boolean> caller : callers) {
+            assertThat(caller.get(5, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(calls).hasValue(1);
+        assertThat(inFlight.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void failureReachesEveryWaiter() throws Exception {
+        var release = new CountDownLatch(1);
+
+        List<Future<Boolean>> callers = startCallers(10, () -> {
+            await(release);
+            throw new IOException("PDP unreachable");
+        });
+        awaitWaiters(9);
+        release.countDown();
+
+        for (Future<Boolean> caller : callers) {
+            assertThatThrownBy(() -> caller.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IOException.class);
+        }
+        assertThat(inFlight.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void waitersRetryWhenTheRequestingCallerIsInterrupted() throws Exception {
+        var started = new CountDownLatch(1);
+        var calls = new AtomicInteger();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Boolean> first = executor.submit(() -> inFlight.check(key, 0, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted", e);
+                }
+                return true;
+            }));
+            started.await();
+            Future<Boolean> waiter = executor.submit(() -> inFlight.check(key, 0, () -> {
+                calls.incrementAndGet();
+                return false;
+            }));
+            awaitWaiters(1);
+
+            first.cancel(true);
+
+            assertThat(waiter.get(5, TimeUnit.SECONDS)).isFalse();
+            assertThat(calls).hasValue(2);
+        }
+    }
+
+    @Test
+    void callersNewerThanTheRunningRequestMakeTheirOwn() throws Exception {
+        var release = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Boolean> older = executor.submit(() -> inFlight.check(key, 0, () -> {
+                await(release);
+                return true;
+            }));
+            while (inFlight.requests() == 0) {
+                Thread.onSpinWait();
+            }
+
+            assertThat(inFlight.check(key, 1, () -> false)).isFalse();
+
+            release.countDown();
+            assertThat(older.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(inFlight.coalesced()).isZero();
+        }
+    }
+
+    private List<Future<Boolean>> startCallers(int count, InFlightChecks.Check check) {
+        var executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<Boolean>> callers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            callers.add(executor.submit(() -> inFlight.check(key, 0, check)));
+        }
+        executor.shutdown();
+        return callers;
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+
+    private void awaitWaiters(int waiters) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight.coalesced() < waiters && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(inFlight.coalesced()).isGreaterThanOrEqualTo(waiters);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.permitjavaexample.authz;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyTrackerTests {
+    @Test
+    void tracksThePercentileOfTheLastSamples() {
+        var tracker = new LatencyTracker(8, 0.5);
+        assertThat(tracker.percentileNanos()).isEqualTo(-1);
+
+        for (int i = 1; i <= 8; i++) {
+            tracker.record(i);
+        }
+        assertThat(tracker.percentileNanos()).isEqualTo(4);
+
+        for (int i = 0; i < 8; i++) {
+            tracker.record(100 + i);
+        }
+        assertThat(tracker.percentileNanos()).isEqualTo(103);
+    }
+
+    @Test
+    void keepsRecordingPastTwoBillionCalls() {
+        var tracker = new LatencyTracker(1024, 0.5, Integer.MAX_VALUE - 10L);
+
+        for (int i = 0; i < 4096; i++) {
+            tracker.record(i % 2 == 0 ? 100 : 300);
+        }
+
+        assertThat(tracker.percentileNanos()).isEqualTo(100);
+    }
+}
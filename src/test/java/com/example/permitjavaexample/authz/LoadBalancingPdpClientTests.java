@@ -0,0 +1,191 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.support.StandInPermitServer;
+import io.permit.sdk.Permit;
+import io.permit.sdk.PermitConfig;
+import io.permit.sdk.api.PermitApiError;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the balancer against several stand-in PDPs with different latencies and failure rates.
+ */
+class LoadBalancingPdpClientTests {
+    private final List<StandInPermitServer> servers = new ArrayList<>();
+    private LoadBalancingPdpClient balancer;
+    private final User reader = new User.Builder("reader").build();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (balancer != null) {
+            balancer.close();
+        }
+        servers.forEach(StandInPermitServer::close);
+    }
+
+    @Test
+    void sendsLessTrafficToASlowerPdp() throws Exception {
+        var fast = standIn(Duration.ofMillis(1), 0);
+        var alsoFast = standIn(Duration.ofMillis(1), 0);
+        var slow = standIn(Duration.ofMillis(40), 0);
+        balancer = balancer(LoadBalancingPdpClient.Policy.EWMA, Duration.ZERO);
+
+        checkConcurrently(16, 1600);
+
+        assertThat(slow.requests()).isLessThan((fast.requests() + alsoFast.requests()) / 10);
+        assertThat(fast.requests()).isPositive();
+        assertThat(alsoFast.requests()).isPositive();
+    }
+
+    @Test
+    void spreadsTrafficOverEquallyFastPdps() throws Exception {
+        var first = standIn(Duration.ofMillis(2), 0);
+        var second = standIn(Duration.ofMillis(2), 0);
+        balancer = balancer(LoadBalancingPdpClient.Policy.LEAST_OUTSTANDING, Duration.ZERO);
+
+        checkConcurrently(16, 1000);
+
+        assertThat(first.requests()).isBetween(300L, 700L);
+        assertThat(second.requests()).isBetween(300L, 700L);
+    }
+
+    @Test
+    void failsOverFromAFailingPdpAndReinstatesItOnceItRecovers() throws Exception {
+        standIn(Duration.ZERO, 0);
+        var failing = standIn(Duration.ZERO, 1.0);
+        balancer = balancer(LoadBalancingPdpClient.Policy.EWMA, Duration.ofMillis(50));
+
+        for (int i = 0; i < 100; i++) {
+            balancer.check(reader, "read", blog(i));
+        }
+
+        LoadBalancingPdpClient.Endpoint endpoint = balancer.endpoints().get(1);
+        assertThat(endpoint.healthy()).isFalse();
+        assertThat(endpoint.ejections()).isEqualTo(1);
+        // only the calls and probes that found it failing went there
+        assertThat(failing.requests()).isLessThan(20);
+
+        failing.setSettings(StandInPermitServer.Settings.none());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!endpoint.healthy() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(endpoint.healthy()).isTrue();
+    }
+
+    @Test
+    void triesEjectedPdpsWhenNoneIsHealthy() throws Exception {
+        var failing = standIn(Duration.ZERO, 1.0);
+        var alsoFailing = standIn(Duration.ZERO, 1.0);
+        balancer = balancer(LoadBalancingPdpClient.Policy.EWMA, Duration.ZERO);
+        for (int i = 0; i < 10; i++) {
+            try {
+                balancer.check(reader, "read", blog(i));
+            } catch (Exception expected) {
+                // both fail
+            }
+        }
+        assertThat(balancer.endpoints()).noneMatch(LoadBalancingPdpClient.Endpoint::healthy);
+
+        failing.setSettings(StandInPermitServer.Settings.none());
+        alsoFailing.setSettings(StandInPermitServer.Settings.none());
+
+        assertThat(balancer.check(reader, "read", blog(0))).isFalse();
+        assertThat(balancer.endpoints()).anyMatch(LoadBalancingPdpClient.Endpoint::healthy);
+    }
+
+    @Test
+    void passesOnARefusedCallWithoutFailingOverOrEjecting() throws Exception {
+        var first = new RefusingPdp();
+        var second = new RefusingPdp();
+        balancer = new LoadBalancingPdpClient(
+                List.of(new LoadBalancingPdpClient.Endpoint("first", first), new LoadBalancingPdpClient.Endpoint("second", second)),
+                LoadBalancingPdpClient.Policy.EWMA, 2, 3, Duration.ZERO, Duration.ofSeconds(1));
+
+        for (int i = 0; i < 10; i++) {
+            var resource = blog(i);
+            assertThatThrownBy(() -> balancer.check(reader, "read", resource)).isInstanceOf(PermitApiError.class);
+        }
+
+        assertThat(first.calls.get() + second.calls.get()).isEqualTo(10);
+        assertThat(balancer.failovers()).isZero();
+        assertThat(balancer.endpoints()).allMatch(endpoint -> endpoint.healthy() && endpoint.failures() == 0);
+    }
+
+    /**
+     * Answers every call with a 422, as a PDP does to a malformed check.
+     */
+    private static final class RefusingPdp implements PdpClient {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public boolean check(User user, String action, Resource resource) throws PermitApiError {
+            throw refused();
+        }
+
+        @Override
+        public List<Boolean> bulkCheck(List<CheckQuery> checks) throws PermitApiError {
+            throw refused();
+        }
+
+        @Override
+        public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) throws PermitApiError {
+            throw refused();
+        }
+
+        private PermitApiError refused() {
+            calls.incrementAndGet();
+            return new PermitApiError("PDP answered 422 to POST /allowed", 422, "{}");
+        }
+    }
+
+    private void checkConcurrently(int threads, int checks) throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads, Thread.ofVirtual().factory())) {
+            List<Future<Boolean>> results = new ArrayList<>(checks);
+            for (int i = 0; i < checks; i++) {
+                var resource = blog(i);
+                results.add(executor.submit(() -> balancer.check(reader, "read", resource)));
+            }
+            for (Future<Boolean> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private StandInPermitServer standIn(Duration latency, double errorRate) throws IOException {
+        var server = new StandInPermitServer(new StandInPermitServer.Settings(latency, Duration.ZERO, errorRate));
+        servers.add(server);
+        return server;
+    }
+
+    private LoadBalancingPdpClient balancer(LoadBalancingPdpClient.Policy policy, Duration probeInterval) {
+        List<LoadBalancingPdpClient.Endpoint> endpoints = new ArrayList<>();
+        for (StandInPermitServer server : servers) {
+            var permit = new Permit(new PermitConfig.Builder("stand-in").withPdpAddress(server.url()).withApiUrl(server.url()).build());
+            endpoints.add(new LoadBalancingPdpClient.Endpoint(server.url(), new PermitPdpClient(permit, null)));
+        }
+        return new LoadBalancingPdpClient(endpoints, policy, 2, 3, probeInterval, Duration.ofSeconds(1));
+    }
+
+    private static Resource blog(int key) {
+        return new Resource.Builder("blog").withKey(String.valueOf(key)).build();
+    }
+}
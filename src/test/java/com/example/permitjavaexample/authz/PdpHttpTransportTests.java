@@ -0,0 +1,111 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.support.StandInPermitServer;
+import io.permit.sdk.Permit;
+import io.permit.sdk.PermitConfig;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PdpHttpTransportTests {
+    private StandInPermitServer server;
+    private Permit permit;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StandInPermitServer(StandInPermitServer.Settings.none());
+        permit = new Permit(new PermitConfig.Builder("stand-in").withPdpAddress(server.url()).withApiUrl(server.url()).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void decidesLikeTheSdk() throws Exception {
+        var editor = new User.Builder("editor").build();
+        permit.api.users.sync(editor);
+        permit.api.users.assignRole("editor", "editor", "default");
+        List<CheckQuery> checks = List.of(
+                new CheckQuery(editor, "create", new Resource.Builder("blog").build()),
+                new CheckQuery(editor, "update", blog("1", "editor")),
+                new CheckQuery(editor, "update", blog("2", "someone-else")),
+                new CheckQuery(new User.Builder("stranger").build(), "create", new Resource.Builder("blog").build()));
+
+        try (var transport = transport(settings(8, Duration.ofSeconds(2)))) {
+            for (CheckQuery check : checks) {
+                assertThat(transport.check(check.user, check.action, check.resource))
+                        .isEqualTo(permit.check(check.user, check.action, check.resource));
+            }
+            assertThat(transport.bulkCheck(checks)).containsExactly(true, true, false, false);
+        }
+    }
+
+    @Test
+    void reusesPooledConnectionsUnderConcurrency() throws Exception {
+        server.setSettings(new StandInPermitServer.Settings(Duration.ofMillis(1), Duration.ZERO, 0));
+        var user = new User.Builder("reader").build();
+        try (var transport = transport(settings(8, Duration.ofSeconds(2)));
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> checks = new ArrayList<>();
+            for (int i = 0; i < 640; i++) {
+                var resource = new Resource.Builder("blog").withKey(String.valueOf(i)).build();
+                checks.add(executor.submit(() -> transport.check(user, "read", resource)));
+            }
+            for (Future<Boolean> check : checks) {
+                check.get(10, TimeUnit.SECONDS);
+            }
+
+            assertThat(transport.connects()).isLessThanOrEqualTo(8);
+            assertThat(transport.idleConnections()).isEqualTo(transport.connections()).isLessThanOrEqualTo(8);
+        }
+    }
+
+    @Test
+    void countsReadTimeouts() throws Exception {
+        server.setSettings(new StandInPermitServer.Settings(Duration.ofMillis(500), Duration.ZERO, 0));
+        try (var transport = transport(settings(8, Duration.ofMillis(50)))) {
+            assertThatThrownBy(() -> transport.check(new User.Builder("reader").build(), "read", blog("1", "editor")))
+                    .isInstanceOf(IOException.class);
+
+            assertThat(transport.readTimeouts()).isEqualTo(1);
+            assertThat(transport.connectTimeouts()).isZero();
+        }
+    }
+
+    private PdpHttpTransport transport(PermitProperties.Transport settings) {
+        return new PdpHttpTransport(server.url(), "stand-in", settings);
+    }
+
+    private static PermitProperties.Transport settings(int maxConnections, Duration readTimeout) {
+        var settings = new PermitProperties.Transport();
+        settings.setEnabled(true);
+        settings.setMaxConnections(maxConnections);
+        settings.setReadTimeout(readTimeout);
+        return settings;
+    }
+
+    private static Resource blog(String key, String author) {
+        var attributes = new HashMap<String, Object>();
+        attributes.put("author", author);
+        return new Resource.Builder("blog").withKey(key).withAttributes(attributes).build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.support.StubPdpClient;
+import com.example.permitjavaexample.sync.PermitSyncOutbox;
+import com.example.permitjavaexample.sync.PolicyWriter;
+import com.example.permitjavaexample.sync.SyncListener;
+import com.example.permitjavaexample.sync.SyncOperation;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PermissionPrefetchTests {
+    private final User alice = new User.Builder("alice").build();
+    private final User bob = new User.Builder("bob").build();
+
+    @Test
+    void fetchesEachUsersPermissionsOnceAndSharesConcurrentFetches() throws Exception {
+        var pdp = new StubPdpClient((u, action, resource) -> true, Duration.ofMillis(50));
+        pdp.setUserPermissions(u -> Map.of("folder:1", Set.of("folder:read")));
+        var prefetch = new PermissionPrefetch(pdp, true, Duration.ofMinutes(1), 100);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        var start = new CountDownLatch(1);
+        List<Future<PermissionPrefetch.Grants>> lookups = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lookups.add(executor.submit(() -> {
+                start.await();
+                return prefetch.grants(alice, "folder", "read");
+            }));
+        }
+        start.countDown();
+        for (Future<PermissionPrefetch.Grants> lookup : lookups) {
+            assertThat(lookup.get(5, TimeUnit.SECONDS).instanceKeys()).containsExactly("1");
+        }
+        executor.shutdown();
+
+        assertThat(pdp.roundTrips()).isEqualTo(1);
+        assertThat(prefetch.fetches()).isEqualTo(1);
+        assertThat(prefetch.hits()).isEqualTo(19);
+    }
+
+    @Test
+    void dropsPermissionsTheApplicationChanges() {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        var shared = new ArrayList<String>();
+        pdp.setUserPermissions(u -> u.getKey().equals("bob") ? Map.of("folder:1", Set.copyOf(shared)) : Map.of());
+        var prefetch = new PermissionPrefetch(pdp, true, Duration.ofMinutes(1), 100);
+        assertThat(prefetch.grants(bob, "folder", "read").permits("1")).isFalse();
+        prefetch.grants(alice, "folder", "read");
+
+        shared.add("folder:read");
+        prefetch.applied(new SyncOperation.AssignResourceRole("viewer", "bob", "folder:1", "default"));
+        assertThat(prefetch.grants(bob, "folder", "read").permits("1")).isTrue();
+        assertThat(pdp.roundTrips()).isEqualTo(3);
+
+        // a relationship tuple can derive roles for anyone
+        prefetch.applied(new SyncOperation.CreateRelationshipTuple("blog:1", "parent", "comment:1"));
+        prefetch.grants(alice, "folder", "read");
+        prefetch.grants(bob, "folder", "read");
+        assertThat(pdp.roundTrips()).isEqualTo(5);
+    }
+
+    @Test
+    void keepsNoPermissionsFetchedBeforeAQueuedRoleReachedPermit() throws Exception {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        var inPermit = ConcurrentHashMap.<String>newKeySet();
+        pdp.setUserPermissions(u -> u.getKey().equals("bob") ? Map.of("folder:1", Set.copyOf(inPermit)) : Map.of());
+        var prefetch = new PermissionPrefetch(pdp, true, Duration.ofMinutes(1), 100);
+        var beans = new StaticListableBeanFactory();
+        beans.addBean("prefetch", prefetch);
+        var gate = new CountDownLatch(1);
+        PolicyWriter permit = operation -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inPermit.add("folder:read");
+        };
+        var outbox = new PermitSyncOutbox(permit, new DecisionCache(false, 0, Duration.ZERO), AuthzMetrics.unpublished(),
+                beans.getBeanProvider(SyncListener.class), true, 1, 64, 3, Duration.ofMillis(10), Duration.ofMillis(10), false);
+        try {
+            outbox.submit(new SyncOperation.AssignResourceRole("viewer", "bob", "folder:1", "default"));
+            // a listing while the role is still queued sees what Permit has so far
+            assertThat(prefetch.grants(bob, "folder", "read").permits("1")).isFalse();
+
+            gate.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!prefetch.grants(bob, "folder", "read").permits("1") && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(prefetch.grants(bob, "folder", "read").permits("1")).isTrue();
+        } finally {
+            gate.countDown();
+            outbox.shutdown();
+        }
+    }
+
+    @Test
+    void leavesConditionalPermissionsAndFailuresToItemByItemChecks() {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        pdp.setUserPermissions(u -> Map.of("__tenant:default", Set.of("blog:read")));
+        var prefetch = new PermissionPrefetch(pdp, true, Duration.ofMinutes(1), 100);
+
+        assertThat(prefetch.grants(alice, "blog", "read").all()).isTrue();
+        // editors may update their own blogs through the own_blog condition set
+        assertThat(prefetch.grants(alice, "blog", "update")).isNull();
+
+        pdp.setFailing(true);
+        assertThat(prefetch.grants(bob, "blog", "read")).isNull();
+        pdp.setFailing(false);
+        assertThat(prefetch.grants(bob, "blog", "read")).isNotNull();
+    }
+
+    @Test
+    void staysWithinMaxUsers() {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        var prefetch = new PermissionPrefetch(pdp, true, Duration.ofMinutes(1), 10);
+        for (int i = 0; i < 100; i++) {
+            prefetch.grants(new User.Builder("user-" + i).build(), "folder", "read");
+        }
+        assertThat(prefetch.fetches()).isEqualTo(100);
+        prefetch.grants(new User.Builder("user-99").build(), "folder", "read");
+        assertThat(prefetch.hits()).isEqualTo(1);
+    }
+}
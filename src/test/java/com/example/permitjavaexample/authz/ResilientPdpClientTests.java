@@ -0,0 +1,110 @@
+package com.example.permitjavaexample.authz;
+
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientPdpClientTests {
+    private final User user = new User.Builder("user-1").build();
+    private final Resource blog = new Resource.Builder("blog").withKey("1").build();
+    private final AuthzMetrics metrics = AuthzMetrics.unpublished();
+
+    @Test
+    void failsFastOnceTheDeadlinePasses() {
+        var pdp = StubPdpClient.allowAll(Duration.ofSeconds(5));
+        var client = new ResilientPdpClient(pdp, metrics, Duration.ofMillis(50), null, false, 0.95, Duration.ZERO);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.check(user, "read", blog)).isInstanceOf(PdpUnavailableException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(events("timeout")).isEqualTo(1);
+        client.shutdown();
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndClosesAfterSuccessfulProbes() throws Exception {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        var breaker = new CircuitBreaker(0.5, 4, 4, Duration.ofMillis(100), 2);
+        var client = new ResilientPdpClient(pdp, metrics, Duration.ofSeconds(1), breaker, false, 0.95, Duration.ZERO);
+
+        pdp.setFailing(true);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.check(user, "read", blog)).isInstanceOf(PdpUnavailableException.class);
+        }
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        long roundTrips = pdp.roundTrips();
+        assertThatThrownBy(() -> client.check(user, "read", blog)).isInstanceOf(PdpUnavailableException.class);
+        assertThat(pdp.roundTrips()).isEqualTo(roundTrips);
+        assertThat(events("short_circuited")).isEqualTo(1);
+
+        pdp.setFailing(false);
+        Thread.sleep(150);
+        assertThat(client.check(user, "read", blog)).isTrue();
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(client.check(user, "read", blog)).isTrue();
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        client.shutdown();
+    }
+
+    @Test
+    void hedgeAnswersWhenTheFirstRequestStalls() throws Exception {
+        var stallNext = new AtomicBoolean();
+        PdpClient pdp = new PdpClient() {
+            @Override
+            public boolean check(User user, String action, Resource resource) {
+                // a request stuck behind a slow PDP replica; the hedge that follows it is not
+                if (stallNext.getAndSet(false)) {
+                    LockSupport.parkNanos(Duration.ofSeconds(2).toNanos());
+                }
+                return true;
+            }
+
+            @Override
+            public List<Boolean> bulkCheck(List<CheckQuery> checks) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        var client = new ResilientPdpClient(pdp, metrics, Duration.ofSeconds(5), null, true, 0.95, Duration.ofMillis(20));
+        for (int i = 0; i < 300; i++) {
+            client.check(user, "read", blog);
+        }
+        assertThat(events("hedge_sent")).isZero();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            stallNext.set(true);
+            assertThat(client.check(user, "read", blog)).isTrue();
+        }
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(events("hedge_sent")).isEqualTo(5);
+        assertThat(events("hedge_won")).isEqualTo(5);
+        client.shutdown();
+    }
+
+    private double events(String event) {
+        var counter = metrics.registry().find(AuthzMetrics.PDP_RESILIENCE).tag("event", event).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.permitjavaexample.authz.policy;
+
+import com.example.permitjavaexample.BlogControllerIntegrationTests;
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.exception.ForbiddenAccessException;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.exception.PreconditionFailedException;
+import com.example.permitjavaexample.exception.ResourceNotFoundException;
+import com.example.permitjavaexample.exception.UnauthorizedException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Versioned;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.search.BlogSearchIndex;
+import com.example.permitjavaexample.service.BlogService;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StubPdpClient;
+import com.example.permitjavaexample.support.StubPolicyWriter;
+import com.example.permitjavaexample.sync.PermitSyncOutbox;
+import com.example.permitjavaexample.sync.SyncListener;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpStatus;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays the scenarios of {@link BlogControllerIntegrationTests}, one test each under the same name, through
+ * {@link BlogService} with the embedded evaluator in authoritative mode and an unreachable PDP behind it, so every
+ * decision the evaluator does not make fails as unavailable. The facts are the ones the services write. Each
+ * scenario expects the status its integration test asserts against the real policy in Permit: where that is a
+ * success the evaluator must allow every check on the way, and where it is 403 the evaluator must never allow.
+ */
+class LocalPolicyEvaluatorConformanceTests {
+
+    @FunctionalInterface
+    private interface Request {
+        void send();
+    }
+
+    private LocalPolicyEvaluator evaluator;
+    private BlogService blogService;
+    private User viewer1;
+    private User viewer2;
+    private User editor1;
+    private User editor2;
+    private User admin;
+    private Blog blog1;
+    private Blog blog2;
+
+    @BeforeEach
+    void setUp() {
+        evaluator = new LocalPolicyEvaluator(BlogPolicy.model(), true, true);
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        pdp.setFailing(true);
+        var decisionCache = new DecisionCache(false, 0, Duration.ZERO);
+        var beans = new StaticListableBeanFactory();
+        beans.addBean("localPolicyEvaluator", evaluator);
+        var outbox = new PermitSyncOutbox(new StubPolicyWriter(Duration.ZERO), decisionCache, AuthzMetrics.unpublished(),
+                beans.getBeanProvider(SyncListener.class), false, 1, 1, 1, Duration.ZERO, Duration.ZERO, false);
+        var userService = new UserService(null, pdp, decisionCache, evaluator, AuthzMetrics.unpublished(), 100);
+        var blogRepository = new BlogRepository();
+        var commentRepository = new CommentRepository(blogRepository);
+        blogService = new BlogService(blogRepository, commentRepository, new BlogSearchIndex(blogRepository, commentRepository),
+                userService, outbox, false);
+
+        viewer1 = signup("viewer-user-1", "viewer");
+        viewer2 = signup("viewer-user-2", "viewer");
+        editor1 = signup("editor-user-1", "editor");
+        editor2 = signup("editor-user-2", "editor");
+        admin = signup("admin-user-1", "admin");
+
+        blog1 = blogService.addBlog(editor1, "First Blog Post");
+        blog2 = blogService.addBlog(editor2, "Second Blog Post");
+    }
+
+    @Test
+    void replaysEveryIntegrationScenario() {
+        assertThat(testsOf(LocalPolicyEvaluatorConformanceTests.class)).containsAll(testsOf(BlogControllerIntegrationTests.class));
+    }
+
+    @Test
+    void listBlogsUnauthenticated() {
+        expect(HttpStatus.UNAUTHORIZED, () -> blogService.getAllBlogs(null));
+    }
+
+    @Test
+    void listBlogsAsUnknown() {
+        expect(HttpStatus.FORBIDDEN, () -> blogService.getAllBlogs(new User.Builder("someone").build()));
+    }
+
+    @Test
+    void listBlogs() {
+        expect(HttpStatus.OK, () -> blogService.getAllBlogs(viewer1));
+    }
+
+    @Test
+    void searchBlogs() {
+        expect(HttpStatus.OK, () -> blogService.searchBlogs(viewer1, "first", null, 20));
+    }
+
+    @Test
+    void getBlogById() {
+        expect(HttpStatus.OK, () -> blogService.getBlog(viewer1, blog1.getId()));
+    }
+
+    @Test
+    void getBlogByIdNotFound() {
+        expect(HttpStatus.NOT_FOUND, () -> blogService.getBlog(viewer1, 999));
+    }
+
+    @Test
+    void createBlog() {
+        expect(HttpStatus.CREATED, () -> blogService.addBlog(editor1, "Test Content"));
+    }
+
+    @Test
+    void createBlogForbidden() {
+        expect(HttpStatus.FORBIDDEN, () -> blogService.addBlog(viewer1, "Test Content"));
+    }
+
+    @Test
+    void updateOwnBlog() {
+        expect(HttpStatus.OK, () -> blogService.updateBlog(editor1, blog1.getId(), "Test Content", Versioned.ANY_VERSION));
+    }
+
+    @Test
+    void updateOthersBlogForbidden() {
+        expect(HttpStatus.FORBIDDEN, () -> blogService.updateBlog(editor1, blog2.getId(), "Test Content", Versioned.ANY_VERSION));
+    }
+
+    @Test
+    void updateBlogNotFound() {
+        expect(HttpStatus.NOT_FOUND, () -> blogService.updateBlog(editor1, 999, "Test Content", Versioned.ANY_VERSION));
+    }
+
+    @Test
+    void deleteOwnBlog() {
+        var blog = blogService.addBlog(editor1, "Test Content");
+        expect(HttpStatus.OK, () -> blogService.deleteBlog(editor1, blog.getId()));
+    }
+
+    @Test
+    void deleteOthersBlogForbidden() {
+        expect(HttpStatus.FORBIDDEN, () -> blogService.deleteBlog(editor1, blog2.getId()));
+    }
+
+    @Test
+    void deleteOthersBlogAsAdmin() {
+        var blog = blogService.addBlog(editor1, "Test Content");
+        expect(HttpStatus.OK, () -> blogService.deleteBlog(admin, blog.getId()));
+    }
+
+    @Test
+    void deleteBlogNotFound() {
+        expect(HttpStatus.NOT_FOUND, () -> blogService.deleteBlog(editor1, 999));
+    }
+
+    @Test
+    void getUnchangedBlogIsNotModified() {
+        expect(HttpStatus.OK, () -> blogService.getBlog(viewer1, blog1.getId()));
+        expect(HttpStatus.UNAUTHORIZED, () -> blogService.getBlog(null, blog1.getId()));
+    }
+
+    @Test
+    void getBlogInAnotherRepresentationIsNotNotModified() {
+        expect(HttpStatus.OK, () -> blogService.getBlog(viewer1, blog1.getId()));
+    }
+
+    @Test
+    void updateBlogWithStaleVersionFails() {
+        var blog = blogService.addBlog(editor1, "Versioned Content");
+        long version = blog.getVersion();
+        expect(HttpStatus.OK, () -> blogService.updateBlog(editor1, blog.getId(), "Edit 1", version));
+        expect(HttpStatus.PRECONDITION_FAILED, () -> blogService.updateBlog(editor1, blog.getId(), "Edit 2", version));
+    }
+
+    @Test
+    void createComment() {
+        expect(HttpStatus.OK, () -> blogService.addComment(viewer1, blog1.getId(), "Test Content"));
+    }
+
+    @Test
+    void listCommentsPageByPage() {
+        var blog = blogService.addBlog(editor2, "Commented Blog Post");
+        for (int i = 0; i < 3; i++) {
+            blogService.addComment(viewer1, blog.getId(), "Comment " + i);
+        }
+        expect(HttpStatus.OK, () -> blogService.getComments(viewer2, blog.getId(), null, 2));
+        expect(HttpStatus.OK, () -> blogService.getBlog(viewer2, blog.getId()));
+    }
+
+    @Test
+    void updateOwnComment() {
+        var comment = blogService.addComment(viewer1, blog1.getId(), "Test Content");
+        expect(HttpStatus.OK, () -> blogService.updateComment(viewer1, blog1.getId(), comment.getId(), "Updated Content", Versioned.ANY_VERSION));
+    }
+
+    @Test
+    void deleteOwnComment() {
+        var comment = blogService.addComment(viewer1, blog1.getId(), "Test Content");
+        expect(HttpStatus.OK, () -> blogService.deleteComment(viewer1, blog1.getId(), comment.getId()));
+    }
+
+    @Test
+    void updateOthersCommentForbidden() {
+        var comment = blogService.addComment(viewer1, blog1.getId(), "Test Content");
+        expect(HttpStatus.FORBIDDEN, () -> blogService.updateComment(viewer2, blog1.getId(), comment.getId(), "Updated Content", Versioned.ANY_VERSION));
+    }
+
+    @Test
+    void deleteOthersCommentOnOwnBlog() {
+        var comment = blogService.addComment(viewer1, blog1.getId(), "Test Content");
+        expect(HttpStatus.OK, () -> blogService.deleteComment(editor1, blog1.getId(), comment.getId()));
+    }
+
+    @Test
+    void updateOthersCommentOnOwnBlogForbidden() {
+        var comment = blogService.addComment(viewer1, blog1.getId(), "Test Content");
+        expect(HttpStatus.FORBIDDEN, () -> blogService.updateComment(editor1, blog1.getId(), comment.getId(), "Updated Content", Versioned.ANY_VERSION));
+    }
+
+    @Test
+    void deleteOthersCommentOnOthersBlogsForbidden() {
+        var comment = blogService.addComment(viewer1, blog1.getId(), "Test Content");
+        expect(HttpStatus.FORBIDDEN, () -> blogService.deleteComment(editor2, blog1.getId(), comment.getId()));
+    }
+
+    @Test
+    void deleteOthersCommentOnOthersBlogAsAdmin() {
+        var comment = blogService.addComment(viewer1, blog1.getId(), "Test Content");
+        expect(HttpStatus.OK, () -> blogService.deleteComment(admin, blog1.getId(), comment.getId()));
+    }
+
+    /**
+     * What {@code UserService.signup} and {@code assignRole} record once Permit has taken the user and the role.
+     */
+    private User signup(String key, String role) {
+        evaluator.userSynced(key);
+        evaluator.tenantRoleAssigned(key, role);
+        return new User.Builder(key).build();
+    }
+
+    private static void expect(HttpStatus expected, Request request) {
+        HttpStatus status = statusOf(request);
+        if (expected.is2xxSuccessful()) {
+            assertThat(status).as("allowed by the policy, so allowed by the evaluator").isEqualTo(HttpStatus.OK);
+        } else if (expected == HttpStatus.FORBIDDEN) {
+            assertThat(status).as("denied by the policy, so never allowed by the evaluator")
+                    .isIn(HttpStatus.FORBIDDEN, HttpStatus.SERVICE_UNAVAILABLE);
+        } else {
+            assertThat(status).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * The status {@code GlobalExceptionHandler} answers the request with.
+     */
+    private static HttpStatus statusOf(Request request) {
+        try {
+            request.send();
+            return HttpStatus.OK;
+        } catch (UnauthorizedException e) {
+            return HttpStatus.UNAUTHORIZED;
+        } catch (ForbiddenAccessException e) {
+            return HttpStatus.FORBIDDEN;
+        } catch (ResourceNotFoundException e) {
+            return HttpStatus.NOT_FOUND;
+        } catch (PreconditionFailedException e) {
+            return HttpStatus.PRECONDITION_FAILED;
+        } catch (PdpUnavailableException e) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+    }
+
+    private static Set<String> testsOf(Class<?> type) {
+        return Arrays.stream(type.getDeclaredMethods())
+                .filter(method -> method.isAnnotationPresent(Test.class))
+                .map(Method::getName)
+                .collect(Collectors.toSet());
+    }
+}
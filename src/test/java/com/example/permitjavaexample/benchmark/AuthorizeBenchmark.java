@@ -0,0 +1,52 @@
+package com.example.permitjavaexample.benchmark;
+
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code UserService.authorize} for a rotating set of blog instances, with and without the decision cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AuthorizeBenchmark {
+
+    @Param({"true", "false"})
+    public boolean decisionCache;
+
+    @Param({"0", "200"})
+    public long pdpLatencyMicros;
+
+    @Param({"1000"})
+    public int instances;
+
+    private BenchmarkFixture fixture;
+    private User user;
+    private Resource[] resources;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        fixture = new BenchmarkFixture(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(pdpLatencyMicros)), Duration.ZERO, decisionCache);
+        user = new User.Builder("reader").build();
+        resources = new Resource[instances];
+        for (int i = 0; i < instances; i++) {
+            var attributes = new HashMap<String, Object>();
+            attributes.put("author", "author-" + i % 10);
+            resources[i] = new Resource.Builder("blog").withKey(String.valueOf(i)).withAttributes(attributes).build();
+        }
+    }
+
+    @Benchmark
+    public void authorize() {
+        fixture.userService.authorize(user, "read", resources[next++ % instances]);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.authz.BatchingPdpClient;
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A wave of concurrent clients, each authorizing a distinct blog, against a PDP that serves {@code pdpWorkers}
+ * requests at a time, with and without {@link BatchingPdpClient}. The score is the time for the whole wave, which is
+ * also the latency of its slowest request; throughput is {@code clients} divided by it. Running the
+ * {@code clients} values in sequence gives the throughput and latency curves of both paths. The number of PDP
+ * requests per check is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BatchingBenchmark {
+
+    @Param({"1", "16", "64", "256", "1024"})
+    public int clients;
+
+    @Param({"true", "false"})
+    public boolean batching;
+
+    @Param({"1000"})
+    public long pdpLatencyMicros;
+
+    @Param({"16"})
+    public int pdpWorkers;
+
+    private StubPdpClient pdp;
+    private BatchingPdpClient batcher;
+    private UserService userService;
+    private ExecutorService executor;
+    private final LongAdder checks = new LongAdder();
+    private int wave;
+
+    @Setup
+    public void setUp() {
+        pdp = new StubPdpClient((user, action, resource) -> true, Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(pdpLatencyMicros)), pdpWorkers);
+        batcher = new BatchingPdpClient(pdp, AuthzMetrics.unpublished(), batching, 64, Duration.ofMillis(1), pdpWorkers);
+        // caching is off so that every request reaches the PDP path
+        userService = new UserService(null, batcher, new DecisionCache(false, 0, Duration.ZERO),
+                new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%d checks, %d PDP requests (%.3f per check)%n",
+                checks.sum(), pdp.roundTrips(), pdp.roundTrips() / (double) Math.max(1, checks.sum()));
+        executor.shutdownNow();
+        batcher.shutdown();
+    }
+
+    @Benchmark
+    public int wave() throws Exception {
+        // a new blog per client and wave, so in-flight checks are never identical and cannot be coalesced
+        int first = wave++ * clients;
+        List<Future<?>> requests = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            var user = new User.Builder("user-" + i).build();
+            var resource = new Resource.Builder("blog").withKey(String.valueOf(first + i)).build();
+            requests.add(executor.submit(() -> userService.authorize(user, "read", resource)));
+        }
+        for (Future<?> request : requests) {
+            request.get();
+        }
+        checks.add(clients);
+        return requests.size();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.PdpClient;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.search.BlogSearchIndex;
+import com.example.permitjavaexample.service.BlogService;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StubPdpClient;
+import com.example.permitjavaexample.support.StubPolicyWriter;
+import com.example.permitjavaexample.sync.PermitSyncOutbox;
+import com.example.permitjavaexample.sync.SyncListener;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+
+/**
+ * Wires the services the way the application context does, with stub PDP and management API clients in place of
+ * the Permit SDK.
+ */
+final class BenchmarkFixture {
+    final PdpClient pdp;
+    final DecisionCache decisionCache;
+    final UserService userService;
+    final PermitSyncOutbox outbox;
+    final BlogRepository blogRepository = new BlogRepository();
+    final CommentRepository commentRepository = new CommentRepository(blogRepository);
+    final BlogSearchIndex searchIndex = new BlogSearchIndex(blogRepository, commentRepository);
+    final BlogService blogService;
+
+    BenchmarkFixture(Duration pdpLatency, Duration apiLatency, boolean decisionCacheEnabled) {
+        pdp = StubPdpClient.allowAll(pdpLatency);
+        decisionCache = new DecisionCache(decisionCacheEnabled, 10_000, Duration.ofMinutes(1));
+        userService = new UserService(null, pdp, decisionCache, new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        outbox = new PermitSyncOutbox(new StubPolicyWriter(apiLatency), decisionCache, AuthzMetrics.unpublished(),
+                new StaticListableBeanFactory().getBeanProvider(SyncListener.class),
+                false, 1, 1, 1, Duration.ZERO, Duration.ZERO, false);
+        blogService = new BlogService(blogRepository, commentRepository, searchIndex, userService, outbox, false);
+    }
+}
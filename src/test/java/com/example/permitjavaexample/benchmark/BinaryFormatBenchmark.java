@@ -0,0 +1,95 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.config.JacksonConfig;
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding cost of a page of blogs, each with its first page of comments, in JSON, CBOR and Smile, with
+ * mappers configured like the HTTP message converters. Decoding reads into plain records, as a service client would.
+ * The encoded size in each format is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+    public record BlogWithComments(Blog blog, List<Comment> comments) {
+    }
+
+    public record BlogPayload(Integer id, String tenant, String author, String content, String snippet, long version,
+                              int commentCount) {
+    }
+
+    public record CommentPayload(Integer id, Integer blogId, String author, String content, long version) {
+    }
+
+    public record BlogWithCommentsPayload(BlogPayload blog, List<CommentPayload> comments) {
+    }
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"0", "20"})
+    public int commentsPerBlog;
+
+    @Param({"50"})
+    public int listSize;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<BlogWithComments> blogs;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json();
+            case "cbor" -> Jackson2ObjectMapperBuilder.json().factory(new CBORFactory());
+            case "smile" -> Jackson2ObjectMapperBuilder.json().factory(new SmileFactory());
+            default -> throw new IllegalArgumentException(format);
+        };
+        ObjectMapper objectMapper = builder.filters(JacksonConfig.defaultFilters()).build();
+        // no view: the wrapper and comments are not in one, and everything a blog has is written
+        writer = objectMapper.writer();
+        reader = objectMapper.readerFor(new TypeReference<List<BlogWithCommentsPayload>>() {
+        });
+        blogs = new ArrayList<>(listSize);
+        String words = "lorem ipsum dolor sit amet ";
+        for (int i = 1; i <= listSize; i++) {
+            var blog = new Blog(i, "author-" + i % 10, "blog " + i + " " + words.repeat(20));
+            blog.setCommentCount(commentsPerBlog);
+            List<Comment> comments = new ArrayList<>(commentsPerBlog);
+            for (int c = 1; c <= commentsPerBlog; c++) {
+                comments.add(new Comment(i * 1000 + c, i, "commenter-" + c, "comment " + c + " " + words.repeat(2)));
+            }
+            blogs.add(new BlogWithComments(blog, comments));
+        }
+        encoded = encode();
+        System.out.printf("%n%d blogs with %d comments each: %d bytes in %s%n", listSize, commentsPerBlog, encoded.length, format);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return writer.writeValueAsBytes(blogs);
+    }
+
+    @Benchmark
+    public List<BlogWithCommentsPayload> decode() throws Exception {
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Page;
+import com.example.permitjavaexample.model.Versioned;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The blog and comment paths of {@code BlogService}, including their authorization checks and the (inline)
+ * management API writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BlogServiceBenchmark {
+
+    @Param({"0", "200"})
+    public long pdpLatencyMicros;
+
+    @Param({"0"})
+    public long apiLatencyMicros;
+
+    @Param({"1000"})
+    public int blogCount;
+
+    private BenchmarkFixture fixture;
+    private User author;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        fixture = new BenchmarkFixture(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(pdpLatencyMicros)),
+                Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(apiLatencyMicros)), true);
+        author = new User.Builder("author").build();
+        for (int i = 0; i < blogCount; i++) {
+            fixture.blogService.addBlog(author, "content " + i);
+        }
+    }
+
+    private int anyBlogId() {
+        return next++ % blogCount + 1;
+    }
+
+    @Benchmark
+    public Blog getBlog() {
+        return fixture.blogService.getBlog(author, anyBlogId());
+    }
+
+    @Benchmark
+    public Page<Blog> listPage() {
+        return fixture.blogService.getBlogs(author, null, 50);
+    }
+
+    @Benchmark
+    public Blog updateBlog() {
+        return fixture.blogService.updateBlog(author, anyBlogId(), "updated", Versioned.ANY_VERSION);
+    }
+
+    @Benchmark
+    public void createAndDeleteBlog() {
+        Blog blog = fixture.blogService.addBlog(author, "short lived");
+        fixture.blogService.deleteBlog(author, blog.getId());
+    }
+
+    @Benchmark
+    public void addAndDeleteComment() {
+        int blogId = anyBlogId();
+        Comment comment = fixture.blogService.addComment(author, blogId, "a comment");
+        fixture.blogService.deleteComment(author, blogId, comment.getId());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.InFlightChecks;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Many threads authorizing the same few (user, action, blog) checks at once, as when a popular blog is hit by a
+ * burst of reads, with and without coalescing of in-flight checks. The decision cache is off so that every call
+ * reaches the PDP path; the number of PDP requests per call is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(64)
+@Fork(1)
+public class CoalescingBenchmark {
+
+    @Param({"true", "false"})
+    public boolean coalesce;
+
+    @Param({"1", "16"})
+    public int hotKeys;
+
+    @Param({"1000"})
+    public long pdpLatencyMicros;
+
+    private StubPdpClient pdp;
+    private UserService userService;
+    private User user;
+    private Resource[] resources;
+    private final LongAdder calls = new LongAdder();
+
+    @Setup
+    public void setUp() {
+        pdp = StubPdpClient.allowAll(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(pdpLatencyMicros)));
+        userService = new UserService(null, pdp, new DecisionCache(false, 0, Duration.ZERO), new InFlightChecks(coalesce),
+                new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        user = new User.Builder("reader").build();
+        resources = new Resource[hotKeys];
+        for (int i = 0; i < hotKeys; i++) {
+            resources[i] = new Resource.Builder("blog").withKey(String.valueOf(i)).build();
+        }
+    }
+
+    @TearDown
+    public void report() {
+        System.out.printf("%n%d calls, %d PDP requests (%.3f per call)%n",
+                calls.sum(), pdp.roundTrips(), pdp.roundTrips() / (double) Math.max(1, calls.sum()));
+    }
+
+    @Benchmark
+    public boolean authorize() {
+        calls.increment();
+        return userService.isPermitted(user, "read", resources[ThreadLocalRandom.current().nextInt(hotKeys)]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.exception.ForbiddenAccessException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-instance filtering of a blog listing: bulk-checked chunks versus one PDP round trip per blog.
+ * The stub PDP charges a fixed latency per round trip and allows a user their own blogs plus every other blog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class FilteredListingBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int blogCount;
+
+    @Param({"100"})
+    public int chunkSize;
+
+    @Param({"200"})
+    public long pdpLatencyMicros;
+
+    private UserService userService;
+    private User reader;
+    private List<Blog> blogs;
+
+    @Setup
+    public void setUp() {
+        var pdp = new StubPdpClient(
+                (user, action, resource) -> user.getKey().equals(resource.getAttributes().get("author"))
+                        || Integer.parseInt(resource.getKey()) % 2 == 0,
+                Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(pdpLatencyMicros)));
+        // caching is off so that every invocation pays for its decisions
+        var cache = new DecisionCache(false, 0, Duration.ZERO);
+        userService = new UserService(null, pdp, cache, new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), chunkSize);
+        reader = new User.Builder("reader").build();
+        blogs = new ArrayList<>(blogCount);
+        for (int i = 1; i <= blogCount; i++) {
+            blogs.add(new Blog(i, i % 10 == 0 ? "reader" : "author-" + i, "content " + i));
+        }
+    }
+
+    @Benchmark
+    public List<Blog> bulkChunks() {
+        return userService.filterAuthorized(reader, "read", blogs, FilteredListingBenchmark::resourceOf);
+    }
+
+    @Benchmark
+    public List<Blog> perItemLoop() {
+        List<Blog> visible = new ArrayList<>();
+        for (Blog blog : blogs) {
+            try {
+                userService.authorize(reader, "read", resourceOf(blog));
+                visible.add(blog);
+            } catch (ForbiddenAccessException e) {
+                // not visible
+            }
+        }
+        return visible;
+    }
+
+    private static Resource resourceOf(Blog blog) {
+        var attributes = new HashMap<String, Object>();
+        attributes.put("author", blog.getAuthor());
+        return new Resource.Builder("blog").withKey(blog.getId().toString()).withAttributes(attributes).build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.config.VauthzCheck;
+import com.example.permitjavaexample.config.VauthzInterceptor;
+import com.example.permitjavaexample.interceptor.UserInterceptor;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.service.UserService;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request interceptors: resolving the caller from the bearer token, and {@link VauthzCheck} handlers, both
+ * through the precompiled plans and through the per-request reflection {@code VauthzInterceptor} used to do.
+ * The decision cache is on so that the scores show the interceptor's own cost rather than the PDP's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class InterceptorBenchmark {
+
+    @Param({"0", "200"})
+    public long pdpLatencyMicros;
+
+    private UserInterceptor userInterceptor;
+    private VauthzInterceptor vauthzInterceptor;
+    private UserService userService;
+    private HandlerMethod handler;
+    private HandlerMethod instanceHandler;
+    private MockHttpServletRequest request;
+    private MockHttpServletRequest instanceRequest;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        var fixture = new BenchmarkFixture(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(pdpLatencyMicros)), Duration.ZERO, true);
+        userService = fixture.userService;
+        userInterceptor = new UserInterceptor(userService);
+        vauthzInterceptor = new VauthzInterceptor(userService, AuthzMetrics.unpublished());
+        handler = new HandlerMethod(new Handlers(), Handlers.class.getMethod("readBlogs"));
+        instanceHandler = new HandlerMethod(new Handlers(), Handlers.class.getMethod("updateBlog"));
+        vauthzInterceptor.compile(Map.of(
+                RequestMappingInfo.paths("/api/blogs").build(), handler,
+                RequestMappingInfo.paths("/api/blogs/{id}").build(), instanceHandler));
+
+        var user = new User.Builder("reader").build();
+        request = new MockHttpServletRequest("GET", "/api/blogs");
+        request.addHeader("Authorization", "Bearer reader");
+        request.setAttribute("user", user);
+        instanceRequest = new MockHttpServletRequest("PUT", "/api/blogs/42");
+        instanceRequest.setAttribute("user", user);
+        instanceRequest.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("id", "42"));
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public boolean userInterceptor() throws Exception {
+        return userInterceptor.preHandle(request, response, handler);
+    }
+
+    @Benchmark
+    public boolean vauthzInterceptor() throws Exception {
+        return vauthzInterceptor.preHandle(request, response, handler);
+    }
+
+    @Benchmark
+    public boolean vauthzInterceptorInstance() throws Exception {
+        return vauthzInterceptor.preHandle(instanceRequest, response, instanceHandler);
+    }
+
+    /**
+     * What {@code VauthzInterceptor.preHandle} did before plans were precompiled.
+     */
+    @Benchmark
+    public boolean reflectiveBaseline() {
+        Method method = handler.getMethod();
+        VauthzCheck vauthzCheck = method.getAnnotation(VauthzCheck.class);
+        User user = (User) request.getAttribute("user");
+        Resource resource = Resource.fromString(vauthzCheck.resource());
+        return userService.isPermitted(user, vauthzCheck.action(), resource);
+    }
+
+    public static class Handlers {
+        @VauthzCheck(resource = "blog", action = "read")
+        public void readBlogs() {
+        }
+
+        @VauthzCheck(resource = "blog", action = "update", key = "id")
+        public void updateBlog() {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.authz.PdpClient;
+import com.example.permitjavaexample.authz.PdpHttpTransport;
+import com.example.permitjavaexample.authz.PermitPdpClient;
+import com.example.permitjavaexample.config.PermitProperties;
+import com.example.permitjavaexample.support.StandInPermitServer;
+import io.permit.sdk.Permit;
+import io.permit.sdk.PermitConfig;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 64 threads checking against the stand-in PDP over HTTP, through the Permit SDK's own client ({@code sdk}) and
+ * through {@link PdpHttpTransport} pools of {@code pool} connections. The SDK keeps only five idle connections, so
+ * most of the concurrent checks open a new one and it is closed again once released; a pool that fits the
+ * concurrency reuses its connections, while a smaller one queues checks behind them. The connections each pool
+ * opened per check are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(64)
+@Fork(1)
+public class PdpTransportBenchmark {
+
+    @Param({"sdk", "8", "64"})
+    public String pool;
+
+    @Param({"1000"})
+    public long pdpLatencyMicros;
+
+    private StandInPermitServer server;
+    private PdpHttpTransport transport;
+    private PdpClient client;
+    private final User user = new User.Builder("reader").build();
+    private final LongAdder checks = new LongAdder();
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new StandInPermitServer(new StandInPermitServer.Settings(
+                Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(pdpLatencyMicros)), Duration.ZERO, 0));
+        var permit = new Permit(new PermitConfig.Builder("stand-in").withPdpAddress(server.url()).withApiUrl(server.url()).build());
+        if (!pool.equals("sdk")) {
+            var settings = new PermitProperties.Transport();
+            settings.setEnabled(true);
+            settings.setMaxConnections(Integer.parseInt(pool));
+            transport = new PdpHttpTransport(server.url(), "stand-in", settings);
+        }
+        client = new PermitPdpClient(permit, transport);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (transport != null) {
+            System.out.printf("%n%d checks, %d connections opened (%.4f per check)%n",
+                    checks.sum(), transport.connects(), transport.connects() / (double) Math.max(1, checks.sum()));
+            transport.close();
+        }
+        server.close();
+    }
+
+    @Benchmark
+    public boolean check() throws Exception {
+        checks.increment();
+        var resource = new Resource.Builder("blog").withKey(String.valueOf(ThreadLocalRandom.current().nextInt(1000))).build();
+        return client.check(user, "read", resource);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.repository.FolderRepository;
+import com.example.permitjavaexample.storage.DurableStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup of a {@link DurableStore} holding a million blogs, restored either by replaying the whole write log or
+ * from a snapshot. The data is written once per trial with fsync off; each invocation restores it into fresh
+ * repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ReplayBenchmark {
+
+    @Param({"1000000"})
+    public int records;
+
+    @Param({"log", "snapshot"})
+    public String restoreFrom;
+
+    private Path directory;
+    private DurableStore opened;
+
+    @Setup(Level.Trial)
+    public void write() throws Exception {
+        directory = Files.createTempDirectory("replay-benchmark");
+        var blogs = new BlogRepository();
+        var store = store(blogs, new FolderRepository());
+        store.open();
+        for (int i = 0; i < records; i++) {
+            blogs.save(new Blog(blogs.nextId(), "author-" + i % 100, "content of blog " + i));
+        }
+        if (restoreFrom.equals("snapshot")) {
+            store.snapshot();
+        }
+        store.close();
+    }
+
+    @Benchmark
+    public int open() throws Exception {
+        var blogs = new BlogRepository();
+        opened = store(blogs, new FolderRepository());
+        opened.open();
+        return blogs.count();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeOpened() throws Exception {
+        opened.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Exception {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    private DurableStore store(BlogRepository blogs, FolderRepository folders) {
+        return new DurableStore(blogs, new CommentRepository(blogs), folders, true, directory, DataSize.ofMegabytes(64), false, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.search.BlogSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency and update cost of the {@link BlogSearchIndex} over a million blogs of a dozen words each, drawn from
+ * a skewed vocabulary so that some terms are in many blogs and most in few. The index size (heap used, terms and
+ * postings) is printed once it is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchBenchmark {
+    private static final int VOCABULARY = 50_000;
+    private static final int WORDS_PER_BLOG = 12;
+
+    @Param({"1000000"})
+    public int documents;
+
+    private BlogRepository blogRepository;
+    private BlogSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void build() {
+        long before = usedHeap();
+        blogRepository = new BlogRepository();
+        index = new BlogSearchIndex(blogRepository, new CommentRepository(blogRepository));
+        var random = new SplittableRandom(42);
+        for (int i = 0; i < documents; i++) {
+            var blog = new Blog(blogRepository.nextId(), "author-" + i % 100, text(random));
+            blogRepository.save(blog);
+            index.reindex(blog.getId());
+        }
+        System.out.printf("%nIndex of %d blogs: %d terms, %d postings, ~%d MB of heap with the blogs%n",
+                index.documents(), index.terms(), index.postings(), (usedHeap() - before) >> 20);
+    }
+
+    /**
+     * Two terms found in a large share of the blogs.
+     */
+    @Benchmark
+    public List<BlogSearchIndex.Hit> commonTerms() {
+        return index.search("w1 w2", 0, 50);
+    }
+
+    /**
+     * A term found in a few dozen blogs.
+     */
+    @Benchmark
+    public List<BlogSearchIndex.Hit> rareTerm() {
+        return index.search("w40000", 0, 50);
+    }
+
+    @Benchmark
+    public List<BlogSearchIndex.Hit> deepPage() {
+        return index.search("w1 w2", 1000, 50);
+    }
+
+    /**
+     * Rewrites a random blog and reindexes it, compactions included.
+     */
+    @Benchmark
+    @Threads(4)
+    public void update() {
+        var random = ThreadLocalRandom.current();
+        Blog blog = blogRepository.findById(random.nextInt(1, documents + 1)).orElseThrow();
+        blogRepository.updateContent(blog, text(new SplittableRandom(random.nextLong())));
+        index.reindex(blog.getId());
+    }
+
+    /**
+     * Words w0, w1, ... with a frequency falling off roughly as 1 / rank.
+     */
+    private static String text(SplittableRandom random) {
+        var text = new StringBuilder(WORDS_PER_BLOG * 8);
+        for (int w = 0; w < WORDS_PER_BLOG; w++) {
+            int word = (int) Math.pow(VOCABULARY, random.nextDouble()) - 1;
+            text.append('w').append(word).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
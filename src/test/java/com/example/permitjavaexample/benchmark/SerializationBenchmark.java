@@ -0,0 +1,110 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.config.JacksonConfig;
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.model.Views;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of response bodies with an {@link ObjectMapper} configured like Spring Boot's. Blog lists are
+ * written in full, in the summary view listings use by default, and narrowed down with a {@code fields} filter, as
+ * the controllers do; compare the three for payload size with {@code -prof gc}, and for size on the wire with the
+ * lengths printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"0", "50"})
+    public int commentsPerBlog;
+
+    @Param({"100"})
+    public int listSize;
+
+    @Param({"4000"})
+    public int contentLength;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter fullWriter;
+    private ObjectWriter summaryWriter;
+    private ObjectWriter fieldsWriter;
+    private Blog blog;
+    private List<Blog> blogs;
+    private List<Folder> folders;
+    private List<Comment> commentPage;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().filters(JacksonConfig.defaultFilters()).build();
+        fullWriter = objectMapper.writerWithView(Views.Full.class);
+        summaryWriter = objectMapper.writerWithView(Views.Summary.class);
+        fieldsWriter = objectMapper.writer().with(new SimpleFilterProvider()
+                .addFilter(Views.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept("id", "author", "commentCount")));
+        String words = "lorem ipsum dolor sit amet ".repeat(contentLength / 27 + 1);
+        blogs = new ArrayList<>(listSize);
+        folders = new ArrayList<>(listSize);
+        for (int i = 1; i <= listSize; i++) {
+            var b = new Blog(i, "author-" + i % 10, "blog " + i + " " + words.substring(0, contentLength));
+            // blogs carry only the count of their comments, which are fetched a page at a time
+            b.setCommentCount(commentsPerBlog);
+            blogs.add(b);
+            folders.add(new Folder(i, "author-" + i % 10, "folder " + i));
+        }
+        blog = blogs.get(0);
+        try {
+            System.out.printf("%nBlog list of %d: %d bytes in full, %d in summary, %d with three fields%n", listSize,
+                    blogListFull().length, blogListSummary().length, blogListFields().length);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        commentPage = new ArrayList<>(commentsPerBlog);
+        for (int c = 1; c <= commentsPerBlog; c++) {
+            commentPage.add(new Comment(c, 1, "commenter-" + c, "comment " + c));
+        }
+    }
+
+    @Benchmark
+    public byte[] blog() throws Exception {
+        return fullWriter.writeValueAsBytes(blog);
+    }
+
+    @Benchmark
+    public byte[] blogListFull() throws Exception {
+        return fullWriter.writeValueAsBytes(blogs);
+    }
+
+    @Benchmark
+    public byte[] blogListSummary() throws Exception {
+        return summaryWriter.writeValueAsBytes(blogs);
+    }
+
+    @Benchmark
+    public byte[] blogListFields() throws Exception {
+        return fieldsWriter.writeValueAsBytes(blogs);
+    }
+
+    @Benchmark
+    public byte[] commentPage() throws Exception {
+        return objectMapper.writeValueAsBytes(commentPage);
+    }
+
+    @Benchmark
+    public byte[] folderList() throws Exception {
+        return summaryWriter.writeValueAsBytes(folders);
+    }
+}
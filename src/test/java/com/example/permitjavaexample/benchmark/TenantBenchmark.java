@@ -0,0 +1,137 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.DecisionKey;
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Page;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.search.BlogSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a small tenant's listing, search and cached decisions while one big tenant, a million blogs strong,
+ * keeps creating and rewriting blogs and invalidating its decisions. Each tenant has its own ordered view, search
+ * shard and decision cache partition, so the small tenant's numbers should not move with the big tenant's size or
+ * churn; compare the {@code small*} results against a run with {@code -p bigTenantBlogs=1000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TenantBenchmark {
+    private static final String BIG = "big";
+    private static final String SMALL = "small-0";
+
+    @Param({"1000000"})
+    public int bigTenantBlogs;
+
+    @Param({"100"})
+    public int smallTenants;
+
+    @Param({"200"})
+    public int blogsPerSmallTenant;
+
+    private BlogRepository blogRepository;
+    private BlogSearchIndex index;
+    private DecisionCache decisionCache;
+    private int[] smallIds;
+
+    @Setup(Level.Trial)
+    public void build() {
+        blogRepository = new BlogRepository();
+        index = new BlogSearchIndex(blogRepository, new CommentRepository(blogRepository));
+        decisionCache = new DecisionCache(true, 10_000, Duration.ofMinutes(10));
+        var random = new SplittableRandom(42);
+        for (int i = 0; i < bigTenantBlogs; i++) {
+            add(BIG, random);
+        }
+        for (int t = 0; t < smallTenants; t++) {
+            for (int i = 0; i < blogsPerSmallTenant; i++) {
+                add("small-" + t, random);
+            }
+        }
+        smallIds = blogRepository.stream(SMALL).mapToInt(Blog::getId).toArray();
+        for (int id : smallIds) {
+            var key = decision(SMALL, id);
+            decisionCache.put(key, true, decisionCache.generation(key));
+        }
+    }
+
+    private Blog add(String tenant, SplittableRandom random) {
+        var blog = new Blog(blogRepository.nextId(tenant), tenant, "author-" + random.nextInt(20), text(random));
+        blogRepository.save(blog);
+        index.reindex(blog.getId());
+        return blog;
+    }
+
+    /**
+     * The big tenant: rewrites a random blog, caches and invalidates decisions on it, and now and then creates one.
+     */
+    @Benchmark
+    @Group("skewed")
+    @GroupThreads(3)
+    public void bigTenantChurn() {
+        var random = ThreadLocalRandom.current();
+        int id = random.nextInt(1, bigTenantBlogs + 1);
+        blogRepository.findById(BIG, id).ifPresent(blog -> {
+            blogRepository.updateContent(blog, text(new SplittableRandom(random.nextLong())));
+            index.reindex(id);
+        });
+        var key = decision(BIG, id);
+        decisionCache.put(key, true, decisionCache.generation(key));
+        decisionCache.invalidateResource(BIG, "blog", String.valueOf(random.nextInt(1, bigTenantBlogs + 1)));
+        if (random.nextInt(16) == 0) {
+            add(BIG, new SplittableRandom(random.nextLong()));
+        }
+    }
+
+    @Benchmark
+    @Group("skewed")
+    public Page<Blog> smallTenantPage() {
+        return blogRepository.findPage(SMALL, smallIds[ThreadLocalRandom.current().nextInt(smallIds.length / 2)], 20);
+    }
+
+    @Benchmark
+    @Group("skewed")
+    public List<BlogSearchIndex.Hit> smallTenantSearch() {
+        return index.search(SMALL, "w1 w2", 0, 20);
+    }
+
+    @Benchmark
+    @Group("skewed")
+    public Boolean smallTenantDecision() {
+        return decisionCache.get(decision(SMALL, smallIds[ThreadLocalRandom.current().nextInt(smallIds.length)]));
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%nDecision cache, small tenant: %s; big tenant: %s%n",
+                decisionCache.stats(SMALL), decisionCache.stats(BIG));
+    }
+
+    private static DecisionKey decision(String tenant, int id) {
+        return new DecisionKey(tenant, "user-1", "read", "blog", String.valueOf(id), Map.of(), Map.of());
+    }
+
+    /**
+     * A dozen words from the same skewed vocabulary as {@link SearchBenchmark}, kept smaller so the build is quick.
+     */
+    private static String text(SplittableRandom random) {
+        var text = new StringBuilder(96);
+        for (int w = 0; w < 12; w++) {
+            int word = (int) Math.pow(5_000, random.nextDouble()) - 1;
+            text.append('w').append(word).append(' ');
+        }
+        return text.toString();
+    }
+}
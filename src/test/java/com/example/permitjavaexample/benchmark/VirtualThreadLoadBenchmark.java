@@ -0,0 +1,74 @@
+package com.example.permitjavaexample.benchmark;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A wave of concurrent clients, each making one authorization against a slow PDP, handled either by a
+ * platform thread pool the size of Tomcat's default ({@code server.tomcat.threads.max} = 200) or by one virtual
+ * thread per request as with {@code spring.threads.virtual.enabled}. The score is the time for the whole wave;
+ * throughput is {@code clients} divided by it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class VirtualThreadLoadBenchmark {
+
+    @Param({"1024", "4096"})
+    public int clients;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"20"})
+    public long pdpLatencyMillis;
+
+    private UserService userService;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        var pdp = StubPdpClient.allowAll(Duration.ofMillis(pdpLatencyMillis));
+        // caching is off so that every request pays for a PDP round trip
+        userService = new UserService(null, pdp, new DecisionCache(false, 0, Duration.ZERO), new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        executor = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(200);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int wave() throws Exception {
+        List<Future<?>> requests = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            var user = new User.Builder("user-" + i).build();
+            var resource = new Resource.Builder("blog").withKey(String.valueOf(i)).build();
+            requests.add(executor.submit(() -> userService.authorize(user, "read", resource)));
+        }
+        for (Future<?> request : requests) {
+            request.get();
+        }
+        return requests.size();
+    }
+}
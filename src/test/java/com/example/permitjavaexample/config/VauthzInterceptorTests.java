@@ -0,0 +1,105 @@
+package com.example.permitjavaexample.config;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.service.UserService;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VauthzInterceptorTests {
+    private final List<Resource> checked = new ArrayList<>();
+    private VauthzInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        var pdp = new StubPdpClient((user, action, resource) -> {
+            checked.add(resource);
+            return !"denied".equals(resource.getKey());
+        }, Duration.ZERO);
+        var userService = new UserService(null, pdp, new DecisionCache(false, 0, Duration.ZERO),
+                new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        interceptor = new VauthzInterceptor(userService, AuthzMetrics.unpublished());
+    }
+
+    @Test
+    void checksInstanceBuiltFromPathVariables() throws Exception {
+        var handler = handler("updateComment");
+        interceptor.compile(Map.of(RequestMappingInfo.paths("/api/blogs/{blogId}/comment/{id}").build(), handler));
+
+        boolean proceed = interceptor.preHandle(request(Map.of("blogId", "3", "id", "7")), new MockHttpServletResponse(), handler);
+
+        assertThat(proceed).isTrue();
+        assertThat(checked).singleElement().satisfies(resource -> {
+            assertThat(resource.getType()).isEqualTo("comment");
+            assertThat(resource.getKey()).isEqualTo("7");
+            assertThat(resource.getAttributes()).containsEntry("blog", "3");
+        });
+    }
+
+    @Test
+    void deniesWithForbidden() throws Exception {
+        var handler = handler("updateComment");
+        interceptor.compile(Map.of(RequestMappingInfo.paths("/api/blogs/{blogId}/comment/{id}").build(), handler));
+        var response = new MockHttpServletResponse();
+
+        boolean proceed = interceptor.preHandle(request(Map.of("blogId", "3", "id", "denied")), response, handler);
+
+        assertThat(proceed).isFalse();
+        assertThat(response.getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    void rejectsPlansReadingUndeclaredPathVariables() throws Exception {
+        var handler = handler("updateComment");
+
+        assertThatThrownBy(() -> interceptor.compile(Map.of(RequestMappingInfo.paths("/api/comments/{id}").build(), handler)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("blogId");
+    }
+
+    @Test
+    void ignoresHandlersWithoutCheck() throws Exception {
+        var handler = handler("unchecked");
+
+        assertThat(interceptor.preHandle(request(Map.of()), new MockHttpServletResponse(), handler)).isTrue();
+        assertThat(checked).isEmpty();
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Handlers(), Handlers.class.getMethod(name));
+    }
+
+    private static MockHttpServletRequest request(Map<String, String> pathVariables) {
+        var request = new MockHttpServletRequest();
+        request.setAttribute("user", new User.Builder("user-1").build());
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, pathVariables);
+        return request;
+    }
+
+    public static class Handlers {
+        @VauthzCheck(resource = "comment", action = "update", key = "id",
+                attributes = @VauthzCheck.Attribute(name = "blog", pathVariable = "blogId"))
+        public void updateComment() {
+        }
+
+        public void unchecked() {
+        }
+    }
+}
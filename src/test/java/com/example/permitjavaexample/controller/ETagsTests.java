@@ -0,0 +1,65 @@
+package com.example.permitjavaexample.controller;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.model.Versioned;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagsTests {
+    private final Blog blog = new Blog(1, "alice", "content");
+
+    @Test
+    void tagsEachProjectionAndFormatDifferently() {
+        String full = ETags.of(blog, Projection.FULL, null);
+
+        assertThat(full).isEqualTo("\"1.0;full;json\"");
+        assertThat(ETags.of(blog, Projection.SUMMARY, null)).isNotEqualTo(full);
+        assertThat(ETags.of(blog, Projection.of(null, "content", Projection.FULL), null)).isNotEqualTo(full);
+        assertThat(ETags.of(blog, Projection.of("summary", "id", Projection.FULL), null))
+                .isNotEqualTo(ETags.of(blog, Projection.of(null, "id", Projection.FULL), null));
+        assertThat(ETags.of(blog, Projection.FULL, BinaryBodies.CBOR)).isEqualTo("\"1.0;full;cbor\"");
+        assertThat(ETags.of(blog, Projection.FULL, BinaryBodies.SMILE)).isNotEqualTo(full);
+        assertThat(ETags.of(new Folder(2, "bob", "drafts"), Projection.FULL, null)).isEqualTo("\"1;full;json\"");
+    }
+
+    @Test
+    void tagsTheSameFieldsInAnyOrderAlike() {
+        assertThat(ETags.of(blog, Projection.of(null, "id,content", Projection.FULL), null))
+                .isEqualTo(ETags.of(blog, Projection.of(null, " content, id,id", Projection.FULL), null));
+    }
+
+    @Test
+    void coversTheCommentCount() {
+        String before = ETags.of(blog, Projection.FULL, null);
+        blog.setCommentCount(1);
+
+        assertThat(ETags.of(blog, Projection.FULL, null)).isNotEqualTo(before);
+    }
+
+    @Test
+    void picksTheFormatTheConvertersWouldWrite() {
+        assertThat(ETags.format(null)).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(ETags.format("*/*")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(ETags.format("application/*")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(ETags.format("application/cbor")).isEqualTo(MediaType.parseMediaType(BinaryBodies.CBOR));
+        assertThat(ETags.format("application/json;q=0.5, application/x-jackson-smile"))
+                .isEqualTo(MediaType.parseMediaType(BinaryBodies.SMILE));
+        assertThat(ETags.format("text/html, application/cbor;q=0")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(ETags.format("not a media type")).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void expectsTheVersionOfATagInAnyRepresentation() {
+        assertThat(ETags.expectedVersion("\"3.2;full;json\"")).isEqualTo(3);
+        assertThat(ETags.expectedVersion("\"3;summary:id;cbor\"")).isEqualTo(3);
+        assertThat(ETags.expectedVersion("\"3\"")).isEqualTo(3);
+        assertThat(ETags.expectedVersion(null)).isEqualTo(Versioned.ANY_VERSION);
+        assertThat(ETags.expectedVersion(" * ")).isEqualTo(Versioned.ANY_VERSION);
+        assertThat(ETags.expectedVersion("\"3x\"")).isNegative();
+        assertThat(ETags.expectedVersion("W/\"3.0;full;json\"")).isNegative();
+        assertThat(ETags.expectedVersion("\"0;full;json\"")).isNegative();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.permitjavaexample.controller;
+
+import com.example.permitjavaexample.config.JacksonConfig;
+import com.example.permitjavaexample.model.Blog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ListingResponsesTests {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().filters(JacksonConfig.defaultFilters()).build();
+
+    private String ndjson(Stream<?> items, Projection projection) throws Exception {
+        var response = ListingResponses.ndjson(objectMapper, items, projection);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        var out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void endsEveryRecordWithANewlineTheLastOneToo() throws Exception {
+        String body = ndjson(Stream.of(new Blog(1, "alice", "one"), new Blog(2, "bob", "two")), Projection.SUMMARY);
+
+        assertThat(body).endsWith("\n");
+        String[] lines = body.split("\n", -1);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[2]).isEmpty();
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("author").asText()).isEqualTo("alice");
+        assertThat(first.has("content")).isFalse();
+        assertThat(objectMapper.readTree(lines[1]).get("id").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    void writesNothingForNoItems() throws Exception {
+        assertThat(ndjson(Stream.empty(), Projection.FULL)).isEmpty();
+    }
+}
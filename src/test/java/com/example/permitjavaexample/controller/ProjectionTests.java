@@ -0,0 +1,77 @@
+package com.example.permitjavaexample.controller;
+
+import com.example.permitjavaexample.config.JacksonConfig;
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Folder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProjectionTests {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().filters(JacksonConfig.defaultFilters()).build();
+    private final Blog blog = new Blog(1, "alice", "word ".repeat(100));
+
+    private JsonNode write(Projection projection, Object value) throws Exception {
+        return objectMapper.readTree(projection.writer(objectMapper).writeValueAsBytes(value));
+    }
+
+    @Test
+    void summaryCarriesASnippetInsteadOfTheContent() throws Exception {
+        blog.setCommentCount(3);
+
+        JsonNode summary = write(Projection.SUMMARY, List.of(blog)).get(0);
+
+        assertThat(summary.has("content")).isFalse();
+        assertThat(summary.get("snippet").asText()).hasSizeLessThanOrEqualTo(Blog.SNIPPET_LENGTH + 1).endsWith("\u2026");
+        assertThat(summary.get("commentCount").asInt()).isEqualTo(3);
+        assertThat(summary.get("author").asText()).isEqualTo("alice");
+        assertThat(summary.get("version").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void fullCarriesTheContentButNoSnippet() throws Exception {
+        JsonNode full = write(Projection.FULL, blog);
+
+        assertThat(full.get("content").asText()).isEqualTo(blog.getContent());
+        assertThat(full.has("snippet")).isFalse();
+    }
+
+    @Test
+    void fieldsSelectPropertiesWithinAViewOrOutOfAll() throws Exception {
+        JsonNode selected = write(Projection.of(null, "id, snippet,unknown", Projection.FULL), blog);
+        assertThat(selected.size()).isEqualTo(2);
+        assertThat(selected.get("id").asInt()).isEqualTo(1);
+        assertThat(selected.has("snippet")).isTrue();
+
+        assertThat(write(Projection.of("summary", "id,content", Projection.FULL), blog).size()).isEqualTo(1);
+        assertThat(write(Projection.of(null, "name", Projection.SUMMARY), new Folder(2, "bob", "drafts")).get("name").asText())
+                .isEqualTo("drafts");
+    }
+
+    @Test
+    void writesEverythingWithoutAProjection() throws Exception {
+        JsonNode plain = objectMapper.readTree(objectMapper.writeValueAsBytes(blog));
+
+        assertThat(plain.has("content")).isTrue();
+        assertThat(plain.has("id")).isTrue();
+    }
+
+    @Test
+    void rejectsUnknownViews() {
+        assertThatThrownBy(() -> Projection.of("everything", null, Projection.FULL)).isInstanceOf(ResponseStatusException.class);
+        assertThat(Projection.of(null, " ", Projection.SUMMARY)).isSameAs(Projection.SUMMARY);
+    }
+
+    @Test
+    void shortContentIsItsOwnSnippet() {
+        assertThat(new Blog(3, "alice", "short").getSnippet()).isEqualTo("short");
+        assertThat(new Blog(4, "alice", "x".repeat(500)).getSnippet()).hasSize(Blog.SNIPPET_LENGTH + 1);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.permitjavaexample.repository;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Folder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlogRepositoryStressTests {
+    private static final int THREADS = 32;
+    private static final int OPERATIONS_PER_THREAD = 5_000;
+    private static final int AUTHORS = 8;
+
+    @Test
+    void concurrentCreateUpdateDeleteKeepsIndexesConsistent() throws Exception {
+        var repository = new BlogRepository();
+        var comments = new CommentRepository(repository);
+        var deletes = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                var random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    int id = random.nextInt(1, repository.nextId() + 1);
+                    switch (random.nextInt(5)) {
+                        case 0, 1 -> repository.save(new Blog(repository.nextId(), "author-" + random.nextInt(AUTHORS), "content"));
+                        case 2 -> repository.findById(id).ifPresent(blog -> repository.updateContent(blog, "updated"));
+                        case 3 -> repository.findById(id).ifPresent(blog -> {
+                            var comment = new Comment(comments.nextId(), blog.getId(), "viewer", "comment");
+                            if (comments.save(blog, comment) && random.nextBoolean()) {
+                                comments.remove(comment);
+                            }
+                        });
+                        default -> repository.findById(id).ifPresent(blog -> {
+                            if (repository.remove(blog)) {
+                                comments.removeBlog(blog.getId());
+                                deletes.incrementAndGet();
+                            }
+                        });
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        var all = repository.findAll();
+        assertThat(all).hasSize(repository.count());
+        assertThat(all).extracting(Blog::getId).isSorted().doesNotHaveDuplicates();
+        int indexed = 0;
+        for (int a = 0; a < AUTHORS; a++) {
+            String author = "author-" + a;
+            var byAuthor = repository.findByAuthor(author);
+            assertThat(byAuthor).allMatch(blog -> blog.getAuthor().equals(author));
+            indexed += byAuthor.size();
+        }
+        assertThat(indexed).isEqualTo(repository.count());
+        int commented = 0;
+        for (Blog blog : all) {
+            assertThat(repository.findById(blog.getId())).containsSame(blog);
+            var blogComments = comments.findByBlog(blog.getId());
+            assertThat(blog.getCommentCount()).isEqualTo(blogComments.size()).isEqualTo(comments.count(blog.getId()));
+            commented += blogComments.size();
+        }
+        // comments of deleted blogs are gone with them
+        assertThat(comments.count()).isEqualTo(commented);
+    }
+
+    @Test
+    void conditionalUpdatesNeverLoseAnUpdate() throws Exception {
+        var repository = new BlogRepository();
+        var blog = new Blog(repository.nextId(), "author", "0");
+        repository.save(blog);
+        var applied = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1_000; i++) {
+                    // read, modify, write back only if nobody else wrote in between
+                    long version = blog.getVersion();
+                    String next = String.valueOf(Integer.parseInt(blog.getContent()) + 1);
+                    if (repository.updateContent(blog, next, version)) {
+                        applied.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(blog.getContent()).isEqualTo(String.valueOf(applied.get()));
+        assertThat(blog.getVersion()).isEqualTo(applied.get() + 1);
+    }
+
+    @Test
+    void concurrentDeletesOfTheSameBlogHaveExactlyOneWinner() throws Exception {
+        var repository = new BlogRepository();
+        var blog = new Blog(repository.nextId(), "author", "content");
+        repository.save(blog);
+        var winners = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                if (repository.remove(blog)) {
+                    winners.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(winners).hasValue(1);
+        assertThat(repository.findById(blog.getId())).isEmpty();
+        assertThat(repository.findByAuthor("author")).isEmpty();
+    }
+
+    @Test
+    void updatesRacingADeleteAreNeitherAppliedNorJournaledAfterIt() throws Exception {
+        var blogs = new BlogRepository();
+        var folders = new FolderRepository();
+        List<Journal.Change> journaled = new ArrayList<>();
+        Journal journal = (change, mutation) -> {
+            synchronized (journaled) {
+                boolean changed = mutation.getAsBoolean();
+                if (changed) {
+                    journaled.add(change);
+                }
+                return changed;
+            }
+        };
+        blogs.attach(journal);
+        folders.attach(journal);
+        var blog = new Blog(blogs.nextId(), "author", "content");
+        var folder = new Folder(folders.nextId(), "author", "name");
+        blogs.save(blog);
+        folders.save(folder);
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                if (thread == 0) {
+                    blogs.remove(blog);
+                    folders.remove(folder);
+                    return null;
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    blogs.updateContent(blog, "content " + i);
+                    folders.rename(folder, "name " + i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(blogs.updateContent(blog, "too late", blog.getVersion())).isFalse();
+        assertThat(folders.rename(folder, "too late", folder.getVersion())).isFalse();
+        assertThat(journaled.subList(journaled.indexOf(new Journal.Change.BlogRemoved(blog.getId())), journaled.size()))
+                .noneMatch(Journal.Change.BlogUpdated.class::isInstance);
+        assertThat(journaled.subList(journaled.indexOf(new Journal.Change.FolderRemoved(folder.getId())), journaled.size()))
+                .noneMatch(Journal.Change.FolderUpdated.class::isInstance);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.permitjavaexample.repository;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Page;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommentRepositoryTests {
+    private final BlogRepository blogs = new BlogRepository();
+    private final CommentRepository comments = new CommentRepository(blogs);
+
+    private Blog blog() {
+        var blog = new Blog(blogs.nextId(), "alice", "content");
+        blogs.save(blog);
+        return blog;
+    }
+
+    private Comment comment(Blog blog, String content) {
+        var comment = new Comment(comments.nextId(), blog.getId(), "bob", content);
+        assertThat(comments.save(blog, comment)).isTrue();
+        return comment;
+    }
+
+    @Test
+    void pagesThroughEachBlogsCommentsAndKeepsItsCount() {
+        var blog = blog();
+        var other = blog();
+        List<Integer> added = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            added.add(comment(blog, "comment " + i).getId());
+            comment(other, "elsewhere " + i);
+        }
+
+        List<Integer> paged = new ArrayList<>();
+        Integer cursor = null;
+        do {
+            Page<Comment> page = comments.findPage(blog.getId(), cursor, 10);
+            page.items().forEach(comment -> paged.add(comment.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        assertThat(paged).isEqualTo(added);
+
+        var removed = comments.findById(blog.getId(), added.get(3)).orElseThrow();
+        assertThat(comments.remove(removed)).isTrue();
+        assertThat(comments.remove(removed)).isFalse();
+        assertThat(blog.getCommentCount()).isEqualTo(24);
+        assertThat(other.getCommentCount()).isEqualTo(25);
+    }
+
+    @Test
+    void looksCommentsUpUnderTheirOwnBlogOnly() {
+        var blog = blog();
+        var other = blog();
+        var comment = comment(blog, "hello");
+
+        assertThat(comments.findById(blog.getId(), comment.getId())).containsSame(comment);
+        assertThat(comments.findById(other.getId(), comment.getId())).isEmpty();
+    }
+
+    @Test
+    void refusesCommentsOnRemovedBlogs() {
+        var blog = blog();
+        var comment = comment(blog, "hello");
+        blogs.remove(blog);
+        comments.removeBlog(blog.getId());
+
+        assertThat(comments.findById(blog.getId(), comment.getId())).isEmpty();
+        assertThat(comments.save(blog, new Comment(comments.nextId(), blog.getId(), "bob", "too late"))).isFalse();
+        assertThat(comments.count(blog.getId())).isZero();
+        assertThat(comments.count()).isZero();
+    }
+}
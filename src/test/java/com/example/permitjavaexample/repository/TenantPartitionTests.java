@@ -0,0 +1,91 @@
+package com.example.permitjavaexample.repository;
+
+import com.example.permitjavaexample.model.Blog;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantPartitionTests {
+    private final BlogRepository repository = new BlogRepository();
+
+    private Blog add(String tenant, String author) {
+        var blog = new Blog(repository.nextId(tenant), tenant, author, "content");
+        repository.save(blog);
+        return blog;
+    }
+
+    @Test
+    void listsPagesAndCountsEachTenantOnItsOwn() {
+        for (int i = 0; i < 200; i++) {
+            add("big", "author-" + i % 4);
+        }
+        var small = List.of(add("small", "alice"), add("small", "bob"), add("small", "alice"));
+
+        assertThat(repository.findAll("small")).containsExactlyElementsOf(small);
+        assertThat(repository.findPage("small", null, 2).items()).containsExactly(small.get(0), small.get(1));
+        assertThat(repository.findPage("small", small.get(1).getId(), 2).items()).containsExactly(small.get(2));
+        assertThat(repository.findByAuthor("small", "alice")).containsExactlyInAnyOrder(small.get(0), small.get(2));
+        assertThat(repository.findByAuthor("big", "alice")).isEmpty();
+        assertThat(repository.stream("small").toList()).containsExactlyElementsOf(small);
+        assertThat(repository.count("big")).isEqualTo(200);
+        assertThat(repository.count("small")).isEqualTo(3);
+        assertThat(repository.count()).isEqualTo(203);
+        assertThat(repository.findAll()).isEmpty();
+
+        assertThat(repository.findById("small", small.get(0).getId())).contains(small.get(0));
+        assertThat(repository.findById("big", small.get(0).getId())).isEmpty();
+        repository.remove(small.get(1));
+        assertThat(repository.count("small")).isEqualTo(2);
+        assertThat(repository.streamAll().count()).isEqualTo(202);
+    }
+
+    @Test
+    void handsOutUniqueIdsThatIncreaseWithinEachTenant() throws Exception {
+        int tenants = 8;
+        int idsPerThread = 5_000;
+        ConcurrentHashMap<String, List<Integer>> byTenant = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(tenants);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < tenants; t++) {
+            String tenant = "tenant-" + t;
+            futures.add(executor.submit(() -> {
+                List<Integer> ids = new ArrayList<>(idsPerThread);
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids.add(repository.nextId(tenant));
+                }
+                byTenant.put(tenant, ids);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Set<Integer> all = new HashSet<>();
+        for (List<Integer> ids : byTenant.values()) {
+            assertThat(ids).isSorted().doesNotHaveDuplicates();
+            all.addAll(ids);
+        }
+        assertThat(all).hasSize(tenants * idsPerThread);
+        assertThat(repository.lastId()).isEqualTo(all.stream().mapToInt(Integer::intValue).max().orElseThrow());
+    }
+
+    @Test
+    void neverHandsOutARestoredIdAgain() {
+        repository.restoreSequence(1_000);
+
+        assertThat(repository.nextId("small")).isEqualTo(1_001);
+        assertThat(repository.nextId("big")).isGreaterThan(1_001);
+        assertThat(repository.lastId()).isGreaterThan(1_001);
+    }
+}
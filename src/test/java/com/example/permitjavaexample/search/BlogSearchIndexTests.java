@@ -0,0 +1,136 @@
+package com.example.permitjavaexample.search;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlogSearchIndexTests {
+    private final BlogRepository blogs = new BlogRepository();
+    private final CommentRepository comments = new CommentRepository(blogs);
+    private final BlogSearchIndex index = new BlogSearchIndex(blogs, comments);
+
+    private Blog add(String content) {
+        var blog = new Blog(blogs.nextId(), "alice", content);
+        blogs.save(blog);
+        index.reindex(blog.getId());
+        return blog;
+    }
+
+    private List<Integer> ids(String query) {
+        return index.search(query, 0, 100).stream().map(BlogSearchIndex.Hit::blogId).toList();
+    }
+
+    @Test
+    void ranksBlogsThatMentionATermMoreOftenFirst() {
+        var once = add("Java tips, and some other things about coffee");
+        var often = add("Java, Java and more Java");
+        add("Nothing relevant here");
+
+        assertThat(ids("JAVA")).containsExactly(often.getId(), once.getId());
+        assertThat(ids("coffee java")).first().isEqualTo(once.getId());
+        assertThat(ids("kotlin")).isEmpty();
+    }
+
+    @Test
+    void followsUpdatesRemovalsAndComments() {
+        var blog = add("about spring");
+        blogs.updateContent(blog, "about summer");
+        index.reindex(blog.getId());
+        assertThat(ids("spring")).isEmpty();
+        assertThat(ids("summer")).containsExactly(blog.getId());
+
+        var comment = new Comment(comments.nextId(), blog.getId(), "bob", "what about autumn?");
+        comments.save(blog, comment);
+        index.reindex(blog.getId());
+        assertThat(ids("autumn")).containsExactly(blog.getId());
+        comments.remove(comment);
+        index.reindex(blog.getId());
+        assertThat(ids("autumn")).isEmpty();
+
+        blogs.remove(blog);
+        index.reindex(blog.getId());
+        assertThat(ids("summer")).isEmpty();
+        assertThat(index.documents()).isZero();
+        assertThat(index.terms()).isZero();
+    }
+
+    @Test
+    void pagesThroughTheRanking() {
+        for (int i = 0; i < 25; i++) {
+            add("page " + "word ".repeat(i + 1));
+        }
+        List<Integer> all = ids("word");
+        assertThat(all).hasSize(25);
+
+        List<Integer> paged = new ArrayList<>();
+        for (int from = 0; from < 30; from += 10) {
+            index.search("word", from, 10).forEach(hit -> paged.add(hit.blogId()));
+        }
+        assertThat(paged).isEqualTo(all);
+    }
+
+    @Test
+    void compactsStalePostingsUnderConcurrentUpdates() throws Exception {
+        List<Blog> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            added.add(add("shared version-0"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                var random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2_000; i++) {
+                    var blog = added.get(random.nextInt(added.size()));
+                    blogs.updateContent(blog, "shared version-" + random.nextInt(5));
+                    index.reindex(blog.getId());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(ids("shared")).hasSize(100);
+        int numbered = 0;
+        for (int v = 0; v < 5; v++) {
+            numbered += ids(String.valueOf(v)).size();
+        }
+        // each blog is found by its current version only
+        assertThat(numbered).isEqualTo(100);
+        // no list holds more than twice its live postings, plus one; 300 are live across 7 lists
+        assertThat(index.postings()).isLessThanOrEqualTo(2 * 300 + 7);
+    }
+
+    @Test
+    void searchesOnlyTheTenantsOwnBlogs() {
+        var shared = add("java in the default tenant");
+        var acme = new Blog(blogs.nextId("acme"), "acme", "alice", "java at acme, more java");
+        blogs.save(acme);
+        index.reindex(acme.getId());
+
+        assertThat(ids("java")).containsExactly(shared.getId());
+        assertThat(index.search("acme", "java", 0, 100)).extracting(BlogSearchIndex.Hit::blogId).containsExactly(acme.getId());
+        assertThat(index.search("other", "java", 0, 100)).isEmpty();
+        assertThat(index.documents()).isEqualTo(2);
+
+        blogs.remove(acme);
+        index.reindex(acme.getId());
+        assertThat(index.search("acme", "java", 0, 100)).isEmpty();
+        assertThat(ids("java")).containsExactly(shared.getId());
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.permitjavaexample.service;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.InFlightChecks;
+import com.example.permitjavaexample.authz.PermissionPrefetch;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.exception.ForbiddenAccessException;
+import com.example.permitjavaexample.exception.PdpUnavailableException;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserServiceTests {
+    private final User user = new User.Builder("user-1").build();
+
+    @Test
+    void filterAuthorizedKeepsOrderAndChecksInChunks() {
+        var pdp = new StubPdpClient((u, action, resource) -> Integer.parseInt(resource.getKey()) % 3 != 0, Duration.ZERO);
+        var userService = new UserService(null, pdp, new DecisionCache(false, 0, Duration.ZERO), new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 10);
+        List<Integer> ids = IntStream.rangeClosed(1, 95).boxed().toList();
+
+        var visible = userService.filterAuthorized(user, "read", ids, UserServiceTests::blog);
+
+        assertThat(visible).isEqualTo(ids.stream().filter(id -> id % 3 != 0).toList());
+        assertThat(pdp.roundTrips()).isEqualTo(10);
+    }
+
+    @Test
+    void filterAuthorizedOnlySendsCacheMisses() {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        var userService = new UserService(null, pdp, new DecisionCache(true, 1000, Duration.ofMinutes(1)), new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        userService.authorize(user, "read", blog(1));
+
+        var visible = userService.filterAuthorized(user, "read", List.of(1), UserServiceTests::blog);
+
+        assertThat(visible).containsExactly(1);
+        assertThat(pdp.roundTrips()).isEqualTo(1);
+    }
+
+    @Test
+    void authorizeRecordsDecisionSourceAndPdpTime() {
+        var pdp = new StubPdpClient((u, action, resource) -> resource.getKey().equals("1"), Duration.ZERO);
+        var metrics = AuthzMetrics.unpublished();
+        var userService = new UserService(null, pdp, new DecisionCache(true, 1000, Duration.ofMinutes(1)), new LocalPolicyEvaluator(false, false), metrics, 100);
+
+        userService.authorize(user, "read", blog(1));
+        userService.authorize(user, "read", blog(1));
+        assertThatThrownBy(() -> userService.authorize(user, "read", blog(2))).isInstanceOf(ForbiddenAccessException.class);
+
+        var registry = metrics.registry();
+        assertThat(registry.get(AuthzMetrics.DECISIONS).tags("resource", "blog", "action", "read", "decision", "allow", "source", "pdp").timer().count()).isEqualTo(1);
+        assertThat(registry.get(AuthzMetrics.DECISIONS).tags("decision", "allow", "source", "cache").timer().count()).isEqualTo(1);
+        assertThat(registry.get(AuthzMetrics.DECISIONS).tags("decision", "deny", "source", "pdp").timer().count()).isEqualTo(1);
+        assertThat(registry.get(AuthzMetrics.PDP_REQUESTS).tags("call", "check", "outcome", "success").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void servesStaleDecisionsWhileThePdpIsDown() throws Exception {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        var metrics = AuthzMetrics.unpublished();
+        var cache = new DecisionCache(true, 1000, Duration.ofMillis(20), Duration.ofMinutes(1));
+        var userService = new UserService(null, pdp, cache, new LocalPolicyEvaluator(false, false), metrics, 100);
+        userService.authorize(user, "read", blog(1));
+        Thread.sleep(50);
+
+        pdp.setFailing(true);
+        userService.authorize(user, "read", blog(1));
+        assertThat(userService.filterAuthorized(user, "read", List.of(1), UserServiceTests::blog)).containsExactly(1);
+        assertThatThrownBy(() -> userService.authorize(user, "read", blog(2))).isInstanceOf(PdpUnavailableException.class);
+
+        var registry = metrics.registry();
+        assertThat(registry.get(AuthzMetrics.DECISIONS).tags("decision", "allow", "source", "stale").timer().count()).isEqualTo(1);
+        assertThat(registry.get(AuthzMetrics.PDP_RESILIENCE).tags("event", "stale_served").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void filterAuthorizedLooksUpPrefetchedPermissions() {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        pdp.setUserPermissions(u -> Map.of(
+                "__tenant:default", Set.of("blog:read"),
+                "folder:2", Set.of("folder:read"),
+                "folder:5", Set.of("folder:read", "folder:share")));
+        var prefetch = new PermissionPrefetch(pdp, true, Duration.ofMinutes(1), 100);
+        var userService = new UserService(null, pdp, new DecisionCache(false, 0, Duration.ZERO), new InFlightChecks(true), prefetch,
+                new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        List<Integer> ids = IntStream.rangeClosed(1, 10).boxed().toList();
+
+        assertThat(userService.filterAuthorized(user, "read", ids, UserServiceTests::folder)).containsExactly(2, 5);
+        assertThat(userService.filterAuthorized(user, "share", ids, UserServiceTests::folder)).containsExactly(5);
+        assertThat(userService.filterAuthorized(user, "read", ids, UserServiceTests::blog)).isEqualTo(ids);
+        assertThat(pdp.roundTrips()).isEqualTo(1);
+
+        // blog:update is also granted by a condition set rule, so it is checked item by item
+        assertThat(userService.filterAuthorized(user, "update", ids, UserServiceTests::blog)).isEqualTo(ids);
+        assertThat(pdp.roundTrips()).isEqualTo(2);
+    }
+
+    @Test
+    void churnInOneTenantLeavesAnotherTenantsCachedDecisionsAlone() {
+        var pdp = StubPdpClient.allowAll(Duration.ZERO);
+        var cache = new DecisionCache(true, 1_000, Duration.ofMinutes(1));
+        var userService = new UserService(null, pdp, cache, new LocalPolicyEvaluator(false, false), AuthzMetrics.unpublished(), 100);
+        userService.authorize(user, "read", blog("small", 1));
+
+        for (int i = 2; i < 10_000; i++) {
+            userService.authorize(user, "read", blog("big", i));
+            if (i % 100 == 0) {
+                cache.invalidateResource("big", "blog", String.valueOf(i));
+            }
+        }
+        long roundTrips = pdp.roundTrips();
+        userService.authorize(user, "read", blog("small", 1));
+
+        assertThat(pdp.roundTrips()).isEqualTo(roundTrips);
+        assertThat(cache.stats("small").hits()).isEqualTo(1);
+        assertThat(cache.stats("big").evictions()).isPositive();
+    }
+
+    private static Resource folder(int id) {
+        return new Resource.Builder("folder").withKey(String.valueOf(id)).build();
+    }
+
+    private static Resource blog(int id) {
+        return new Resource.Builder("blog").withKey(String.valueOf(id)).build();
+    }
+
+    private static Resource blog(String tenant, int id) {
+        return new Resource.Builder("blog").withKey(String.valueOf(id)).withTenant(tenant).build();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.permitjavaexample.service;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.authz.policy.BlogPolicy;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.support.StubPdpClient;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the authorization and repository hot path on virtual threads against a PDP that blocks, and fails if any
+ * of them parked while pinned to its carrier (a blocking call under a monitor).
+ */
+class VirtualThreadPinningTests {
+
+    @Test
+    void authorizeNeverPinsCarrierThreads(@TempDir Path dir) throws Exception {
+        var pdp = StubPdpClient.allowAll(Duration.ofMillis(1));
+        var userService = new UserService(null, pdp, new DecisionCache(true, 1000, Duration.ofMinutes(1)),
+                new LocalPolicyEvaluator(BlogPolicy.model(), true, false), AuthzMetrics.unpublished(), 100);
+        var blogs = new BlogRepository();
+
+        List<RecordedEvent> pinned;
+        try (var recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withoutThreshold();
+            recording.start();
+
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> requests = new ArrayList<>();
+                for (int i = 0; i < 2000; i++) {
+                    int n = i;
+                    requests.add(executor.submit(() -> {
+                        var user = new User.Builder("user-" + n % 50).build();
+                        var blog = new Blog(blogs.nextId(), user.getKey(), "content");
+                        blogs.save(blog);
+                        userService.authorize(user, "read", new Resource.Builder("blog").withKey(String.valueOf(n % 100)).build());
+                        userService.filterAuthorized(user, "read", blogs.findByAuthor(user.getKey()),
+                                b -> new Resource.Builder("blog").withKey(b.getId().toString()).build());
+                        blogs.remove(blog);
+                        return null;
+                    }));
+                }
+                for (Future<?> request : requests) {
+                    request.get();
+                }
+            }
+
+            recording.stop();
+            Path file = dir.resolve("pinning.jfr");
+            recording.dump(file);
+            pinned = RecordingFile.readAllEvents(file);
+        }
+
+        assertThat(pinned).isEmpty();
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.permitjavaexample.storage;
+
+import com.example.permitjavaexample.model.Blog;
+import com.example.permitjavaexample.model.Comment;
+import com.example.permitjavaexample.model.Folder;
+import com.example.permitjavaexample.repository.BlogRepository;
+import com.example.permitjavaexample.repository.CommentRepository;
+import com.example.permitjavaexample.repository.FolderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DurableStoreTests {
+    @TempDir
+    Path directory;
+
+    private record Opened(DurableStore store, BlogRepository blogs, CommentRepository comments, FolderRepository folders) {
+    }
+
+    private Opened open() throws Exception {
+        var blogs = new BlogRepository();
+        var comments = new CommentRepository(blogs);
+        var folders = new FolderRepository();
+        var store = new DurableStore(blogs, comments, folders, true, directory, DataSize.ofKilobytes(64), true, 1_000_000);
+        store.open();
+        return new Opened(store, blogs, comments, folders);
+    }
+
+    @Test
+    void changesAndIdSequencesSurviveAReopen() throws Exception {
+        var first = open();
+        var blog = new Blog(first.blogs().nextId(), "alice", "draft");
+        first.blogs().save(blog);
+        first.blogs().updateContent(blog, "final");
+        var kept = new Comment(first.comments().nextId(), blog.getId(), "bob", "nice");
+        var dropped = new Comment(first.comments().nextId(), blog.getId(), "bob", "oops");
+        first.comments().save(blog, kept);
+        first.comments().save(blog, dropped);
+        first.comments().update(kept, "very nice");
+        first.comments().remove(dropped);
+        var gone = new Blog(first.blogs().nextId(), "alice", "temporary");
+        first.blogs().save(gone);
+        first.blogs().remove(gone);
+        var folder = new Folder(first.folders().nextId(), "alice", "drafts");
+        first.folders().save(folder);
+        first.folders().rename(folder, "published");
+        first.store().close();
+
+        var second = open();
+        assertThat(second.blogs().findAll()).singleElement().satisfies(restored -> {
+            assertThat(restored.getAuthor()).isEqualTo("alice");
+            assertThat(restored.getContent()).isEqualTo("final");
+            assertThat(restored.getVersion()).isEqualTo(2);
+            assertThat(restored.getCommentCount()).isEqualTo(1);
+            assertThat(second.comments().findByBlog(restored.getId())).singleElement().satisfies(comment -> {
+                assertThat(comment.getId()).isEqualTo(kept.getId());
+                assertThat(comment.getContent()).isEqualTo("very nice");
+                assertThat(comment.getVersion()).isEqualTo(2);
+            });
+        });
+        assertThat(second.folders().findById(folder.getId())).get().extracting(Folder::getName).isEqualTo("published");
+        // the removed blog had the last id, and it must not be handed out again
+        assertThat(second.blogs().nextId()).isGreaterThan(gone.getId());
+        assertThat(second.comments().nextId()).isGreaterThan(dropped.getId());
+        assertThat(second.folders().nextId()).isGreaterThan(folder.getId());
+        second.store().close();
+    }
+
+    @Test
+    void ignoresATornRecordAtTheEndOfTheLog() throws Exception {
+        var first = open();
+        first.blogs().save(new Blog(first.blogs().nextId(), "alice", "intact"));
+        first.blogs().save(new Blog(first.blogs().nextId(), "alice", "torn-record"));
+        first.store().close();
+
+        Path segment = segments().getLast();
+        byte[] bytes = Files.readAllBytes(segment);
+        byte[] marker = "torn-record".getBytes(StandardCharsets.UTF_8);
+        int at = indexOf(bytes, marker);
+        bytes[at] ^= 0x7f;
+        Files.write(segment, bytes);
+
+        var second = open();
+        assertThat(second.blogs().findAll()).extracting(Blog::getContent).containsExactly("intact");
+        // appends resume where the intact records end
+        second.blogs().save(new Blog(second.blogs().nextId(), "alice", "after"));
+        second.store().close();
+
+        var third = open();
+        assertThat(third.blogs().findAll()).extracting(Blog::getContent).containsExactly("intact", "after");
+        third.store().close();
+    }
+
+    @Test
+    void restoresFromASnapshotPlusTheLogWrittenSince() throws Exception {
+        var first = open();
+        for (int i = 0; i < 1_000; i++) {
+            first.blogs().save(new Blog(first.blogs().nextId(), "author-" + (i % 7), "blog " + i));
+        }
+        var blog = first.blogs().findById(1).orElseThrow();
+        for (int i = 0; i < 3; i++) {
+            first.comments().save(blog, new Comment(first.comments().nextId(), blog.getId(), "bob", "comment " + i));
+        }
+        first.store().snapshot();
+        first.blogs().updateContent(blog, "changed after the snapshot");
+        first.comments().save(blog, new Comment(first.comments().nextId(), blog.getId(), "bob", "after the snapshot"));
+        first.blogs().remove(first.blogs().findById(2).orElseThrow());
+        first.blogs().save(new Blog(first.blogs().nextId(), "late", "after the snapshot"));
+        first.store().close();
+
+        // 1000 records do not fit one 64 KB segment; the ones the snapshot covers are gone
+        assertThat(segments()).hasSize(1);
+
+        var second = open();
+        assertThat(second.blogs().count()).isEqualTo(1_000);
+        assertThat(second.blogs().findById(1)).get().extracting(Blog::getContent).isEqualTo("changed after the snapshot");
+        assertThat(second.blogs().findById(1)).get().extracting(Blog::getCommentCount).isEqualTo(4);
+        assertThat(second.blogs().findById(1)).get().extracting(Blog::getVersion).isEqualTo(2L);
+        assertThat(second.comments().findPage(1, 2, 10).items()).extracting(Comment::getContent)
+                .containsExactly("comment 2", "after the snapshot");
+        assertThat(second.blogs().findById(2)).isEmpty();
+        assertThat(second.blogs().findByAuthor("late")).hasSize(1);
+        assertThat(second.blogs().findByAuthor("author-3")).hasSize(143);
+        assertThat(second.blogs().nextId()).isEqualTo(1_002);
+        second.store().close();
+    }
+
+    @Test
+    void keepsEachEntityInItsTenantAcrossSnapshotAndLog() throws Exception {
+        var first = open();
+        var snapshotted = new Blog(first.blogs().nextId("acme"), "acme", "alice", "before the snapshot");
+        first.blogs().save(snapshotted);
+        first.folders().save(new Folder(first.folders().nextId("acme"), "acme", "alice", "drafts"));
+        first.blogs().save(new Blog(first.blogs().nextId(), "bob", "in the default tenant"));
+        first.store().snapshot();
+        var logged = new Blog(first.blogs().nextId("acme"), "acme", "alice", "after the snapshot");
+        first.blogs().save(logged);
+        first.store().close();
+
+        var second = open();
+        assertThat(second.blogs().findAll("acme")).extracting(Blog::getId).containsExactly(snapshotted.getId(), logged.getId());
+        assertThat(second.blogs().findAll()).extracting(Blog::getAuthor).containsExactly("bob");
+        assertThat(second.folders().findAll("acme")).extracting(Folder::getName).containsExactly("drafts");
+        assertThat(second.folders().findAll()).isEmpty();
+        assertThat(second.blogs().nextId("acme")).isGreaterThan(logged.getId());
+        second.store().close();
+    }
+
+    @Test
+    void refusesAChangeTooBigForTheLogWithoutApplyingIt() throws Exception {
+        var first = open();
+        String oversize = "x".repeat(70 * 1024);
+        var blog = new Blog(first.blogs().nextId(), "alice", "small");
+        first.blogs().save(blog);
+
+        assertThatThrownBy(() -> first.blogs().save(new Blog(first.blogs().nextId(), "alice", oversize)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> first.blogs().updateContent(blog, oversize))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(first.blogs().findAll()).containsExactly(blog);
+        assertThat(blog.getContent()).isEqualTo("small");
+        assertThat(blog.getVersion()).isEqualTo(1);
+
+        first.blogs().updateContent(blog, "still small");
+        first.store().close();
+
+        var second = open();
+        assertThat(second.blogs().findAll()).singleElement().satisfies(restored -> {
+            assertThat(restored.getContent()).isEqualTo("still small");
+            assertThat(restored.getVersion()).isEqualTo(2);
+        });
+        second.store().close();
+    }
+
+    @Test
+    void readsASnapshotAndLogWrittenBeforeThereWereVersions() throws Exception {
+        // the format of both before tenants and versions: a version 1 snapshot, and changes with their first tags
+        var snapshot = new ChangeCodec.Encoder();
+        snapshot.putInt(0x56534e50).putInt(1).putLong(0).putInt(1).putInt(1).putInt(1)
+                .putInt(1).putString("alice").putString("draft")
+                .putInt(1).putInt(1).putString("bob").putString("nice")
+                .putInt(-1)
+                .putInt(1).putString("alice").putString("drafts")
+                .putInt(-1);
+        var crc = new CRC32C();
+        crc.update(snapshot.toByteArray());
+        snapshot.putInt((int) crc.getValue());
+        Files.write(directory.resolve("snapshot-%020d.bin".formatted(0)), snapshot.toByteArray());
+        try (var log = WriteLog.open(directory, 64 * 1024)) {
+            log.append(new ChangeCodec.Encoder().tag((byte) 1).putInt(2).putString("carol").putString("second").toByteArray());
+            log.append(new ChangeCodec.Encoder().tag((byte) 2).putInt(1).putString("final").toByteArray());
+            log.append(new ChangeCodec.Encoder().tag((byte) 5).putInt(1).putInt(1).putString("very nice").toByteArray());
+            log.append(new ChangeCodec.Encoder().tag((byte) 8).putInt(1).putString("published").toByteArray());
+        }
+
+        var first = open();
+        assertThat(first.blogs().findAll()).extracting(Blog::getContent).containsExactly("final", "second");
+        var blog = first.blogs().findById(1).orElseThrow();
+        assertThat(blog.getVersion()).isEqualTo(1);
+        assertThat(blog.getCommentCount()).isEqualTo(1);
+        assertThat(first.comments().findByBlog(1)).singleElement().satisfies(comment -> {
+            assertThat(comment.getContent()).isEqualTo("very nice");
+            assertThat(comment.getVersion()).isEqualTo(1);
+        });
+        assertThat(first.folders().findById(1)).get().satisfies(folder -> {
+            assertThat(folder.getName()).isEqualTo("published");
+            assertThat(folder.getVersion()).isEqualTo(1);
+        });
+        first.blogs().updateContent(blog, "after the upgrade");
+        first.store().close();
+
+        var second = open();
+        assertThat(second.blogs().findById(1)).get().satisfies(restored -> {
+            assertThat(restored.getContent()).isEqualTo("after the upgrade");
+            assertThat(restored.getVersion()).isEqualTo(2);
+        });
+        assertThat(second.blogs().nextId()).isEqualTo(3);
+        second.store().close();
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] marker) {
+        outer:
+        for (int i = 0; i <= bytes.length - marker.length; i++) {
+            for (int j = 0; j < marker.length; j++) {
+                if (bytes[i + j] != marker[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("Marker not found");
+    }
+}
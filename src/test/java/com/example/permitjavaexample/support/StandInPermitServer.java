@@ -0,0 +1,312 @@
+package com.example.permitjavaexample.support;
+
+import com.example.permitjavaexample.authz.policy.BlogPolicy;
+import com.example.permitjavaexample.authz.policy.LocalPolicyEvaluator;
+import com.example.permitjavaexample.sync.SyncOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local replacement for both the PDP and the Permit management API, for tests that must not depend on the
+ * remote endpoints in {@code application.yaml}.
+ * <p>
+ * Only the endpoints this application uses are implemented: single and bulk checks, user sync and role
+ * assignment, resource instances, instance role assignments and relationship tuples. Schema objects (what
+ * {@code StartupData} creates) are stored as sent and listed back, but do not change the policy, which is always
+ * {@link BlogPolicy}, evaluated by a
+ * {@link LocalPolicyEvaluator} in authoritative mode over the facts written to this server. Every request can be
+ * slowed down by a fixed latency plus uniform jitter, and failed with a 503 at a given rate.
+ */
+public class StandInPermitServer implements AutoCloseable {
+    private static final String FACTS = "/v2/facts/[^/]+/[^/]+";
+    private static final Pattern USER = Pattern.compile(FACTS + "/users(?:/([^/]+))?");
+    private static final Pattern USER_ROLES = Pattern.compile(FACTS + "/users/([^/]+)/roles");
+    private static final Pattern ROLE_ASSIGNMENTS = Pattern.compile(FACTS + "/role_assignments");
+    private static final Pattern RESOURCE_INSTANCES = Pattern.compile(FACTS + "/resource_instances");
+    private static final Pattern RESOURCE_INSTANCE = Pattern.compile(FACTS + "/resource_instances/([^/]+)");
+    private static final Pattern RELATIONSHIP_TUPLES = Pattern.compile(FACTS + "/relationship_tuples");
+    private static final Pattern SCHEMA = Pattern.compile("/v2/schema/.*|" + FACTS + "/set_rules");
+    private static final Pattern IMPLICIT_GRANTS = Pattern.compile("(/v2/schema/.*/roles)/([^/]+)/implicit_grants");
+
+    public record Settings(Duration latency, Duration jitter, double errorRate) {
+        public static Settings none() {
+            return new Settings(Duration.ZERO, Duration.ZERO, 0);
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final LocalPolicyEvaluator evaluator = new LocalPolicyEvaluator(BlogPolicy.model(), true, true);
+    private final Map<String, ObjectNode> resourceInstances = new ConcurrentHashMap<>();
+    private final Map<String, List<ObjectNode>> schema = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private volatile Settings settings;
+
+    public StandInPermitServer(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setSettings(Settings settings) {
+        this.settings = settings;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            Settings current = settings;
+            simulateLatency(current);
+            if (current.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < current.errorRate()) {
+                injectedErrors.increment();
+                respond(exchange, 503, mapper.createObjectNode().put("detail", "injected failure"));
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            JsonNode response;
+            try {
+                response = route(method, path, exchange.getRequestURI().getQuery(), readBody(exchange.getRequestBody()));
+            } catch (RuntimeException e) {
+                respond(exchange, 500, mapper.createObjectNode().put("detail", String.valueOf(e.getMessage())));
+                return;
+            }
+            if (response == null) {
+                respond(exchange, 404, mapper.createObjectNode().put("detail", method + " " + path + " is not implemented by the stand-in"));
+            } else if (response.isMissingNode()) {
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                respond(exchange, 200, response);
+            }
+        }
+    }
+
+    private JsonNode route(String method, String path, String query, JsonNode body) {
+        Matcher m;
+        if (method.equals("POST") && path.equals("/allowed")) {
+            return mapper.createObjectNode().put("allow", allowed(body));
+        }
+        if (method.equals("POST") && path.equals("/allowed/bulk")) {
+            ArrayNode decisions = mapper.createArrayNode();
+            JsonNode checks = body.isArray() ? body : body.path("checks");
+            for (JsonNode check : checks) {
+                decisions.addObject().put("allow", allowed(check));
+            }
+            ObjectNode result = mapper.createObjectNode();
+            result.set("allow", decisions);
+            return result;
+        }
+        if (method.equals("GET") && path.equals("/v2/api-key/scope")) {
+            return mapper.createObjectNode()
+                    .put("organization_id", "stand-in-org")
+                    .put("project_id", "stand-in-project")
+                    .put("environment_id", "stand-in-env");
+        }
+        if ((m = USER_ROLES.matcher(path)).matches() && method.equals("POST")) {
+            evaluator.tenantRoleAssigned(m.group(1), body.path("role").asText(), body.path("tenant").asText("default"));
+            return created(body).put("user", m.group(1));
+        }
+        if ((m = USER.matcher(path)).matches() && (method.equals("PUT") || method.equals("POST"))) {
+            String key = m.group(1) != null ? m.group(1) : body.path("key").asText();
+            evaluator.userSynced(key);
+            return created(body).put("key", key);
+        }
+        if (ROLE_ASSIGNMENTS.matcher(path).matches() && method.equals("POST")) {
+            String user = body.path("user").asText();
+            String role = body.path("role").asText();
+            String instance = body.path("resource_instance").asText(null);
+            if (instance == null) {
+                evaluator.tenantRoleAssigned(user, role, body.path("tenant").asText("default"));
+            } else {
+                evaluator.submitted(new SyncOperation.AssignResourceRole(role, user, instance, body.path("tenant").asText("default")));
+            }
+            return created(body);
+        }
+        if (RESOURCE_INSTANCES.matcher(path).matches()) {
+            if (method.equals("POST")) {
+                String instance = body.path("resource").asText() + ":" + body.path("key").asText();
+                ObjectNode created = created(body).put("id", instance);
+                resourceInstances.put(instance, created);
+                evaluator.submitted(new SyncOperation.CreateResourceInstance(body.path("resource").asText(),
+                        body.path("key").asText(), body.path("tenant").asText("default")));
+                return created;
+            }
+            if (method.equals("GET")) {
+                ArrayNode instances = mapper.createArrayNode();
+                instances.addAll(resourceInstances.values());
+                return instances;
+            }
+        }
+        if ((m = RESOURCE_INSTANCE.matcher(path)).matches() && method.equals("DELETE")) {
+            resourceInstances.remove(m.group(1));
+            evaluator.submitted(new SyncOperation.DeleteResourceInstance(m.group(1)));
+            return mapper.missingNode();
+        }
+        if (RELATIONSHIP_TUPLES.matcher(path).matches() && method.equals("POST")) {
+            evaluator.submitted(new SyncOperation.CreateRelationshipTuple(body.path("subject").asText(),
+                    body.path("relation").asText(), body.path("object").asText(), body.path("tenant").asText("default")));
+            return created(body);
+        }
+        if ((m = IMPLICIT_GRANTS.matcher(path)).matches() && method.equals("POST")) {
+            return grant(m.group(1), m.group(2), body);
+        }
+        if (SCHEMA.matcher(path).matches()) {
+            if (method.equals("GET")) {
+                return listSchema(path, query);
+            }
+            if (!method.equals("DELETE")) {
+                ObjectNode created = created(body);
+                schema.computeIfAbsent(path, p -> new CopyOnWriteArrayList<>()).add(created);
+                return created;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Schema objects created at {@code path}; condition set rules can be filtered the way the SDK asks for them.
+     */
+    private ArrayNode listSchema(String path, String query) {
+        Map<String, String> filters = new HashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int eq = parameter.indexOf('=');
+                if (eq > 0 && Set.of("user_set", "permission", "resource_set").contains(parameter.substring(0, eq))) {
+                    filters.put(parameter.substring(0, eq), URLDecoder.decode(parameter.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        ArrayNode objects = mapper.createArrayNode();
+        for (ObjectNode object : schema.getOrDefault(path, List.of())) {
+            if (filters.entrySet().stream().allMatch(f -> f.getValue().equals(object.path(f.getKey()).asText()))) {
+                objects.add(object);
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Records a role derivation on the stored resource role, where the API reports it under {@code granted_to}.
+     */
+    private ObjectNode grant(String roles, String role, JsonNode rule) {
+        for (ObjectNode stored : schema.getOrDefault(roles, List.of())) {
+            if (stored.path("key").asText().equals(role)) {
+                ObjectNode grantedTo = stored.has("granted_to") ? (ObjectNode) stored.get("granted_to") : stored.putObject("granted_to");
+                (grantedTo.has("users") ? (ArrayNode) grantedTo.get("users") : grantedTo.putArray("users")).add(rule.deepCopy());
+                return rule.deepCopy();
+            }
+        }
+        throw new IllegalArgumentException("No role " + role + " at " + roles);
+    }
+
+    private boolean allowed(JsonNode check) {
+        JsonNode userNode = check.path("user");
+        JsonNode resourceNode = check.path("resource");
+        User user = new User.Builder(userNode.path("key").asText()).withAttributes(attributes(userNode)).build();
+        var resource = new Resource.Builder(resourceNode.path("type").asText());
+        if (resourceNode.hasNonNull("key")) {
+            resource.withKey(resourceNode.path("key").asText());
+        }
+        resource.withTenant(resourceNode.path("tenant").asText("default"));
+        resource.withAttributes(attributes(resourceNode));
+        return evaluator.evaluate(user, check.path("action").asText(), resource.build()) == LocalPolicyEvaluator.Decision.ALLOW;
+    }
+
+    private HashMap<String, Object> attributes(JsonNode node) {
+        HashMap<String, Object> attributes = new HashMap<>();
+        node.path("attributes").fields().forEachRemaining(e -> attributes.put(e.getKey(), e.getValue().isTextual() ? e.getValue().asText() : e.getValue().toString()));
+        return attributes;
+    }
+
+    /**
+     * Echoes a write back the way the management API does: the request body plus identifiers and timestamps.
+     */
+    private ObjectNode created(JsonNode body) {
+        ObjectNode node = body.isObject() ? ((ObjectNode) body).deepCopy() : mapper.createObjectNode();
+        String now = Instant.now().toString();
+        String id = UUID.randomUUID().toString();
+        node.put("id", id);
+        if (!node.has("key")) {
+            node.put("key", id);
+        }
+        node.put("organization_id", "stand-in-org")
+                .put("project_id", "stand-in-project")
+                .put("environment_id", "stand-in-env")
+                .put("created_at", now)
+                .put("updated_at", now);
+        return node;
+    }
+
+    private JsonNode readBody(InputStream in) throws IOException {
+        byte[] bytes = in.readAllBytes();
+        return bytes.length == 0 ? mapper.createObjectNode() : mapper.readTree(bytes);
+    }
+
+    private void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void simulateLatency(Settings settings) {
+        long nanos = settings.latency().toNanos();
+        long jitter = settings.jitter().toNanos();
+        if (jitter > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+}
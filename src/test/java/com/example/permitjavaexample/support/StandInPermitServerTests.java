@@ -0,0 +1,84 @@
+package com.example.permitjavaexample.support;
+
+import io.permit.sdk.Permit;
+import io.permit.sdk.PermitConfig;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+import io.permit.sdk.openapi.models.RelationshipTupleCreate;
+import io.permit.sdk.openapi.models.ResourceInstanceCreate;
+import io.permit.sdk.openapi.models.RoleAssignmentCreate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the stand-in through the Permit SDK itself, so a protocol mismatch shows up here rather than as a
+ * confusing failure in the load tests.
+ */
+class StandInPermitServerTests {
+    private StandInPermitServer server;
+    private Permit permit;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StandInPermitServer(StandInPermitServer.Settings.none());
+        permit = new Permit(new PermitConfig.Builder("stand-in").withPdpAddress(server.url()).withApiUrl(server.url()).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void evaluatesTenantRolesAndResourceSets() throws Exception {
+        var editor = new User.Builder("editor").build();
+        permit.api.users.sync(editor);
+        permit.api.users.assignRole("editor", "editor", "default");
+
+        assertThat(permit.check(editor, "create", new Resource.Builder("blog").build())).isTrue();
+        assertThat(permit.check(editor, "update", blog("1", "editor"))).isTrue();
+        assertThat(permit.check(editor, "update", blog("2", "someone-else"))).isFalse();
+    }
+
+    @Test
+    void derivesRolesThroughRelationshipTuples() throws Exception {
+        var author = new User.Builder("author").build();
+        permit.api.users.sync(author);
+        permit.api.resourceInstances.create(new ResourceInstanceCreate("1", "blog").withTenant("default"));
+        permit.api.roleAssignments.assign(new RoleAssignmentCreate("author", "author").withResourceInstance("blog:1").withTenant("default"));
+        permit.api.relationshipTuples.create(new RelationshipTupleCreate("blog:1", "parent", "comment:7"));
+
+        assertThat(permit.check(author, "delete", new Resource.Builder("comment").withKey("7").build())).isTrue();
+
+        permit.api.resourceInstances.delete("blog:1");
+
+        assertThat(permit.check(author, "delete", new Resource.Builder("comment").withKey("7").build())).isFalse();
+    }
+
+    @Test
+    void injectsErrors() throws Exception {
+        server.setSettings(new StandInPermitServer.Settings(Duration.ZERO, Duration.ZERO, 1.0));
+
+        boolean failed = false;
+        try {
+            permit.api.users.sync(new User.Builder("anyone").build());
+        } catch (Exception e) {
+            failed = true;
+        }
+
+        assertThat(failed).isTrue();
+        assertThat(server.injectedErrors()).isPositive();
+    }
+
+    private static Resource blog(String key, String author) {
+        var attributes = new HashMap<String, Object>();
+        attributes.put("author", author);
+        return new Resource.Builder("blog").withKey(key).withAttributes(attributes).build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.permitjavaexample.support;
+
+import com.example.permitjavaexample.authz.PdpClient;
+import io.permit.sdk.enforcement.CheckQuery;
+import io.permit.sdk.enforcement.Resource;
+import io.permit.sdk.enforcement.User;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * In-memory {@link PdpClient} that answers from a rule and simulates a fixed round-trip latency per call, optionally
+ * with a limited number of requests served at a time, like a PDP with a fixed worker pool. It can be switched to
+ * failing every call, as an unreachable PDP would. User permission listings come from a separate function, empty
+ * unless set.
+ */
+public class StubPdpClient implements PdpClient {
+
+    @FunctionalInterface
+    public interface Rule {
+        boolean allows(User user, String action, Resource resource);
+    }
+
+    private final Rule rule;
+    private final long latencyNanos;
+    private final Semaphore workers;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private volatile boolean failing;
+    private volatile Function<User, Map<String, Set<String>>> userPermissions = user -> Map.of();
+
+    public StubPdpClient(Rule rule, Duration latency) {
+        this(rule, latency, Integer.MAX_VALUE);
+    }
+
+    public StubPdpClient(Rule rule, Duration latency, int workers) {
+        this.rule = rule;
+        this.latencyNanos = latency.toNanos();
+        this.workers = new Semaphore(workers);
+    }
+
+    public static StubPdpClient allowAll(Duration latency) {
+        return new StubPdpClient((user, action, resource) -> true, latency);
+    }
+
+    @Override
+    public boolean check(User user, String action, Resource resource) throws IOException {
+        roundTrip();
+        return rule.allows(user, action, resource);
+    }
+
+    @Override
+    public List<Boolean> bulkCheck(List<CheckQuery> checks) throws IOException {
+        roundTrip();
+        List<Boolean> decisions = new ArrayList<>(checks.size());
+        for (CheckQuery check : checks) {
+            decisions.add(rule.allows(check.user, check.action, check.resource));
+        }
+        return decisions;
+    }
+
+    @Override
+    public Map<String, Set<String>> userPermissions(User user, String tenant, List<String> resourceTypes) throws IOException {
+        roundTrip();
+        return userPermissions.apply(user);
+    }
+
+    public void setUserPermissions(Function<User, Map<String, Set<String>>> userPermissions) {
+        this.userPermissions = userPermissions;
+    }
+
+    public long roundTrips() {
+        return roundTrips.get();
+    }
+
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    private void roundTrip() throws IOException {
+        roundTrips.incrementAndGet();
+        if (latencyNanos > 0) {
+            try {
+                workers.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+            try {
+                LockSupport.parkNanos(latencyNanos);
+            } finally {
+                workers.release();
+            }
+        }
+        if (failing) {
+            throw new IOException("PDP unreachable");
+        }
+    }
+}
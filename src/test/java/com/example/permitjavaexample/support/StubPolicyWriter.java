@@ -0,0 +1,32 @@
+package com.example.permitjavaexample.support;
+
+import com.example.permitjavaexample.sync.PolicyWriter;
+import com.example.permitjavaexample.sync.SyncOperation;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link PolicyWriter} that accepts every operation after a fixed simulated round-trip latency.
+ */
+public class StubPolicyWriter implements PolicyWriter {
+    private final long latencyNanos;
+    private final AtomicLong writes = new AtomicLong();
+
+    public StubPolicyWriter(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+    }
+
+    @Override
+    public void write(SyncOperation operation) {
+        writes.incrementAndGet();
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    public long writes() {
+        return writes.get();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.permitjavaexample.sync;
+
+import com.example.permitjavaexample.authz.DecisionCache;
+import com.example.permitjavaexample.metrics.AuthzMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PermitSyncOutboxTests {
+    private final GatedWriter writer = new GatedWriter();
+    private PermitSyncOutbox outbox;
+
+    /**
+     * Records what it writes; writes to a gated instance block until the gate is opened.
+     */
+    private static final class GatedWriter implements PolicyWriter {
+        final List<SyncOperation> written = new CopyOnWriteArrayList<>();
+        final ConcurrentHashMap<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+        final CountDownLatch gateReached = new CountDownLatch(1);
+
+        CountDownLatch gate(String instance) {
+            return gates.computeIfAbsent(instance, i -> new CountDownLatch(1));
+        }
+
+        @Override
+        public void write(SyncOperation operation) {
+            CountDownLatch gate = gates.get(operation.instance());
+            if (gate != null) {
+                gateReached.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            written.add(operation);
+        }
+    }
+
+    private PermitSyncOutbox outbox(int workers) {
+        outbox = new PermitSyncOutbox(writer, new DecisionCache(false, 0, Duration.ZERO), AuthzMetrics.unpublished(),
+                new StaticListableBeanFactory().getBeanProvider(SyncListener.class),
+                true, workers, 64, 3, Duration.ofMillis(10), Duration.ofMillis(10), false);
+        return outbox;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.gates.values().forEach(CountDownLatch::countDown);
+        if (outbox != null) {
+            outbox.shutdown();
+        }
+    }
+
+    private static SyncOperation create(String type, int id) {
+        return new SyncOperation.CreateResourceInstance(type, String.valueOf(id), "default");
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    void appliesOtherInstancesWhileOneIsStuck() throws Exception {
+        var outbox = outbox(2);
+        CountDownLatch stuck = writer.gate("blog:1");
+        outbox.submit(create("blog", 1));
+        assertThat(writer.gateReached.await(5, TimeUnit.SECONDS)).isTrue();
+
+        outbox.submit(create("blog", 2));
+        outbox.submit(create("blog", 3));
+        outbox.submit(create("blog", 4));
+
+        awaitTrue(() -> writer.written.size() == 3);
+        assertThat(outbox.stats().depth()).isEqualTo(1);
+        stuck.countDown();
+        awaitTrue(() -> outbox.stats().depth() == 0);
+        assertThat(writer.written).hasSize(4);
+    }
+
+    @Test
+    void sendsATupleOnlyOnceItsParentWasCreated() throws Exception {
+        var outbox = outbox(2);
+        CountDownLatch parent = writer.gate("blog:1");
+        var tuple = new SyncOperation.CreateRelationshipTuple("blog:1", "parent", "comment:5", "default");
+        outbox.submit(create("blog", 1));
+        assertThat(writer.gateReached.await(5, TimeUnit.SECONDS)).isTrue();
+        outbox.submit(create("comment", 5), tuple);
+
+        awaitTrue(() -> writer.written.contains(create("comment", 5)));
+        Thread.sleep(50);
+        assertThat(writer.written).doesNotContain(tuple);
+        // the parent's creation and the tuple
+        assertThat(outbox.stats().depth()).isEqualTo(2);
+
+        parent.countDown();
+        awaitTrue(() -> outbox.stats().depth() == 0);
+        assertThat(writer.written).containsExactly(create("comment", 5), create("blog", 1), tuple);
+    }
+
+    @Test
+    void dropsTheTuplesOfAParentWhoseCreationIsCancelled() throws Exception {
+        var outbox = outbox(1);
+        // the only worker is held up, so nothing submitted after this is sent yet
+        CountDownLatch busy = writer.gate("folder:9");
+        outbox.submit(create("folder", 9));
+        assertThat(writer.gateReached.await(5, TimeUnit.SECONDS)).isTrue();
+
+        outbox.submit(create("blog", 1));
+        outbox.submit(create("comment", 5), new SyncOperation.CreateRelationshipTuple("blog:1", "parent", "comment:5", "default"));
+        outbox.submit(new SyncOperation.DeleteResourceInstance("blog:1", "default"));
+        busy.countDown();
+
+        awaitTrue(() -> outbox.stats().depth() == 0);
+        assertThat(writer.written).containsExactly(create("folder", 9), create("comment", 5));
+        assertThat(outbox.stats().deduplicated()).isEqualTo(2);
+        assertThat(outbox.stats().failed()).isZero();
+    }
+}